@@ -77,11 +77,15 @@ import javax.swing.border.Border;
 import javax.swing.plaf.basic.BasicSplitPaneDivider;
 
 import com.eteks.sweethome3d.io.AutoRecoveryManager;
+import com.eteks.sweethome3d.io.ContentDigestManager;
 import com.eteks.sweethome3d.io.FileUserPreferences;
 import com.eteks.sweethome3d.io.HomeFileRecorder;
 import com.eteks.sweethome3d.j3d.Component3DManager;
+import com.eteks.sweethome3d.j3d.ModelManager;
+import com.eteks.sweethome3d.j3d.TextureManager;
 import com.eteks.sweethome3d.model.CollectionEvent;
 import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeApplication;
 import com.eteks.sweethome3d.model.HomeRecorder;
@@ -150,6 +154,10 @@ public class SweetHome3D extends HomeApplication {
   private static final String     PREFERENCES_FOLDER             = "com.eteks.sweethome3d.preferencesFolder";
   private static final String     APPLICATION_FOLDERS            = "com.eteks.sweethome3d.applicationFolders";
   private static final String     APPLICATION_PLUGINS_SUB_FOLDER = "plugins";
+  private static final String     CACHED_MODELS_SUB_FOLDER       = "cachedModels";
+  private static final long       MAX_CACHED_MODELS_SIZE         = 256L * 1024 * 1024;
+  private static final String     CACHED_TEXTURES_SUB_FOLDER     = "cachedTextures";
+  private static final long       MAX_CACHED_TEXTURES_SIZE       = 256L * 1024 * 1024;
 
   private HomeRecorder            homeRecorder;
   private HomeRecorder            compressedHomeRecorder;
@@ -467,6 +475,7 @@ public class SweetHome3D extends HomeApplication {
     addComponent3DRenderingErrorObserver();
 
     getUserPreferences();
+    setPersistentModelsFolder();
     try {
       // Set User Agent to follow statistics on used operating systems
       System.setProperty("http.agent", getId() + "/" + getVersion()
@@ -652,6 +661,32 @@ public class SweetHome3D extends HomeApplication {
     }
   }
 
+  /**
+   * Sets the folders where the models loaded by <code>ModelManager</code> and the downscaled
+   * images loaded by <code>TextureManager</code> are cached from one session to the other.
+   */
+  private void setPersistentModelsFolder() {
+    if (!Boolean.getBoolean("com.eteks.sweethome3d.no3D")) {
+      try {
+        UserPreferences userPreferences = getUserPreferences();
+        File applicationFolder = userPreferences instanceof FileUserPreferences
+            ? ((FileUserPreferences)userPreferences).getApplicationFolder()
+            : OperatingSystem.getDefaultApplicationFolder();
+        ModelManager.ContentDigester contentDigester = new ModelManager.ContentDigester() {
+            public byte [] getContentDigest(Content content) {
+              return ContentDigestManager.getInstance().getContentDigest(content);
+            }
+          };
+        ModelManager.getInstance().setPersistentModelsFolder(
+            new File(applicationFolder, CACHED_MODELS_SUB_FOLDER), MAX_CACHED_MODELS_SIZE, contentDigester);
+        TextureManager.getInstance().setPersistentTexturesFolder(
+            new File(applicationFolder, CACHED_TEXTURES_SUB_FOLDER), MAX_CACHED_TEXTURES_SIZE, contentDigester);
+      } catch (IOException ex) {
+        // Load models and textures again in each session
+      }
+    }
+  }
+
   /**
    * Displays a message to user about a 3D error, saves modified homes and
    * forces exit.
@@ -43,6 +43,7 @@ import java.util.concurrent.ThreadFactory;
 
 import com.eteks.sweethome3d.model.CollectionEvent;
 import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeApplication;
 import com.eteks.sweethome3d.model.HomeRecorder;
@@ -71,9 +72,14 @@ public class AutoRecoveryManager {
   // only in autoSaveForRecoveryExecutor single thread executor
   private final Map<Home, File>             autoSavedFiles      = new HashMap<Home, File>();
   private final Map<File, FileOutputStream> lockedOutputStreams = new HashMap<File, FileOutputStream>();
+  private final Map<Home, Map<Content, String>> autoSavedContentNames = new HashMap<Home, Map<Content, String>>();
   private final ExecutorService             autoSaveForRecoveryExecutor;
   private Timer                             timer;
   private long                              lastAutoSaveTime;
+  private volatile long                     lastSnapshotDuration;
+  private volatile int                      lastSnapshotHomeCount;
+  private volatile long                     lastAutoSaveDuration;
+  private volatile long                     lastAutoSavedFilesLength;
 
   /**
    * Creates a manager able to automatically recover <code>application</code> homes.
@@ -114,6 +120,7 @@ public class AutoRecoveryManager {
                       homeFile.delete();
                       autoSavedFiles.remove(home);
                     }
+                    autoSavedContentNames.remove(home);
                   } catch (RecorderException ex) {
                   }
                 }
@@ -252,27 +259,50 @@ public class AutoRecoveryManager {
   }
 
   /**
-   * Clones application homes and saves them in automatic save executor.
+   * Clones modified application homes and saves them in automatic save executor.
+   * The content of clones is shared with the one of application homes since <code>Content</code>
+   * instances are immutable.
    */
   private void cloneAndSaveHomes() {
     try {
       EventQueue.invokeAndWait(new Runnable() {
           public void run() {
             // Handle and clone application homes in Event Dispatch Thread
-            for (final Home home : application.getHomes()) {
-              final Home autoSavedHome = home.clone();
-              final HomeRecorder homeRecorder = application.getHomeRecorder();
-              autoSaveForRecoveryExecutor.submit(new Runnable() {
+            long snapshotStart = System.currentTimeMillis();
+            final List<Home> homes = new ArrayList<Home>(application.getHomes());
+            final List<Home> autoSavedHomes = new ArrayList<Home>(homes.size());
+            int snapshotHomeCount = 0;
+            for (Home home : homes) {
+              if (home.isModified()) {
+                autoSavedHomes.add(home.clone());
+                snapshotHomeCount++;
+              } else {
+                // Don't clone homes which recovery file will be deleted
+                autoSavedHomes.add(null);
+              }
+            }
+            lastSnapshotDuration = System.currentTimeMillis() - snapshotStart;
+            lastSnapshotHomeCount = snapshotHomeCount;
+            final HomeRecorder homeRecorder = application.getHomeRecorder();
+            autoSaveForRecoveryExecutor.submit(new Runnable() {
                 public void run() {
-                  try {
-                    // Save home clone in an other thread
-                    saveHome(home, autoSavedHome, homeRecorder);
-                  } catch (RecorderException ex) {
-                    ex.printStackTrace();
+                  long saveStart = System.currentTimeMillis();
+                  long savedFilesLength = 0;
+                  for (int i = 0; i < homes.size(); i++) {
+                    try {
+                      // Save home clone in an other thread
+                      File savedFile = saveHome(homes.get(i), autoSavedHomes.get(i), homeRecorder);
+                      if (savedFile != null) {
+                        savedFilesLength += savedFile.length();
+                      }
+                    } catch (RecorderException ex) {
+                      ex.printStackTrace();
+                    }
                   }
+                  lastAutoSaveDuration = System.currentTimeMillis() - saveStart;
+                  lastAutoSavedFilesLength = savedFilesLength;
                 }
               });
-            }
           }
         });
     } catch (InvocationTargetException ex) {
@@ -283,12 +313,48 @@ public class AutoRecoveryManager {
   }
 
   /**
-   * Saves the given <code>home</code> in recovery folder.
+   * Returns the time in milliseconds spent in Event Dispatch Thread to clone modified homes
+   * during the last automatic save.
+   */
+  public long getLastSnapshotDuration() {
+    return this.lastSnapshotDuration;
+  }
+
+  /**
+   * Returns the count of homes cloned during the last automatic save.
+   */
+  public int getLastSnapshotHomeCount() {
+    return this.lastSnapshotHomeCount;
+  }
+
+  /**
+   * Returns the time in milliseconds spent to write recovery files during the last automatic save.
+   */
+  public long getLastAutoSaveDuration() {
+    return this.lastAutoSaveDuration;
+  }
+
+  /**
+   * Returns the total length in bytes of the recovery files written during the last automatic save.
+   */
+  public long getLastAutoSavedFilesLength() {
+    return this.lastAutoSavedFilesLength;
+  }
+
+  /**
+   * Saves the given <code>home</code> in recovery folder and returns the saved file, or
+   * deletes its recovery file if <code>autoSavedHome</code> is <code>null</code>.
+   * If <code>homeRecorder</code> is a {@link HomeFileRecorder} instance, the content entries
+   * already saved in the previous recovery file of the home are copied from it.
    * Must be run only from auto save thread.
    */
-  private void saveHome(Home home, Home autoSavedHome, HomeRecorder homeRecorder) throws RecorderException {
+  private File saveHome(Home home, Home autoSavedHome, HomeRecorder homeRecorder) throws RecorderException {
     File autoSavedHomeFile = this.autoSavedFiles.get(home);
     if (autoSavedHomeFile == null) {
+      if (autoSavedHome == null) {
+        // No recovery file to delete
+        return null;
+      }
       File recoveredFilesFolder = getRecoveryFolder();
       if (!recoveredFilesFolder.exists()) {
         if (!recoveredFilesFolder.mkdirs()) {
@@ -309,11 +375,25 @@ public class AutoRecoveryManager {
       }
     }
     freeLockedFile(autoSavedHomeFile);        
-    if (autoSavedHome.isModified()) {
+    if (autoSavedHome != null
+        && autoSavedHome.isModified()) {
       this.autoSavedFiles.put(home, autoSavedHomeFile);
       try {
         // Save home and lock the saved file to avoid possible auto recovery processes to read it 
-        homeRecorder.writeHome(autoSavedHome, autoSavedHomeFile.getPath());
+        if (homeRecorder instanceof HomeFileRecorder) {
+          Map<Content, String> previousContentNames = this.autoSavedContentNames.get(home);
+          // Write only the content that isn't in previous recovery file
+          this.autoSavedContentNames.remove(home);
+          Map<Content, String> savedContentNames = ((HomeFileRecorder)homeRecorder).writeHome(
+              autoSavedHome, autoSavedHomeFile.getPath(),
+              previousContentNames != null && autoSavedHomeFile.exists() ? autoSavedHomeFile : null,
+              previousContentNames);
+          if (savedContentNames != null) {
+            this.autoSavedContentNames.put(home, savedContentNames);
+          }
+        } else {
+          homeRecorder.writeHome(autoSavedHome, autoSavedHomeFile.getPath());
+        }
         
         FileOutputStream lockedOutputStream = null;
         try {
@@ -332,14 +412,18 @@ public class AutoRecoveryManager {
           }
           throw new RecorderException("Can't lock saved home", ex);            
         }
+        this.lastAutoSaveTime = Math.max(this.lastAutoSaveTime, System.currentTimeMillis());
+        return autoSavedHomeFile;
       } catch (InterruptedRecorderException ex) {
         // Forget exception that probably happen because of shutdown hook management
       } 
     } else {
       autoSavedHomeFile.delete();
       this.autoSavedFiles.remove(home);
+      this.autoSavedContentNames.remove(home);
     }
     this.lastAutoSaveTime = Math.max(this.lastAutoSaveTime, System.currentTimeMillis());
+    return null;
   }
 
   /**
@@ -0,0 +1,284 @@
+/*
+ * BinaryXMLReader.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * A reader able to parse a stream written by {@link BinaryXMLWriter} and to forward its
+ * elements to a {@link HomeXMLHandler} instance, as if they were read from a XML stream.
+ * Float attributes are given to the handler without being converted to strings.
+ * @author Emmanuel Puybaret
+ */
+class BinaryXMLReader {
+  private final HomeXMLHandler handler;
+  private final List<String>   strings = new ArrayList<String>();
+  private byte []              buffer = new byte [256];
+
+  public BinaryXMLReader(HomeXMLHandler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * Parses the binary stream <code>in</code> and notifies its content to the handler of this reader.
+   * @throws IOException if the stream isn't at the expected format or was written
+   *           in a format version more recent than the one supported by this reader.
+   */
+  public void parse(InputStream in) throws SAXException, IOException {
+    DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+    byte [] signature = new byte [BinaryXMLWriter.SIGNATURE.length];
+    dataIn.readFully(signature);
+    for (int i = 0; i < signature.length; i++) {
+      if (signature [i] != BinaryXMLWriter.SIGNATURE [i]) {
+        throw new IOException("Not a binary home stream");
+      }
+    }
+    int version = dataIn.readUnsignedShort();
+    if (version > BinaryXMLWriter.VERSION) {
+      throw new IOException("Unsupported binary home version " + version);
+    }
+
+    this.strings.clear();
+    Stack<String> elements = new Stack<String>();
+    BinaryAttributes attributes = new BinaryAttributes();
+    this.handler.startDocument();
+    while (true) {
+      int record = dataIn.read();
+      switch (record) {
+        case BinaryXMLWriter.START_ELEMENT :
+          String element = readString(dataIn);
+          int attributeCount = readVarInt(dataIn);
+          readVarInt(dataIn); // Attributes length
+          attributes.read(dataIn, attributeCount);
+          elements.push(element);
+          this.handler.startElement("", element, element, attributes);
+          break;
+        case BinaryXMLWriter.END_ELEMENT :
+          if (elements.isEmpty()) {
+            throw new IOException("Unexpected end of element");
+          }
+          element = elements.pop();
+          this.handler.endElement("", element, element);
+          break;
+        case BinaryXMLWriter.TEXT :
+          int length = readVarInt(dataIn);
+          String text = new String(readBytes(dataIn, length), 0, length, "UTF-8");
+          this.handler.characters(text.toCharArray(), 0, text.length());
+          break;
+        case BinaryXMLWriter.END_DOCUMENT :
+          if (!elements.isEmpty()) {
+            throw new IOException("Unexpected end of document");
+          }
+          this.handler.endDocument();
+          return;
+        case -1 :
+          throw new EOFException("Truncated binary home stream");
+        default :
+          throw new IOException("Unknown record " + record);
+      }
+    }
+  }
+
+  /**
+   * Returns a string read from the given input, or from the table of previous strings
+   * if it was already read.
+   */
+  private String readString(DataInputStream in) throws IOException {
+    int index = readVarInt(in);
+    if (index == 0) {
+      int length = readVarInt(in);
+      String s = new String(readBytes(in, length), 0, length, "UTF-8");
+      this.strings.add(s);
+      return s;
+    } else if (index <= this.strings.size()) {
+      return this.strings.get(index - 1);
+    } else {
+      throw new IOException("Invalid string index " + index);
+    }
+  }
+
+  /**
+   * Returns a buffer filled with <code>length</code> bytes read from the given input.
+   */
+  private byte [] readBytes(DataInputStream in, int length) throws IOException {
+    if (this.buffer.length < length) {
+      this.buffer = new byte [Math.max(length, this.buffer.length * 2)];
+    }
+    in.readFully(this.buffer, 0, length);
+    return this.buffer;
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Invalid variable length integer");
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 70; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Invalid variable length integer");
+  }
+
+  /**
+   * SAX attributes of an element read from a binary stream, which keeps float values
+   * in binary and converts the other ones to strings as they would be read in XML.
+   */
+  private class BinaryAttributes implements Attributes {
+    private int       length;
+    private String [] names  = new String [16];
+    private String [] values = new String [16];
+    private float []  floatValues = new float [16];
+    private boolean[] floatTypes = new boolean [16];
+
+    /**
+     * Reads <code>count</code> attributes from the given input.
+     */
+    private void read(DataInputStream in, int count) throws IOException {
+      if (this.names.length < count) {
+        this.names = new String [count];
+        this.values = new String [count];
+        this.floatValues = new float [count];
+        this.floatTypes = new boolean [count];
+      }
+      this.length = count;
+      for (int i = 0; i < count; i++) {
+        this.names [i] = readString(in);
+        int type = in.readUnsignedByte();
+        this.floatTypes [i] = type == BinaryXMLWriter.FLOAT_VALUE;
+        this.values [i] = null;
+        switch (type) {
+          case BinaryXMLWriter.STRING_VALUE :
+            this.values [i] = readString(in);
+            break;
+          case BinaryXMLWriter.FLOAT_VALUE :
+            this.floatValues [i] = in.readFloat();
+            break;
+          case BinaryXMLWriter.INTEGER_VALUE :
+            int value = readVarInt(in);
+            this.values [i] = String.valueOf((value >>> 1) ^ -(value & 1));
+            break;
+          case BinaryXMLWriter.LONG_VALUE :
+            long longValue = readVarLong(in);
+            this.values [i] = String.valueOf((longValue >>> 1) ^ -(longValue & 1));
+            break;
+          case BinaryXMLWriter.COLOR_VALUE :
+            this.values [i] = toHexString(in.readInt());
+            break;
+          default :
+            throw new IOException("Unknown attribute type " + type);
+        }
+      }
+    }
+
+    /**
+     * Returns the given color in upper case hexadecimal with 8 digits like in XML.
+     */
+    private String toHexString(int color) {
+      char [] digits = new char [8];
+      for (int i = digits.length - 1; i >= 0; i--, color >>>= 4) {
+        digits [i] = Character.toUpperCase(Character.forDigit(color & 0xF, 16));
+      }
+      return new String(digits);
+    }
+
+    public int getLength() {
+      return this.length;
+    }
+
+    public String getQName(int index) {
+      return index >= 0 && index < this.length ? this.names [index] : null;
+    }
+
+    public String getLocalName(int index) {
+      return getQName(index);
+    }
+
+    public String getURI(int index) {
+      return index >= 0 && index < this.length ? "" : null;
+    }
+
+    public String getType(int index) {
+      return index >= 0 && index < this.length ? "CDATA" : null;
+    }
+
+    public String getValue(int index) {
+      if (index >= 0 && index < this.length) {
+        if (this.values [index] == null && this.floatTypes [index]) {
+          this.values [index] = String.valueOf(this.floatValues [index]);
+        }
+        return this.values [index];
+      } else {
+        return null;
+      }
+    }
+
+    public int getIndex(String qName) {
+      for (int i = 0; i < this.length; i++) {
+        if (this.names [i].equals(qName)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    public int getIndex(String uri, String localName) {
+      return "".equals(uri) ? getIndex(localName) : -1;
+    }
+
+    public String getType(String qName) {
+      return getType(getIndex(qName));
+    }
+
+    public String getType(String uri, String localName) {
+      return getType(getIndex(uri, localName));
+    }
+
+    public String getValue(String qName) {
+      return getValue(getIndex(qName));
+    }
+
+    public String getValue(String uri, String localName) {
+      return getValue(getIndex(uri, localName));
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * BinaryXMLWriter.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A writer that encodes the elements, attributes and texts written with <code>XMLWriter</code>
+ * methods in a compact binary format, readable with {@link BinaryXMLReader}.
+ * The stream starts with the 4 bytes <code>SH3B</code> followed by the version of the format
+ * written as an unsigned short, then contains the following records:
+ * <ul><li><code>START_ELEMENT</code> byte, element name, attributes count, attributes length in bytes,
+ *         and for each attribute, its name, the byte of its type and its value,</li>
+ *     <li><code>END_ELEMENT</code> byte,</li>
+ *     <li><code>TEXT</code> byte, text length in bytes and text encoded in UTF-8,</li>
+ *     <li><code>END_DOCUMENT</code> byte once the root element is written.</li></ul>
+ * Counts and lengths are written as variable length integers.
+ * Element names, attribute names and string values are written in UTF-8 with their length
+ * the first time they're met, and replaced by their index in the table of previous strings
+ * the next times. Float, integer, long and color values are written in binary.
+ * @author Emmanuel Puybaret
+ */
+class BinaryXMLWriter extends XMLWriter {
+  static final byte [] SIGNATURE = {'S', 'H', '3', 'B'};
+  static final int     VERSION = 1;
+
+  static final int END_DOCUMENT  = 0;
+  static final int START_ELEMENT = 1;
+  static final int END_ELEMENT   = 2;
+  static final int TEXT          = 3;
+
+  static final int STRING_VALUE  = 0;
+  static final int FLOAT_VALUE   = 1;
+  static final int INTEGER_VALUE = 2;
+  static final int LONG_VALUE    = 3;
+  static final int COLOR_VALUE   = 4;
+
+  private final DataOutputStream      dataOut;
+  private final Map<String, Integer>  stringIndices = new HashMap<String, Integer>();
+  private final ByteArrayOutputStream elementBuffer = new ByteArrayOutputStream();
+  private final DataOutputStream      elementOut = new DataOutputStream(this.elementBuffer);
+  private final ByteArrayOutputStream attributesBuffer = new ByteArrayOutputStream();
+  private final DataOutputStream      attributesOut = new DataOutputStream(this.attributesBuffer);
+  private int                         attributeCount;
+  private boolean                     pendingElement;
+  private int                         depth;
+
+  /**
+   * Creates a writer in the given output stream.
+   */
+  public BinaryXMLWriter(OutputStream out) throws IOException {
+    super(new OutputStreamWriter(out, "UTF-8"));
+    this.dataOut = new DataOutputStream(new BufferedOutputStream(out));
+    this.dataOut.write(SIGNATURE);
+    this.dataOut.writeShort(VERSION);
+  }
+
+  /**
+   * Writes a start tag for the given element.
+   */
+  @Override
+  public void writeStartElement(String element) throws IOException {
+    writePendingElement();
+    this.elementBuffer.reset();
+    this.attributesBuffer.reset();
+    this.attributeCount = 0;
+    // Write element name immediately to keep the order of the string table
+    writeString(this.elementOut, element);
+    this.pendingElement = true;
+    this.depth++;
+  }
+
+  /**
+   * Writes the start element record of the last started element, once all its attributes are known.
+   */
+  private void writePendingElement() throws IOException {
+    if (this.pendingElement) {
+      this.pendingElement = false;
+      this.dataOut.write(START_ELEMENT);
+      this.elementBuffer.writeTo(this.dataOut);
+      writeVarInt(this.dataOut, this.attributeCount);
+      writeVarInt(this.dataOut, this.attributesBuffer.size());
+      this.attributesBuffer.writeTo(this.dataOut);
+    }
+  }
+
+  /**
+   * Writes an end tag for the given element.
+   */
+  @Override
+  public void writeEndElement() throws IOException {
+    writePendingElement();
+    this.dataOut.write(END_ELEMENT);
+    if (--this.depth == 0) {
+      this.dataOut.write(END_DOCUMENT);
+    }
+  }
+
+  /**
+   * Writes the name and the type of an attribute in the last started element.
+   */
+  private void writeAttributeName(String name, int type) throws IOException {
+    if (!this.pendingElement) {
+      throw new IllegalStateException("No started element for attribute " + name);
+    }
+    writeString(this.attributesOut, name);
+    this.attributesOut.write(type);
+    this.attributeCount++;
+  }
+
+  /**
+   * Writes the attribute of the given <code>name</code> with its <code>value</code>
+   * in the last started element.
+   */
+  @Override
+  public void writeAttribute(String name, String value) throws IOException {
+    writeAttributeName(name, STRING_VALUE);
+    writeString(this.attributesOut, value);
+  }
+
+  @Override
+  public void writeIntegerAttribute(String name, int value) throws IOException {
+    writeAttributeName(name, INTEGER_VALUE);
+    writeVarInt(this.attributesOut, (value << 1) ^ (value >> 31));
+  }
+
+  @Override
+  public void writeIntegerAttribute(String name, int value, int defaultValue) throws IOException {
+    if (value != defaultValue) {
+      writeIntegerAttribute(name, value);
+    }
+  }
+
+  @Override
+  public void writeLongAttribute(String name, long value) throws IOException {
+    writeAttributeName(name, LONG_VALUE);
+    writeVarLong(this.attributesOut, (value << 1) ^ (value >> 63));
+  }
+
+  @Override
+  public void writeLongAttribute(String name, Long value) throws IOException {
+    if (value != null) {
+      writeLongAttribute(name, value.longValue());
+    }
+  }
+
+  @Override
+  public void writeFloatAttribute(String name, float value) throws IOException {
+    writeAttributeName(name, FLOAT_VALUE);
+    this.attributesOut.writeFloat(value);
+  }
+
+  @Override
+  public void writeFloatAttribute(String name, Float value) throws IOException {
+    if (value != null) {
+      writeFloatAttribute(name, value.floatValue());
+    }
+  }
+
+  @Override
+  public void writeColorAttribute(String name, Integer color) throws IOException {
+    if (color != null) {
+      writeAttributeName(name, COLOR_VALUE);
+      this.attributesOut.writeInt(color);
+    }
+  }
+
+  /**
+   * Writes the given <code>text</code> as the content of the current element.
+   */
+  @Override
+  public void writeText(String text) throws IOException {
+    writePendingElement();
+    byte [] bytes = text.getBytes("UTF-8");
+    this.dataOut.write(TEXT);
+    writeVarInt(this.dataOut, bytes.length);
+    this.dataOut.write(bytes);
+  }
+
+  /**
+   * Writes the given string or its index if it was already written.
+   */
+  private void writeString(DataOutputStream out, String s) throws IOException {
+    Integer index = this.stringIndices.get(s);
+    if (index != null) {
+      writeVarInt(out, index + 1);
+    } else {
+      this.stringIndices.put(s, this.stringIndices.size());
+      byte [] bytes = s.getBytes("UTF-8");
+      writeVarInt(out, 0);
+      writeVarInt(out, bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Writes the given positive <code>value</code> in 7 bits groups, the highest bit of each
+   * written byte indicating whether an other byte follows.
+   */
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int)(value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int)value);
+  }
+
+  /**
+   * Writes buffered data in the output stream without closing it.
+   */
+  @Override
+  public void flush() throws IOException {
+    this.dataOut.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    super.close();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * CheckedHomeURLContent.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * An URL content read from a home file which data is checked against the CRC
+ * stored in the zip directory of the file, the first time it's fully read.
+ * @author Emmanuel Puybaret
+ */
+class CheckedHomeURLContent extends HomeURLContent {
+  private static final long serialVersionUID = 1L;
+
+  private transient long    crc;
+  private transient boolean checked;
+
+  public CheckedHomeURLContent(URL url, long crc) {
+    super(url);
+    this.crc = crc;
+  }
+
+  /**
+   * Returns an InputStream on the URL content, which checks the CRC of read data
+   * if this content wasn't fully read yet.
+   * @throws IOException if URL stream can't be opened.
+   */
+  @Override
+  public InputStream openStream() throws IOException {
+    InputStream in = openUncheckedStream();
+    if (this.checked) {
+      return in;
+    } else {
+      return new CrcCheckingInputStream(in);
+    }
+  }
+
+  /**
+   * Returns an InputStream on the URL content without checking its CRC.
+   */
+  protected InputStream openUncheckedStream() throws IOException {
+    return super.openStream();
+  }
+
+  /**
+   * Serializes this content as a simple home content since CRC information is transient.
+   */
+  private Object writeReplace() {
+    return new HomeURLContent(getURL());
+  }
+
+  /**
+   * An input stream that compares the CRC of read data to the expected one
+   * once the end of the stream is reached.
+   */
+  private class CrcCheckingInputStream extends CheckedInputStream {
+    public CrcCheckingInputStream(InputStream in) {
+      super(in, new CRC32());
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b == -1) {
+        checkCrc();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte [] buffer, int offset, int length) throws IOException {
+      int size = super.read(buffer, offset, length);
+      if (size == -1) {
+        checkCrc();
+      }
+      return size;
+    }
+
+    private void checkCrc() throws IOException {
+      if (getChecksum().getValue() != crc) {
+        throw new ZipException("Invalid CRC for content " + getURL());
+      }
+      checked = true;
+    }
+  }
+}
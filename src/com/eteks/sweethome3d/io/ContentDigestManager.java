@@ -19,7 +19,14 @@
  */
 package com.eteks.sweethome3d.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
@@ -31,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -41,6 +49,7 @@ import java.util.zip.ZipInputStream;
 import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.tools.ResourceURLContent;
 import com.eteks.sweethome3d.tools.SimpleURLContent;
+import com.eteks.sweethome3d.tools.TemporaryURLContent;
 import com.eteks.sweethome3d.tools.URLContent;
 
 /**
@@ -50,18 +59,32 @@ import com.eteks.sweethome3d.tools.URLContent;
 public class ContentDigestManager {
   private static final String  DIGEST_ALGORITHM = "SHA-1";
   private static final byte [] INVALID_CONTENT_DIGEST = {};
+  private static final int     DIGESTS_FILE_SIGNATURE = 0x53483344; // SH3D
+  private static final int     DIGESTS_FILE_VERSION   = 1;
 
   private static ContentDigestManager instance;
   
   private Map<Content, byte []>  contentDigestsCache;
+  private Map<Content, Object>   contentDigestLocks;
   
   private Map<URLContent, URL>   zipUrlsCache;
   private Map<URL, List<ZipEntryData>> zipUrlEntriesCache;
 
+  private final Object           digestsFileLock;
+  private File                   digestsFile;
+  private Map<String, byte []>   persistentDigestsCache;
+  private Map<String, byte []>   unwrittenDigests;
+  private int                    digestsFileRecordCount;
+  private long                   persistentDigestsHitCount;
+  private long                   persistentDigestsMissCount;
+
   private ContentDigestManager() {
     this.contentDigestsCache = new WeakHashMap<Content, byte[]>();
+    this.contentDigestLocks = new WeakHashMap<Content, Object>();
     this.zipUrlsCache = new WeakHashMap<URLContent, URL>();
     this.zipUrlEntriesCache = new WeakHashMap<URL, List<ZipEntryData>>();
+    this.digestsFileLock = new Object();
+    this.unwrittenDigests = new LinkedHashMap<String, byte []>();
   }
   
   /**
@@ -78,6 +101,216 @@ public class ContentDigestManager {
     return instance;
   }
 
+  /**
+   * Sets the file where the digests computed by this manager are stored to be reused
+   * from a session to the other, and reads the digests it already contains.
+   * A digest read from this file is used only for a content stored in a local file,
+   * which size and modification date didn't change since its digest was computed.
+   * @param digestsFile  the file storing digests or <code>null</code> to stop using
+   *            a persistent cache
+   * @param maxDigestCount the maximum count of digests stored in the file. Once this count
+   *            is reached, the least recently used digests are removed from the file.
+   */
+  public void setPersistentDigestsFile(File digestsFile, final int maxDigestCount) {
+    // Lock digests file first like in writeUnwrittenDigests
+    synchronized (this.digestsFileLock) {
+      synchronized (this) {
+        if (digestsFile == null ? this.digestsFile == null : digestsFile.equals(this.digestsFile)) {
+          return;
+        }
+        this.digestsFile = digestsFile;
+        this.persistentDigestsCache = null;
+        this.unwrittenDigests.clear();
+        this.digestsFileRecordCount = 0;
+        this.persistentDigestsHitCount = 0;
+        this.persistentDigestsMissCount = 0;
+        if (digestsFile != null) {
+          this.persistentDigestsCache = new LinkedHashMap<String, byte []>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, byte []> eldest) {
+                return size() > maxDigestCount;
+              }
+            };
+          if (digestsFile.exists()) {
+            try {
+              readDigestsFile();
+            } catch (IOException ex) {
+              // Keep the digests read before an error and rewrite file without damaged data
+              writeDigestRecords(digestsFile, this.persistentDigestsCache, false);
+              this.digestsFileRecordCount = this.persistentDigestsCache.size();
+            }
+            if (this.digestsFileRecordCount > this.persistentDigestsCache.size()) {
+              // Remove from file the digests replaced or evicted from cache
+              writeDigestRecords(digestsFile, this.persistentDigestsCache, false);
+              this.digestsFileRecordCount = this.persistentDigestsCache.size();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the digests stored in digests file.
+   */
+  private void readDigestsFile() throws IOException {
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.digestsFile)));
+      if (in.readInt() != DIGESTS_FILE_SIGNATURE
+          || in.readShort() != DIGESTS_FILE_VERSION) {
+        throw new IOException("Unsupported digests file");
+      }
+      while (true) {
+        String key;
+        try {
+          key = in.readUTF();
+        } catch (EOFException ex) {
+          break;
+        }
+        byte [] digest = new byte [in.readUnsignedByte()];
+        in.readFully(digest);
+        this.persistentDigestsCache.put(key, digest);
+        this.digestsFileRecordCount++;
+      }
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the given digests in digests file, appending them at its end if <code>append</code> is <code>true</code>.
+   */
+  private void writeDigestRecords(File digestsFile, Map<String, byte []> digests, boolean append) {
+    DataOutputStream out = null;
+    try {
+      if (!append) {
+        File parentFolder = digestsFile.getParentFile();
+        if (parentFolder != null) {
+          parentFolder.mkdirs();
+        }
+      }
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(digestsFile, append)));
+      if (!append) {
+        out.writeInt(DIGESTS_FILE_SIGNATURE);
+        out.writeShort(DIGESTS_FILE_VERSION);
+      }
+      for (Map.Entry<String, byte []> entry : digests.entrySet()) {
+        writeDigestRecord(out, entry.getKey(), entry.getValue());
+      }
+    } catch (IOException ex) {
+      // Ignore cache that can't be written
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ex) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the given digest to the persistent cache and to the digests waiting to be written
+   * by {@link #writeUnwrittenDigests()}.
+   */
+  private synchronized void storePersistentDigest(String key, byte [] digest) {
+    // Check cache wasn't reset or filled by an other thread since key was computed
+    if (this.persistentDigestsCache != null
+        && !this.persistentDigestsCache.containsKey(key)) {
+      this.persistentDigestsCache.put(key, digest);
+      this.unwrittenDigests.put(key, digest);
+    }
+  }
+
+  /**
+   * Appends to digests file the digests stored since last call, or rewrites
+   * the whole file once it contains too many replaced or evicted digests.
+   * File is written out of the lock of this manager, and the digests stored by other threads
+   * during the writing are appended together by the next call.
+   */
+  private void writeUnwrittenDigests() {
+    synchronized (this.digestsFileLock) {
+      File digestsFile;
+      Map<String, byte []> digests;
+      boolean append;
+      synchronized (this) {
+        if (this.unwrittenDigests.isEmpty()) {
+          return;
+        }
+        digestsFile = this.digestsFile;
+        append = this.digestsFileRecordCount + this.unwrittenDigests.size() < 2 * this.persistentDigestsCache.size()
+            && digestsFile.exists();
+        if (append) {
+          digests = this.unwrittenDigests;
+          this.unwrittenDigests = new LinkedHashMap<String, byte []>();
+          this.digestsFileRecordCount += digests.size();
+        } else {
+          // Compact file with a copy of the current digests
+          digests = new LinkedHashMap<String, byte []>(this.persistentDigestsCache);
+          this.unwrittenDigests.clear();
+          this.digestsFileRecordCount = digests.size();
+        }
+      }
+      writeDigestRecords(digestsFile, digests, append);
+    }
+  }
+
+  private void writeDigestRecord(DataOutputStream out, String key, byte [] digest) throws IOException {
+    out.writeUTF(key);
+    out.writeByte(digest.length);
+    out.write(digest);
+  }
+
+  /**
+   * Returns the key used to store the digest of the given content in the persistent cache,
+   * or <code>null</code> if this content isn't stored in a local file which doesn't change.
+   * @param digestType a character describing how the digest is computed
+   */
+  private synchronized String getPersistentDigestKey(Content content, char digestType) {
+    if (this.persistentDigestsCache != null
+        && content instanceof URLContent
+        && !(content instanceof TemporaryURLContent)
+        && !(content instanceof HomeURLContent)) {
+      URLContent urlContent = (URLContent)content;
+      URL fileUrl = urlContent.isJAREntry()
+          ? urlContent.getJAREntryURL()
+          : urlContent.getURL();
+      if ("file".equals(fileUrl.getProtocol())) {
+        try {
+          File file = new File(fileUrl.toURI());
+          if (file.isFile()) {
+            String key = digestType + " " + file.length() + " " + file.lastModified() + " " + urlContent.getURL();
+            // Ignore keys that can't be written with writeUTF
+            return key.length() < 16384
+                ? key
+                : null;
+          }
+        } catch (URISyntaxException ex) {
+        } catch (IllegalArgumentException ex) {
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the count of digests found in the persistent cache since its file was set.
+   */
+  public synchronized long getPersistentDigestsHitCount() {
+    return this.persistentDigestsHitCount;
+  }
+
+  /**
+   * Returns the count of digests not found in the persistent cache and computed
+   * since its file was set.
+   */
+  public synchronized long getPersistentDigestsMissCount() {
+    return this.persistentDigestsMissCount;
+  }
+
   /**
    * Returns <code>true</code> if the contents in parameter contains the same data,
    * comparing their digest. If the digest of the contents was not 
@@ -117,35 +350,111 @@ public class ContentDigestManager {
    * Returns the SHA-1 digest of the given <code>content</code>, computing it 
    * if it wasn't set.
    */
-  public synchronized byte [] getContentDigest(Content content) {
-    byte [] digest = this.contentDigestsCache.get(content);
-    if (digest == null) {
-      try {
-        if (content instanceof ResourceURLContent) {
-          digest = getResourceContentDigest((ResourceURLContent)content);
-        } else if (content instanceof URLContent
-                   && !(content instanceof SimpleURLContent)
-                   && ((URLContent)content).isJAREntry()) {
-          URLContent urlContent = (URLContent)content;
-          // If content comes from a home stream
-          if (urlContent instanceof HomeURLContent) {
-            digest = getHomeContentDigest((HomeURLContent)urlContent);            
-          } else {
-            digest = getZipContentDigest(urlContent);
+  public byte [] getContentDigest(Content content) {
+    Object contentLock;
+    synchronized (this) {
+      byte [] digest = this.contentDigestsCache.get(content);
+      if (digest != null) {
+        return digest;
+      }
+      contentLock = this.contentDigestLocks.get(content);
+      if (contentLock == null) {
+        contentLock = new Object();
+        this.contentDigestLocks.put(content, contentLock);
+      }
+    }
+    // Compute digest out of the lock of this manager to let other threads get the digests
+    // of other contents meanwhile, but with a lock on content to compute its digest only once
+    byte [] digest;
+    synchronized (contentLock) {
+      synchronized (this) {
+        digest = this.contentDigestsCache.get(content);
+      }
+      if (digest == null) {
+        digest = readOrComputeContentDigest(content);
+        synchronized (this) {
+          this.contentDigestsCache.put(content, digest);
+          this.contentDigestLocks.remove(content);
+        }
+      }
+    }
+    writeUnwrittenDigests();
+    return digest;
+  }
+
+  /**
+   * Returns the SHA-1 digest of the given <code>content</code> read from the persistent cache
+   * or computed from its data.
+   */
+  private byte [] readOrComputeContentDigest(Content content) {
+    byte [] digest;
+    String persistentDigestKey = null;
+    try {
+      if (content instanceof ResourceURLContent) {
+        ResourceURLContent resourceContent = (ResourceURLContent)content;
+        if (resourceContent.isMultiPartResource()) {
+          // Cache only multi part resources in JAR files where file date changes with any part
+          if (resourceContent.isJAREntry()) {
+            persistentDigestKey = getPersistentDigestKey(content, 'M');
           }
         } else {
+          persistentDigestKey = getPersistentDigestKey(content, 'C');
+        }
+        digest = getPersistentDigest(persistentDigestKey);
+        if (digest == null) {
+          digest = getResourceContentDigest(resourceContent);
+        }
+      } else if (content instanceof URLContent
+                 && !(content instanceof SimpleURLContent)
+                 && ((URLContent)content).isJAREntry()) {
+        URLContent urlContent = (URLContent)content;
+        // If content comes from a home stream
+        if (urlContent instanceof HomeURLContent) {
+          digest = getHomeContentDigest((HomeURLContent)urlContent);            
+        } else {
+          persistentDigestKey = getPersistentDigestKey(content, 'Z');
+          digest = getPersistentDigest(persistentDigestKey);
+          if (digest == null) {
+            digest = getZipContentDigest(urlContent);
+          }
+        }
+      } else {
+        persistentDigestKey = getPersistentDigestKey(content, 'C');
+        digest = getPersistentDigest(persistentDigestKey);
+        if (digest == null) {
           digest = computeContentDigest(content);
         }
-      } catch (NoSuchAlgorithmException ex) {
-        throw new InternalError("No SHA-1 message digest is available");
-      } catch (IOException ex) {
-        digest = INVALID_CONTENT_DIGEST;
       }
-      this.contentDigestsCache.put(content, digest);
+      if (persistentDigestKey != null) {
+        storePersistentDigest(persistentDigestKey, digest);
+      }
+    } catch (NoSuchAlgorithmException ex) {
+      throw new InternalError("No SHA-1 message digest is available");
+    } catch (IOException ex) {
+      digest = INVALID_CONTENT_DIGEST;
     }
     return digest;
   }
 
+  /**
+   * Returns the digest stored in the persistent cache with the given key, or <code>null</code>
+   * if it doesn't exist.
+   */
+  private synchronized byte [] getPersistentDigest(String key) {
+    if (key != null
+        && this.persistentDigestsCache != null) {
+      byte [] digest = this.persistentDigestsCache.get(key);
+      if (digest != null) {
+        this.persistentDigestsHitCount++;
+      } else {
+        this.persistentDigestsMissCount++;
+      }
+      return digest;
+    } else {
+      return null;
+    }
+  }
+
   /**
    * Returns the digest of a content coming from a resource file.
    */
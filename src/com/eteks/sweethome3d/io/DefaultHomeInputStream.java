@@ -37,6 +37,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -66,8 +68,10 @@ public class DefaultHomeInputStream extends FilterInputStream {
   private final HomeXMLHandler     xmlHandler;
   private final UserPreferences    preferences;
   private final boolean            preferPreferencesContent;
+  private final boolean            lazyContent;
 
-  private File zipFile;
+  private File                  zipFile;
+  private HomeContentStatistics contentStatistics;
 
   /**
    * Creates a home input stream filter able to read a home and its content
@@ -109,8 +113,8 @@ public class DefaultHomeInputStream extends FilterInputStream {
    * @param in  the zipped stream from which the home will be read
    * @param contentRecording  specifies whether content referenced by the read home is included
    *            or not in the stream.
-   * @param xmlHandler  SAX handler used to parse <code>Home.xml</code> entry when present, or
-   *            <code>null</code> if only <code>Home</code> entry should taken into account.
+   * @param xmlHandler  SAX handler used to parse <code>Home.bin</code> or <code>Home.xml</code> entry
+   *            when present, or <code>null</code> if only <code>Home</code> entry should taken into account.
    * @param preferences  if not <code>null</code> and <code>preferPreferencesContent</code>
    *            is <code>true</code>, the furniture and textures contents it references will
    *            replace the one of the read home when they are equal.
@@ -130,16 +134,20 @@ public class DefaultHomeInputStream extends FilterInputStream {
     this.xmlHandler = xmlHandler;
     this.preferences = preferences;
     this.preferPreferencesContent = preferPreferencesContent;
+    this.lazyContent = false;
   }
 
   /**
    * Creates a home input stream able to read a home and its content from the given file.
    * The file will be read directly without using a temporary copy except if it contains some invalid entries.
+   * If its zip directory can be read, the <code>Home.bin</code>, <code>Home.xml</code> or <code>Home</code> entry will be
+   * read without parsing the other entries, and the content of the home will be checked
+   * only once it's read.
    * @param zipFile  the zipped file from which the home will be read
    * @param contentRecording  specifies whether content referenced by the read home is included
    *            or not in the stream.
-   * @param xmlHandler  SAX handler used to parse <code>Home.xml</code> entry when present, or
-   *            <code>null</code> if only <code>Home</code> entry should taken into account.
+   * @param xmlHandler  SAX handler used to parse <code>Home.bin</code> or <code>Home.xml</code> entry
+   *            when present, or <code>null</code> if only <code>Home</code> entry should taken into account.
    * @param preferences  if not <code>null</code> and <code>preferPreferencesContent</code>
    *            is <code>true</code>, the furniture and textures contents it references will
    *            replace the one of the read home when they are equal.
@@ -155,12 +163,48 @@ public class DefaultHomeInputStream extends FilterInputStream {
                                 HomeXMLHandler xmlHandler,
                                 UserPreferences preferences,
                                 boolean preferPreferencesContent) throws FileNotFoundException {
+    this(zipFile, contentRecording, xmlHandler, preferences, preferPreferencesContent, false);
+  }
+
+  /**
+   * Creates a home input stream able to read a home and its content from the given file.
+   * The file will be read directly without using a temporary copy except if it contains some invalid entries.
+   * If its zip directory can be read, the <code>Home.bin</code>, <code>Home.xml</code> or <code>Home</code> entry will be
+   * read without parsing the other entries, and the content of the home will be checked
+   * only once it's read.
+   * @param zipFile  the zipped file from which the home will be read
+   * @param contentRecording  specifies whether content referenced by the read home is included
+   *            or not in the stream.
+   * @param xmlHandler  SAX handler used to parse <code>Home.bin</code> or <code>Home.xml</code> entry
+   *            when present, or <code>null</code> if only <code>Home</code> entry should taken into account.
+   * @param preferences  if not <code>null</code> and <code>preferPreferencesContent</code>
+   *            is <code>true</code>, the furniture and textures contents it references will
+   *            replace the one of the read home when they are equal.
+   *            If <code>preferPreferencesContent</code> is <code>false</code>, preferences
+   *            content will be used only to replace damaged equal content that might be found
+   *            in read home files.
+   * @param preferPreferencesContent if <code>true</code>, the returned home will reference
+   *            contents in preferences when equal.
+   * @param lazyContent if <code>true</code>, each content of the read home will open its entry
+   *            in the given file only when its data is read, with a zip file shared among
+   *            the contents of the home and closed once it's not used anymore.
+   *            The given file shouldn't be modified as long as the read home is used.
+   *            The model sizes missing in furniture saved with older versions won't be computed.
+   * @throws FileNotFoundException if the given file can't be opened
+   */
+  public DefaultHomeInputStream(File zipFile,
+                                ContentRecording contentRecording,
+                                HomeXMLHandler xmlHandler,
+                                UserPreferences preferences,
+                                boolean preferPreferencesContent,
+                                boolean lazyContent) throws FileNotFoundException {
     super(new FileInputStream(zipFile));
     this.zipFile = zipFile;
     this.contentRecording = contentRecording;
     this.xmlHandler = xmlHandler;
     this.preferences = preferences;
     this.preferPreferencesContent = preferPreferencesContent;
+    this.lazyContent = lazyContent;
   }
 
   /**
@@ -215,6 +259,22 @@ public class DefaultHomeInputStream extends FilterInputStream {
    * or if the stream isn't zipped, reads the input stream as a XML input stream.
    */
   public Home readHome() throws IOException, ClassNotFoundException {
+    if (this.zipFile != null
+        && this.contentRecording != ContentRecording.INCLUDE_NO_CONTENT) {
+      long startTime = System.currentTimeMillis();
+      HomeContentStatistics contentStatistics = this.lazyContent
+          ? new HomeContentStatistics()
+          : null;
+      Home home = readHomeFromZipDirectory(contentStatistics);
+      if (home != null) {
+        if (contentStatistics != null) {
+          contentStatistics.setOpenDuration(System.currentTimeMillis() - startTime);
+          this.contentStatistics = contentStatistics;
+        }
+        return home;
+      }
+    }
+
     boolean zipContent = true;
     boolean validZipFile = true;
     URL homeUrl = null;
@@ -264,45 +324,56 @@ public class DefaultHomeInputStream extends FilterInputStream {
       if (zipContent) {
         boolean homeEntry = false;
         boolean homeXmlEntry = false;
+        boolean homeBinaryEntry = false;
 
         // Open a zip input from file
         ZipInputStream zipIn = new ZipInputStream(this.contentRecording == ContentRecording.INCLUDE_NO_CONTENT
             ? this.in : new FileInputStream(this.zipFile));
-        // Find whether Home and Home.xml entries exist
+        // Find whether Home, Home.xml and Home.bin entries exist
         for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null; ) {
           if ("Home".equals(entry.getName())) {
             homeEntry = true;
           } else if (this.xmlHandler != null
                     && "Home.xml".equals(entry.getName())) {
             homeXmlEntry = true;
+          } else if (this.xmlHandler != null
+                    && "Home.bin".equals(entry.getName())) {
+            homeBinaryEntry = true;
           }
 
           if (this.contentRecording == ContentRecording.INCLUDE_NO_CONTENT) {
             // Stop at the first entry from which home can be read
-            if (homeEntry || homeXmlEntry) {
+            if (homeEntry || homeXmlEntry || homeBinaryEntry) {
               break;
             }
-          } else if (homeXmlEntry) {
-            // Give a higher priority to Home.xml entry
-            homeEntry = false;
+          } else if (homeBinaryEntry) {
+            // Give the highest priority to Home.bin entry
             break;
           }
         }
+        if (homeBinaryEntry) {
+          homeEntry = false;
+          homeXmlEntry = false;
+        } else if (homeXmlEntry) {
+          // Give a higher priority to Home.xml entry
+          homeEntry = false;
+        }
 
         checkCurrentThreadIsntInterrupted();
-        if (!homeEntry && !homeXmlEntry) {
+        if (!homeEntry && !homeXmlEntry && !homeBinaryEntry) {
           throw new IOException("Missing entry \"Home\" or \"Home.xml\"");
         }
 
         if (this.contentRecording != ContentRecording.INCLUDE_NO_CONTENT) {
-          // Reset stream on the Home.xml or Home entry
+          // Reset stream on the Home.bin, Home.xml or Home entry
           zipIn.close();
           zipIn = new ZipInputStream(new FileInputStream(this.zipFile));
           ZipEntry entry = null;
           do {
             entry = zipIn.getNextEntry();
           } while (!(homeEntry && "Home".equals(entry.getName())
-                     || homeXmlEntry && "Home.xml".equals(entry.getName())));
+                     || homeXmlEntry && "Home.xml".equals(entry.getName())
+                     || homeBinaryEntry && "Home.bin".equals(entry.getName())));
         }
         homeObjectIn = zipIn;
 
@@ -310,6 +381,8 @@ public class DefaultHomeInputStream extends FilterInputStream {
         checkCurrentThreadIsntInterrupted();
         if (homeEntry) {
           home = readHomeObject(homeObjectIn, contentContext);
+        } else if (homeBinaryEntry) {
+          home = readHomeBinary(homeObjectIn, contentContext);
         } else {
           home = readHomeXML(homeObjectIn, contentContext);
         }
@@ -341,6 +414,125 @@ public class DefaultHomeInputStream extends FilterInputStream {
     }
   }
 
+  /**
+   * Returns the statistics of the home read lazily with this stream, or <code>null</code>
+   * if this stream wasn't created to read lazily the content of a home file
+   * or if its content couldn't be read lazily.
+   */
+  public HomeContentStatistics getContentStatistics() {
+    return this.contentStatistics;
+  }
+
+  /**
+   * Returns the home read from the <code>Home.bin</code>, <code>Home.xml</code> or <code>Home</code> entry found
+   * with the zip directory of the file, or <code>null</code> if the directory or these entries
+   * can't be read. The home content is checked with the CRC stored in the zip directory
+   * and damaged content is reported like missing content.
+   * If <code>contentStatistics</code> isn't <code>null</code>, the home content
+   * will be opened lazily with a file of {@link ZipFilePool}, and checked only when it's read.
+   */
+  private Home readHomeFromZipDirectory(HomeContentStatistics contentStatistics) throws IOException, ClassNotFoundException {
+    ZipFilePool.ZipFileHandle zipFileHandle = null;
+    ZipFile zipFile;
+    try {
+      if (contentStatistics != null) {
+        zipFileHandle = ZipFilePool.getInstance().acquire(this.zipFile);
+        zipFile = zipFileHandle.getZipFile();
+      } else {
+        zipFile = new ZipFile(this.zipFile);
+      }
+    } catch (IOException ex) {
+      // Use other ways to read damaged file
+      return null;
+    }
+    InputStream homeIn = null;
+    try {
+      ZipEntry homeEntry = null;
+      boolean homeBinaryEntry = false;
+      boolean homeXmlEntry = false;
+      if (this.xmlHandler != null) {
+        // Give a higher priority to Home.bin then Home.xml entries
+        homeEntry = zipFile.getEntry("Home.bin");
+        homeBinaryEntry = homeEntry != null;
+        if (homeEntry == null) {
+          homeEntry = zipFile.getEntry("Home.xml");
+          homeXmlEntry = homeEntry != null;
+        }
+      }
+      if (homeEntry == null) {
+        homeEntry = zipFile.getEntry("Home");
+        if (homeEntry == null) {
+          return null;
+        }
+      }
+
+      checkCurrentThreadIsntInterrupted();
+      URL homeUrl = this.zipFile.toURI().toURL();
+      HomeContentContext contentContext;
+      if (contentStatistics != null) {
+        contentContext = new HomeContentContext(homeUrl, zipFile, contentStatistics,
+            this.preferences, this.preferPreferencesContent);
+        contentStatistics.setHomeEntryLength(homeEntry.getSize());
+      } else {
+        contentContext = new HomeContentContext(homeUrl, zipFile,
+            this.preferences, this.preferPreferencesContent);
+      }
+      homeIn = new CheckedInputStream(zipFile.getInputStream(homeEntry), new CRC32());
+      Home home;
+      try {
+        if (homeBinaryEntry) {
+          home = readHomeBinary(homeIn, contentContext);
+        } else if (homeXmlEntry) {
+          home = readHomeXML(new FilterInputStream(homeIn) {
+              @Override
+              public void close() {
+                // Keep stream open after XML parsing to check its CRC
+              }
+            }, contentContext);
+        } else {
+          home = readHomeObject(homeIn, contentContext);
+        }
+        // Read remaining bytes to check CRC
+        byte [] buffer = new byte [8192];
+        while (homeIn.read(buffer) != -1) {
+        }
+        if (((CheckedInputStream)homeIn).getChecksum().getValue() != homeEntry.getCrc()) {
+          return null;
+        }
+      } catch (InterruptedIOException ex) {
+        throw ex;
+      } catch (IOException ex) {
+        // Use other ways to read damaged entry
+        return null;
+      }
+
+      // Check all content exists
+      if (contentContext.containsInvalidContents()) {
+        if (contentContext.containsCheckedContents()) {
+          home.setRepaired(true);
+        } else {
+          throw new DamagedHomeIOException(home, contentContext.getInvalidContents());
+        }
+      }
+      if (home == null) {
+        throw new IOException("No home object in input");
+      } else if (contentStatistics == null) {
+        // Check model sizes are updated
+        checkModelSizes(home.getFurniture());
+      }
+      return home;
+    } finally {
+      if (homeIn != null) {
+        homeIn.close();
+      }
+      if (zipFileHandle != null) {
+        zipFileHandle.release();
+      } else {
+        zipFile.close();
+      }
+    }
+  }
+
   /**
    * Returns the home read from the given serialized input stream.
    */
@@ -362,6 +554,21 @@ public class DefaultHomeInputStream extends FilterInputStream {
     return obj;
   }
 
+  /**
+   * Returns the home read from the given binary input stream written by {@link BinaryXMLWriter}.
+   */
+  private Home readHomeBinary(InputStream in, HomeContentContext contentContext) throws IOException {
+    try {
+      this.xmlHandler.setContentContext(contentContext);
+      new BinaryXMLReader(this.xmlHandler).parse(in);
+      return this.xmlHandler.getHome();
+    } catch (SAXException ex) {
+      IOException ex2 = new IOException("Can't parse home binary stream");
+      ex2.initCause(ex);
+      throw ex2;
+    }
+  }
+
   /**
    * Returns the home read from the given XML input stream.
    */
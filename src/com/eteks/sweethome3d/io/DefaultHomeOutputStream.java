@@ -19,6 +19,7 @@
  */
 package com.eteks.sweethome3d.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FilterOutputStream;
 import java.io.IOException;
@@ -29,12 +30,24 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -52,10 +65,18 @@ import com.eteks.sweethome3d.tools.URLContent;
  * @author Emmanuel Puybaret
  */
 public class DefaultHomeOutputStream extends FilterOutputStream {
+  private static final int MAX_PENDING_DATA_SIZE = 32 * 1024 * 1024;
+
   private int              compressionLevel;
   private ContentRecording contentRecording;
   private boolean          serializedHome;
   private HomeXMLExporter  homeXmlExporter;
+  private boolean          parallelCompression;
+  private boolean          reuseCompressedContent;
+  private boolean          binaryHome;
+  private File             previousHomeFile;
+  private Map<Content, String> previousContentNames;
+  private Map<Content, String> savedContentNames;
 
   /**
    * Creates a stream that will save a home and all the contents it references
@@ -106,7 +127,10 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * @param serializedHome if <code>true</code>, zip stream will include a <code>Home</code>
    *            entry containing the serialized home
    * @param homeXmlExporter  if not <code>null</code>, sets how a home will be saved
-   *            in an additional <code>Home.xml</code> entry
+   *            in an additional <code>Home.xml</code> entry. If <code>serializedHome</code>
+   *            is <code>false</code> and <code>homeXmlExporter</code> is <code>null</code>,
+   *            home data will be saved only in a <code>Home.bin</code> entry
+   *            which must be requested with {@link #setBinaryHome(boolean) setBinaryHome}.
    */
   public DefaultHomeOutputStream(OutputStream out,
                                  int          compressionLevel,
@@ -114,13 +138,63 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
                                  boolean          serializedHome,
                                  HomeXMLExporter  homeXmlExporter) throws IOException {
     super(out);
-    if (!serializedHome && homeXmlExporter == null) {
-      throw new IllegalArgumentException("No entry specified for home data");
-    }
     this.compressionLevel = compressionLevel;
     this.contentRecording = contentRecording;
     this.serializedHome = serializedHome;
     this.homeXmlExporter = homeXmlExporter;
+    this.reuseCompressedContent = true;
+  }
+
+  /**
+   * Sets whether the entries of the zip stream will be compressed in parallel by as many threads
+   * as available processors, then written in the same order as in sequential mode.
+   * Entries containing data already compressed like JPEG or PNG images and zip files will be
+   * stored without compression. By default, entries are compressed sequentially.
+   * This method should be called before {@link #writeHome(Home) writeHome}.
+   */
+  public void setParallelCompression(boolean parallelCompression) {
+    this.parallelCompression = parallelCompression;
+  }
+
+  /**
+   * Sets whether the entries of the content coming from a home file, a furniture library
+   * or any other zip file stored locally will be copied in the zip stream with their compressed data,
+   * without decompressing and compressing them again, if their compression method matches
+   * the compression level of this stream, or if they're stored and contain data already compressed.
+   * By default, compressed content is reused.
+   * This method should be called before {@link #writeHome(Home) writeHome}.
+   */
+  public void setReuseCompressedContent(boolean reuseCompressedContent) {
+    this.reuseCompressedContent = reuseCompressedContent;
+  }
+
+  /**
+   * Sets whether the zip stream will include a <code>Home.bin</code> entry containing the home
+   * at a compact binary format, written with the XML exporter of this stream or a default
+   * {@link HomeXMLExporter} instance if it's <code>null</code>. This entry is read in priority
+   * by {@link DefaultHomeInputStream}. By default, no binary entry is saved.
+   * This method should be called before {@link #writeHome(Home) writeHome}.
+   */
+  public void setBinaryHome(boolean binaryHome) {
+    this.binaryHome = binaryHome;
+  }
+
+  /**
+   * Sets the home file written previously for the same home and the names of the content entries
+   * it contains, to copy the compressed data of these entries instead of reading and compressing
+   * their content again.
+   */
+  void setPreviousHomeFile(File previousHomeFile, Map<Content, String> previousContentNames) {
+    this.previousHomeFile = previousHomeFile;
+    this.previousContentNames = previousContentNames;
+  }
+
+  /**
+   * Returns the names of the content entries written by the last call to {@link #writeHome(Home) writeHome}
+   * or <code>null</code>.
+   */
+  Map<Content, String> getSavedContentNames() {
+    return this.savedContentNames;
   }
 
   /**
@@ -139,9 +213,9 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * it points to.
    */
   public void writeHome(Home home) throws IOException {
-    // Create a zip output on out stream
-    ZipOutputStream zipOut = new ZipOutputStream(this.out);
-    zipOut.setLevel(this.compressionLevel);
+    if (!this.serializedHome && this.homeXmlExporter == null && !this.binaryHome) {
+      throw new IllegalStateException("No entry specified for home data");
+    }
     checkCurrentThreadIsntInterrupted();
     // Track content that must be saved in the zip stream with a dummy output stream
     HomeContentObjectsTracker contentTracker = new HomeContentObjectsTracker(new OutputStream() {
@@ -152,12 +226,47 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
       });
     contentTracker.writeObject(home);
     Map<Content, String> savedContentNames = contentTracker.getSavedContentNames();
+    this.savedContentNames = null;
+
+    // Create a zip output on out stream
+    ZipEntriesWriter zipOut = this.parallelCompression
+          || this.previousHomeFile != null
+          || this.reuseCompressedContent && containsLocalZipContent(savedContentNames.keySet())
+        ? new RawZipEntriesWriter(this.out, this.parallelCompression)
+        : new SequentialZipEntriesWriter(this.out);
+    try {
+      writeHome(home, savedContentNames, zipOut);
+    } finally {
+      zipOut.dispose();
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if one of the given contents is an entry of a local zip file
+   * which compressed data could be copied.
+   */
+  private boolean containsLocalZipContent(Set<Content> contents) {
+    for (Content content : contents) {
+      if (content instanceof URLContent
+          && ((URLContent)content).isJAREntry()
+          && "file".equals(((URLContent)content).getJAREntryURL().getProtocol())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes home and the <code>Content</code> objects it points to with the given writer.
+   */
+  private void writeHome(Home home, Map<Content, String> savedContentNames,
+                         ZipEntriesWriter zipOut) throws IOException {
 
     if (this.serializedHome) {
       // Write home in the first entry named "Home"
-      zipOut.putNextEntry(new ZipEntry("Home"));
+      OutputStream entryOut = zipOut.putNextEntry("Home");
       // Save home replacing Content objects if needed
-      HomeObjectOutputStream objectOut = new HomeObjectOutputStream(zipOut, savedContentNames);
+      HomeObjectOutputStream objectOut = new HomeObjectOutputStream(entryOut, savedContentNames);
       objectOut.writeObject(home);
       objectOut.flush();
       zipOut.closeEntry();
@@ -165,20 +274,33 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
 
     if (this.homeXmlExporter != null) {
       // Write home at XML format in the second entry named "Home.xml"
-      zipOut.putNextEntry(new ZipEntry("Home.xml"));
+      OutputStream entryOut = zipOut.putNextEntry("Home.xml");
       // Save home replacing Content objects if needed
-      XMLWriter xmlWriter = new XMLWriter(zipOut);
+      XMLWriter xmlWriter = new XMLWriter(entryOut);
       this.homeXmlExporter.setSavedContentNames(savedContentNames);
       this.homeXmlExporter.writeElement(xmlWriter, home);
       xmlWriter.flush();
       zipOut.closeEntry();
     }
 
+    if (this.binaryHome) {
+      // Write home at binary format in the entry named "Home.bin"
+      OutputStream entryOut = zipOut.putNextEntry("Home.bin");
+      HomeXMLExporter homeExporter = this.homeXmlExporter != null
+          ? this.homeXmlExporter
+          : new HomeXMLExporter();
+      BinaryXMLWriter binaryWriter = new BinaryXMLWriter(entryOut);
+      homeExporter.setSavedContentNames(savedContentNames);
+      homeExporter.writeElement(binaryWriter, home);
+      binaryWriter.flush();
+      zipOut.closeEntry();
+    }
+
     if (savedContentNames.size() > 0) {
       Set<String> contentEntryNames = new HashSet<String>();
       // In the next entry named "ContentDigests", write content digests to help repair damaged files
-      zipOut.putNextEntry(new ZipEntry("ContentDigests"));
-      OutputStreamWriter writer = new OutputStreamWriter(zipOut, "UTF-8");
+      OutputStream entryOut = zipOut.putNextEntry("ContentDigests");
+      OutputStreamWriter writer = new OutputStreamWriter(entryOut, "UTF-8");
       ContentDigestManager digestManager = ContentDigestManager.getInstance();
       writer.write("ContentDigests-Version: 1.0\n\n");
       for (Map.Entry<Content, String> savedContent : savedContentNames.entrySet()) {
@@ -203,7 +325,13 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
           if (slashIndex > 0) {
             contentEntryName = contentEntryName.substring(0, slashIndex);
           }
-          if (content instanceof ResourceURLContent) {
+          String previousContentName = this.previousContentNames != null
+              ? this.previousContentNames.get(content)
+              : null;
+          if (previousContentName != null
+              && zipOut.copyEntries(contentEntryName, this.previousHomeFile, previousContentName)) {
+            // Content entries copied from previous home file
+          } else if (content instanceof ResourceURLContent) {
             writeResourceZipEntries(zipOut, contentEntryName, (ResourceURLContent)content);
           } else if (content instanceof URLContent
                      && !(content instanceof SimpleURLContent)
@@ -215,21 +343,24 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
             } else {
               writeZipEntries(zipOut, contentEntryName, urlContent);
             }
+          } else if (content instanceof URLContent) {
+            zipOut.copyEntry(contentEntryName, (URLContent)content);
           } else {
-            writeZipEntry(zipOut, contentEntryName, content);
+            zipOut.writeEntry(contentEntryName, content);
           }
         }
       }
     }
     // Finish zip writing
     zipOut.finish();
+    this.savedContentNames = savedContentNames;
   }
 
   /**
    * Writes in <code>zipOut</code> stream one or more entries matching the content
    * <code>urlContent</code> coming from a resource file.
    */
-  private void writeResourceZipEntries(ZipOutputStream zipOut,
+  private void writeResourceZipEntries(ZipEntriesWriter zipOut,
                                        String entryNameOrDirectory,
                                        ResourceURLContent urlContent) throws IOException {
     if (urlContent.isMultiPartResource()) {
@@ -244,14 +375,14 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
           for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(urlContent)) {
             String zipEntryName = zipEntry.getName();
             if (zipEntryName.startsWith(entryDirectory)) {
-              Content siblingContent = new URLContent(new URL("jar:" + zipUrl + "!/"
+              URLContent siblingContent = new URLContent(new URL("jar:" + zipUrl + "!/"
                   + URLEncoder.encode(zipEntryName, "UTF-8").replace("+", "%20")));
-              writeZipEntry(zipOut, entryNameOrDirectory + zipEntryName.substring(lastSlashIndex), siblingContent);
+              zipOut.copyEntry(entryNameOrDirectory + zipEntryName.substring(lastSlashIndex), siblingContent);
             }
           }
         } else {
           // Consider the content as not a multipart resource
-          writeZipEntry(zipOut, entryNameOrDirectory, urlContent);
+          zipOut.copyEntry(entryNameOrDirectory, urlContent);
         }
       } else {
         // This should be the case only when resource isn't in a JAR file during development
@@ -262,7 +393,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
           // Write in home stream each file that is stored in the same directory
           for (File siblingFile : siblingFiles) {
             if (!siblingFile.isDirectory()) {
-              writeZipEntry(zipOut, entryNameOrDirectory + "/" + siblingFile.getName(),
+              zipOut.writeEntry(entryNameOrDirectory + "/" + siblingFile.getName(),
                   new URLContent(siblingFile.toURI().toURL()));
             }
           }
@@ -273,7 +404,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
         }
       }
     } else {
-      writeZipEntry(zipOut, entryNameOrDirectory, urlContent);
+      zipOut.copyEntry(entryNameOrDirectory, urlContent);
     }
   }
 
@@ -281,7 +412,7 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * Writes in <code>zipOut</code> stream one or more entries matching the content
    * <code>urlContent</code> coming from a home file.
    */
-  private void writeHomeZipEntries(ZipOutputStream zipOut,
+  private void writeHomeZipEntries(ZipEntriesWriter zipOut,
                                    String entryNameOrDirectory,
                                    HomeURLContent urlContent) throws IOException {
     String entryName = urlContent.getJAREntryName();
@@ -294,13 +425,13 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
       for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(urlContent)) {
         String zipEntryName = zipEntry.getName();
         if (zipEntryName.startsWith(entryDirectory)) {
-          Content siblingContent = new URLContent(new URL("jar:" + zipUrl + "!/"
+          URLContent siblingContent = new URLContent(new URL("jar:" + zipUrl + "!/"
               + URLEncoder.encode(zipEntryName, "UTF-8").replace("+", "%20")));
-          writeZipEntry(zipOut, entryNameOrDirectory + zipEntryName.substring(slashIndex), siblingContent);
+          zipOut.copyEntry(entryNameOrDirectory + zipEntryName.substring(slashIndex), siblingContent);
         }
       }
     } else {
-      writeZipEntry(zipOut, entryNameOrDirectory, urlContent);
+      zipOut.copyEntry(entryNameOrDirectory, urlContent);
     }
   }
 
@@ -308,34 +439,71 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
    * Writes in <code>zipOut</code> stream all the sibling files of the zipped
    * <code>urlContent</code>.
    */
-  private void writeZipEntries(ZipOutputStream zipOut,
+  private void writeZipEntries(ZipEntriesWriter zipOut,
                                String directory,
                                URLContent urlContent) throws IOException {
     // Write in alphabetic order each zipped stream entry in home stream
     for (ContentDigestManager.ZipEntryData zipEntry : ContentDigestManager.getInstance().getZipURLEntries(urlContent)) {
       String zipEntryName = zipEntry.getName();
-      Content siblingContent = new URLContent(new URL("jar:" + urlContent.getJAREntryURL() + "!/"
+      URLContent siblingContent = new URLContent(new URL("jar:" + urlContent.getJAREntryURL() + "!/"
           + URLEncoder.encode(zipEntryName, "UTF-8").replace("+", "%20")));
-      writeZipEntry(zipOut, directory + "/" + zipEntryName, siblingContent);
+      zipOut.copyEntry(directory + "/" + zipEntryName, siblingContent);
     }
   }
 
   /**
-   * Writes in <code>zipOut</code> stream a new entry named <code>entryName</code> that
-   * contains a given <code>content</code>.
+   * Returns <code>true</code> if the given data starts with the signature of a format
+   * already compressed, for which deflating would be a waste of time.
    */
-  private void writeZipEntry(ZipOutputStream zipOut, String entryName, Content content) throws IOException {
-    checkCurrentThreadIsntInterrupted();
+  private static boolean isCompressedData(byte [] data, int length) {
+    if (length >= 4) {
+      int b0 = data [0] & 0xFF;
+      int b1 = data [1] & 0xFF;
+      int b2 = data [2] & 0xFF;
+      int b3 = data [3] & 0xFF;
+      return b0 == 0xFF && b1 == 0xD8 && b2 == 0xFF                  // JPEG
+          || b0 == 0x89 && b1 == 'P' && b2 == 'N' && b3 == 'G'       // PNG
+          || b0 == 'G' && b1 == 'I' && b2 == 'F' && b3 == '8'        // GIF
+          || b0 == 'P' && b1 == 'K' && b2 == 3 && b3 == 4            // ZIP
+          || b0 == 0x1F && b1 == 0x8B;                               // GZIP
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Writes in <code>zipOut</code> the entry matching the given content, reading its data
+   * without keeping it in memory. Content already compressed is stored, by reading it
+   * a first time to compute the CRC and size required by a stored entry.
+   */
+  private void writeStreamedEntry(RawZipOutputStream zipOut, String entryName, Content content) throws IOException {
     byte [] buffer = new byte [8192];
     InputStream contentIn = null;
     try {
-      zipOut.putNextEntry(new ZipEntry(entryName));
       contentIn = content.openStream();
-      int size;
-      while ((size = contentIn.read(buffer)) != -1) {
-        zipOut.write(buffer, 0, size);
+      int length = 0;
+      for (int size; length < buffer.length
+          && (size = contentIn.read(buffer, length, buffer.length - length)) != -1; ) {
+        length += size;
+      }
+      if (this.compressionLevel == 0
+          || isCompressedData(buffer, length)) {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        do {
+          crc.update(buffer, 0, length);
+          size += length;
+        } while ((length = contentIn.read(buffer)) != -1);
+        contentIn.close();
+        contentIn = content.openStream();
+        zipOut.writeEntry(entryName, ZipEntry.STORED, crc.getValue(), size, size, contentIn);
+      } else {
+        OutputStream entryOut = zipOut.putNextEntry(entryName, this.compressionLevel);
+        do {
+          entryOut.write(buffer, 0, length);
+        } while ((length = contentIn.read(buffer)) != -1);
+        zipOut.closeEntry();
       }
-      zipOut.closeEntry();
     } finally {
       if (contentIn != null) {
         contentIn.close();
@@ -343,6 +511,602 @@ public class DefaultHomeOutputStream extends FilterOutputStream {
     }
   }
 
+  /**
+   * A writer of the zip entries of a home.
+   */
+  private static abstract class ZipEntriesWriter {
+    /**
+     * Starts a new entry named <code>entryName</code> and returns the stream
+     * in which its data should be written before calling {@link #closeEntry()}.
+     */
+    public abstract OutputStream putNextEntry(String entryName) throws IOException;
+
+    /**
+     * Closes the entry started by {@link #putNextEntry(String)}.
+     */
+    public abstract void closeEntry() throws IOException;
+
+    /**
+     * Writes a new entry named <code>entryName</code> that contains a given <code>content</code>.
+     */
+    public abstract void writeEntry(String entryName, Content content) throws IOException;
+
+    /**
+     * Writes a new entry named <code>entryName</code> that contains the given zipped
+     * <code>zipContent</code>. This implementation calls {@link #writeEntry(String, Content)}.
+     */
+    public void copyEntry(String entryName, URLContent zipContent) throws IOException {
+      writeEntry(entryName, zipContent);
+    }
+
+    /**
+     * Writes new entries with the compressed data of the entry named <code>zipEntryName</code>
+     * in <code>zipFile</code>, or of all the entries of its directory if it contains a slash,
+     * and returns <code>true</code> if it was possible. This implementation returns <code>false</code>.
+     * @param entryNameOrDirectory  the name of the new entry or of the directory of new entries
+     */
+    public boolean copyEntries(String entryNameOrDirectory, File zipFile, String zipEntryName) throws IOException {
+      return false;
+    }
+
+    /**
+     * Writes remaining entries and finishes the zip stream.
+     */
+    public abstract void finish() throws IOException;
+
+    /**
+     * Releases resources used by this writer.
+     */
+    public void dispose() {
+    }
+  }
+
+  /**
+   * A writer that compresses entries one after the other in the current thread
+   * with a <code>ZipOutputStream</code> instance.
+   */
+  private class SequentialZipEntriesWriter extends ZipEntriesWriter {
+    private final ZipOutputStream zipOut;
+
+    public SequentialZipEntriesWriter(OutputStream out) {
+      this.zipOut = new ZipOutputStream(out);
+      this.zipOut.setLevel(compressionLevel);
+    }
+
+    @Override
+    public OutputStream putNextEntry(String entryName) throws IOException {
+      this.zipOut.putNextEntry(new ZipEntry(entryName));
+      return this.zipOut;
+    }
+
+    @Override
+    public void closeEntry() throws IOException {
+      this.zipOut.closeEntry();
+    }
+
+    @Override
+    public void writeEntry(String entryName, Content content) throws IOException {
+      checkCurrentThreadIsntInterrupted();
+      byte [] buffer = new byte [8192];
+      InputStream contentIn = null;
+      try {
+        this.zipOut.putNextEntry(new ZipEntry(entryName));
+        contentIn = content.openStream();
+        int size;
+        while ((size = contentIn.read(buffer)) != -1) {
+          this.zipOut.write(buffer, 0, size);
+        }
+        this.zipOut.closeEntry();
+      } finally {
+        if (contentIn != null) {
+          contentIn.close();
+        }
+      }
+    }
+
+    @Override
+    public void finish() throws IOException {
+      this.zipOut.finish();
+    }
+  }
+
+  /**
+   * A writer able to copy as is the compressed data of entries coming from other zip files.
+   * The other entries are deflated while they're written in the current thread,
+   * or in parallel mode, compressed in memory in a pool of threads then written
+   * in the order they were submitted. In both modes, content already compressed
+   * like JPEG or PNG images and zip files is stored without compression.
+   */
+  private class RawZipEntriesWriter extends ZipEntriesWriter {
+    private final RawZipOutputStream zipOut;
+    private final ExecutorService    compressionExecutor;
+    private final int                maxPendingEntries;
+    private final int                maxBufferedEntrySize;
+    private final LinkedList<Future<PendingEntry>> pendingEntries;
+    private final Map<URL, RawZipFile> zipFiles;
+    private BufferedEntryOutputStream currentEntryOut;
+
+    public RawZipEntriesWriter(OutputStream out, boolean parallelCompression) {
+      this.zipOut = new RawZipOutputStream(out);
+      if (parallelCompression) {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        this.compressionExecutor = Executors.newFixedThreadPool(threadCount);
+        // Limit the data kept in memory by pending entries, each of them requiring
+        // a buffer for its data and an other one for its deflated data.
+        // Bigger entries are deflated in the current thread while they're written
+        this.maxPendingEntries = threadCount * 2;
+        this.maxBufferedEntrySize = MAX_PENDING_DATA_SIZE / (this.maxPendingEntries * 2);
+      } else {
+        this.compressionExecutor = null;
+        this.maxPendingEntries = 0;
+        this.maxBufferedEntrySize = 0;
+      }
+      this.pendingEntries = new LinkedList<Future<PendingEntry>>();
+      this.zipFiles = new HashMap<URL, RawZipFile>();
+    }
+
+    @Override
+    public OutputStream putNextEntry(String entryName) throws IOException {
+      if (this.compressionExecutor == null) {
+        return this.zipOut.putNextEntry(entryName, compressionLevel);
+      } else {
+        this.currentEntryOut = new BufferedEntryOutputStream(entryName);
+        return this.currentEntryOut;
+      }
+    }
+
+    @Override
+    public void closeEntry() throws IOException {
+      if (this.compressionExecutor == null) {
+        this.zipOut.closeEntry();
+      } else {
+        BufferedEntryOutputStream entryOut = this.currentEntryOut;
+        this.currentEntryOut = null;
+        entryOut.close();
+      }
+    }
+
+    @Override
+    public void writeEntry(final String entryName, final Content content) throws IOException {
+      checkCurrentThreadIsntInterrupted();
+      if (this.compressionExecutor == null) {
+        writeStreamedEntry(this.zipOut, entryName, content);
+        return;
+      }
+      submit(new Callable<PendingEntry>() {
+          public PendingEntry call() throws IOException {
+            EntryDataOutputStream entryData = new EntryDataOutputStream(8192);
+            InputStream contentIn = null;
+            try {
+              contentIn = content.openStream();
+              byte [] buffer = new byte [8192];
+              int size;
+              while ((size = contentIn.read(buffer)) != -1) {
+                if (entryData.size() + size > maxBufferedEntrySize) {
+                  // Let the writing thread stream this content too big to be kept in memory
+                  return new StreamedEntry(entryName, content);
+                }
+                entryData.write(buffer, 0, size);
+              }
+            } finally {
+              if (contentIn != null) {
+                contentIn.close();
+              }
+            }
+            return compressEntry(entryName, entryData);
+          }
+        });
+    }
+
+    @Override
+    public void copyEntry(String entryName, URLContent zipContent) throws IOException {
+      RawZipFile.Entry zipEntry = null;
+      RawZipFile zipFile = null;
+      if (reuseCompressedContent
+          && zipContent.isJAREntry()) {
+        zipFile = getZipFile(zipContent.getJAREntryURL());
+        if (zipFile != null) {
+          String zipEntryName = zipContent.getJAREntryName();
+          zipEntry = zipFile.getEntry(zipEntryName);
+          if (zipEntry == null) {
+            zipEntry = zipFile.getEntry(URLDecoder.decode(zipEntryName.replace("+", "%2B"), "UTF-8"));
+          }
+          if (zipEntry != null
+              && !isCopiable(zipFile, zipEntry)) {
+            zipEntry = null;
+          }
+        }
+      }
+
+      if (zipEntry != null) {
+        checkCurrentThreadIsntInterrupted();
+        addCopiedEntry(entryName, zipFile, zipEntry);
+      } else {
+        writeEntry(entryName, zipContent);
+      }
+    }
+
+    @Override
+    public boolean copyEntries(String entryNameOrDirectory, File zipFile, String zipEntryName) throws IOException {
+      RawZipFile rawZipFile = getZipFile(zipFile.toURI().toURL());
+      if (rawZipFile == null) {
+        return false;
+      }
+      List<RawZipFile.Entry> copiedEntries = new ArrayList<RawZipFile.Entry>();
+      int slashIndex = zipEntryName.indexOf('/');
+      if (slashIndex > 0) {
+        String entryDirectory = zipEntryName.substring(0, slashIndex + 1);
+        for (RawZipFile.Entry zipEntry : rawZipFile.getEntries()) {
+          if (zipEntry.getName().startsWith(entryDirectory)) {
+            if (!zipEntry.isCopiable()) {
+              return false;
+            }
+            copiedEntries.add(zipEntry);
+          }
+        }
+      } else {
+        RawZipFile.Entry zipEntry = rawZipFile.getEntry(zipEntryName);
+        if (zipEntry != null) {
+          copiedEntries.add(zipEntry);
+        }
+      }
+      if (copiedEntries.isEmpty()) {
+        return false;
+      }
+      for (RawZipFile.Entry zipEntry : copiedEntries) {
+        if (!isCopiable(rawZipFile, zipEntry)) {
+          return false;
+        }
+      }
+
+      checkCurrentThreadIsntInterrupted();
+      for (RawZipFile.Entry zipEntry : copiedEntries) {
+        String entryName = slashIndex > 0
+            ? entryNameOrDirectory + zipEntry.getName().substring(slashIndex)
+            : entryNameOrDirectory;
+        addCopiedEntry(entryName, rawZipFile, zipEntry);
+      }
+      return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the compression method of the given entry matches
+     * the one this writer would choose for its data. Deflated entries match a compression level
+     * different from 0, and stored entries match a level equal to 0 or data already compressed.
+     */
+    private boolean isCopiable(RawZipFile zipFile, RawZipFile.Entry zipEntry) throws IOException {
+      if (zipEntry.getMethod() == ZipEntry.DEFLATED) {
+        return compressionLevel != 0;
+      } else if (compressionLevel == 0) {
+        return true;
+      } else {
+        // Read the first bytes of stored data to check its format
+        byte [] header = new byte [4];
+        int length = 0;
+        InputStream rawDataIn = zipFile.getRawInputStream(zipEntry);
+        try {
+          for (int size; length < header.length
+              && (size = rawDataIn.read(header, length, header.length - length)) != -1; ) {
+            length += size;
+          }
+        } finally {
+          rawDataIn.close();
+        }
+        return isCompressedData(header, length);
+      }
+    }
+
+    /**
+     * Adds an entry already done to pending entries to keep entries order,
+     * or writes it at once if entries aren't compressed in parallel.
+     */
+    private void addCopiedEntry(String entryName, RawZipFile zipFile, RawZipFile.Entry zipEntry) throws IOException {
+      PendingEntry copiedEntry = new CopiedEntry(entryName, zipFile, zipEntry);
+      if (this.compressionExecutor == null) {
+        copiedEntry.write(this.zipOut);
+      } else {
+        addDoneEntry(copiedEntry);
+      }
+    }
+
+    /**
+     * Adds an entry already done to pending entries to keep entries order.
+     */
+    private void addDoneEntry(final PendingEntry entry) {
+      FutureTask<PendingEntry> doneEntryTask = new FutureTask<PendingEntry>(new Callable<PendingEntry>() {
+          public PendingEntry call() {
+            return entry;
+          }
+        });
+      doneEntryTask.run();
+      this.pendingEntries.add(doneEntryTask);
+    }
+
+    /**
+     * Returns the zip file matching the given URL or <code>null</code> if it's not
+     * a local file which entries can be read.
+     */
+    private RawZipFile getZipFile(URL zipUrl) {
+      if (this.zipFiles.containsKey(zipUrl)) {
+        return this.zipFiles.get(zipUrl);
+      } else {
+        RawZipFile zipFile = null;
+        if ("file".equals(zipUrl.getProtocol())) {
+          try {
+            File file;
+            try {
+              file = new File(zipUrl.toURI());
+            } catch (IllegalArgumentException ex) {
+              // Try a second way to be able to access to files on Windows servers
+              file = new File(zipUrl.getPath());
+            }
+            zipFile = new RawZipFile(file);
+          } catch (URISyntaxException ex) {
+            // Content will be recompressed
+          } catch (IOException ex) {
+            // Content will be recompressed
+          }
+        }
+        this.zipFiles.put(zipUrl, zipFile);
+        return zipFile;
+      }
+    }
+
+    /**
+     * Submits the given compression task and writes the oldest compressed entries
+     * if too many entries are pending.
+     */
+    private void submit(Callable<PendingEntry> compressionTask) throws IOException {
+      this.pendingEntries.add(this.compressionExecutor.submit(compressionTask));
+      while (this.pendingEntries.size() > this.maxPendingEntries) {
+        writeFirstPendingEntry();
+      }
+    }
+
+    /**
+     * Writes all the pending entries.
+     */
+    private void writePendingEntries() throws IOException {
+      while (!this.pendingEntries.isEmpty()) {
+        writeFirstPendingEntry();
+      }
+    }
+
+    /**
+     * Waits for the compression of the oldest pending entry and writes it.
+     */
+    private void writeFirstPendingEntry() throws IOException {
+      PendingEntry entry;
+      try {
+        entry = this.pendingEntries.removeFirst().get();
+      } catch (InterruptedException ex) {
+        throw new InterruptedIOException();
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException)cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        } else {
+          IOException ex2 = new IOException("Can't compress entry");
+          ex2.initCause(cause);
+          throw ex2;
+        }
+      }
+      checkCurrentThreadIsntInterrupted();
+      entry.write(this.zipOut);
+    }
+
+    /**
+     * Returns the entry matching the given data, deflated if it's worth it.
+     */
+    private PendingEntry compressEntry(String entryName, EntryDataOutputStream entryData) throws IOException {
+      byte [] data = entryData.getBuffer();
+      int length = entryData.size();
+      CRC32 crc = new CRC32();
+      crc.update(data, 0, length);
+      if (compressionLevel != 0
+          && !isCompressedData(data, length)) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+          deflater.setInput(data, 0, length);
+          deflater.finish();
+          EntryDataOutputStream deflatedData = new EntryDataOutputStream(length / 2 + 64);
+          byte [] buffer = new byte [8192];
+          // Stop deflating as soon as deflated data isn't smaller
+          while (!deflater.finished()
+              && deflatedData.size() < length) {
+            if (Thread.currentThread().isInterrupted()) {
+              throw new InterruptedIOException();
+            }
+            int size = deflater.deflate(buffer);
+            deflatedData.write(buffer, 0, size);
+          }
+          // Keep deflated data only if it's smaller
+          if (deflatedData.size() < length) {
+            return new CompressedEntry(entryName, ZipEntry.DEFLATED, crc.getValue(), length,
+                deflatedData.getBuffer(), deflatedData.size());
+          }
+        } finally {
+          deflater.end();
+        }
+      }
+      return new CompressedEntry(entryName, ZipEntry.STORED, crc.getValue(), length, data, length);
+    }
+
+    @Override
+    public void finish() throws IOException {
+      writePendingEntries();
+      this.zipOut.finish();
+    }
+
+    @Override
+    public void dispose() {
+      for (Future<PendingEntry> pendingEntry : this.pendingEntries) {
+        pendingEntry.cancel(true);
+      }
+      this.pendingEntries.clear();
+      if (this.compressionExecutor != null) {
+        this.compressionExecutor.shutdownNow();
+      }
+      for (RawZipFile zipFile : this.zipFiles.values()) {
+        if (zipFile != null) {
+          try {
+            zipFile.close();
+          } catch (IOException ex) {
+            // Ignore close exception
+          }
+        }
+      }
+      this.zipFiles.clear();
+    }
+
+    /**
+     * A stream that keeps in memory the data of an entry to compress it in parallel,
+     * until its size exceeds the maximum size of buffered entries. Then the pending
+     * entries are written and the data of this entry is deflated in the current thread
+     * while it's written.
+     */
+    private class BufferedEntryOutputStream extends OutputStream {
+      private final String          entryName;
+      private EntryDataOutputStream entryData;
+      private OutputStream          entryOut;
+
+      public BufferedEntryOutputStream(String entryName) {
+        this.entryName = entryName;
+        this.entryData = new EntryDataOutputStream(8192);
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte [] {(byte)b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte [] b, int off, int len) throws IOException {
+        if (this.entryOut == null
+            && this.entryData.size() + len > maxBufferedEntrySize) {
+          writePendingEntries();
+          this.entryOut = zipOut.putNextEntry(this.entryName, compressionLevel);
+          this.entryOut.write(this.entryData.getBuffer(), 0, this.entryData.size());
+          this.entryData = null;
+        }
+        if (this.entryOut != null) {
+          this.entryOut.write(b, off, len);
+        } else {
+          this.entryData.write(b, off, len);
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (this.entryOut != null) {
+          zipOut.closeEntry();
+        } else if (this.entryData != null) {
+          final EntryDataOutputStream entryData = this.entryData;
+          this.entryData = null;
+          submit(new Callable<PendingEntry>() {
+              public PendingEntry call() throws IOException {
+                return compressEntry(entryName, entryData);
+              }
+            });
+        }
+      }
+    }
+  }
+
+  /**
+   * A byte array output stream giving access to its buffer to avoid copies.
+   */
+  private static class EntryDataOutputStream extends ByteArrayOutputStream {
+    public EntryDataOutputStream(int size) {
+      super(size);
+    }
+
+    public byte [] getBuffer() {
+      return this.buf;
+    }
+  }
+
+  /**
+   * An entry ready to be written.
+   */
+  private static abstract class PendingEntry {
+    public abstract void write(RawZipOutputStream zipOut) throws IOException;
+  }
+
+  /**
+   * The data of a compressed entry ready to be written.
+   */
+  private static class CompressedEntry extends PendingEntry {
+    private final String  name;
+    private final int     method;
+    private final long    crc;
+    private final long    size;
+    private final byte [] data;
+    private final int     dataLength;
+
+    public CompressedEntry(String name, int method, long crc, long size, byte [] data, int dataLength) {
+      this.name = name;
+      this.method = method;
+      this.crc = crc;
+      this.size = size;
+      this.data = data;
+      this.dataLength = dataLength;
+    }
+
+    @Override
+    public void write(RawZipOutputStream zipOut) throws IOException {
+      zipOut.writeEntry(this.name, this.method, this.crc, this.size, this.data, 0, this.dataLength);
+    }
+  }
+
+  /**
+   * An entry which compressed data will be copied from an other zip file.
+   */
+  private static class CopiedEntry extends PendingEntry {
+    private final String           name;
+    private final RawZipFile       zipFile;
+    private final RawZipFile.Entry zipEntry;
+
+    public CopiedEntry(String name, RawZipFile zipFile, RawZipFile.Entry zipEntry) {
+      this.name = name;
+      this.zipFile = zipFile;
+      this.zipEntry = zipEntry;
+    }
+
+    @Override
+    public void write(RawZipOutputStream zipOut) throws IOException {
+      InputStream rawDataIn = this.zipFile.getRawInputStream(this.zipEntry);
+      try {
+        zipOut.writeEntry(this.name, this.zipEntry.getMethod(), this.zipEntry.getCrc(),
+            this.zipEntry.getCompressedSize(), this.zipEntry.getSize(), rawDataIn);
+      } finally {
+        rawDataIn.close();
+      }
+    }
+  }
+
+  /**
+   * An entry which content is too big to be compressed in memory.
+   */
+  private class StreamedEntry extends PendingEntry {
+    private final String  name;
+    private final Content content;
+
+    public StreamedEntry(String name, Content content) {
+      this.name = name;
+      this.content = content;
+    }
+
+    @Override
+    public void write(RawZipOutputStream zipOut) throws IOException {
+      writeStreamedEntry(zipOut, this.name, this.content);
+    }
+  }
+
   /**
    * A dummy <code>ObjectOutputStream</code> that keeps track of the <code>Content</code>
    * objects of a home that should be saved.
@@ -157,6 +157,9 @@ public class FileUserPreferences extends UserPreferences {
   private static final String FURNITURE_LIBRARIES_PLUGIN_SUB_FOLDER     = "furniture";
   private static final String TEXTURES_LIBRARIES_PLUGIN_SUB_FOLDER      = "textures";
 
+  private static final String CONTENT_DIGESTS_FILE                      = "ContentDigests.cache";
+  private static final int    MAX_CONTENT_DIGESTS_COUNT                 = 20000;
+
   private static final PreferencesURLContent MISSING_CONTENT;
 
   private final Map<String, Boolean> ignoredActionTips = new HashMap<String, Boolean>();
@@ -248,6 +251,14 @@ public class FileUserPreferences extends UserPreferences {
       preferences = portablePreferences;
     }
 
+    try {
+      // Reuse the digests of catalog content computed in previous sessions
+      ContentDigestManager.getInstance().setPersistentDigestsFile(
+          new File(getPreferencesFolder(), CONTENT_DIGESTS_FILE), MAX_CONTENT_DIGESTS_COUNT);
+    } catch (IOException ex) {
+      // Compute digests again in each session
+    }
+
     String language = preferences.get(LANGUAGE, getLanguage());
     // Check language is still supported
     if (!Arrays.asList(getSupportedLanguages()).contains(language)) {
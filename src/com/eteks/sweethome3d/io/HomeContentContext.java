@@ -20,6 +20,7 @@
 package com.eteks.sweethome3d.io;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -27,12 +28,15 @@ import java.io.InterruptedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
@@ -56,13 +60,57 @@ class HomeContentContext {
   private Map<URLContent, byte []> contentDigests;
   private Set<URLContent>          preferencesContentsCache;
   private boolean                  preferPreferencesContent;
+  private Map<String, ZipEntry>    entries;
+  private Set<String>              damagedEntryNames;
+  private File                     lazyZipFile;
+  private HomeContentStatistics    statistics;
+  private Map<String, URLContent>  lazyContents;
   
   public HomeContentContext(URL homeSource,
                             UserPreferences preferences,
                             boolean preferPreferencesContent) {
+    this(homeSource, readContentDigests(homeSource), null, preferences, preferPreferencesContent);
+  }
+
+  /**
+   * Creates a context for the given zip file which content entries are checked
+   * at once with the CRC stored in its directory.
+   */
+  public HomeContentContext(URL homeSource,
+                            ZipFile homeZipFile,
+                            UserPreferences preferences,
+                            boolean preferPreferencesContent) throws InterruptedIOException {
+    this(homeSource, readContentDigests(homeSource, homeZipFile), 
+        getEntries(homeZipFile), preferences, preferPreferencesContent);
+    this.damagedEntryNames = getDamagedEntryNames(homeZipFile);
+  }
+
+  /**
+   * Creates a context for the given zip file which content will be opened
+   * only when it's read, through the files of {@link ZipFilePool}.
+   * The count and the size of opened content will be stored in <code>statistics</code>.
+   */
+  public HomeContentContext(URL homeSource,
+                            ZipFile homeZipFile,
+                            HomeContentStatistics statistics,
+                            UserPreferences preferences,
+                            boolean preferPreferencesContent) {
+    this(homeSource, readContentDigests(homeSource, homeZipFile), 
+        getEntries(homeZipFile), preferences, preferPreferencesContent);
+    this.lazyZipFile = new File(homeZipFile.getName());
+    this.statistics = statistics;
+    this.lazyContents = new HashMap<String, URLContent>();
+  }
+
+  private HomeContentContext(URL homeSource,
+                             Map<URLContent, byte []> contentDigests,
+                             Map<String, ZipEntry> entries,
+                             UserPreferences preferences,
+                             boolean preferPreferencesContent) {
     this.homeUrl = homeSource;
     this.preferPreferencesContent = preferPreferencesContent;
-    this.contentDigests = readContentDigests(homeSource);
+    this.contentDigests = contentDigests;
+    this.entries = entries;
     this.invalidContents = new ArrayList<Content>();
     this.validContentsNotInPreferences = new ArrayList<URLContent>();
     if (preferences != null 
@@ -75,7 +123,7 @@ class HomeContentContext {
    * Returns the digest of content contained in the given home, or 
    * <code>null</code> if this information doesn't exist in the home file.
    */
-  private Map<URLContent, byte []> readContentDigests(URL homeUrl) {
+  private static Map<URLContent, byte []> readContentDigests(URL homeUrl) {
     ZipInputStream zipIn = null;
     try {
       zipIn = new ZipInputStream(homeUrl.openStream());
@@ -83,29 +131,7 @@ class HomeContentContext {
       ZipEntry entry = null;
       while ((entry = zipIn.getNextEntry()) != null) {
         if ("ContentDigests".equals(entry.getName())) {
-          BufferedReader reader = new BufferedReader(new InputStreamReader(zipIn, "UTF-8"));
-          String line = reader.readLine();
-          if (line != null
-              && line.trim().startsWith("ContentDigests-Version: 1")) {
-            Map<URLContent, byte []> contentDigests = new HashMap<URLContent, byte[]>();
-            // Read Name / SHA-1-Digest lines  
-            String entryName = null;
-            while ((line = reader.readLine()) != null) {
-              if (line.startsWith("Name:")) {
-                entryName = line.substring("Name:".length()).trim();
-              } else if (line.startsWith("SHA-1-Digest:")) {
-                byte [] digest = Base64.decode(line.substring("SHA-1-Digest:".length()).trim());
-                if (entryName == null) {
-                  throw new IOException("Missing entry name");
-                } else {
-                  URL url = new URL("jar:" + homeUrl + "!/" + entryName);
-                  contentDigests.put(new HomeURLContent(url), digest);
-                  entryName = null;
-                }
-              }
-            }
-            return contentDigests;
-          }
+          return readContentDigests(homeUrl, zipIn);
         }
       }
     } catch (IOException ex) {
@@ -121,11 +147,149 @@ class HomeContentContext {
     return null;
   }
 
+  /**
+   * Returns the digest of content read from the <code>ContentDigests</code> entry of the
+   * given zip file, or <code>null</code> if this information doesn't exist in the home file.
+   */
+  private static Map<URLContent, byte []> readContentDigests(URL homeUrl, ZipFile homeZipFile) {
+    ZipEntry entry = homeZipFile.getEntry("ContentDigests");
+    if (entry != null) {
+      InputStream in = null;
+      try {
+        in = homeZipFile.getInputStream(entry);
+        return readContentDigests(homeUrl, in);
+      } catch (IOException ex) {
+        // Ignore issues in ContentDigests
+      } finally {
+        if (in != null) {
+          try {
+            in.close();
+          } catch (IOException ex) {
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the digest of content read from the given <code>ContentDigests</code> entry stream
+   * or <code>null</code> if its version isn't supported.
+   */
+  private static Map<URLContent, byte []> readContentDigests(URL homeUrl, InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    String line = reader.readLine();
+    if (line != null
+        && line.trim().startsWith("ContentDigests-Version: 1")) {
+      Map<URLContent, byte []> contentDigests = new HashMap<URLContent, byte[]>();
+      // Read Name / SHA-1-Digest lines  
+      String entryName = null;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("Name:")) {
+          entryName = line.substring("Name:".length()).trim();
+        } else if (line.startsWith("SHA-1-Digest:")) {
+          byte [] digest = Base64.decode(line.substring("SHA-1-Digest:".length()).trim());
+          if (entryName == null) {
+            throw new IOException("Missing entry name");
+          } else {
+            URL url = new URL("jar:" + homeUrl + "!/" + entryName);
+            contentDigests.put(new HomeURLContent(url), digest);
+            entryName = null;
+          }
+        }
+      }
+      return contentDigests;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the entries listed in the directory of the given zip file.
+   */
+  private static Map<String, ZipEntry> getEntries(ZipFile homeZipFile) {
+    Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+    for (Enumeration<? extends ZipEntry> enumEntries = homeZipFile.entries(); enumEntries.hasMoreElements(); ) {
+      ZipEntry entry = enumEntries.nextElement();
+      entries.put(entry.getName(), entry);
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the names of the entries of the given zip file which data doesn't match
+   * the CRC stored in its directory. <code>Home</code>, <code>Home.xml</code> and <code>Home.bin</code>
+   * entries are ignored since they're checked when home is read.
+   */
+  private static Set<String> getDamagedEntryNames(ZipFile homeZipFile) throws InterruptedIOException {
+    Set<String> damagedEntryNames = new HashSet<String>();
+    byte [] buffer = new byte [8192];
+    for (Enumeration<? extends ZipEntry> enumEntries = homeZipFile.entries(); enumEntries.hasMoreElements(); ) {
+      ZipEntry entry = enumEntries.nextElement();
+      String name = entry.getName();
+      if (!entry.isDirectory()
+          && !"Home".equals(name)
+          && !"Home.xml".equals(name)
+          && !"Home.bin".equals(name)) {
+        if (Thread.interrupted()) {
+          throw new InterruptedIOException();
+        }
+        InputStream in = null;
+        try {
+          in = homeZipFile.getInputStream(entry);
+          CRC32 crc = new CRC32();
+          for (int size; (size = in.read(buffer)) != -1; ) {
+            crc.update(buffer, 0, size);
+          }
+          if (crc.getValue() != entry.getCrc()) {
+            damagedEntryNames.add(name);
+          }
+        } catch (IOException ex) {
+          damagedEntryNames.add(name);
+        } finally {
+          if (in != null) {
+            try {
+              in.close();
+            } catch (IOException ex) {
+            }
+          }
+        }
+      }
+    }
+    return damagedEntryNames;
+  }
+
+  /**
+   * Returns <code>true</code> if the given entry or one of the entries of its directory is damaged.
+   */
+  private boolean isDamagedEntry(String contentEntryName) {
+    if (this.damagedEntryNames == null
+        || this.damagedEntryNames.isEmpty()) {
+      return false;
+    } else if (this.damagedEntryNames.contains(contentEntryName)) {
+      return true;
+    } else {
+      int slashIndex = contentEntryName.indexOf('/');
+      if (slashIndex > 0) {
+        // Check the other parts of a content stored in a directory
+        String entryDirectory = contentEntryName.substring(0, slashIndex + 1);
+        for (String damagedEntryName : this.damagedEntryNames) {
+          if (damagedEntryName.startsWith(entryDirectory)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
   /**
    * Returns the {@link Content} instance matching the given entry name in home stream.
    */
   public Content lookupContent(String contentEntryName) throws IOException {
     URL fileURL = new URL("jar:" + this.homeUrl + "!/" + contentEntryName);
+    if (this.entries != null) {
+      return lookupCheckedContent(contentEntryName, fileURL);
+    }
     HomeURLContent urlContent = new HomeURLContent(fileURL);
     ContentDigestManager contentDigestManager = ContentDigestManager.getInstance();
     if (!isValid(urlContent)) {
@@ -178,6 +342,69 @@ class HomeContentContext {
     return urlContent;
   }
 
+  /**
+   * Returns the {@link Content} instance matching the given entry name in home file
+   * without reading its data. The data of lazy content will be checked with its CRC once it's read.
+   */
+  private Content lookupCheckedContent(String contentEntryName, URL fileURL) throws IOException {
+    if (this.lazyContents != null) {
+      // Share lazy contents to open their entry only once
+      URLContent lazyContent = this.lazyContents.get(contentEntryName);
+      if (lazyContent == null) {
+        lazyContent = (URLContent)lookupCheckedContent(contentEntryName, fileURL, this.entries.get(contentEntryName));
+        this.lazyContents.put(contentEntryName, lazyContent);
+      }
+      return lazyContent;
+    } else {
+      return lookupCheckedContent(contentEntryName, fileURL, this.entries.get(contentEntryName));
+    }
+  }
+
+  private Content lookupCheckedContent(String contentEntryName, URL fileURL, ZipEntry entry) throws IOException {
+    if (entry == null
+        || isDamagedEntry(contentEntryName)) {
+      // Missing or damaged entry
+      HomeURLContent urlContent = new HomeURLContent(fileURL);
+      this.containsInvalidContents = true;
+      URLContent preferencesContent = findUserPreferencesContent(urlContent);
+      if (preferencesContent != null) {
+        return preferencesContent;
+      } else {
+        this.invalidContents.add(urlContent);
+        return urlContent;
+      }
+    } else {
+      HomeURLContent urlContent;
+      if (this.statistics != null) {
+        urlContent = new LazyHomeURLContent(fileURL, this.lazyZipFile, entry, this.statistics);
+        this.statistics.addContent();
+      } else {
+        // Content already checked
+        urlContent = new HomeURLContent(fileURL);
+      }
+      ContentDigestManager contentDigestManager = ContentDigestManager.getInstance();
+      byte [] contentDigest;
+      if (this.contentDigests != null
+          && (contentDigest = this.contentDigests.get(urlContent)) != null) {
+        // Trust saved digest to avoid reading content data
+        contentDigestManager.setContentDigest(urlContent, contentDigest);
+        if (this.preferencesContentsCache != null
+            && this.preferPreferencesContent) {
+          // Check if user preferences contains the same content to share it
+          for (URLContent preferencesContent : this.preferencesContentsCache) {
+            if (contentDigestManager.isContentDigestEqual(preferencesContent, contentDigest)) {
+              return preferencesContent;
+            }
+          }
+        }
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedIOException();
+      }
+      return urlContent;
+    }
+  }
+
   /**
    * Returns <code>true</code> if the given <code>content</code> exists.
    */
@@ -0,0 +1,83 @@
+/*
+ * HomeContentStatistics.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+/**
+ * Statistics about a home read with lazy content, and the content entries of its file
+ * opened since it was read.
+ * @author Emmanuel Puybaret
+ */
+public class HomeContentStatistics {
+  private long openDuration;
+  private long homeEntryLength;
+  private int  contentCount;
+  private int  openedContentCount;
+  private long openedContentLength;
+
+  HomeContentStatistics() {
+  }
+
+  synchronized void setOpenDuration(long openDuration) {
+    this.openDuration = openDuration;
+  }
+
+  synchronized void setHomeEntryLength(long homeEntryLength) {
+    this.homeEntryLength = homeEntryLength;
+  }
+
+  synchronized void addContent() {
+    this.contentCount++;
+  }
+
+  synchronized void addOpenedContent(long contentLength) {
+    this.openedContentCount++;
+    this.openedContentLength += contentLength;
+  }
+
+  /**
+   * Returns the time spent to read the home in milliseconds.
+   */
+  public synchronized long getOpenDuration() {
+    return this.openDuration;
+  }
+
+  /**
+   * Returns the count of content entries referenced by the home.
+   */
+  public synchronized int getContentCount() {
+    return this.contentCount;
+  }
+
+  /**
+   * Returns the count of content entries opened at least once since the home was read.
+   */
+  public synchronized int getOpenedContentCount() {
+    return this.openedContentCount;
+  }
+
+  /**
+   * Returns the uncompressed length of the home entry and of the content entries
+   * opened at least once since the home was read, which estimates the count of bytes
+   * the home data occupies in memory.
+   */
+  public synchronized long getResidentBytes() {
+    return this.homeEntryLength + this.openedContentLength;
+  }
+}
@@ -29,7 +29,11 @@ import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.DamagedHomeRecorderException;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeRecorder;
@@ -51,6 +55,11 @@ public class HomeFileRecorder implements HomeRecorder {
   private final boolean         preferPreferencesContent;
   private final boolean         preferXmlEntry;
   private final boolean         acceptUrl;
+  private boolean               parallelCompression;
+  private boolean               reuseCompressedContent;
+  private boolean               binaryEntry;
+  private boolean               lazyContent;
+  private final Map<Home, HomeContentStatistics> contentStatistics;
 
   /**
    * Creates a home recorder able to write and read homes in uncompressed files.
@@ -167,6 +176,51 @@ public class HomeFileRecorder implements HomeRecorder {
     this.preferPreferencesContent = preferPreferencesContent;
     this.preferXmlEntry = preferXmlEntry;
     this.acceptUrl = acceptUrl;
+    this.reuseCompressedContent = true;
+    this.contentStatistics = new WeakHashMap<Home, HomeContentStatistics>();
+  }
+
+  /**
+   * Sets whether the entries of saved files should be compressed in parallel
+   * with all the available processors. By default, entries are compressed sequentially.
+   * This method should be called before this recorder is used.
+   */
+  public void setParallelCompression(boolean parallelCompression) {
+    this.parallelCompression = parallelCompression;
+  }
+
+  /**
+   * Sets whether the content entries of the saved home that come from a home file
+   * previously read or saved, or from a local zip file will be copied without being
+   * decompressed and compressed again. By default, compressed content is reused.
+   * This method should be called before this recorder is used.
+   */
+  public void setReuseCompressedContent(boolean reuseCompressedContent) {
+    this.reuseCompressedContent = reuseCompressedContent;
+  }
+
+  /**
+   * Sets whether an additional <code>Home.bin</code> entry containing home at a compact
+   * binary format will be saved in files and read in priority from saved files.
+   * By default, no binary entry is saved.
+   * This method should be called before this recorder is used.
+   */
+  public void setBinaryEntry(boolean binaryEntry) {
+    this.binaryEntry = binaryEntry;
+  }
+
+  /**
+   * Sets whether home files will be read without a temporary copy, each content of a read home
+   * opening its entry in the home file only when its data is read, with zip files shared
+   * in a pool of bounded size. A home file read this way shouldn't be modified as long as
+   * its home is used, and this mode is intended to read homes that won't be saved again.
+   * In this mode, a damaged content is detected only when its data is read, and
+   * <code>readHome</code> can't report it with a {@link DamagedHomeRecorderException}.
+   * By default, read home files are copied in a temporary file and their content is checked at once.
+   * This method should be called before this recorder is used.
+   */
+  public void setLazyContent(boolean lazyContent) {
+    this.lazyContent = lazyContent;
   }
 
   /**
@@ -174,6 +228,19 @@ public class HomeFileRecorder implements HomeRecorder {
    * @throws RecorderException if a problem occurred while writing home.
    */
   public void writeHome(Home home, String name) throws RecorderException {
+    writeHome(home, name, null, null);
+  }
+
+  /**
+   * Writes home data and returns the names of the content entries saved in the written file.
+   * The compressed data of the content entries listed in <code>previousContentNames</code>
+   * will be copied from <code>previousHomeFile</code> without reading and compressing
+   * their content again.
+   * @throws RecorderException if a problem occurred while writing home.
+   */
+  Map<Content, String> writeHome(Home home, String name,
+                                 File previousHomeFile,
+                                 Map<Content, String> previousContentNames) throws RecorderException {
     File homeFile = new File(name);
     if (homeFile.exists()
         && !homeFile.canWrite()) {
@@ -194,6 +261,12 @@ public class HomeFileRecorder implements HomeRecorder {
           this.preferXmlEntry
               ? getHomeXMLExporter()
               : null);
+      homeOut.setParallelCompression(this.parallelCompression);
+      homeOut.setReuseCompressedContent(this.reuseCompressedContent);
+      homeOut.setBinaryHome(this.binaryEntry);
+      if (previousHomeFile != null) {
+        homeOut.setPreviousHomeFile(previousHomeFile, previousContentNames);
+      }
       // Write home with HomeOuputStream
       homeOut.writeHome(home);
     } catch (InterruptedIOException ex) {
@@ -295,6 +368,7 @@ public class HomeFileRecorder implements HomeRecorder {
         // Forget exception
       }
     }
+    return homeOut.getSavedContentNames();
   }
 
   /**
@@ -312,25 +386,49 @@ public class HomeFileRecorder implements HomeRecorder {
   public Home readHome(String name) throws RecorderException {
     DefaultHomeInputStream homeInputStream = null;
     try {
-      InputStream in;
-      try {
-        // Open a stream on file
-        in = new FileInputStream(name);
-      } catch (FileNotFoundException ex) {
-        if (this.acceptUrl) {
-          // Then try to open file as a URL
-          URLConnection connection = new URL(name).openConnection();
-          connection.setUseCaches(false);
-          in = connection.getInputStream();
-        } else {
-          throw ex;
+      File homeFile = new File(name);
+      if (this.lazyContent
+          && isZipFile(homeFile)) {
+        // Read home directly from file
+        homeInputStream = new DefaultHomeInputStream(homeFile,
+            ContentRecording.INCLUDE_ALL_CONTENT,
+            this.preferXmlEntry || this.binaryEntry ? getHomeXMLHandler() : null,
+            this.preferences, this.preferPreferencesContent, true);
+      } else if (isZipFile(homeFile)) {
+        // Read home from a raw copy of the file to be able to read entries randomly
+        // without risking to get them overwritten when home will be saved.
+        // This copy is required as long as home content refers to the entries of the read file
+        homeInputStream = new DefaultHomeInputStream(copyToTemporaryFile(homeFile),
+            ContentRecording.INCLUDE_ALL_CONTENT,
+            this.preferXmlEntry || this.binaryEntry ? getHomeXMLHandler() : null,
+            this.preferences, this.preferPreferencesContent);
+      } else {
+        InputStream in;
+        try {
+          // Open a stream on file
+          in = new FileInputStream(name);
+        } catch (FileNotFoundException ex) {
+          if (this.acceptUrl) {
+            // Then try to open file as a URL
+            URLConnection connection = new URL(name).openConnection();
+            connection.setUseCaches(false);
+            in = connection.getInputStream();
+          } else {
+            throw ex;
+          }
         }
+        // Read home with HomeInputStream
+        homeInputStream = new DefaultHomeInputStream(in, ContentRecording.INCLUDE_ALL_CONTENT,
+            this.preferXmlEntry || this.binaryEntry ? getHomeXMLHandler() : null,
+            this.preferences, this.preferPreferencesContent);
       }
-      // Read home with HomeInputStream
-      homeInputStream = new DefaultHomeInputStream(in, ContentRecording.INCLUDE_ALL_CONTENT,
-          this.preferXmlEntry ? getHomeXMLHandler() : null,
-          this.preferences, this.preferPreferencesContent);
       Home home = homeInputStream.readHome();
+      HomeContentStatistics contentStatistics = homeInputStream.getContentStatistics();
+      if (contentStatistics != null) {
+        synchronized (this.contentStatistics) {
+          this.contentStatistics.put(home, contentStatistics);
+        }
+      }
       return home;
     } catch (InterruptedIOException ex) {
       throw new InterruptedRecorderException("Read " + name + " interrupted");
@@ -351,6 +449,68 @@ public class HomeFileRecorder implements HomeRecorder {
     }
   }
 
+  /**
+   * Returns the statistics of the given home if it was read by this recorder with lazy content,
+   * or <code>null</code> otherwise.
+   */
+  public HomeContentStatistics getContentStatistics(Home home) {
+    synchronized (this.contentStatistics) {
+      return this.contentStatistics.get(home);
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the given file exists and starts with zip signature.
+   */
+  private boolean isZipFile(File file) throws IOException {
+    if (file.isFile()) {
+      InputStream in = new FileInputStream(file);
+      try {
+        return in.read() == 'P' && in.read() == 'K';
+      } finally {
+        in.close();
+      }
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a temporary copy of the given file, made without reading its data
+   * in the Java heap when possible.
+   */
+  private File copyToTemporaryFile(File file) throws IOException {
+    File tempFile = OperatingSystem.createTemporaryFile("open", ".sweethome3d");
+    FileChannel in = null;
+    FileChannel out = null;
+    try {
+      in = new FileInputStream(file).getChannel();
+      out = new FileOutputStream(tempFile).getChannel();
+      long size = in.size();
+      for (long position = 0; position < size; ) {
+        checkCurrentThreadIsntInterrupted();
+        position += in.transferTo(position, Math.min(size - position, 16777216), out);
+      }
+      return tempFile;
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Throws an <code>InterruptedIOException</code> exception if current thread is interrupted.
+   */
+  private static void checkCurrentThreadIsntInterrupted() throws InterruptedIOException {
+    if (Thread.interrupted()) {
+      throw new InterruptedIOException();
+    }
+  }
+
   /**
    * Returns a SAX XML handler able to interpret the information contained in the
    * <code>Home.xml</code> entry.
@@ -393,10 +393,7 @@ public class HomeXMLExporter extends ObjectXMLExporter<Home> {
         writer.writeFloatAttribute("shininess", piece.getShininess());
       }
       float [][] modelRotation = piece.getModelRotation();
-      String modelRotationString =
-          floatToString(modelRotation[0][0]) + " " + floatToString(modelRotation[0][1]) + " " + floatToString(modelRotation[0][2]) + " "
-        + floatToString(modelRotation[1][0]) + " " + floatToString(modelRotation[1][1]) + " " + floatToString(modelRotation[1][2]) + " "
-        + floatToString(modelRotation[2][0]) + " " + floatToString(modelRotation[2][1]) + " " + floatToString(modelRotation[2][2]);
+      String modelRotationString = matrixToString(modelRotation, 3);
       writer.writeAttribute("modelRotation", modelRotationString, "1 0 0 0 1 0 0 0 1");
       writer.writeBooleanAttribute("modelCenteredAtOrigin", piece.isModelCenteredAtOrigin(), true);
       writer.writeLongAttribute("modelSize", piece.getModelSize());
@@ -493,10 +490,7 @@ public class HomeXMLExporter extends ObjectXMLExporter<Home> {
           writer.writeStartElement("transformation");
           writer.writeAttribute("name", transformation.getName(), null);
           float [][] matrix = transformation.getMatrix();
-          String matrixString =
-              floatToString(matrix[0][0]) + " " + floatToString(matrix[0][1]) + " " + floatToString(matrix[0][2]) + " " + floatToString(matrix[0][3]) + " "
-            + floatToString(matrix[1][0]) + " " + floatToString(matrix[1][1]) + " " + floatToString(matrix[1][2]) + " " + floatToString(matrix[1][3]) + " "
-            + floatToString(matrix[2][0]) + " " + floatToString(matrix[2][1]) + " " + floatToString(matrix[2][2]) + " " + floatToString(matrix[2][3]);
+          String matrixString = matrixToString(matrix, 4);
           writer.writeAttribute("matrix", matrixString);
           writer.writeEndElement();
         }
@@ -644,8 +638,8 @@ public class HomeXMLExporter extends ObjectXMLExporter<Home> {
           if (polyline.getDashStyle() == Polyline.DashStyle.CUSTOMIZED) {
             StringBuilder dashPattern = new StringBuilder();
             for (float dashPart : polyline.getDashPattern()) {
-              dashPattern.append(floatToString(dashPart));
-              dashPattern.append(" ");
+              appendFloat(dashPattern, dashPart);
+              dashPattern.append(' ');
             }
             dashPattern.setLength(dashPattern.length() - 1);
             writer.writeAttribute("dashPattern", dashPattern.toString());
@@ -824,18 +818,34 @@ public class HomeXMLExporter extends ObjectXMLExporter<Home> {
   }
 
   /**
-   * Returns the string value of the given float, except for -1.0, 1.0 or 0.0
-   * where -1, 1 and 0 is returned.
+   * Returns the values of the 3 first rows of the given matrix separated by spaces.
    */
-  private static String floatToString(float f) {
+  private static String matrixToString(float [][] matrix, int columnCount) {
+    StringBuilder matrixString = new StringBuilder(columnCount * 12);
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < columnCount; j++) {
+        if (matrixString.length() > 0) {
+          matrixString.append(' ');
+        }
+        appendFloat(matrixString, matrix [i][j]);
+      }
+    }
+    return matrixString.toString();
+  }
+
+  /**
+   * Appends the string value of the given float, except for -1.0, 1.0 or 0.0
+   * where -1, 1 and 0 is appended.
+   */
+  private static void appendFloat(StringBuilder s, float f) {
     if (Math.abs(f) < 1E-6) {
-      return "0";
+      s.append('0');
     } else if (Math.abs(f - 1f) < 1E-6) {
-      return "1";
+      s.append('1');
     } else if (Math.abs(f + 1f) < 1E-6) {
-      return "-1";
+      s.append("-1");
     } else {
-      return String.valueOf(f);
+      s.append(f);
     }
   }
 
@@ -0,0 +1,96 @@
+/*
+ * LazyHomeURLContent.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.ZipEntry;
+
+/**
+ * An URL content which points to an entry of a home file, opened only when its data is read
+ * with a zip file shared in {@link ZipFilePool} among the contents of the same file.
+ * @author Emmanuel Puybaret
+ */
+class LazyHomeURLContent extends CheckedHomeURLContent {
+  private static final long serialVersionUID = 1L;
+
+  private transient File                  zipFile;
+  private transient String                entryName;
+  private transient long                  entrySize;
+  private transient HomeContentStatistics statistics;
+  private transient boolean               opened;
+
+  public LazyHomeURLContent(URL url, File zipFile, ZipEntry entry,
+                            HomeContentStatistics statistics) {
+    super(url, entry.getCrc());
+    this.zipFile = zipFile;
+    this.entryName = entry.getName();
+    this.entrySize = entry.getSize();
+    this.statistics = statistics;
+  }
+
+  /**
+   * Returns an InputStream on the entry of this content, which keeps its zip file open
+   * in the pool until the stream is closed.
+   * @throws IOException if the entry can't be opened.
+   */
+  @Override
+  protected InputStream openUncheckedStream() throws IOException {
+    final ZipFilePool.ZipFileHandle handle = ZipFilePool.getInstance().acquire(this.zipFile);
+    boolean releaseHandle = true;
+    try {
+      ZipEntry entry = handle.getZipFile().getEntry(this.entryName);
+      if (entry == null) {
+        throw new FileNotFoundException("No entry " + this.entryName + " in " + this.zipFile);
+      }
+      InputStream in = new FilterInputStream(handle.getZipFile().getInputStream(entry)) {
+          private boolean closed;
+
+          @Override
+          public void close() throws IOException {
+            if (!this.closed) {
+              this.closed = true;
+              try {
+                super.close();
+              } finally {
+                handle.release();
+              }
+            }
+          }
+        };
+      releaseHandle = false;
+      synchronized (this) {
+        if (!this.opened) {
+          this.opened = true;
+          this.statistics.addOpenedContent(this.entrySize);
+        }
+      }
+      return in;
+    } finally {
+      if (releaseHandle) {
+        handle.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * RawZipFile.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A zip file reader giving access to the compressed data of its entries,
+ * with the CRC and sizes stored in its central directory.
+ * @author Emmanuel Puybaret
+ */
+class RawZipFile {
+  private static final int LOCAL_FILE_HEADER_SIGNATURE        = 0x04034b50;
+  private static final int CENTRAL_FILE_HEADER_SIGNATURE      = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_MIN_SIZE  = 22;
+  private static final int MAX_COMMENT_SIZE                   = 0xFFFF;
+  private static final int LOCAL_FILE_HEADER_SIZE             = 30;
+  private static final int ENCRYPTED_FLAG                     = 0x01;
+  private static final int UTF8_NAME_FLAG                     = 0x800;
+
+  private final File                  file;
+  private final RandomAccessFile      input;
+  private final Map<String, Entry>    entries;
+
+  /**
+   * Opens the given zip <code>file</code> and reads its central directory.
+   * @throws ZipException if the file isn't a zip file or if it uses Zip64 format.
+   */
+  public RawZipFile(File file) throws IOException {
+    this.file = file;
+    this.input = new RandomAccessFile(file, "r");
+    try {
+      this.entries = readCentralDirectory();
+    } catch (IOException ex) {
+      this.input.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Returns the entries listed in the central directory of the zip file,
+   * mapped to their name.
+   */
+  private Map<String, Entry> readCentralDirectory() throws IOException {
+    long fileLength = this.input.length();
+    if (fileLength < END_OF_CENTRAL_DIRECTORY_MIN_SIZE) {
+      throw new ZipException("File too short " + this.file);
+    }
+    // Search end of central directory record from the end of the file
+    int tailLength = (int)Math.min(fileLength, END_OF_CENTRAL_DIRECTORY_MIN_SIZE + MAX_COMMENT_SIZE);
+    byte [] tail = new byte [tailLength];
+    this.input.seek(fileLength - tailLength);
+    this.input.readFully(tail);
+    int endIndex = -1;
+    for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_MIN_SIZE; i >= 0; i--) {
+      if (getInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        endIndex = i;
+        break;
+      }
+    }
+    if (endIndex == -1) {
+      throw new ZipException("No central directory in " + this.file);
+    }
+    int entriesCount = getShort(tail, endIndex + 10);
+    long centralDirectorySize = getInt(tail, endIndex + 12);
+    long centralDirectoryOffset = getInt(tail, endIndex + 16);
+    if (entriesCount == 0xFFFF
+        || centralDirectorySize == 0xFFFFFFFFL
+        || centralDirectoryOffset == 0xFFFFFFFFL) {
+      throw new ZipException("Zip64 format not supported in " + this.file);
+    }
+    if (centralDirectoryOffset + centralDirectorySize > fileLength) {
+      throw new ZipException("Invalid central directory in " + this.file);
+    }
+
+    byte [] centralDirectory = new byte [(int)centralDirectorySize];
+    this.input.seek(centralDirectoryOffset);
+    this.input.readFully(centralDirectory);
+    Map<String, Entry> entries = new LinkedHashMap<String, Entry>(entriesCount * 4 / 3 + 1);
+    int index = 0;
+    for (int i = 0; i < entriesCount; i++) {
+      if (index + 46 > centralDirectory.length
+          || getInt(centralDirectory, index) != CENTRAL_FILE_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory entry in " + this.file);
+      }
+      int flags = getShort(centralDirectory, index + 8);
+      int method = getShort(centralDirectory, index + 10);
+      long crc = getInt(centralDirectory, index + 16);
+      long compressedSize = getInt(centralDirectory, index + 20);
+      long size = getInt(centralDirectory, index + 24);
+      int nameLength = getShort(centralDirectory, index + 28);
+      int extraLength = getShort(centralDirectory, index + 30);
+      int commentLength = getShort(centralDirectory, index + 32);
+      long localHeaderOffset = getInt(centralDirectory, index + 42);
+      if (compressedSize == 0xFFFFFFFFL
+          || size == 0xFFFFFFFFL
+          || localHeaderOffset == 0xFFFFFFFFL) {
+        throw new ZipException("Zip64 format not supported in " + this.file);
+      }
+      if (index + 46 + nameLength > centralDirectory.length) {
+        throw new ZipException("Invalid central directory entry in " + this.file);
+      }
+      String name = getName(centralDirectory, index + 46, nameLength, flags);
+      entries.put(name, new Entry(name, flags, method, crc, compressedSize, size, localHeaderOffset));
+      index += 46 + nameLength + extraLength + commentLength;
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the name stored at the given index, encoded in UTF-8 if the flag of its entry
+   * says so. Otherwise, the name is decoded in UTF-8 like <code>java.util.zip.ZipFile</code> does,
+   * because older versions of Java wrote UTF-8 names without this flag, and with IBM437 charset
+   * as specified by zip format if it's not a valid UTF-8 string.
+   */
+  private static String getName(byte [] bytes, int index, int length, int flags) throws IOException {
+    if ((flags & UTF8_NAME_FLAG) != 0) {
+      return new String(bytes, index, length, "UTF-8");
+    } else {
+      try {
+        return Charset.forName("UTF-8").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(ByteBuffer.wrap(bytes, index, length)).toString();
+      } catch (CharacterCodingException ex) {
+        try {
+          return new String(bytes, index, length, "IBM437");
+        } catch (UnsupportedEncodingException ex2) {
+          return new String(bytes, index, length, "ISO-8859-1");
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the file read by this object.
+   */
+  public File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Returns the entry called <code>name</code> or <code>null</code> if it doesn't exist
+   * or if its compressed data can't be copied as is.
+   * @see Entry#isCopiable()
+   */
+  public Entry getEntry(String name) {
+    Entry entry = this.entries.get(name);
+    if (entry != null && entry.isCopiable()) {
+      return entry;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns all the entries of this zip file in the order of the central directory,
+   * including the ones which compressed data can't be copied.
+   */
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(new ArrayList<Entry>(this.entries.values()));
+  }
+
+  /**
+   * Returns a stream on the compressed data of the given <code>entry</code>
+   * which will return {@link Entry#getCompressedSize() compressed size} bytes.
+   */
+  public InputStream getRawInputStream(Entry entry) throws IOException {
+    long dataOffset = getDataOffset(entry);
+    return new EntryInputStream(dataOffset, entry.getCompressedSize());
+  }
+
+  /**
+   * Returns the offset of the data of the given entry, read from its local header.
+   */
+  private long getDataOffset(Entry entry) throws IOException {
+    synchronized (this.input) {
+      if (entry.dataOffset == -1) {
+        byte [] header = new byte [LOCAL_FILE_HEADER_SIZE];
+        this.input.seek(entry.getLocalHeaderOffset());
+        this.input.readFully(header);
+        if (getInt(header, 0) != LOCAL_FILE_HEADER_SIGNATURE) {
+          throw new ZipException("Invalid local header for entry " + entry.getName());
+        }
+        entry.dataOffset = entry.getLocalHeaderOffset() + LOCAL_FILE_HEADER_SIZE
+            + getShort(header, 26) + getShort(header, 28);
+        if (entry.dataOffset + entry.getCompressedSize() > this.input.length()) {
+          throw new ZipException("Truncated entry " + entry.getName());
+        }
+      }
+      return entry.dataOffset;
+    }
+  }
+
+  /**
+   * Closes this file.
+   */
+  public void close() throws IOException {
+    this.input.close();
+  }
+
+  private static int getShort(byte [] bytes, int index) {
+    return (bytes [index] & 0xFF) | (bytes [index + 1] & 0xFF) << 8;
+  }
+
+  private static long getInt(byte [] bytes, int index) {
+    return (getShort(bytes, index) | (long)getShort(bytes, index + 2) << 16) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * A stream reading a range of bytes of the zip file.
+   */
+  private class EntryInputStream extends InputStream {
+    private long position;
+    private long remaining;
+
+    public EntryInputStream(long position, long length) {
+      this.position = position;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte [] b = new byte [1];
+      return read(b, 0, 1) == 1 ? b [0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte [] b, int off, int len) throws IOException {
+      if (this.remaining <= 0) {
+        return -1;
+      }
+      len = (int)Math.min(len, this.remaining);
+      int size;
+      synchronized (input) {
+        input.seek(this.position);
+        size = input.read(b, off, len);
+      }
+      if (size == -1) {
+        throw new ZipException("Unexpected end of file " + file);
+      }
+      this.position += size;
+      this.remaining -= size;
+      return size;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int)Math.min(Integer.MAX_VALUE, this.remaining);
+    }
+  }
+
+  /**
+   * An entry listed in the central directory.
+   */
+  public static class Entry {
+    private final String name;
+    private final int    flags;
+    private final int    method;
+    private final long   crc;
+    private final long   compressedSize;
+    private final long   size;
+    private final long   localHeaderOffset;
+    private long         dataOffset = -1;
+
+    private Entry(String name, int flags, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+      this.name = name;
+      this.flags = flags;
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * Returns the compression method of this entry, usually {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     */
+    public int getMethod() {
+      return this.method;
+    }
+
+    /**
+     * Returns <code>true</code> if the compressed data of this entry isn't encrypted
+     * and is stored or deflated, and thus can be copied as is in an other zip file.
+     */
+    public boolean isCopiable() {
+      return (this.flags & ENCRYPTED_FLAG) == 0
+          && (this.method == ZipEntry.STORED || this.method == ZipEntry.DEFLATED);
+    }
+
+    public long getCrc() {
+      return this.crc;
+    }
+
+    public long getCompressedSize() {
+      return this.compressedSize;
+    }
+
+    public long getSize() {
+      return this.size;
+    }
+
+    public long getLocalHeaderOffset() {
+      return this.localHeaderOffset;
+    }
+  }
+}
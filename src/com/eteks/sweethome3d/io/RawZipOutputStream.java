@@ -0,0 +1,460 @@
+/*
+ * RawZipOutputStream.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * An output stream filter that writes zip entries which data is already compressed
+ * (or stored), with their CRC and sizes known before they're written.
+ * Contrary to <code>ZipOutputStream</code>, this stream lets callers deflate the data
+ * of entries in other threads or copy it as is from other zip files.
+ * Entries which data isn't known in advance can also be deflated while they're written
+ * with {@link #putNextEntry(String, int) putNextEntry}, their CRC and sizes being then
+ * stored in a data descriptor like <code>ZipOutputStream</code> does.
+ * The generated entries can be read with <code>ZipInputStream</code> as well as <code>ZipFile</code>.
+ * Zip64 extensions are written only for the entries and the central directory
+ * which sizes, offsets or count require them.
+ * @author Emmanuel Puybaret
+ */
+class RawZipOutputStream extends FilterOutputStream {
+  private static final int  LOCAL_FILE_HEADER_SIGNATURE       = 0x04034b50;
+  private static final int  CENTRAL_FILE_HEADER_SIGNATURE     = 0x02014b50;
+  private static final int  END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int  ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int  ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int  DATA_DESCRIPTOR_SIGNATURE         = 0x08074b50;
+  private static final int  ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final int  DATA_DESCRIPTOR_FLAG = 0x08;
+  private static final int  UTF8_NAME_FLAG = 0x800;
+  private static final long MAX_ZIP32_VALUE = 0xFFFFFFFFL;
+
+  private final List<RawEntry> entries = new ArrayList<RawEntry>();
+  private final Set<String>    entryNames = new HashSet<String>();
+  private final int            dosTime;
+  private long                 written;
+  private boolean              finished;
+  private DeflatedEntryOutputStream currentEntryOut;
+
+  public RawZipOutputStream(OutputStream out) {
+    super(out);
+    this.dosTime = toDosTime(System.currentTimeMillis());
+  }
+
+  /**
+   * Writes a new entry named <code>name</code> which data is given by <code>data</code>.
+   * @param method   {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+   * @param crc      the CRC-32 of the uncompressed data
+   * @param size     the size of the uncompressed data
+   * @param data     the stored or deflated data of the entry, written as is
+   * @param offset   the start offset in <code>data</code>
+   * @param length   the count of bytes of <code>data</code> to write
+   */
+  public void writeEntry(String name, int method, long crc, long size,
+                         byte [] data, int offset, int length) throws IOException {
+    putEntry(name, method, 0, crc, length, size);
+    this.out.write(data, offset, length);
+    this.written += length;
+  }
+
+  /**
+   * Writes a new entry named <code>name</code> which data is read from <code>rawDataIn</code>.
+   * @param method   {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+   * @param crc      the CRC-32 of the uncompressed data
+   * @param compressedSize the count of bytes that will be copied from <code>rawDataIn</code>
+   * @param size     the size of the uncompressed data
+   * @param rawDataIn the stored or deflated data of the entry, copied as is
+   */
+  public void writeEntry(String name, int method, long crc, long compressedSize, long size,
+                         InputStream rawDataIn) throws IOException {
+    putEntry(name, method, 0, crc, compressedSize, size);
+    byte [] buffer = new byte [8192];
+    long remaining = compressedSize;
+    while (remaining > 0) {
+      int length = rawDataIn.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+      if (length == -1) {
+        throw new ZipException("Missing data for entry " + name);
+      }
+      this.out.write(buffer, 0, length);
+      this.written += length;
+      remaining -= length;
+    }
+  }
+
+  /**
+   * Starts a new entry named <code>name</code> and returns the stream in which its data
+   * should be written. This data is deflated at the given level while it's written,
+   * then its CRC and sizes are written in a data descriptor once {@link #closeEntry()} is called.
+   * @param compressionLevel 0-9
+   */
+  public OutputStream putNextEntry(String name, int compressionLevel) throws IOException {
+    RawEntry entry = putEntry(name, ZipEntry.DEFLATED, DATA_DESCRIPTOR_FLAG, 0, 0, 0);
+    this.currentEntryOut = new DeflatedEntryOutputStream(entry, compressionLevel);
+    return this.currentEntryOut;
+  }
+
+  /**
+   * Completes the entry started with {@link #putNextEntry(String, int) putNextEntry}
+   * and writes its data descriptor.
+   */
+  public void closeEntry() throws IOException {
+    if (this.currentEntryOut != null) {
+      DeflatedEntryOutputStream entryOut = this.currentEntryOut;
+      this.currentEntryOut = null;
+      RawEntry entry = entryOut.finish();
+      writeInt(DATA_DESCRIPTOR_SIGNATURE);
+      writeInt(entry.getCrc());
+      if (entry.isZip64Sizes()) {
+        writeLong(entry.getCompressedSize());
+        writeLong(entry.getSize());
+      } else {
+        writeInt(entry.getCompressedSize());
+        writeInt(entry.getSize());
+      }
+    }
+  }
+
+  /**
+   * Writes the local header of a new entry and returns its description.
+   */
+  private RawEntry putEntry(String name, int method, int flags, long crc,
+                            long compressedSize, long size) throws IOException {
+    if (this.finished) {
+      throw new IOException("Zip stream already finished");
+    }
+    if (this.currentEntryOut != null) {
+      throw new ZipException("Entry " + name + " started before closing previous entry");
+    }
+    if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+      throw new ZipException("Unsupported compression method " + method);
+    }
+    if (method == ZipEntry.STORED && compressedSize != size) {
+      throw new ZipException("Stored entry " + name + " with different sizes");
+    }
+    if (!this.entryNames.add(name)) {
+      throw new ZipException("Duplicate entry " + name);
+    }
+    RawEntry entry = new RawEntry(name, method, flags, crc, compressedSize, size, this.written);
+    this.entries.add(entry);
+    boolean zip64Sizes = entry.isZip64Sizes();
+    writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+    writeShort(entry.getVersion());
+    writeShort(entry.getFlags());
+    writeShort(method);
+    writeInt(this.dosTime);
+    writeInt(crc);
+    writeInt(zip64Sizes ? MAX_ZIP32_VALUE : compressedSize);
+    writeInt(zip64Sizes ? MAX_ZIP32_VALUE : size);
+    writeShort(entry.getNameBytes().length);
+    writeShort(zip64Sizes ? 20 : 0);
+    writeBytes(entry.getNameBytes());
+    if (zip64Sizes) {
+      writeShort(ZIP64_EXTRA_FIELD_ID);
+      writeShort(16);
+      writeLong(size);
+      writeLong(compressedSize);
+    }
+    return entry;
+  }
+
+  /**
+   * Writes the central directory of this zip stream without closing the underlying stream.
+   */
+  public void finish() throws IOException {
+    if (!this.finished) {
+      closeEntry();
+      this.finished = true;
+      long centralDirectoryOffset = this.written;
+      for (RawEntry entry : this.entries) {
+        // Store all sizes and offset in Zip64 extra field if one of them requires it
+        boolean zip64Entry = entry.isZip64Sizes() || entry.getOffset() >= MAX_ZIP32_VALUE;
+        writeInt(CENTRAL_FILE_HEADER_SIGNATURE);
+        writeShort(zip64Entry ? 45 : entry.getVersion());
+        writeShort(zip64Entry ? 45 : entry.getVersion());
+        writeShort(entry.getFlags());
+        writeShort(entry.getMethod());
+        writeInt(this.dosTime);
+        writeInt(entry.getCrc());
+        writeInt(zip64Entry ? MAX_ZIP32_VALUE : entry.getCompressedSize());
+        writeInt(zip64Entry ? MAX_ZIP32_VALUE : entry.getSize());
+        writeShort(entry.getNameBytes().length);
+        writeShort(zip64Entry ? 28 : 0); // Extra field length
+        writeShort(0); // Comment length
+        writeShort(0); // Disk number
+        writeShort(0); // Internal attributes
+        writeInt(0);   // External attributes
+        writeInt(zip64Entry ? MAX_ZIP32_VALUE : entry.getOffset());
+        writeBytes(entry.getNameBytes());
+        if (zip64Entry) {
+          writeShort(ZIP64_EXTRA_FIELD_ID);
+          writeShort(24);
+          writeLong(entry.getSize());
+          writeLong(entry.getCompressedSize());
+          writeLong(entry.getOffset());
+        }
+      }
+      long centralDirectorySize = this.written - centralDirectoryOffset;
+      boolean zip64Directory = this.entries.size() >= 0xFFFF
+          || centralDirectorySize >= MAX_ZIP32_VALUE
+          || centralDirectoryOffset >= MAX_ZIP32_VALUE;
+      if (zip64Directory) {
+        long zip64EndOffset = this.written;
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeLong(44); // Size of remaining record
+        writeShort(45);
+        writeShort(45);
+        writeInt(0);
+        writeInt(0);
+        writeLong(this.entries.size());
+        writeLong(this.entries.size());
+        writeLong(centralDirectorySize);
+        writeLong(centralDirectoryOffset);
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+        writeInt(0);
+        writeLong(zip64EndOffset);
+        writeInt(1);
+      }
+      writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      writeShort(0);
+      writeShort(0);
+      writeShort(zip64Directory ? 0xFFFF : this.entries.size());
+      writeShort(zip64Directory ? 0xFFFF : this.entries.size());
+      writeInt(zip64Directory ? MAX_ZIP32_VALUE : centralDirectorySize);
+      writeInt(zip64Directory ? MAX_ZIP32_VALUE : centralDirectoryOffset);
+      writeShort(0);
+      this.out.flush();
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    throw new IOException("Data can be written only with writeEntry");
+  }
+
+  @Override
+  public void write(byte [] b, int off, int len) throws IOException {
+    throw new IOException("Data can be written only with writeEntry");
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+    super.close();
+  }
+
+  private void writeShort(int value) throws IOException {
+    this.out.write(value & 0xFF);
+    this.out.write((value >>> 8) & 0xFF);
+    this.written += 2;
+  }
+
+  private void writeInt(long value) throws IOException {
+    writeShort((int)(value & 0xFFFF));
+    writeShort((int)((value >>> 16) & 0xFFFF));
+  }
+
+  private void writeLong(long value) throws IOException {
+    writeInt(value & 0xFFFFFFFFL);
+    writeInt(value >>> 32);
+  }
+
+  private void writeBytes(byte [] bytes) throws IOException {
+    this.out.write(bytes);
+    this.written += bytes.length;
+  }
+
+  /**
+   * Returns the given time in MS-DOS format.
+   */
+  private static int toDosTime(long time) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    int year = calendar.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (year - 1980) << 25
+        | (calendar.get(Calendar.MONTH) + 1) << 21
+        | calendar.get(Calendar.DAY_OF_MONTH) << 16
+        | calendar.get(Calendar.HOUR_OF_DAY) << 11
+        | calendar.get(Calendar.MINUTE) << 5
+        | calendar.get(Calendar.SECOND) >> 1;
+  }
+
+  /**
+   * A stream that deflates the data of the current entry and writes it
+   * in the underlying stream.
+   */
+  private class DeflatedEntryOutputStream extends OutputStream {
+    private final RawEntry entry;
+    private final Deflater deflater;
+    private final CRC32    crc;
+    private final byte []  buffer;
+    private long           size;
+    private long           compressedSize;
+
+    public DeflatedEntryOutputStream(RawEntry entry, int compressionLevel) {
+      this.entry = entry;
+      this.deflater = new Deflater(compressionLevel, true);
+      this.crc = new CRC32();
+      this.buffer = new byte [8192];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte [] {(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte [] b, int off, int len) throws IOException {
+      if (currentEntryOut != this) {
+        throw new IOException("Entry " + new String(this.entry.getNameBytes(), "UTF-8") + " closed");
+      }
+      if (len > 0) {
+        this.crc.update(b, off, len);
+        this.size += len;
+        this.deflater.setInput(b, off, len);
+        while (!this.deflater.needsInput()) {
+          deflate();
+        }
+      }
+    }
+
+    private void deflate() throws IOException {
+      int length = this.deflater.deflate(this.buffer);
+      if (length > 0) {
+        out.write(this.buffer, 0, length);
+        written += length;
+        this.compressedSize += length;
+      }
+    }
+
+    /**
+     * Writes the remaining deflated data and returns the entry updated with its CRC and sizes.
+     */
+    public RawEntry finish() throws IOException {
+      try {
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+          deflate();
+        }
+      } finally {
+        this.deflater.end();
+      }
+      this.entry.setData(this.crc.getValue(), this.compressedSize, this.size);
+      return this.entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (currentEntryOut == this) {
+        closeEntry();
+      }
+    }
+  }
+
+  /**
+   * The information of an entry written in the central directory.
+   */
+  private static class RawEntry {
+    private final byte [] nameBytes;
+    private final int     flags;
+    private final int     method;
+    private long          crc;
+    private long          compressedSize;
+    private long          size;
+    private final long    offset;
+
+    public RawEntry(String name, int method, int flags, long crc, long compressedSize, long size, long offset) throws IOException {
+      this.nameBytes = name.getBytes("UTF-8");
+      this.flags = flags | (this.nameBytes.length != name.length() ? UTF8_NAME_FLAG : 0);
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.offset = offset;
+    }
+
+    /**
+     * Sets the CRC and sizes of this entry once its data was written.
+     */
+    public void setData(long crc, long compressedSize, long size) {
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+    }
+
+    public byte [] getNameBytes() {
+      return this.nameBytes;
+    }
+
+    public int getVersion() {
+      if (isZip64Sizes()) {
+        return 45;
+      } else {
+        return this.method == ZipEntry.DEFLATED ? 20 : 10;
+      }
+    }
+
+    /**
+     * Returns <code>true</code> if the sizes of this entry require Zip64 extensions.
+     */
+    public boolean isZip64Sizes() {
+      return this.compressedSize >= MAX_ZIP32_VALUE
+          || this.size >= MAX_ZIP32_VALUE;
+    }
+
+    public int getFlags() {
+      return this.flags;
+    }
+
+    public int getMethod() {
+      return this.method;
+    }
+
+    public long getCrc() {
+      return this.crc;
+    }
+
+    public long getCompressedSize() {
+      return this.compressedSize;
+    }
+
+    public long getSize() {
+      return this.size;
+    }
+
+    public long getOffset() {
+      return this.offset;
+    }
+  }
+}
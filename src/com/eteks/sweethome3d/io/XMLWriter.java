@@ -23,24 +23,40 @@ import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.Stack;
 
 /**
  * A simple XML writer able to write XML elements, their attributes and texts, indenting child elements.
+ * Written characters are stored in a buffer where special characters are replaced by entities
+ * and numbers are formatted without intermediate strings, then passed to the filtered writer
+ * once the buffer is full or when this writer is flushed.
  * @author Emmanuel Puybaret
  */
 public class XMLWriter extends FilterWriter {
+  private static final char [] HEXADECIMAL_DIGITS = "0123456789ABCDEF".toCharArray();
+
   private Stack<String> elements = new Stack<String>();
   private boolean emptyElement;
   private boolean elementWithText;
+  private char [] buffer = new char [8192];
+  private int     bufferLength;
 
   /**
    * Creates a writer in the given output stream encoded in UTF-8.
    */
   public XMLWriter(OutputStream out) throws IOException {
     super(new OutputStreamWriter(out, "UTF-8"));
-    this.out.write("<?xml version='1.0'?>\n");
+    appendString("<?xml version='1.0'?>\n");
+  }
+
+  /**
+   * Creates a writer in the given writer, without XML declaration.
+   * This constructor may be used by subclasses which write elements in an other format.
+   */
+  protected XMLWriter(Writer out) {
+    super(out);
   }
 
   /**
@@ -49,11 +65,12 @@ public class XMLWriter extends FilterWriter {
   public void writeStartElement(String element) throws IOException {
     if (this.elements.size() > 0) {
       if (this.emptyElement) {
-        this.out.write(">");
+        appendChar('>');
       }
       writeIndentation();
     }
-    this.out.write("<" + element);
+    appendChar('<');
+    appendString(element);
     this.elements.push(element);
     this.emptyElement = true;
     this.elementWithText = false;
@@ -65,12 +82,14 @@ public class XMLWriter extends FilterWriter {
   public void writeEndElement() throws IOException {
     String element = this.elements.pop();
     if (this.emptyElement) {
-      this.out.write("/>");
+      appendString("/>");
     } else {
       if (!this.elementWithText) {
         writeIndentation();
       }
-      this.out.write("</" + element + ">");
+      appendString("</");
+      appendString(element);
+      appendChar('>');
     }
     this.emptyElement = false;
     this.elementWithText = false;
@@ -80,9 +99,9 @@ public class XMLWriter extends FilterWriter {
    * Adds spaces according to the current depth of XML tree.
    */
   private void writeIndentation() throws IOException {
-    this.out.write("\n");
+    appendChar('\n');
     for (int i = 0; i < this.elements.size(); i++) {
-      this.out.write("  ");
+      appendString("  ");
     }
   }
 
@@ -91,7 +110,9 @@ public class XMLWriter extends FilterWriter {
    * in the tag of the last started element.
    */
   public void writeAttribute(String name, String value) throws IOException {
-    this.out.write(" " + name + "='" + replaceByEntities(value) + "'");
+    appendAttributeName(name);
+    appendWithEntities(value);
+    appendChar('\'');
   }
 
   /**
@@ -110,7 +131,9 @@ public class XMLWriter extends FilterWriter {
    * in the tag of the last started element.
    */
   public void writeIntegerAttribute(String name, int value) throws IOException {
-    writeAttribute(name, String.valueOf(value));
+    appendAttributeName(name);
+    appendLong(value);
+    appendChar('\'');
   }
 
   /**
@@ -119,7 +142,7 @@ public class XMLWriter extends FilterWriter {
    */
   public void writeIntegerAttribute(String name, int value, int defaultValue) throws IOException {
     if (value != defaultValue) {
-      writeAttribute(name, String.valueOf(value));
+      writeIntegerAttribute(name, value);
     }
   }
 
@@ -128,7 +151,9 @@ public class XMLWriter extends FilterWriter {
    * in the tag of the last started element.
    */
   public void writeLongAttribute(String name, long value) throws IOException {
-    writeAttribute(name, String.valueOf(value));
+    appendAttributeName(name);
+    appendLong(value);
+    appendChar('\'');
   }
 
   /**
@@ -137,7 +162,7 @@ public class XMLWriter extends FilterWriter {
    */
   public void writeLongAttribute(String name, Long value) throws IOException {
     if (value != null) {
-      writeAttribute(name, value.toString());
+      writeLongAttribute(name, value.longValue());
     }
   }
 
@@ -146,7 +171,9 @@ public class XMLWriter extends FilterWriter {
    * in the tag of the last started element.
    */
   public void writeFloatAttribute(String name, float value) throws IOException {
-    writeAttribute(name, String.valueOf(value));
+    appendAttributeName(name);
+    appendFloat(value);
+    appendChar('\'');
   }
 
   /**
@@ -165,7 +192,7 @@ public class XMLWriter extends FilterWriter {
    */
   public void writeFloatAttribute(String name, Float value) throws IOException {
     if (value != null) {
-      writeAttribute(name, value.toString());
+      writeFloatAttribute(name, value.floatValue());
     }
   }
 
@@ -195,7 +222,11 @@ public class XMLWriter extends FilterWriter {
    */
   public void writeColorAttribute(String name, Integer color) throws IOException {
     if (color != null) {
-      writeAttribute(name, String.format("%08X", color));
+      appendAttributeName(name);
+      for (int shift = 28; shift >= 0; shift -= 4) {
+        appendChar(HEXADECIMAL_DIGITS [(color >>> shift) & 0xF]);
+      }
+      appendChar('\'');
     }
   }
 
@@ -204,18 +235,141 @@ public class XMLWriter extends FilterWriter {
    */
   public void writeText(String text) throws IOException {
     if (this.emptyElement) {
-      this.out.write(">");
+      appendChar('>');
       this.emptyElement = false;
       this.elementWithText = true;
     }
-    super.out.write(replaceByEntities(text));
+    appendWithEntities(text);
+  }
+
+  /**
+   * Appends the given attribute name and the opening quote of its value to the buffer.
+   */
+  private void appendAttributeName(String name) throws IOException {
+    appendChar(' ');
+    appendString(name);
+    appendString("='");
+  }
+
+  /**
+   * Appends the given string to the buffer with &amp;, &lt;, &apos;, &quot; and feed line characters
+   * replaced by their matching entities.
+   */
+  private void appendWithEntities(String s) throws IOException {
+    int start = 0;
+    for (int i = 0, length = s.length(); i < length; i++) {
+      String entity;
+      switch (s.charAt(i)) {
+        case '&'  : entity = "&amp;"; break;
+        case '<'  : entity = "&lt;"; break;
+        case '\'' : entity = "&apos;"; break;
+        case '"'  : entity = "&quot;"; break;
+        case '\n' : entity = "&#10;"; break;
+        default   : continue;
+      }
+      appendString(s, start, i);
+      appendString(entity);
+      start = i + 1;
+    }
+    appendString(s, start, s.length());
+  }
+
+  /**
+   * Appends the decimal digits of the given <code>value</code> to the buffer.
+   */
+  private void appendLong(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      appendString(String.valueOf(value));
+    } else {
+      if (value < 0) {
+        appendChar('-');
+        value = -value;
+      }
+      if (this.bufferLength + 19 > this.buffer.length) {
+        flushBuffer();
+      }
+      int digitCount = 1;
+      for (long power = 10; digitCount < 19 && value >= power; power *= 10) {
+        digitCount++;
+      }
+      for (int i = this.bufferLength + digitCount - 1; i >= this.bufferLength; i--) {
+        this.buffer [i] = (char)('0' + value % 10);
+        value /= 10;
+      }
+      this.bufferLength += digitCount;
+    }
+  }
+
+  /**
+   * Appends the given float <code>value</code> to the buffer as it would be
+   * returned by <code>Float.toString</code>.
+   */
+  private void appendFloat(float value) throws IOException {
+    // Format integer values smaller than 10^7 without conversion to string
+    // since Float.toString returns their digits followed by .0 
+    if (value > -1E7f && value < 1E7f
+        && value == (int)value
+        && Float.floatToIntBits(value) != 0x80000000) {
+      appendLong((int)value);
+      appendString(".0");
+    } else {
+      appendString(Float.toString(value));
+    }
+  }
+
+  private void appendChar(char c) throws IOException {
+    if (this.bufferLength == this.buffer.length) {
+      flushBuffer();
+    }
+    this.buffer [this.bufferLength++] = c;
+  }
+
+  private void appendString(String s) throws IOException {
+    appendString(s, 0, s.length());
+  }
+
+  /**
+   * Appends the characters of the given string between <code>start</code> and <code>end</code>.
+   */
+  private void appendString(String s, int start, int end) throws IOException {
+    int length = end - start;
+    if (this.bufferLength + length > this.buffer.length) {
+      flushBuffer();
+      if (length > this.buffer.length) {
+        this.out.write(s, start, length);
+        return;
+      }
+    }
+    s.getChars(start, end, this.buffer, this.bufferLength);
+    this.bufferLength += length;
+  }
+
+  /**
+   * Writes buffered characters in the filtered writer.
+   */
+  private void flushBuffer() throws IOException {
+    if (this.bufferLength > 0) {
+      this.out.write(this.buffer, 0, this.bufferLength);
+      this.bufferLength = 0;
+    }
+  }
+
+  /**
+   * Writes buffered characters and flushes the filtered writer.
+   */
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    super.flush();
   }
 
   /**
-   * Returns the string in parameter with &amp;, &lt;, &apos;, &quot; and feed line characters replaced by their matching entities.
+   * Writes buffered characters and closes the filtered writer.
    */
-  private static String replaceByEntities(String s) {
-    return s.replace("&", "&amp;").replace("<", "&lt;").replace("'", "&apos;").replace("\"", "&quot;").replace("\n", "&#10;");
+  @Override
+  public void close() throws IOException {
+    flushBuffer();
+    super.close();
   }
 
   /**
@@ -238,4 +392,4 @@ public class XMLWriter extends FilterWriter {
   public void write(String str, int offset, int length) throws IOException {
     writeText(str.substring(offset, offset + length));
   }
-}
\ No newline at end of file
+}
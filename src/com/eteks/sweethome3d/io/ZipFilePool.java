@@ -0,0 +1,191 @@
+/*
+ * ZipFilePool.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+/**
+ * A pool of opened zip files shared by the contents of the homes read lazily.
+ * Each zip file is opened once, counts the handles acquired on it, and once no handle
+ * uses it anymore, it's kept open until the count of opened files exceeds the maximum
+ * of the pool, the least recently used files being closed first.
+ * The maximum count of files kept open is equal to 64 by default and may be changed
+ * with the <code>com.eteks.sweethome3d.io.maxOpenZipFiles</code> system property.
+ * @author Emmanuel Puybaret
+ */
+class ZipFilePool {
+  private static ZipFilePool instance;
+
+  private final int                      maxOpenFileCount;
+  private final Map<File, ZipFileHandle> handles;
+  private final Set<ZipFileHandle>       idleHandles;
+  private int                            openFileCount;
+
+  private ZipFilePool(int maxOpenFileCount) {
+    this.maxOpenFileCount = maxOpenFileCount;
+    this.handles = new HashMap<File, ZipFileHandle>();
+    this.idleHandles = new LinkedHashSet<ZipFileHandle>();
+  }
+
+  /**
+   * Returns an instance of this singleton.
+   */
+  public static synchronized ZipFilePool getInstance() {
+    if (instance == null) {
+      int maxOpenFileCount = 64;
+      try {
+        String maxOpenFiles = System.getProperty("com.eteks.sweethome3d.io.maxOpenZipFiles");
+        if (maxOpenFiles != null) {
+          maxOpenFileCount = Math.max(1, Integer.parseInt(maxOpenFiles));
+        }
+      } catch (NumberFormatException ex) {
+        // Keep default value
+      } catch (SecurityException ex) {
+        // Keep default value
+      }
+      instance = new ZipFilePool(maxOpenFileCount);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns a handle on the given zip file, opening it if it's not opened yet
+   * or if it was modified since it was opened.
+   * The returned handle must be released once it's not used anymore.
+   */
+  public synchronized ZipFileHandle acquire(File file) throws IOException {
+    file = file.getAbsoluteFile();
+    ZipFileHandle handle = this.handles.get(file);
+    if (handle != null
+        && (handle.length != file.length()
+            || handle.lastModified != file.lastModified())) {
+      // Don't share anymore a file modified since it was opened
+      this.handles.remove(file);
+      handle.obsolete = true;
+      if (handle.referenceCount == 0) {
+        this.idleHandles.remove(handle);
+        close(handle);
+      }
+      handle = null;
+    }
+    if (handle == null) {
+      closeIdleHandles(this.maxOpenFileCount - 1);
+      handle = new ZipFileHandle(file);
+      this.handles.put(file, handle);
+      this.openFileCount++;
+    }
+    if (handle.referenceCount++ == 0) {
+      this.idleHandles.remove(handle);
+    }
+    return handle;
+  }
+
+  /**
+   * Decrements the reference count of the given handle and keeps its file open
+   * if it can be reused.
+   */
+  private synchronized void release(ZipFileHandle handle) {
+    if (--handle.referenceCount == 0) {
+      if (handle.obsolete) {
+        close(handle);
+      } else {
+        this.idleHandles.add(handle);
+        closeIdleHandles(this.maxOpenFileCount);
+      }
+    }
+  }
+
+  /**
+   * Closes the least recently used idle files until the count of opened files
+   * is smaller or equal to <code>maxOpenFileCount</code>.
+   */
+  private void closeIdleHandles(int maxOpenFileCount) {
+    for (Iterator<ZipFileHandle> it = this.idleHandles.iterator();
+         it.hasNext() && this.openFileCount > maxOpenFileCount; ) {
+      ZipFileHandle handle = it.next();
+      it.remove();
+      this.handles.remove(handle.file);
+      close(handle);
+    }
+  }
+
+  private void close(ZipFileHandle handle) {
+    this.openFileCount--;
+    try {
+      handle.zipFile.close();
+    } catch (IOException ex) {
+      // Ignore close exception
+    }
+  }
+
+  /**
+   * Closes the files of this pool that aren't used anymore.
+   */
+  public synchronized void closeIdleFiles() {
+    closeIdleHandles(0);
+  }
+
+  /**
+   * Returns the count of files currently opened by this pool.
+   */
+  public synchronized int getOpenFileCount() {
+    return this.openFileCount;
+  }
+
+  /**
+   * A reference on a zip file opened by this pool.
+   */
+  class ZipFileHandle {
+    private final File    file;
+    private final long    length;
+    private final long    lastModified;
+    private final ZipFile zipFile;
+    private int           referenceCount;
+    private boolean       obsolete;
+
+    private ZipFileHandle(File file) throws IOException {
+      this.file = file;
+      this.length = file.length();
+      this.lastModified = file.lastModified();
+      this.zipFile = new ZipFile(file);
+    }
+
+    /**
+     * Returns the zip file of this handle, available until this handle is released.
+     */
+    public ZipFile getZipFile() {
+      return this.zipFile;
+    }
+
+    /**
+     * Releases this handle.
+     */
+    public void release() {
+      ZipFilePool.this.release(this);
+    }
+  }
+}
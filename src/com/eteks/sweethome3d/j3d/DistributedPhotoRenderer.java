@@ -0,0 +1,666 @@
+/*
+ * DistributedPhotoRenderer.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.eteks.sweethome3d.model.Camera;
+import com.eteks.sweethome3d.model.Home;
+
+/**
+ * A renderer able to dispatch the rendering of the buckets of a photo among several workers,
+ * running by default in other local Java processes.
+ * The home is serialized once at construction, then each worker builds its own scene
+ * from it with a default {@link PhotoRenderer}. As the content of the serialized home
+ * is referenced by URLs, workers must be able to read them, like local processes do. The buckets of an image are
+ * distributed on demand to the workers, and the buckets assigned to a worker that fails
+ * are rendered again by the other ones.
+ * @author Emmanuel Puybaret
+ */
+public class DistributedPhotoRenderer {
+  /**
+   * An observer notified of the pixels of each rendered tile.
+   */
+  public interface TilesObserver {
+    /**
+     * Called once the tile at (<code>x</code>, <code>y</code>) is rendered,
+     * with its ARGB <code>pixels</code> stored row by row.
+     * Caution : this method may be called from different threads at the same time.
+     */
+    public abstract void tileRendered(int x, int y, int width, int height, int [] pixels);
+  }
+
+  /**
+   * A worker able to render the buckets of a home scene.
+   */
+  public interface Worker {
+    /**
+     * Builds the scene to render from the given serialized home.
+     */
+    public abstract void setScene(byte [] serializedHome, PhotoRenderer.Quality quality) throws IOException;
+
+    /**
+     * Renders the buckets of an image of the given size at the given <code>camera</code> location.
+     * <code>bucketsCoordinates</code> contains the column and row indices of each bucket to render.
+     */
+    public abstract void render(int width, int height, Camera camera, int [] bucketsCoordinates,
+                                TilesObserver tilesObserver) throws IOException;
+
+    /**
+     * Stops this worker and releases its resources.
+     */
+    public abstract void close();
+  }
+
+  /**
+   * A factory of workers, used as the transport to the machines running them.
+   */
+  public interface WorkerFactory {
+    public abstract Worker createWorker() throws IOException;
+  }
+
+  private static final int JOBS_PER_WORKER = 4;
+
+  private final byte []               serializedHome;
+  private final PhotoRenderer.Quality quality;
+  private final WorkerFactory         workerFactory;
+  private final Worker []             workers;
+  private volatile boolean            stopped;
+  private Thread []                   renderingThreads;
+
+  /**
+   * Creates a renderer of the given <code>home</code> dispatching its work among
+   * <code>workersCount</code> local Java processes.
+   * @throws IOException if home couldn't be serialized
+   */
+  public DistributedPhotoRenderer(Home home,
+                                  PhotoRenderer.Quality quality,
+                                  int workersCount) throws IOException {
+    this(home, quality, new LocalProcessWorkerFactory(), workersCount);
+  }
+
+  /**
+   * Creates a renderer of the given <code>home</code> dispatching its work among
+   * <code>workersCount</code> workers created by <code>workerFactory</code>.
+   * @throws IOException if home couldn't be serialized
+   */
+  public DistributedPhotoRenderer(Home home,
+                                  PhotoRenderer.Quality quality,
+                                  WorkerFactory workerFactory,
+                                  int workersCount) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ObjectOutputStream objectOut = new ObjectOutputStream(out);
+    objectOut.writeObject(home);
+    objectOut.close();
+    this.serializedHome = out.toByteArray();
+    this.quality = quality;
+    this.workerFactory = workerFactory;
+    this.workers = new Worker [Math.max(1, workersCount)];
+  }
+
+  /**
+   * Renders home in <code>image</code> at the given <code>camera</code> location and image size.
+   * The workers that weren't created yet or that failed during a previous rendering are created
+   * at the beginning of this method.
+   * @throws IOException if no worker could render the image
+   */
+  public void render(final BufferedImage image,
+                     final Camera camera,
+                     final ImageObserver observer) throws IOException {
+    this.stopped = false;
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    int bucketsCountX = (width + PhotoRenderer.BUCKET_SIZE - 1) / PhotoRenderer.BUCKET_SIZE;
+    int bucketsCountY = (height + PhotoRenderer.BUCKET_SIZE - 1) / PhotoRenderer.BUCKET_SIZE;
+    // Split buckets in jobs ordered from the center of the image
+    int [] bucketSequence = getBucketSequence(bucketsCountX, bucketsCountY);
+    int bucketsCount = bucketSequence.length / 2;
+    int bucketsPerJob = Math.max(1, bucketsCount / (this.workers.length * JOBS_PER_WORKER));
+    final LinkedList<int []> pendingJobs = new LinkedList<int []>();
+    for (int i = 0; i < bucketsCount; i += bucketsPerJob) {
+      int [] job = new int [Math.min(bucketsPerJob, bucketsCount - i) * 2];
+      System.arraycopy(bucketSequence, i * 2, job, 0, job.length);
+      pendingJobs.add(job);
+    }
+    final RenderingState state = new RenderingState(bucketsCountX, bucketsCountY, bucketsCount);
+
+    final TilesObserver tilesObserver = new TilesObserver() {
+        public void tileRendered(int x, int y, int tileWidth, int tileHeight, int [] pixels) {
+          if (state.setBucketRendered(x / PhotoRenderer.BUCKET_SIZE, y / PhotoRenderer.BUCKET_SIZE)) {
+            synchronized (image) {
+              image.setRGB(x, y, tileWidth, tileHeight, pixels, 0, tileWidth);
+            }
+            notifyObserver(image, observer, ImageObserver.SOMEBITS, x, y, tileWidth, tileHeight);
+          }
+        }
+      };
+
+    final List<IOException> workerExceptions = new ArrayList<IOException>();
+    Thread [] renderingThreads = new Thread [this.workers.length];
+    for (int i = 0; i < renderingThreads.length; i++) {
+      final int workerIndex = i;
+      renderingThreads [i] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              renderJobs(workerIndex, width, height, camera, pendingJobs, state, tilesObserver);
+            } catch (IOException ex) {
+              synchronized (workerExceptions) {
+                workerExceptions.add(ex);
+              }
+            }
+          }
+        };
+    }
+    this.renderingThreads = renderingThreads;
+    for (Thread renderingThread : renderingThreads) {
+      renderingThread.start();
+    }
+    try {
+      for (Thread renderingThread : renderingThreads) {
+        renderingThread.join();
+      }
+    } catch (InterruptedException ex) {
+      stop();
+      return;
+    } finally {
+      this.renderingThreads = null;
+    }
+
+    if (!this.stopped) {
+      if (!state.isImageRendered()) {
+        IOException ex = new IOException("No worker able to render " + state.getRemainingBucketsCount() + " buckets");
+        if (!workerExceptions.isEmpty()) {
+          ex.initCause(workerExceptions.get(0));
+        }
+        throw ex;
+      }
+      notifyObserver(image, observer, ImageObserver.FRAMEBITS, 0, 0, width, height);
+    }
+  }
+
+  /**
+   * Returns the coordinates of the buckets of an image sorted from the closest one to its center.
+   */
+  private int [] getBucketSequence(final int bucketsCountX, final int bucketsCountY) {
+    Integer [] bucketIndices = new Integer [bucketsCountX * bucketsCountY];
+    for (int i = 0; i < bucketIndices.length; i++) {
+      bucketIndices [i] = i;
+    }
+    Arrays.sort(bucketIndices, new Comparator<Integer>() {
+        public int compare(Integer index1, Integer index2) {
+          return Float.compare(getDistanceToCenter(index1), getDistanceToCenter(index2));
+        }
+
+        private float getDistanceToCenter(int index) {
+          float dx = index % bucketsCountX - (bucketsCountX - 1) / 2f;
+          float dy = index / bucketsCountX - (bucketsCountY - 1) / 2f;
+          return dx * dx + dy * dy;
+        }
+      });
+    int [] bucketSequence = new int [bucketIndices.length * 2];
+    for (int i = 0; i < bucketIndices.length; i++) {
+      bucketSequence [i * 2] = bucketIndices [i] % bucketsCountX;
+      bucketSequence [i * 2 + 1] = bucketIndices [i] / bucketsCountX;
+    }
+    return bucketSequence;
+  }
+
+  /**
+   * Renders pending jobs with the worker at the given index until all the buckets are rendered.
+   */
+  private void renderJobs(int workerIndex, int width, int height, Camera camera,
+                          LinkedList<int []> pendingJobs, RenderingState state,
+                          TilesObserver tilesObserver) throws IOException {
+    Worker worker;
+    synchronized (this.workers) {
+      worker = this.workers [workerIndex];
+    }
+    try {
+      if (worker == null) {
+        worker = this.workerFactory.createWorker();
+        synchronized (this.workers) {
+          this.workers [workerIndex] = worker;
+        }
+        worker.setScene(this.serializedHome, this.quality);
+      }
+      while (!this.stopped) {
+        int [] job;
+        synchronized (pendingJobs) {
+          while (pendingJobs.isEmpty()) {
+            if (state.getJobsInProgressCount() == 0 || this.stopped) {
+              // All jobs are done
+              return;
+            }
+            // Wait jobs of other workers in case they fail
+            try {
+              pendingJobs.wait();
+            } catch (InterruptedException ex) {
+              return;
+            }
+          }
+          job = pendingJobs.removeFirst();
+          state.jobStarted();
+        }
+        try {
+          worker.render(width, height, camera, job, tilesObserver);
+          if (!this.stopped
+              && state.getRemainingBuckets(job).length > 0) {
+            throw new IOException("Worker didn't render all its buckets");
+          }
+        } finally {
+          synchronized (pendingJobs) {
+            // Give back to other workers the buckets not rendered yet
+            int [] remainingBuckets = state.getRemainingBuckets(job);
+            if (remainingBuckets.length > 0) {
+              pendingJobs.addFirst(remainingBuckets);
+            }
+            state.jobEnded();
+            pendingJobs.notifyAll();
+          }
+        }
+      }
+    } catch (IOException ex) {
+      discardWorker(workerIndex, worker);
+      throw ex;
+    } catch (RuntimeException ex) {
+      discardWorker(workerIndex, worker);
+      throw ex;
+    }
+  }
+
+  /**
+   * Closes a failing worker and removes it from the workers of this renderer.
+   */
+  private void discardWorker(int workerIndex, Worker worker) {
+    if (worker != null) {
+      worker.close();
+    }
+    synchronized (this.workers) {
+      if (this.workers [workerIndex] == worker) {
+        this.workers [workerIndex] = null;
+      }
+    }
+  }
+
+  private static void notifyObserver(final BufferedImage image, final ImageObserver observer,
+                                     final int flags, final int x, final int y, final int width, final int height) {
+    if (observer != null) {
+      EventQueue.invokeLater(new Runnable() {
+          public void run() {
+            observer.imageUpdate(image, flags | ImageObserver.WIDTH | ImageObserver.HEIGHT | ImageObserver.PROPERTIES,
+                x, y, width, height);
+          }
+        });
+    }
+  }
+
+  /**
+   * Stops the rendering process. The workers in progress are closed.
+   */
+  public void stop() {
+    this.stopped = true;
+    closeWorkers();
+    Thread [] renderingThreads = this.renderingThreads;
+    if (renderingThreads != null) {
+      for (Thread renderingThread : renderingThreads) {
+        renderingThread.interrupt();
+      }
+    }
+  }
+
+  /**
+   * Closes the workers used by this renderer.
+   */
+  public void dispose() {
+    closeWorkers();
+  }
+
+  private void closeWorkers() {
+    synchronized (this.workers) {
+      for (int i = 0; i < this.workers.length; i++) {
+        if (this.workers [i] != null) {
+          this.workers [i].close();
+          this.workers [i] = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * The buckets rendered during a call to <code>render</code>.
+   */
+  private static class RenderingState {
+    private final int        bucketsCountX;
+    private final boolean [] renderedBuckets;
+    private int              remainingBucketsCount;
+    private int              jobsInProgressCount;
+
+    public RenderingState(int bucketsCountX, int bucketsCountY, int bucketsCount) {
+      this.bucketsCountX = bucketsCountX;
+      this.renderedBuckets = new boolean [bucketsCountX * bucketsCountY];
+      this.remainingBucketsCount = bucketsCount;
+    }
+
+    /**
+     * Marks the given bucket as rendered and returns <code>true</code> if it wasn't rendered yet.
+     */
+    public synchronized boolean setBucketRendered(int bucketX, int bucketY) {
+      int index = bucketY * this.bucketsCountX + bucketX;
+      if (this.renderedBuckets [index]) {
+        return false;
+      } else {
+        this.renderedBuckets [index] = true;
+        this.remainingBucketsCount--;
+        return true;
+      }
+    }
+
+    /**
+     * Returns the coordinates of the buckets of a job that weren't rendered.
+     */
+    public synchronized int [] getRemainingBuckets(int [] job) {
+      int [] remainingBuckets = new int [job.length];
+      int length = 0;
+      for (int i = 0; i < job.length; i += 2) {
+        if (!this.renderedBuckets [job [i + 1] * this.bucketsCountX + job [i]]) {
+          remainingBuckets [length++] = job [i];
+          remainingBuckets [length++] = job [i + 1];
+        }
+      }
+      int [] buckets = new int [length];
+      System.arraycopy(remainingBuckets, 0, buckets, 0, length);
+      return buckets;
+    }
+
+    public synchronized boolean isImageRendered() {
+      return this.remainingBucketsCount == 0;
+    }
+
+    public synchronized int getRemainingBucketsCount() {
+      return this.remainingBucketsCount;
+    }
+
+    public synchronized void jobStarted() {
+      this.jobsInProgressCount++;
+    }
+
+    public synchronized void jobEnded() {
+      this.jobsInProgressCount--;
+    }
+
+    public synchronized int getJobsInProgressCount() {
+      return this.jobsInProgressCount;
+    }
+  }
+
+  private static final int SCENE_REQUEST  = 1;
+  private static final int RENDER_REQUEST = 2;
+  private static final int QUIT_REQUEST   = 3;
+  private static final int READY_REPLY    = 1;
+  private static final int TILE_REPLY     = 2;
+  private static final int END_REPLY      = 3;
+  private static final int ERROR_REPLY    = 4;
+
+  /**
+   * A worker communicating with a remote worker through streams, for example the standard
+   * input and output of a process running the <code>main</code> method of this class,
+   * or the streams of a socket.
+   */
+  public static class StreamWorker implements Worker {
+    private final DataInputStream  in;
+    private final DataOutputStream out;
+
+    public StreamWorker(InputStream in, OutputStream out) {
+      this.in = new DataInputStream(new BufferedInputStream(in));
+      this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public void setScene(byte [] serializedHome, PhotoRenderer.Quality quality) throws IOException {
+      this.out.writeInt(SCENE_REQUEST);
+      this.out.writeUTF(quality.name());
+      this.out.writeInt(serializedHome.length);
+      this.out.write(serializedHome);
+      this.out.flush();
+      readReply(READY_REPLY, null);
+    }
+
+    public void render(int width, int height, Camera camera, int [] bucketsCoordinates,
+                       TilesObserver tilesObserver) throws IOException {
+      ByteArrayOutputStream cameraOut = new ByteArrayOutputStream();
+      ObjectOutputStream objectOut = new ObjectOutputStream(cameraOut);
+      objectOut.writeObject(camera);
+      objectOut.close();
+      this.out.writeInt(RENDER_REQUEST);
+      this.out.writeInt(width);
+      this.out.writeInt(height);
+      this.out.writeInt(cameraOut.size());
+      cameraOut.writeTo(this.out);
+      this.out.writeInt(bucketsCoordinates.length);
+      for (int coordinate : bucketsCoordinates) {
+        this.out.writeInt(coordinate);
+      }
+      this.out.flush();
+      readReply(END_REPLY, tilesObserver);
+    }
+
+    private void readReply(int expectedReply, TilesObserver tilesObserver) throws IOException {
+      while (true) {
+        int reply = this.in.readInt();
+        if (reply == expectedReply) {
+          return;
+        } else if (reply == TILE_REPLY && tilesObserver != null) {
+          int x = this.in.readInt();
+          int y = this.in.readInt();
+          int width = this.in.readInt();
+          int height = this.in.readInt();
+          int [] pixels = new int [width * height];
+          for (int i = 0; i < pixels.length; i++) {
+            pixels [i] = this.in.readInt();
+          }
+          tilesObserver.tileRendered(x, y, width, height, pixels);
+        } else if (reply == ERROR_REPLY) {
+          throw new IOException(this.in.readUTF());
+        } else {
+          throw new IOException("Unexpected reply " + reply);
+        }
+      }
+    }
+
+    public void close() {
+      try {
+        this.out.writeInt(QUIT_REQUEST);
+        this.out.close();
+      } catch (IOException ex) {
+        // Ignore close errors of a worker that may have failed
+      }
+      try {
+        this.in.close();
+      } catch (IOException ex) {
+      }
+    }
+  }
+
+  /**
+   * A factory of workers running in local Java processes started with the class path
+   * of the current process. The maximum memory of each process may be set
+   * with <code>com.eteks.sweethome3d.j3d.DistributedPhotoRenderer.workerMaximumMemory</code> System property
+   * (for example <code>4g</code>).
+   */
+  public static class LocalProcessWorkerFactory implements WorkerFactory {
+    public Worker createWorker() throws IOException {
+      List<String> command = new ArrayList<String>();
+      command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+      String maximumMemory = System.getProperty(DistributedPhotoRenderer.class.getName() + ".workerMaximumMemory");
+      if (maximumMemory != null) {
+        command.add("-Xmx" + maximumMemory);
+      }
+      // Transmit properties used by Java 3D and Sunflow export
+      for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+        String name = (String)property.getKey();
+        if (name.startsWith("j3d.")
+            || name.startsWith("com.eteks.sweethome3d.")
+            || name.equals("java.library.path")
+            || name.equals("java.awt.headless")) {
+          command.add("-D" + name + "=" + property.getValue());
+        }
+      }
+      command.add("-classpath");
+      command.add(System.getProperty("java.class.path"));
+      command.add(DistributedPhotoRenderer.class.getName());
+      final Process process = new ProcessBuilder(command).start();
+      // Consume error stream to avoid blocking the process
+      final InputStream errorStream = process.getErrorStream();
+      Thread errorStreamReader = new Thread() {
+          @Override
+          public void run() {
+            try {
+              byte [] buffer = new byte [1024];
+              while (errorStream.read(buffer) != -1) {
+              }
+            } catch (IOException ex) {
+              // Process ended
+            }
+          }
+        };
+      errorStreamReader.setDaemon(true);
+      errorStreamReader.start();
+      return new StreamWorker(process.getInputStream(), process.getOutputStream()) {
+          @Override
+          public void close() {
+            super.close();
+            process.destroy();
+          }
+        };
+    }
+  }
+
+  /**
+   * Runs a worker reading requests on its standard input and writing replies
+   * on its standard output.
+   */
+  public static void main(String [] args) throws IOException {
+    OutputStream out = System.out;
+    // Keep standard output for replies
+    System.setOut(System.err);
+    runWorker(System.in, out);
+    System.exit(0);
+  }
+
+  /**
+   * Reads worker requests from <code>in</code> and writes their replies
+   * in <code>out</code> until a quit request is received.
+   */
+  static void runWorker(InputStream in, OutputStream out) throws IOException {
+    DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+    final DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+    PhotoRenderer renderer = null;
+    try {
+      while (true) {
+        int request = dataIn.readInt();
+        try {
+          if (request == SCENE_REQUEST) {
+            PhotoRenderer.Quality quality = PhotoRenderer.Quality.valueOf(dataIn.readUTF());
+            byte [] serializedHome = new byte [dataIn.readInt()];
+            dataIn.readFully(serializedHome);
+            Home home = (Home)new ObjectInputStream(new ByteArrayInputStream(serializedHome)).readObject();
+            if (renderer != null) {
+              renderer.dispose();
+            }
+            renderer = new PhotoRenderer(home, quality);
+            dataOut.writeInt(READY_REPLY);
+          } else if (request == RENDER_REQUEST) {
+            int width = dataIn.readInt();
+            int height = dataIn.readInt();
+            byte [] serializedCamera = new byte [dataIn.readInt()];
+            dataIn.readFully(serializedCamera);
+            Camera camera = (Camera)new ObjectInputStream(new ByteArrayInputStream(serializedCamera)).readObject();
+            int [] bucketsCoordinates = new int [dataIn.readInt()];
+            for (int i = 0; i < bucketsCoordinates.length; i++) {
+              bucketsCoordinates [i] = dataIn.readInt();
+            }
+            if (renderer == null) {
+              throw new IllegalStateException("No scene");
+            }
+            final IOException [] writeException = {null};
+            renderer.render(width, height, camera, bucketsCoordinates, new TilesObserver() {
+                public void tileRendered(int x, int y, int tileWidth, int tileHeight, int [] pixels) {
+                  synchronized (dataOut) {
+                    try {
+                      dataOut.writeInt(TILE_REPLY);
+                      dataOut.writeInt(x);
+                      dataOut.writeInt(y);
+                      dataOut.writeInt(tileWidth);
+                      dataOut.writeInt(tileHeight);
+                      for (int pixel : pixels) {
+                        dataOut.writeInt(pixel);
+                      }
+                      dataOut.flush();
+                    } catch (IOException ex) {
+                      writeException [0] = ex;
+                    }
+                  }
+                }
+              });
+            if (writeException [0] != null) {
+              throw writeException [0];
+            }
+            dataOut.writeInt(END_REPLY);
+          } else if (request == QUIT_REQUEST) {
+            return;
+          } else {
+            throw new IllegalArgumentException("Unknown request " + request);
+          }
+        } catch (InterruptedIOException ex) {
+          throw ex;
+        } catch (Exception ex) {
+          dataOut.writeInt(ERROR_REPLY);
+          dataOut.writeUTF(String.valueOf(ex));
+        }
+        dataOut.flush();
+      }
+    } finally {
+      if (renderer != null) {
+        renderer.dispose();
+      }
+    }
+  }
+}
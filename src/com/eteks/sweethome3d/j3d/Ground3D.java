@@ -28,15 +28,19 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.imageio.ImageIO;
 import javax.media.j3d.Appearance;
 import javax.media.j3d.BranchGroup;
+import javax.media.j3d.Geometry;
 import javax.media.j3d.RenderingAttributes;
 import javax.media.j3d.Shape3D;
 import javax.media.j3d.TexCoordGeneration;
@@ -69,6 +73,8 @@ import com.sun.j3d.utils.geometry.NormalGenerator;
  */
 public class Ground3D extends Object3DBranch {
   private static final TextureAttributes MODULATE_TEXTURE_ATTRIBUTES = new TextureAttributes();
+  private static final float GROUND_CELL_SIZE          = 5000;
+  private static final int   MAX_GROUND_CELLS_PER_SIDE = 16;
 
   static {
     MODULATE_TEXTURE_ATTRIBUTES.setTextureMode(TextureAttributes.MODULATE);
@@ -82,6 +88,21 @@ public class Ground3D extends Object3DBranch {
   private Content   backgroundImageCache;
   private Dimension backgroundImageDimensionCache;
 
+  // Data computed at last ground update, reused when the items they depend on didn't change
+  private Boolean                     texturedGeometriesCache;
+  private Map<Object, ItemArea>       itemAreasCache = new HashMap<Object, ItemArea>();
+  private List<Area>                  groundRemovedAreasCache;
+  private Area                        groundRemovedAreaCache;
+  private Map<Level, LevelItemsAreas> levelItemsAreasCache = new HashMap<Level, LevelItemsAreas>();
+  private List<Object>                undergroundKeyCache;
+  private Area                        undergroundRemovedAreaCache;
+  private List<Geometry>              undergroundGeometriesCache;
+  private Area []                     areaRemovedFromGroundParts = new Area [2];
+  private Area                        areaRemovedFromGroundCache;
+  private Rectangle2D                 groundCellsBoundsCache;
+  private Geometry []                 groundCellGeometriesCache;
+  private Geometry                    outsideGroundGeometryCache;
+
   /**
    * Creates a 3D ground for the given <code>home</code>.
    */
@@ -246,65 +267,351 @@ public class Ground3D extends Object3DBranch {
             });
     }
 
-    Area areaRemovedFromGround = new Area();
+    boolean texturedGeometries = groundTexture != null;
+    if (this.texturedGeometriesCache == null
+        || this.texturedGeometriesCache != texturedGeometries) {
+      // Texture coordinates of all the geometries must be computed again
+      this.undergroundGeometriesCache = null;
+      this.groundCellsBoundsCache = null;
+      this.texturedGeometriesCache = texturedGeometries;
+    }
+
+    // Collect the areas of the rooms, the underground walls and furniture,
+    // reusing the areas of the items which didn't change since last update
+    Map<Object, ItemArea> itemAreas = new HashMap<Object, ItemArea>();
+    List<Area> groundRemovedAreas = new ArrayList<Area>();
     if (backgroundImageRectangle != null) {
-      areaRemovedFromGround.add(new Area(backgroundImageRectangle));
+      Area backgroundImageArea = getCachedItemArea(itemAreas, backgroundImageRectangle);
+      if (backgroundImageArea == null) {
+        backgroundImageArea = putItemArea(itemAreas, backgroundImageRectangle, new Area(backgroundImageRectangle));
+      }
+      groundRemovedAreas.add(backgroundImageArea);
     }
-    // Compute the union of the rooms, the underground walls and furniture areas
-    Map<Level, LevelAreas> undergroundLevelAreas = new HashMap<Level, LevelAreas>();
+    Map<Level, LevelItemsAreas> levelItemsAreas = new HashMap<Level, LevelItemsAreas>();
     for (Room room : home.getRooms()) {
       Level roomLevel = room.getLevel();
       if ((roomLevel == null || roomLevel.isViewable())
           && room.isFloorVisible()) {
         float [][] roomPoints = room.getPoints();
         if (roomPoints.length > 2) {
-          Area roomArea = new Area(getShape(roomPoints));
-          LevelAreas levelAreas = roomLevel != null && roomLevel.getElevation() < 0
-              ? getUndergroundAreas(undergroundLevelAreas, roomLevel)
+          Area roomArea = getCachedItemArea(itemAreas, room, (Object)roomPoints);
+          if (roomArea == null) {
+            roomArea = putItemArea(itemAreas, room, new Area(getShape(roomPoints)), (Object)roomPoints);
+          }
+          LevelItemsAreas itemsAreas = roomLevel != null && roomLevel.getElevation() < 0
+              ? getLevelItemsAreas(levelItemsAreas, roomLevel)
               : null;
           if (roomLevel == null
               || (roomLevel.getElevation() <= 0
                   && roomLevel.isViewableAndVisible())) {
-            areaRemovedFromGround.add(roomArea);
-            if (levelAreas != null) {
-              levelAreas.getRoomArea().add(roomArea);
+            groundRemovedAreas.add(roomArea);
+            if (itemsAreas != null) {
+              itemsAreas.getRoomAreas().add(roomArea);
             }
           }
-          if (levelAreas != null) {
-            levelAreas.getUndergroundArea().add(roomArea);
+          if (itemsAreas != null) {
+            itemsAreas.getUndergroundAreas().add(roomArea);
           }
         }
       }
     }
 
     // Search all items at negative levels that could dig the ground
-    updateUndergroundAreasDugByFurniture(undergroundLevelAreas, home.getFurniture());
+    updateUndergroundAreasDugByFurniture(levelItemsAreas, itemAreas, home.getFurniture());
 
     for (Wall wall : home.getWalls()) {
       Level wallLevel = wall.getLevel();
       if (wallLevel != null
           && wallLevel.isViewable()
           && wallLevel.getElevation() < 0) {
-        LevelAreas levelAreas = getUndergroundAreas(undergroundLevelAreas, wallLevel);
-        levelAreas.getWallArea().add(new Area(getShape(wall.getPoints())));
+        float [][] wallPoints = wall.getPoints();
+        Area wallArea = getCachedItemArea(itemAreas, wall, (Object)wallPoints);
+        if (wallArea == null) {
+          wallArea = putItemArea(itemAreas, wall, new Area(getShape(wallPoints)), (Object)wallPoints);
+        }
+        getLevelItemsAreas(levelItemsAreas, wallLevel).getWallAreas().add(wallArea);
       }
     }
-    // Consider that walls around a closed area define a hole
-    List<LevelAreas> undergroundAreas = new ArrayList<LevelAreas>(undergroundLevelAreas.values());
-    for (LevelAreas levelAreas : undergroundAreas) {
-      for (float [][] points : getPoints(levelAreas.getWallArea())) {
-        if (!new Room(points).isClockwise()) {
-          levelAreas.getUndergroundArea().add(new Area(getShape(points)));
-        }
+    this.itemAreasCache = itemAreas;
+
+    // Compute the union of the areas removed from ground if one of them changed
+    Area groundRemovedArea = this.groundRemovedAreaCache;
+    if (groundRemovedArea == null
+        || !containSameAreas(groundRemovedAreas, this.groundRemovedAreasCache)) {
+      groundRemovedArea = new Area();
+      for (Area area : groundRemovedAreas) {
+        groundRemovedArea.add(area);
       }
+      this.groundRemovedAreasCache = groundRemovedAreas;
+      this.groundRemovedAreaCache = groundRemovedArea;
     }
 
+    // Compute the union of the item areas of each underground level if one of them changed
+    List<LevelAreas> undergroundAreas = new ArrayList<LevelAreas>(levelItemsAreas.size());
+    Map<Level, LevelItemsAreas> updatedLevelItemsAreas = new HashMap<Level, LevelItemsAreas>();
+    for (LevelItemsAreas itemsAreas : levelItemsAreas.values()) {
+      LevelItemsAreas cachedItemsAreas = this.levelItemsAreasCache.get(itemsAreas.getLevel());
+      if (cachedItemsAreas != null
+          && containSameAreas(itemsAreas.getRoomAreas(), cachedItemsAreas.getRoomAreas())
+          && containSameAreas(itemsAreas.getUndergroundAreas(), cachedItemsAreas.getUndergroundAreas())
+          && containSameAreas(itemsAreas.getWallAreas(), cachedItemsAreas.getWallAreas())) {
+        itemsAreas = cachedItemsAreas;
+      } else {
+        updateLevelItemsAreasUnion(itemsAreas);
+      }
+      updatedLevelItemsAreas.put(itemsAreas.getLevel(), itemsAreas);
+      undergroundAreas.add(new LevelAreas(itemsAreas.getLevel(),
+          (Area)itemsAreas.getUndergroundArea().clone(), itemsAreas.getRoomArea()));
+    }
+    this.levelItemsAreasCache = updatedLevelItemsAreas;
+
     // Sort underground areas in the reverse order of level elevation
     Collections.sort(undergroundAreas, new Comparator<LevelAreas>() {
         public int compare(LevelAreas levelAreas1, LevelAreas levelAreas2) {
           return -Float.compare(levelAreas1.getLevel().getElevation(), levelAreas2.getLevel().getElevation());
         }
       });
+    // Compute underground geometries only if one of the levels or its items areas changed
+    List<Object> undergroundKey = new ArrayList<Object>(undergroundAreas.size() * 2);
+    for (LevelAreas levelAreas : undergroundAreas) {
+      undergroundKey.add(levelAreas.getLevel().getElevation());
+      undergroundKey.add(updatedLevelItemsAreas.get(levelAreas.getLevel()));
+    }
+    Area undergroundRemovedArea = this.undergroundRemovedAreaCache;
+    List<Geometry> undergroundGeometries = this.undergroundGeometriesCache;
+    if (undergroundGeometries == null
+        || !undergroundKey.equals(this.undergroundKeyCache)) {
+      undergroundRemovedArea = new Area();
+      undergroundGeometries = getUndergroundGeometries(undergroundAreas, undergroundRemovedArea, groundTexture);
+      this.undergroundKeyCache = undergroundKey;
+      this.undergroundRemovedAreaCache = undergroundRemovedArea;
+      this.undergroundGeometriesCache = undergroundGeometries;
+    }
+
+    Area areaRemovedFromGround = this.areaRemovedFromGroundCache;
+    if (areaRemovedFromGround == null
+        || groundRemovedArea != this.areaRemovedFromGroundParts [0]
+        || undergroundRemovedArea != this.areaRemovedFromGroundParts [1]) {
+      areaRemovedFromGround = new Area(groundRemovedArea);
+      areaRemovedFromGround.add(undergroundRemovedArea);
+      this.areaRemovedFromGroundParts = new Area [] {groundRemovedArea, undergroundRemovedArea};
+    }
+
+    List<Geometry> geometries = getGroundGeometries(areaRemovedFromGround, groundTexture);
+    geometries.addAll(undergroundGeometries);
+    this.areaRemovedFromGroundCache = areaRemovedFromGround;
+
+    // Add new geometries and remove old geometries
+    Set<Geometry> currentGeometries = new HashSet<Geometry>();
+    for (int i = 0; i < currentGeometriesCount; i++) {
+      currentGeometries.add(groundShape.getGeometry(i));
+    }
+    for (Geometry geometry : geometries) {
+      if (!currentGeometries.contains(geometry)) {
+        groundShape.addGeometry(geometry);
+      }
+    }
+    Set<Geometry> updatedGeometries = new HashSet<Geometry>(geometries);
+    for (int i = currentGeometriesCount - 1; i >= 0; i--) {
+      if (!updatedGeometries.contains(groundShape.getGeometry(i))) {
+        groundShape.removeGeometry(i);
+      }
+    }
+  }
+
+  /**
+   * Returns the geometries of the ground at level 0 outside of <code>areaRemovedFromGround</code>.
+   * The ground around removed area is split in cells, and only the cells that intersect
+   * the changes of the removed area since last call are computed again.
+   */
+  private List<Geometry> getGroundGeometries(Area areaRemovedFromGround, HomeTexture groundTexture) {
+    // Define ground surface
+    Rectangle2D groundBounds = new Rectangle2D.Float(this.originX, this.originY, this.width, this.depth);
+    Rectangle2D removedAreaBounds = areaRemovedFromGround.getBounds2D();
+    Rectangle2D cellsBounds = groundBounds;
+    if (!groundBounds.equals(removedAreaBounds)) {
+      if (areaRemovedFromGround.isEmpty()) {
+        removedAreaBounds = new Rectangle2D.Float(Math.max(-5E3f, this.originX), Math.max(-5E3f, this.originY), 0, 0);
+        removedAreaBounds.add(Math.min(5E3f, this.originX + this.width),
+            Math.min(5E3f, this.originY + this.depth));
+      } else {
+        removedAreaBounds.add(Math.max(removedAreaBounds.getMinX() - 5E3, this.originX),
+            Math.max(removedAreaBounds.getMinY() - 5E3, this.originY));
+        removedAreaBounds.add(Math.min(removedAreaBounds.getMaxX() + 5E3, this.originX + this.width),
+            Math.min(removedAreaBounds.getMaxY() + 5E3, this.originY + this.depth));
+      }
+      // Align cells bounds on cell size to keep the same cells while home bounds change a little
+      double xMin = Math.max(this.originX, Math.floor(removedAreaBounds.getMinX() / GROUND_CELL_SIZE) * GROUND_CELL_SIZE);
+      double yMin = Math.max(this.originY, Math.floor(removedAreaBounds.getMinY() / GROUND_CELL_SIZE) * GROUND_CELL_SIZE);
+      double xMax = Math.min(this.originX + this.width, Math.ceil(removedAreaBounds.getMaxX() / GROUND_CELL_SIZE) * GROUND_CELL_SIZE);
+      double yMax = Math.min(this.originY + this.depth, Math.ceil(removedAreaBounds.getMaxY() / GROUND_CELL_SIZE) * GROUND_CELL_SIZE);
+      cellsBounds = new Rectangle2D.Double(xMin, yMin, xMax - xMin, yMax - yMin);
+    }
+
+    int columnCount = Math.max(1, Math.min(MAX_GROUND_CELLS_PER_SIDE, (int)Math.ceil(cellsBounds.getWidth() / GROUND_CELL_SIZE)));
+    int rowCount = Math.max(1, Math.min(MAX_GROUND_CELLS_PER_SIDE, (int)Math.ceil(cellsBounds.getHeight() / GROUND_CELL_SIZE)));
+    double cellWidth = cellsBounds.getWidth() / columnCount;
+    double cellHeight = cellsBounds.getHeight() / rowCount;
+    boolean [] updatedCells = new boolean [columnCount * rowCount];
+    if (!cellsBounds.equals(this.groundCellsBoundsCache)) {
+      // Compute all the cells and the ground outside of cells
+      Arrays.fill(updatedCells, true);
+      this.groundCellGeometriesCache = new Geometry [updatedCells.length];
+      this.outsideGroundGeometryCache = null;
+      if (!cellsBounds.equals(groundBounds)) {
+        // Divide the ground at level 0 in two geometries to limit visual artifacts on large zone
+        this.outsideGroundGeometryCache = createAreaGeometry(groundTexture,
+            getOutsideGroundPoints(groundBounds, cellsBounds, columnCount, rowCount), 0);
+      }
+      this.groundCellsBoundsCache = cellsBounds;
+    } else if (areaRemovedFromGround != this.areaRemovedFromGroundCache) {
+      // Compute only the cells intersecting the parts of the removed area that changed
+      Area changedArea = new Area(this.areaRemovedFromGroundCache);
+      changedArea.exclusiveOr(areaRemovedFromGround);
+      for (float [][] points : getPoints(changedArea)) {
+        Rectangle2D changedBounds = getShape(points).getBounds2D();
+        int firstColumn = Math.max(0, (int)Math.floor((changedBounds.getMinX() - cellsBounds.getMinX()) / cellWidth));
+        int lastColumn = Math.min(columnCount - 1, (int)Math.floor((changedBounds.getMaxX() - cellsBounds.getMinX()) / cellWidth));
+        int firstRow = Math.max(0, (int)Math.floor((changedBounds.getMinY() - cellsBounds.getMinY()) / cellHeight));
+        int lastRow = Math.min(rowCount - 1, (int)Math.floor((changedBounds.getMaxY() - cellsBounds.getMinY()) / cellHeight));
+        for (int row = firstRow; row <= lastRow; row++) {
+          for (int column = firstColumn; column <= lastColumn; column++) {
+            updatedCells [row * columnCount + column] = true;
+          }
+        }
+      }
+    }
+
+    List<Geometry> geometries = new ArrayList<Geometry>();
+    if (this.outsideGroundGeometryCache != null) {
+      geometries.add(this.outsideGroundGeometryCache);
+    }
+    removedAreaBounds = areaRemovedFromGround.getBounds2D();
+    for (int row = 0, i = 0; row < rowCount; row++) {
+      for (int column = 0; column < columnCount; column++, i++) {
+        if (updatedCells [i]) {
+          double cellX = cellsBounds.getMinX() + column * cellWidth;
+          double cellY = cellsBounds.getMinY() + row * cellHeight;
+          Rectangle2D cellBounds = new Rectangle2D.Double(cellX, cellY,
+              column == columnCount - 1  ? cellsBounds.getMaxX() - cellX  : cellWidth,
+              row == rowCount - 1  ? cellsBounds.getMaxY() - cellY  : cellHeight);
+          Area cellArea = new Area(cellBounds);
+          if (removedAreaBounds.intersects(cellBounds)) {
+            cellArea.subtract(areaRemovedFromGround);
+          }
+          this.groundCellGeometriesCache [i] = createAreaGeometry(groundTexture, cellArea, 0);
+        }
+        if (this.groundCellGeometriesCache [i] != null) {
+          geometries.add(this.groundCellGeometriesCache [i]);
+        }
+      }
+    }
+    return geometries;
+  }
+
+  /**
+   * Returns the points of the rectangles around <code>cellsBounds</code> which cover the rest of the ground.
+   * The sides of these rectangles along the cells contain the corners of the cells
+   * to avoid cracks between the triangles of the cells and the ones of the rectangles.
+   */
+  private List<float [][]> getOutsideGroundPoints(Rectangle2D groundBounds, Rectangle2D cellsBounds,
+                                                  int columnCount, int rowCount) {
+    float [] cellsXs = new float [columnCount + 1];
+    for (int column = 0; column < columnCount; column++) {
+      cellsXs [column] = (float)(cellsBounds.getMinX() + column * (cellsBounds.getWidth() / columnCount));
+    }
+    cellsXs [columnCount] = (float)cellsBounds.getMaxX();
+    float [] cellsYs = new float [rowCount + 1];
+    for (int row = 0; row < rowCount; row++) {
+      cellsYs [row] = (float)(cellsBounds.getMinY() + row * (cellsBounds.getHeight() / rowCount));
+    }
+    cellsYs [rowCount] = (float)cellsBounds.getMaxY();
+    float groundMinX = (float)groundBounds.getMinX();
+    float groundMinY = (float)groundBounds.getMinY();
+    float groundMaxX = (float)groundBounds.getMaxX();
+    float groundMaxY = (float)groundBounds.getMaxY();
+    float cellsMinX = cellsXs [0];
+    float cellsMinY = cellsYs [0];
+    float cellsMaxX = cellsXs [columnCount];
+    float cellsMaxY = cellsYs [rowCount];
+
+    List<float [][]> outsideGroundPoints = new ArrayList<float [][]>(4);
+    if (cellsMinY > groundMinY) {
+      // Rectangle above cells
+      List<float []> points = new ArrayList<float[]>();
+      points.add(new float [] {groundMinX, groundMinY});
+      points.add(new float [] {groundMaxX, groundMinY});
+      points.add(new float [] {groundMaxX, cellsMinY});
+      if (cellsMaxX < groundMaxX) {
+        points.add(new float [] {cellsMaxX, cellsMinY});
+      }
+      for (int i = columnCount - 1; i > 0; i--) {
+        points.add(new float [] {cellsXs [i], cellsMinY});
+      }
+      points.add(new float [] {cellsMinX, cellsMinY});
+      if (cellsMinX > groundMinX) {
+        points.add(new float [] {groundMinX, cellsMinY});
+      }
+      outsideGroundPoints.add(points.toArray(new float [points.size()][]));
+    }
+    if (cellsMaxY < groundMaxY) {
+      // Rectangle below cells
+      List<float []> points = new ArrayList<float[]>();
+      points.add(new float [] {groundMinX, cellsMaxY});
+      if (cellsMinX > groundMinX) {
+        points.add(new float [] {cellsMinX, cellsMaxY});
+      }
+      for (int i = 1; i < columnCount; i++) {
+        points.add(new float [] {cellsXs [i], cellsMaxY});
+      }
+      points.add(new float [] {cellsMaxX, cellsMaxY});
+      if (cellsMaxX < groundMaxX) {
+        points.add(new float [] {groundMaxX, cellsMaxY});
+      }
+      points.add(new float [] {groundMaxX, groundMaxY});
+      points.add(new float [] {groundMinX, groundMaxY});
+      outsideGroundPoints.add(points.toArray(new float [points.size()][]));
+    }
+    if (cellsMinX > groundMinX) {
+      // Rectangle at the left of cells
+      List<float []> points = new ArrayList<float[]>();
+      points.add(new float [] {groundMinX, cellsMinY});
+      points.add(new float [] {cellsMinX, cellsMinY});
+      for (int i = 1; i < rowCount; i++) {
+        points.add(new float [] {cellsMinX, cellsYs [i]});
+      }
+      points.add(new float [] {cellsMinX, cellsMaxY});
+      points.add(new float [] {groundMinX, cellsMaxY});
+      outsideGroundPoints.add(points.toArray(new float [points.size()][]));
+    }
+    if (cellsMaxX < groundMaxX) {
+      // Rectangle at the right of cells
+      List<float []> points = new ArrayList<float[]>();
+      points.add(new float [] {cellsMaxX, cellsMinY});
+      points.add(new float [] {groundMaxX, cellsMinY});
+      points.add(new float [] {groundMaxX, cellsMaxY});
+      points.add(new float [] {cellsMaxX, cellsMaxY});
+      for (int i = rowCount - 1; i > 0; i--) {
+        points.add(new float [] {cellsMaxX, cellsYs [i]});
+      }
+      outsideGroundPoints.add(points.toArray(new float [points.size()][]));
+    }
+    // Orient rectangles like the polygons returned by getAreaPoints
+    for (float [][] points : outsideGroundPoints) {
+      if (new Room(points).isClockwise()) {
+        Collections.reverse(Arrays.asList(points));
+      }
+    }
+    return outsideGroundPoints;
+  }
+
+  /**
+   * Returns the geometries of the given underground levels sorted in the reverse order of their elevation,
+   * and adds to <code>undergroundRemovedArea</code> the area removed from ground at level 0.
+   */
+  private List<Geometry> getUndergroundGeometries(List<LevelAreas> undergroundAreas,
+                                                  Area undergroundRemovedArea,
+                                                  HomeTexture groundTexture) {
     for (LevelAreas levelAreas : undergroundAreas) {
       Level level = levelAreas.getLevel();
       Area area = levelAreas.getUndergroundArea();
@@ -332,7 +639,7 @@ public class Ground3D extends Object3DBranch {
           coveredHole.subtract(areaAtStart);
           levelAreas.getUpperLevelArea().add(coveredHole);
         } else {
-          areaRemovedFromGround.add(new Area(getShape(points)));
+          undergroundRemovedArea.add(new Area(getShape(points)));
         }
       }
     }
@@ -345,51 +652,93 @@ public class Ground3D extends Object3DBranch {
       }
     }
 
-    // Define ground and underground levels surfaces
-    Area groundArea = new Area(getShape(new float [][] {
-        {this.originX, this.originY},
-        {this.originX, this.originY + this.depth},
-        {this.originX + this.width, this.originY + this.depth},
-        {this.originX + this.width, this.originY}}));
-    Rectangle2D removedAreaBounds = areaRemovedFromGround.getBounds2D();
-    if (!groundArea.getBounds2D().equals(removedAreaBounds)) {
-      Area outsideGroundArea = groundArea;
-      if (areaRemovedFromGround.isEmpty()) {
-        removedAreaBounds = new Rectangle2D.Float(Math.max(-5E3f, this.originX), Math.max(-5E3f, this.originY), 0, 0);
-        removedAreaBounds.add(Math.min(5E3f, this.originX + this.width),
-            Math.min(5E3f, this.originY + this.depth));
-      } else {
-        removedAreaBounds.add(Math.max(removedAreaBounds.getMinX() - 5E3, this.originX),
-            Math.max(removedAreaBounds.getMinY() - 5E3, this.originY));
-        removedAreaBounds.add(Math.min(removedAreaBounds.getMaxX() + 5E3, this.originX + this.width),
-            Math.min(removedAreaBounds.getMaxY() + 5E3, this.originY + this.depth));
-      }
-      groundArea = new Area(removedAreaBounds);
-      outsideGroundArea.subtract(groundArea);
-      // Divide the ground at level 0 in two geometries to limit visual artifacts on large zone
-      addAreaGeometry(groundShape, groundTexture, outsideGroundArea, 0);
-    }
-    groundArea.subtract(areaRemovedFromGround);
-
-    // Add level areas for ground level at index 0 because it's the highest level in the list
-    undergroundAreas.add(0, new LevelAreas(new Level("Ground", 0, 0, 0), groundArea));
+    // Define underground levels surfaces under ground level at elevation 0
+    List<Geometry> geometries = new ArrayList<Geometry>();
     float previousLevelElevation = 0;
     for (LevelAreas levelAreas : undergroundAreas) {
       float elevation = levelAreas.getLevel().getElevation();
-      addAreaGeometry(groundShape, groundTexture, levelAreas.getUndergroundArea(), elevation);
+      addGeometry(geometries, createAreaGeometry(groundTexture, levelAreas.getUndergroundArea(), elevation));
       if (previousLevelElevation - elevation > 0) {
         for (float [][] points : getPoints(levelAreas.getUndergroundSideArea())) {
-          addAreaSidesGeometry(groundShape, groundTexture, points, elevation, previousLevelElevation - elevation);
+          addGeometry(geometries, createAreaSidesGeometry(groundTexture, points, elevation, previousLevelElevation - elevation));
         }
-        addAreaGeometry(groundShape, groundTexture, levelAreas.getUpperLevelArea(), previousLevelElevation);
+        addGeometry(geometries, createAreaGeometry(groundTexture, levelAreas.getUpperLevelArea(), previousLevelElevation));
       }
       previousLevelElevation = elevation;
     }
+    return geometries;
+  }
 
-    // Remove old geometries
-    for (int i = currentGeometriesCount - 1; i >= 0; i--) {
-      groundShape.removeGeometry(i);
+  private void addGeometry(List<Geometry> geometries, Geometry geometry) {
+    if (geometry != null) {
+      geometries.add(geometry);
+    }
+  }
+
+  /**
+   * Returns the area of the given <code>item</code> computed at previous update
+   * if its <code>state</code> didn't change, or <code>null</code>.
+   */
+  private Area getCachedItemArea(Map<Object, ItemArea> itemAreas, Object item, Object ... state) {
+    ItemArea itemArea = this.itemAreasCache.get(item);
+    if (itemArea != null
+        && Arrays.deepEquals(itemArea.getState(), state)) {
+      itemAreas.put(item, itemArea);
+      return itemArea.getArea();
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Stores the area of the given <code>item</code> in its <code>state</code> and returns it.
+   */
+  private Area putItemArea(Map<Object, ItemArea> itemAreas, Object item, Area area, Object ... state) {
+    itemAreas.put(item, new ItemArea(state, area));
+    return area;
+  }
+
+  /**
+   * Returns <code>true</code> if the given lists contain the same area instances in the same order.
+   */
+  private static boolean containSameAreas(List<Area> areas1, List<Area> areas2) {
+    if (areas1 == null
+        || areas2 == null
+        || areas1.size() != areas2.size()) {
+      return false;
+    }
+    for (int i = 0; i < areas1.size(); i++) {
+      if (areas1.get(i) != areas2.get(i)) {
+        return false;
+      }
     }
+    return true;
+  }
+
+  /**
+   * Computes the room area and the underground area of the given level from the areas of its items.
+   */
+  private void updateLevelItemsAreasUnion(LevelItemsAreas itemsAreas) {
+    Area roomArea = new Area();
+    for (Area area : itemsAreas.getRoomAreas()) {
+      roomArea.add(area);
+    }
+    Area undergroundArea = new Area();
+    for (Area area : itemsAreas.getUndergroundAreas()) {
+      undergroundArea.add(area);
+    }
+    Area wallArea = new Area();
+    for (Area area : itemsAreas.getWallAreas()) {
+      wallArea.add(area);
+    }
+    // Consider that walls around a closed area define a hole
+    for (float [][] points : getPoints(wallArea)) {
+      if (!new Room(points).isClockwise()) {
+        undergroundArea.add(new Area(getShape(points)));
+      }
+    }
+    itemsAreas.setRoomArea(roomArea);
+    itemsAreas.setUndergroundArea(undergroundArea);
   }
 
   /**
@@ -424,20 +773,22 @@ public class Ground3D extends Object3DBranch {
   }
 
   /**
-   * Returns the {@link LevelAreas} instance matching the given level.
+   * Returns the {@link LevelItemsAreas} instance matching the given level.
    */
-  private LevelAreas getUndergroundAreas(Map<Level, LevelAreas> undergroundAreas, Level level) {
-    LevelAreas levelAreas = undergroundAreas.get(level);
-    if (levelAreas == null) {
-      undergroundAreas.put(level, levelAreas = new LevelAreas(level));
+  private LevelItemsAreas getLevelItemsAreas(Map<Level, LevelItemsAreas> levelItemsAreas, Level level) {
+    LevelItemsAreas itemsAreas = levelItemsAreas.get(level);
+    if (itemsAreas == null) {
+      levelItemsAreas.put(level, itemsAreas = new LevelItemsAreas(level));
     }
-    return levelAreas;
+    return itemsAreas;
   }
 
   /**
    * Updates underground level areas dug by the visible furniture placed at underground levels.
    */
-  private void updateUndergroundAreasDugByFurniture(Map<Level, LevelAreas> undergroundLevelAreas, List<HomePieceOfFurniture> furniture) {
+  private void updateUndergroundAreasDugByFurniture(Map<Level, LevelItemsAreas> levelItemsAreas,
+                                                    Map<Object, ItemArea> itemAreas,
+                                                    List<HomePieceOfFurniture> furniture) {
     for (HomePieceOfFurniture piece : furniture) {
       Level pieceLevel = piece.getLevel();
       if (piece.getGroundElevation() < 0
@@ -446,27 +797,38 @@ public class Ground3D extends Object3DBranch {
           && pieceLevel.isViewable()
           && pieceLevel.getElevation() < 0) {
         if (piece instanceof HomeFurnitureGroup) {
-          updateUndergroundAreasDugByFurniture(undergroundLevelAreas, ((HomeFurnitureGroup)piece).getFurniture());
+          updateUndergroundAreasDugByFurniture(levelItemsAreas, itemAreas, ((HomeFurnitureGroup)piece).getFurniture());
         } else {
-          LevelAreas levelAreas = getUndergroundAreas(undergroundLevelAreas, pieceLevel);
-          if (piece.getStaircaseCutOutShape() == null) {
-            levelAreas.getUndergroundArea().add(new Area(getShape(piece.getPoints())));
-          } else {
-            levelAreas.getUndergroundArea().add(ModelManager.getInstance().getAreaOnFloor(piece));
+          float [][] piecePoints = piece.getPoints();
+          String staircaseCutOutShape = piece.getStaircaseCutOutShape();
+          boolean modelMirrored = piece.isModelMirrored();
+          Area pieceArea = getCachedItemArea(itemAreas, piece, piecePoints, staircaseCutOutShape, modelMirrored);
+          if (pieceArea == null) {
+            pieceArea = putItemArea(itemAreas, piece,
+                staircaseCutOutShape == null
+                    ? new Area(getShape(piecePoints))
+                    : ModelManager.getInstance().getAreaOnFloor(piece),
+                piecePoints, staircaseCutOutShape, modelMirrored);
           }
+          getLevelItemsAreas(levelItemsAreas, pieceLevel).getUndergroundAreas().add(pieceArea);
         }
       }
     }
   }
 
   /**
-   * Adds to ground shape the geometry matching the given area.
+   * Returns the ground geometry matching the given area, or <code>null</code> if it's empty.
    */
-  private void addAreaGeometry(Shape3D groundShape,
-                               HomeTexture groundTexture,
-                               Area area, float elevation) {
-    List<float [][]> areaPoints = getAreaPoints(area, 1, false);
+  private Geometry createAreaGeometry(HomeTexture groundTexture,
+                                      Area area, float elevation) {
+    return createAreaGeometry(groundTexture, getAreaPoints(area, 1, false), elevation);
+  }
 
+  /**
+   * Returns the ground geometry matching the given polygons, or <code>null</code> if there's none.
+   */
+  private Geometry createAreaGeometry(HomeTexture groundTexture,
+                                      List<float [][]> areaPoints, float elevation) {
     if (!areaPoints.isEmpty()) {
       int vertexCount = 0;
       int [] stripCounts = new int [areaPoints.size()];
@@ -498,18 +860,19 @@ public class Ground3D extends Object3DBranch {
       }
       geometryInfo.setStripCounts(stripCounts);
       new NormalGenerator(0).generateNormals(geometryInfo);
-      groundShape.addGeometry(geometryInfo.getIndexedGeometryArray());
+      return geometryInfo.getIndexedGeometryArray();
+    } else {
+      return null;
     }
   }
 
   /**
-   * Adds to ground shape the geometry matching the given area sides.
+   * Returns the ground geometry matching the given area sides.
    */
-  private void addAreaSidesGeometry(Shape3D groundShape,
-                                    HomeTexture groundTexture,
-                                    float [][] areaPoints,
-                                    float elevation,
-                                    float sideHeight) {
+  private Geometry createAreaSidesGeometry(HomeTexture groundTexture,
+                                           float [][] areaPoints,
+                                           float elevation,
+                                           float sideHeight) {
     Point3f [] geometryCoords = new Point3f [areaPoints.length * 4];
     TexCoord2f [] geometryTextureCoords = groundTexture != null
         ? new TexCoord2f [geometryCoords.length]
@@ -537,7 +900,7 @@ public class Ground3D extends Object3DBranch {
       geometryInfo.setTextureCoordinates(0, geometryTextureCoords);
     }
     new NormalGenerator(0).generateNormals(geometryInfo);
-    groundShape.addGeometry(geometryInfo.getIndexedGeometryArray());
+    return geometryInfo.getIndexedGeometryArray();
   }
 
   /**
@@ -546,18 +909,14 @@ public class Ground3D extends Object3DBranch {
   private static class LevelAreas {
     private Level level;
     private Area undergroundArea;
-    private Area roomArea = new Area();
-    private Area wallArea = new Area();
+    private Area roomArea;
     private Area undergroundSideArea = new Area();
     private Area upperLevelArea = new Area();
 
-    public LevelAreas(Level level) {
-      this(level, new Area());
-    }
-
-    public LevelAreas(Level level, Area undergroundArea) {
+    public LevelAreas(Level level, Area undergroundArea, Area roomArea) {
       this.level = level;
       this.undergroundArea = undergroundArea;
+      this.roomArea = roomArea;
     }
 
     public Level getLevel() {
@@ -572,10 +931,6 @@ public class Ground3D extends Object3DBranch {
       return this.roomArea;
     }
 
-    public Area getWallArea() {
-      return this.wallArea;
-    }
-
     public Area getUndergroundSideArea() {
       return this.undergroundSideArea;
     }
@@ -584,4 +939,73 @@ public class Ground3D extends Object3DBranch {
       return this.upperLevelArea;
     }
   }
+
+  /**
+   * Areas of the items of an underground level and their union.
+   */
+  private static class LevelItemsAreas {
+    private Level      level;
+    private List<Area> roomAreas = new ArrayList<Area>();
+    private List<Area> undergroundAreas = new ArrayList<Area>();
+    private List<Area> wallAreas = new ArrayList<Area>();
+    private Area       roomArea;
+    private Area       undergroundArea;
+
+    public LevelItemsAreas(Level level) {
+      this.level = level;
+    }
+
+    public Level getLevel() {
+      return this.level;
+    }
+
+    public List<Area> getRoomAreas() {
+      return this.roomAreas;
+    }
+
+    public List<Area> getUndergroundAreas() {
+      return this.undergroundAreas;
+    }
+
+    public List<Area> getWallAreas() {
+      return this.wallAreas;
+    }
+
+    public Area getRoomArea() {
+      return this.roomArea;
+    }
+
+    public void setRoomArea(Area roomArea) {
+      this.roomArea = roomArea;
+    }
+
+    public Area getUndergroundArea() {
+      return this.undergroundArea;
+    }
+
+    public void setUndergroundArea(Area undergroundArea) {
+      this.undergroundArea = undergroundArea;
+    }
+  }
+
+  /**
+   * The area of an item with the state it was computed from.
+   */
+  private static class ItemArea {
+    private final Object [] state;
+    private final Area      area;
+
+    public ItemArea(Object [] state, Area area) {
+      this.state = state;
+      this.area = area;
+    }
+
+    public Object [] getState() {
+      return this.state;
+    }
+
+    public Area getArea() {
+      return this.area;
+    }
+  }
 }
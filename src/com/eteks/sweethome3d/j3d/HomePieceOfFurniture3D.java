@@ -25,8 +25,10 @@ import java.awt.Shape;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.media.j3d.Appearance;
@@ -60,6 +62,7 @@ import javax.vecmath.Vector3f;
 import javax.vecmath.Vector4f;
 
 import com.eteks.sweethome3d.j3d.TextureManager.TextureObserver;
+import com.eteks.sweethome3d.model.Camera;
 import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeEnvironment;
@@ -92,6 +95,8 @@ public class HomePieceOfFurniture3D extends Object3DBranch {
   private static final Object                 DEFAULT_BOX = new Object();
 
   private final Home home;
+  private ModelManager.ModelObserver modelObserver;
+  private final Map<TextureObserver, Content> loadingTextureObservers = new HashMap<TextureObserver, Content>();
 
   static {
     DEFAULT_TEXTURED_SHAPE_POLYGON_ATTRIBUTES.setCapability(PolygonAttributes.ALLOW_CULL_FACE_READ);
@@ -161,50 +166,98 @@ public class HomePieceOfFurniture3D extends Object3DBranch {
 
     // Load piece real 3D model
     Content model = piece.getModel();
-    ModelManager.getInstance().loadModel(model, waitModelAndTextureLoadingEnd,
-        new ModelManager.ModelObserver() {
-          public void modelUpdated(BranchGroup modelRoot) {
-            updateModelTransformations(modelRoot);
-
-            float [][] modelRotation = piece.getModelRotation();
-            // Add piece model scene to a normalized transform group
-            TransformGroup modelTransformGroup = ModelManager.getInstance().
-                getNormalizedTransformGroup(modelRoot, modelRotation, 1, piece.isModelCenteredAtOrigin());
-
-            cloneHomeTextures(modelRoot);
-            updatePieceOfFurnitureModelNode(modelRoot, modelTransformGroup,
-                ignoreDrawingMode, waitModelAndTextureLoadingEnd);
-          }
+    this.modelObserver = new ModelManager.ModelObserver() {
+        public void modelUpdated(BranchGroup modelRoot) {
+          modelObserver = null;
+          updateModelTransformations(modelRoot);
+
+          float [][] modelRotation = piece.getModelRotation();
+          // Add piece model scene to a normalized transform group
+          TransformGroup modelTransformGroup = ModelManager.getInstance().
+              getNormalizedTransformGroup(modelRoot, modelRotation, 1, piece.isModelCenteredAtOrigin());
+
+          cloneHomeTextures(modelRoot);
+          updatePieceOfFurnitureModelNode(modelRoot, modelTransformGroup,
+              ignoreDrawingMode, waitModelAndTextureLoadingEnd);
+        }
 
-          public void modelError(Exception ex) {
-            // In case of problem use a default red box
-            updatePieceOfFurnitureModelNode(getModelBox(Color.RED), new TransformGroup(),
-                ignoreDrawingMode, waitModelAndTextureLoadingEnd);
-          }
+        public void modelError(Exception ex) {
+          modelObserver = null;
+          // In case of problem use a default red box
+          updatePieceOfFurnitureModelNode(getModelBox(Color.RED), new TransformGroup(),
+              ignoreDrawingMode, waitModelAndTextureLoadingEnd);
+        }
 
-          /**
-           * Replace the textures set on <code>node</code> shapes by clones.
-           */
-          private void cloneHomeTextures(Node node) {
-            if (node instanceof Group) {
-              // Enumerate children
-              Enumeration<?> enumeration = ((Group)node).getAllChildren();
-              while (enumeration.hasMoreElements()) {
-                cloneHomeTextures((Node)enumeration.nextElement());
-              }
-            } else if (node instanceof Link) {
-              cloneHomeTextures(((Link)node).getSharedGroup());
-            } else if (node instanceof Shape3D) {
-              Appearance appearance = ((Shape3D)node).getAppearance();
-              if (appearance != null) {
-                Texture texture = appearance.getTexture();
-                if (texture != null) {
-                  appearance.setTexture(getHomeTextureClone(texture, home));
-                }
+        /**
+         * Replace the textures set on <code>node</code> shapes by clones.
+         */
+        private void cloneHomeTextures(Node node) {
+          if (node instanceof Group) {
+            // Enumerate children
+            Enumeration<?> enumeration = ((Group)node).getAllChildren();
+            while (enumeration.hasMoreElements()) {
+              cloneHomeTextures((Node)enumeration.nextElement());
+            }
+          } else if (node instanceof Link) {
+            cloneHomeTextures(((Link)node).getSharedGroup());
+          } else if (node instanceof Shape3D) {
+            Appearance appearance = ((Shape3D)node).getAppearance();
+            if (appearance != null) {
+              Texture texture = appearance.getTexture();
+              if (texture != null) {
+                appearance.setTexture(getHomeTextureClone(texture, home));
               }
             }
           }
-        });
+        }
+      };
+    ModelManager.getInstance().loadModel(model, waitModelAndTextureLoadingEnd, getLoadingPriority(), this.modelObserver);
+  }
+
+  /**
+   * Returns the priority used to load the model and the textures of this piece,
+   * computed from its visibility and its distance to the camera of the home.
+   */
+  private float getLoadingPriority() {
+    HomePieceOfFurniture piece = (HomePieceOfFurniture)getUserData();
+    if (this.home == null) {
+      return LoadingScheduler.DEFAULT_PRIORITY;
+    }
+    Camera camera = this.home.getCamera();
+    float xDelta = piece.getX() - camera.getX();
+    float yDelta = piece.getY() - camera.getY();
+    float priority = (float)Math.sqrt(xDelta * xDelta + yDelta * yDelta);
+    // Load first the pieces in front of the camera, then the ones on other levels or behind it,
+    // and finally the invisible ones
+    if (xDelta * -Math.sin(camera.getYaw()) + yDelta * Math.cos(camera.getYaw()) < 0) {
+      priority += 1E5f;
+    }
+    Level level = piece.getLevel();
+    if (level != null
+        && level != this.home.getSelectedLevel()
+        && !this.home.getEnvironment().isAllLevelsVisible()) {
+      priority += 1E6f;
+    }
+    if (!piece.isVisible()
+        || level != null && !level.isViewableAndVisible()) {
+      priority += 1E7f;
+    }
+    return priority;
+  }
+
+  /**
+   * Cancels the loading of the model and the textures of this piece if they're not loaded yet.
+   * This method must be called in Event Dispatch Thread.
+   */
+  public void cancelLoading() {
+    if (this.modelObserver != null) {
+      ModelManager.getInstance().cancelModelLoading(((HomePieceOfFurniture)getUserData()).getModel(), this.modelObserver);
+      this.modelObserver = null;
+    }
+    for (Map.Entry<TextureObserver, Content> entry : this.loadingTextureObservers.entrySet()) {
+      TextureManager.getInstance().cancelTextureLoading(entry.getValue(), entry.getKey());
+    }
+    this.loadingTextureObservers.clear();
   }
 
   /**
@@ -768,8 +821,7 @@ public class HomePieceOfFurniture3D extends Object3DBranch {
             appearance.setTexCoordGeneration(getTextureCoordinates(texture, pieceSize, modelBounds));
             appearance.setTextureAttributes(getTextureAttributes(texture, true));
             appearance.setMaterial(getMaterial(DEFAULT_COLOR, DEFAULT_AMBIENT_COLOR, materialShininess));
-            TextureManager.getInstance().loadTexture(texture.getImage(),
-                waitTextureLoadingEnd, getTextureObserver(appearance));
+            loadTexture(texture.getImage(), waitTextureLoadingEnd, appearance);
           }
         } else if (materialModified) {
           String appearanceName = null;
@@ -807,8 +859,7 @@ public class HomePieceOfFurniture3D extends Object3DBranch {
                     appearance.setTextureAttributes(getTextureAttributes(materialTexture, true));
                   }
                   appearance.setMaterial(getMaterial(DEFAULT_COLOR, DEFAULT_AMBIENT_COLOR, materialShininess));
-                  TextureManager.getInstance().loadTexture(materialTexture.getImage(),
-                      waitTextureLoadingEnd, getTextureObserver(appearance));
+                  loadTexture(materialTexture.getImage(), waitTextureLoadingEnd, appearance);
                 } else {
                   restoreDefaultMaterialAndTexture(appearance, material.getShininess());
                 }
@@ -829,12 +880,27 @@ public class HomePieceOfFurniture3D extends Object3DBranch {
     }
   }
 
+  /**
+   * Loads the texture image of <code>content</code> and sets it to the given <code>appearance</code>.
+   */
+  private void loadTexture(Content content, boolean waitTextureLoadingEnd, Appearance appearance) {
+    TextureManager textureManager = TextureManager.getInstance();
+    TextureObserver textureObserver = getTextureObserver(appearance);
+    textureManager.loadTexture(content, 0, waitTextureLoadingEnd, getLoadingPriority(), textureObserver);
+    if (!waitTextureLoadingEnd
+        && textureManager.isTextureLoading(content, textureObserver)) {
+      // Keep track of observer to be able to cancel texture loading
+      this.loadingTextureObservers.put(textureObserver, content);
+    }
+  }
+
   /**
    * Returns a texture observer that will update the given <code>appearance</code>.
    */
   private TextureObserver getTextureObserver(final Appearance appearance) {
     return new TextureManager.TextureObserver() {
         public void textureUpdated(Texture texture) {
+          loadingTextureObservers.remove(this);
           if (TextureManager.getInstance().isTextureTransparent(texture)) {
             appearance.setTransparencyAttributes(DEFAULT_TEXTURED_SHAPE_TRANSPARENCY_ATTRIBUTES);
             DefaultMaterialAndTexture defaultMaterialAndTexture = (DefaultMaterialAndTexture)appearance.getUserData();
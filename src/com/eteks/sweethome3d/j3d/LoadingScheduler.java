@@ -0,0 +1,231 @@
+/*
+ * LoadingScheduler.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton scheduling in a shared pool of threads the loading tasks of {@link ModelManager}
+ * and {@link TextureManager}. Tasks are run by increasing priority value, then in the order
+ * they were submitted. A task submitted with the key of a pending task is merged with it,
+ * and pending tasks may be cancelled.
+ * @author Emmanuel Puybaret
+ */
+public class LoadingScheduler {
+  /**
+   * The priority of tasks for which no visibility information is available.
+   */
+  public static final float DEFAULT_PRIORITY = 0;
+
+  private static LoadingScheduler instance;
+
+  private final Map<Object, ScheduledTask> pendingTasks;
+  private ThreadPoolExecutor               executor;
+  private long                             sequence;
+  private long                             startedTaskCount;
+  private long                             completedTaskCount;
+  private long                             cancelledTaskCount;
+  private long                             totalWaitTime;
+  private long                             maxWaitTime;
+
+  private LoadingScheduler() {
+    // This class is a singleton
+    this.pendingTasks = new HashMap<Object, ScheduledTask>();
+  }
+
+  /**
+   * Returns an instance of this singleton.
+   */
+  public static synchronized LoadingScheduler getInstance() {
+    if (instance == null) {
+      instance = new LoadingScheduler();
+    }
+    return instance;
+  }
+
+  /**
+   * Schedules the execution of the given <code>task</code>, unless a task with the same
+   * <code>key</code> is still waiting to be run, in which case the priority of the pending task
+   * is raised to <code>priority</code> if it's more urgent.
+   * @param key      the key identifying the loaded item
+   * @param priority the priority of the task, smaller values being run first
+   * @param task     the task to run
+   * @return <code>true</code> if the task was scheduled, <code>false</code> if it was merged with a pending task
+   */
+  public synchronized boolean execute(Object key, float priority, Runnable task) {
+    if (this.pendingTasks.containsKey(key)) {
+      raisePriority(key, priority);
+      return false;
+    } else {
+      ScheduledTask scheduledTask = new ScheduledTask(key, priority, this.sequence++, task);
+      this.pendingTasks.put(key, scheduledTask);
+      getExecutor().execute(scheduledTask);
+      return true;
+    }
+  }
+
+  /**
+   * Changes the priority of the pending task of the given <code>key</code>
+   * if <code>priority</code> is more urgent.
+   */
+  public synchronized void raisePriority(Object key, float priority) {
+    ScheduledTask pendingTask = this.pendingTasks.get(key);
+    if (pendingTask != null
+        && priority < pendingTask.priority
+        && getExecutor().remove(pendingTask)) {
+      // Reinsert pending task to update its place in queue
+      pendingTask.priority = priority;
+      getExecutor().execute(pendingTask);
+    }
+  }
+
+  /**
+   * Removes the pending task of the given <code>key</code>.
+   * @return <code>true</code> if the task was cancelled before it was run
+   */
+  public synchronized boolean cancel(Object key) {
+    ScheduledTask pendingTask = this.pendingTasks.get(key);
+    if (pendingTask != null
+        && getExecutor().remove(pendingTask)) {
+      this.pendingTasks.remove(key);
+      this.cancelledTaskCount++;
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the executor of tasks, created lazily.
+   */
+  private ThreadPoolExecutor getExecutor() {
+    if (this.executor == null) {
+      int threadCount = Runtime.getRuntime().availableProcessors();
+      this.executor = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS,
+          new PriorityBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "Loading scheduler");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return this.executor;
+  }
+
+  /**
+   * Called when the given task starts to run.
+   */
+  private synchronized void taskStarted(ScheduledTask task) {
+    if (this.pendingTasks.get(task.key) == task) {
+      this.pendingTasks.remove(task.key);
+    }
+    this.startedTaskCount++;
+    long waitTime = System.nanoTime() - task.submissionTime;
+    this.totalWaitTime += waitTime;
+    this.maxWaitTime = Math.max(this.maxWaitTime, waitTime);
+  }
+
+  private synchronized void taskCompleted() {
+    this.completedTaskCount++;
+  }
+
+  /**
+   * Returns the count of tasks waiting to be run.
+   */
+  public synchronized int getQueueDepth() {
+    return this.pendingTasks.size();
+  }
+
+  /**
+   * Returns the count of tasks run.
+   */
+  public synchronized long getCompletedTaskCount() {
+    return this.completedTaskCount;
+  }
+
+  /**
+   * Returns the count of tasks cancelled before they were run.
+   */
+  public synchronized long getCancelledTaskCount() {
+    return this.cancelledTaskCount;
+  }
+
+  /**
+   * Returns the average time in milliseconds tasks waited in queue before they were run.
+   */
+  public synchronized long getAverageWaitTime() {
+    return this.startedTaskCount > 0
+        ? this.totalWaitTime / this.startedTaskCount / 1000000
+        : 0;
+  }
+
+  /**
+   * Returns the maximum time in milliseconds a task waited in queue before it was run.
+   */
+  public synchronized long getMaxWaitTime() {
+    return this.maxWaitTime / 1000000;
+  }
+
+  /**
+   * A task ordered by priority, then by submission order.
+   */
+  private class ScheduledTask implements Runnable, Comparable<ScheduledTask> {
+    private final Object   key;
+    private final long     sequence;
+    private final long     submissionTime;
+    private final Runnable task;
+    private float          priority;
+
+    public ScheduledTask(Object key, float priority, long sequence, Runnable task) {
+      this.key = key;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.submissionTime = System.nanoTime();
+      this.task = task;
+    }
+
+    public void run() {
+      taskStarted(this);
+      try {
+        this.task.run();
+      } finally {
+        taskCompleted();
+      }
+    }
+
+    public int compareTo(ScheduledTask task) {
+      int priorityComparison = Float.compare(this.priority, task.priority);
+      if (priorityComparison != 0) {
+        return priorityComparison;
+      } else {
+        return this.sequence < task.sequence
+            ? -1
+            : (this.sequence == task.sequence ? 0 : 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * MemoryBoundedCache.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A cache which keeps its values as long as the sum of their estimated size in bytes
+ * is smaller than its maximum size, and evicts the least recently or the least frequently
+ * used values beyond. This class is thread safe.
+ * @param <K> the type of the keys of the cache
+ * @param <V> the type of the values of the cache
+ * @author Emmanuel Puybaret
+ */
+public class MemoryBoundedCache<K, V> {
+  /**
+   * The policy used to choose the values evicted from a cache.
+   */
+  public enum EvictionPolicy {LEAST_RECENTLY_USED, LEAST_FREQUENTLY_USED}
+
+  /**
+   * An estimator of the memory used by the values of a cache.
+   */
+  public static interface SizeEstimator<V> {
+    /**
+     * Returns the count of bytes used by the given <code>value</code>.
+     */
+    public long getSize(V value);
+  }
+
+  private final SizeEstimator<V>         sizeEstimator;
+  // Entries ordered from the least recently used to the most recent one,
+  // moved explicitly at the end of the map once they're used
+  private final Map<K, CacheEntry<K, V>> entries;
+  // Entries ordered from the least frequently used to the most frequent one, maintained only for LFU policy
+  private SortedSet<CacheEntry<K, V>>    frequencySortedEntries;
+  private long                           maxSize;
+  private EvictionPolicy                 evictionPolicy;
+  private long                           useSequence;
+  private long                           residentSize;
+  private long                           hitCount;
+  private long                           missCount;
+  private long                           evictionCount;
+
+  /**
+   * Creates a cache bounded to <code>maxSize</code> bytes.
+   * @param maxSize         the maximum count of bytes used by the values of the cache
+   * @param evictionPolicy  the policy used to choose the evicted values
+   * @param sizeEstimator   the estimator of the size of the values
+   */
+  public MemoryBoundedCache(long maxSize,
+                            EvictionPolicy evictionPolicy,
+                            SizeEstimator<V> sizeEstimator) {
+    this.sizeEstimator = sizeEstimator;
+    this.entries = new LinkedHashMap<K, CacheEntry<K, V>>();
+    setPolicy(maxSize, evictionPolicy);
+  }
+
+  /**
+   * Returns the value cached for the given <code>key</code> or <code>null</code>.
+   */
+  public synchronized V get(K key) {
+    CacheEntry<K, V> entry = this.entries.get(key);
+    if (entry != null) {
+      this.hitCount++;
+      // Move entry to the most recently used ones
+      this.entries.remove(key);
+      this.entries.put(key, entry);
+      updateEntry(entry, entry.value, entry.size, entry.useCount + 1, true);
+      return entry.value;
+    } else {
+      this.missCount++;
+      return null;
+    }
+  }
+
+  /**
+   * Returns the value cached for the given <code>key</code> or <code>null</code>,
+   * without counting this call as a use of the value.
+   */
+  public synchronized V peek(K key) {
+    CacheEntry<K, V> entry = this.entries.get(key);
+    return entry != null
+        ? entry.value
+        : null;
+  }
+
+  /**
+   * Caches the given <code>value</code> and evicts other values if the maximum size
+   * of this cache is exceeded. A value bigger than the maximum size isn't cached.
+   * If a value is already cached for <code>key</code>, it's replaced by the new one
+   * which keeps its use count and its last use.
+   */
+  public synchronized void put(K key, V value) {
+    long size = this.sizeEstimator.getSize(value);
+    if (size > this.maxSize) {
+      remove(key);
+    } else {
+      CacheEntry<K, V> entry = this.entries.get(key);
+      if (entry != null) {
+        this.residentSize -= entry.size;
+        updateEntry(entry, value, size, entry.useCount, false);
+      } else {
+        entry = new CacheEntry<K, V>(key, value, size, this.useSequence++);
+        this.entries.put(key, entry);
+        if (this.frequencySortedEntries != null) {
+          this.frequencySortedEntries.add(entry);
+        }
+      }
+      this.residentSize += size;
+      evictEntries(key);
+    }
+  }
+
+  /**
+   * Updates the given <code>entry</code> and its place in the entries sorted by frequency.
+   */
+  private void updateEntry(CacheEntry<K, V> entry, V value, long size, long useCount, boolean used) {
+    if (this.frequencySortedEntries != null) {
+      this.frequencySortedEntries.remove(entry);
+    }
+    entry.value = value;
+    entry.size = size;
+    entry.useCount = useCount;
+    if (used) {
+      entry.lastUse = this.useSequence++;
+    }
+    if (this.frequencySortedEntries != null) {
+      this.frequencySortedEntries.add(entry);
+    }
+  }
+
+  /**
+   * Removes the value cached for the given <code>key</code>.
+   */
+  public synchronized V remove(K key) {
+    CacheEntry<K, V> entry = this.entries.remove(key);
+    if (entry != null) {
+      if (this.frequencySortedEntries != null) {
+        this.frequencySortedEntries.remove(entry);
+      }
+      this.residentSize -= entry.size;
+      return entry.value;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Removes all the values of this cache.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+    if (this.frequencySortedEntries != null) {
+      this.frequencySortedEntries.clear();
+    }
+    this.residentSize = 0;
+  }
+
+  /**
+   * Sets the maximum size of this cache and the policy used to evict its values.
+   */
+  public synchronized void setPolicy(long maxSize, EvictionPolicy evictionPolicy) {
+    this.maxSize = maxSize;
+    this.evictionPolicy = evictionPolicy;
+    if (evictionPolicy == EvictionPolicy.LEAST_FREQUENTLY_USED) {
+      if (this.frequencySortedEntries == null) {
+        // Among the entries used the same count of times, sort first the least recently used one
+        this.frequencySortedEntries = new TreeSet<CacheEntry<K, V>>(new Comparator<CacheEntry<K, V>>() {
+            public int compare(CacheEntry<K, V> entry1, CacheEntry<K, V> entry2) {
+              if (entry1.useCount != entry2.useCount) {
+                return entry1.useCount < entry2.useCount ? -1 : 1;
+              } else if (entry1.lastUse != entry2.lastUse) {
+                return entry1.lastUse < entry2.lastUse ? -1 : 1;
+              } else {
+                return 0;
+              }
+            }
+          });
+        this.frequencySortedEntries.addAll(this.entries.values());
+      }
+    } else {
+      this.frequencySortedEntries = null;
+    }
+    evictEntries(null);
+  }
+
+  /**
+   * Removes entries until the resident size is smaller than the maximum size,
+   * keeping the entry of the given key.
+   */
+  private void evictEntries(K keptKey) {
+    while (this.residentSize > this.maxSize) {
+      // Search the first entry to evict, either in the entries sorted by frequency or by last use
+      Iterator<CacheEntry<K, V>> it = this.frequencySortedEntries != null
+          ? this.frequencySortedEntries.iterator()
+          : this.entries.values().iterator();
+      CacheEntry<K, V> evictedEntry = null;
+      while (it.hasNext()) {
+        CacheEntry<K, V> entry = it.next();
+        if (keptKey == null
+            || !keptKey.equals(entry.key)) {
+          evictedEntry = entry;
+          break;
+        }
+      }
+      if (evictedEntry == null) {
+        break;
+      }
+      remove(evictedEntry.key);
+      this.evictionCount++;
+    }
+  }
+
+  /**
+   * Returns the current statistics of this cache.
+   */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(this.hitCount, this.missCount, this.evictionCount,
+        this.entries.size(), this.residentSize, this.maxSize);
+  }
+
+  /**
+   * A value stored in cache with its size, how many times it was used and when it was last used.
+   */
+  private static class CacheEntry<K, V> {
+    private final K key;
+    private V       value;
+    private long    size;
+    private long    useCount;
+    private long    lastUse;
+
+    public CacheEntry(K key, V value, long size, long lastUse) {
+      this.key = key;
+      this.value = value;
+      this.size = size;
+      this.lastUse = lastUse;
+    }
+  }
+
+  /**
+   * The statistics of a cache at a given time.
+   */
+  public static class Statistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int  entryCount;
+    private final long residentSize;
+    private final long maxSize;
+
+    private Statistics(long hitCount, long missCount, long evictionCount,
+                       int entryCount, long residentSize, long maxSize) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.entryCount = entryCount;
+      this.residentSize = residentSize;
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the count of values found in cache.
+     */
+    public long getHitCount() {
+      return this.hitCount;
+    }
+
+    /**
+     * Returns the count of values searched in vain in cache.
+     */
+    public long getMissCount() {
+      return this.missCount;
+    }
+
+    /**
+     * Returns the count of values evicted from cache because its maximum size was exceeded.
+     */
+    public long getEvictionCount() {
+      return this.evictionCount;
+    }
+
+    /**
+     * Returns the count of values stored in cache.
+     */
+    public int getEntryCount() {
+      return this.entryCount;
+    }
+
+    /**
+     * Returns the estimated count of bytes used by the values stored in cache.
+     */
+    public long getResidentBytes() {
+      return this.residentSize;
+    }
+
+    /**
+     * Returns the maximum count of bytes the values stored in cache may use.
+     */
+    public long getMaxBytes() {
+      return this.maxSize;
+    }
+  }
+}
@@ -28,8 +28,10 @@ import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.JarURLConnection;
 import java.net.URISyntaxException;
@@ -43,14 +45,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.media.j3d.Appearance;
 import javax.media.j3d.BoundingBox;
@@ -208,22 +209,35 @@ public class ModelManager {
 
   private static ModelManager instance;
 
-  // Map storing loaded model nodes
-  private Map<Content, BranchGroup> loadedModelNodes;
+  // Cache storing loaded model nodes
+  private MemoryBoundedCache<Content, BranchGroup> loadedModelNodes;
   // Map storing model nodes being loaded
   private Map<Content, List<ModelObserver>> loadingModelObservers;
   // Map storing the bounds of transformed model nodes
   private Map<Content, Map<Transform3D, BoundingBox>> transformedModelNodeBounds;
-  // Executor used to load models
-  private ExecutorService           modelsLoader;
   // List of additional loader classes
   private Class<Loader> []          additionalLoaderClasses;
+  // Map storing setUseCaches methods of loader classes or null if they don't exist
+  private Map<Class<?>, Method>     loaderUseCachesMethods;
+  // Map storing load statistics of loader classes
+  private Map<Class<?>, LoaderStatistics> loaderStatistics;
+  // Cache storing loaded models on disk and the digester of their content
+  private PersistentModelCache      persistentModelCache;
+  private ContentDigester           contentDigester;
 
   private ModelManager() {
     // This class is a singleton
-    this.loadedModelNodes = new WeakHashMap<Content, BranchGroup>();
+    this.loadedModelNodes = new MemoryBoundedCache<Content, BranchGroup>(
+        Runtime.getRuntime().maxMemory() / 4, MemoryBoundedCache.EvictionPolicy.LEAST_RECENTLY_USED,
+        new MemoryBoundedCache.SizeEstimator<BranchGroup>() {
+          public long getSize(BranchGroup modelRoot) {
+            return getModelSize(modelRoot, new IdentityHashMap<Object, Object>());
+          }
+        });
     this.loadingModelObservers = new HashMap<Content, List<ModelObserver>>();
     this.transformedModelNodeBounds = new WeakHashMap<Content, Map<Transform3D, BoundingBox>>();
+    this.loaderUseCachesMethods = new HashMap<Class<?>, Method>();
+    this.loaderStatistics = new LinkedHashMap<Class<?>, LoaderStatistics>();
     // Load other optional Loader classes
     List<Class<Loader>> loaderClasses = new ArrayList<Class<Loader>>();
     String loaderClassNames = System.getProperty(ADDITIONAL_LOADER_CLASSES);
@@ -279,12 +293,11 @@ public class ModelManager {
   }
 
   /**
-   * Shutdowns the multithreaded service that load models and clears loaded models cache.
+   * Cancels the models waiting to be loaded and clears loaded models cache.
    */
   public void clear() {
-    if (this.modelsLoader != null) {
-      this.modelsLoader.shutdownNow();
-      this.modelsLoader = null;
+    for (Content content : this.loadingModelObservers.keySet()) {
+      LoadingScheduler.getInstance().cancel(content);
     }
     synchronized (this.loadedModelNodes) {
       this.loadedModelNodes.clear();
@@ -292,6 +305,159 @@ public class ModelManager {
     this.loadingModelObservers.clear();
   }
 
+  /**
+   * Stops notifying the given observer of the model loaded from <code>content</code>,
+   * and cancels its loading if no other observer waits for it.
+   * This method must be called in Event Dispatch Thread.
+   */
+  public void cancelModelLoading(Content content, ModelObserver modelObserver) {
+    List<ModelObserver> observers = this.loadingModelObservers.get(content);
+    if (observers != null
+        && observers.remove(modelObserver)
+        && observers.isEmpty()
+        && LoadingScheduler.getInstance().cancel(content)) {
+      this.loadingModelObservers.remove(content);
+    }
+  }
+
+  /**
+   * Sets the maximum count of bytes used by the models kept in memory by this manager,
+   * and the policy used to choose the models evicted once this count is exceeded.
+   * By default, loaded models may use up to a quarter of the maximum memory
+   * and the least recently used models are evicted first.
+   */
+  public void setModelCachePolicy(long maxSize, MemoryBoundedCache.EvictionPolicy evictionPolicy) {
+    this.loadedModelNodes.setPolicy(maxSize, evictionPolicy);
+  }
+
+  /**
+   * Returns the statistics of the cache of the models kept in memory by this manager.
+   */
+  public MemoryBoundedCache.Statistics getModelCacheStatistics() {
+    return this.loadedModelNodes.getStatistics();
+  }
+
+  /**
+   * Returns an estimation of the count of bytes used by the geometries and the textures
+   * of the given <code>node</code> not already counted in <code>countedObjects</code>.
+   */
+  private long getModelSize(Node node, Map<Object, Object> countedObjects) {
+    long size = 0;
+    if (node instanceof Group) {
+      Group group = (Group)node;
+      for (int i = 0, n = group.numChildren(); i < n; i++) {
+        size += getModelSize(group.getChild(i), countedObjects);
+      }
+    } else if (node instanceof Link) {
+      SharedGroup sharedGroup = ((Link)node).getSharedGroup();
+      if (sharedGroup != null
+          && countedObjects.put(sharedGroup, sharedGroup) == null) {
+        size += getModelSize(sharedGroup, countedObjects);
+      }
+    } else if (node instanceof Shape3D) {
+      Shape3D shape = (Shape3D)node;
+      for (int i = 0, n = shape.numGeometries(); i < n; i++) {
+        Geometry geometry = shape.getGeometry(i);
+        if (geometry instanceof GeometryArray
+            && countedObjects.put(geometry, geometry) == null) {
+          size += getGeometrySize((GeometryArray)geometry);
+        }
+      }
+      Appearance appearance = shape.getAppearance();
+      if (appearance != null) {
+        Texture texture = appearance.getTexture();
+        if (texture != null
+            && countedObjects.put(texture, texture) == null) {
+          size += TextureManager.getTextureSize(texture);
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns an estimation of the count of bytes used by the given geometry array,
+   * computed from its vertex format and its vertex and index counts.
+   */
+  private long getGeometrySize(GeometryArray geometryArray) {
+    int format = geometryArray.getVertexFormat();
+    int texCoordSetCount = geometryArray.getTexCoordSetCount();
+    int textureCoordinateDimension = (format & GeometryArray.TEXTURE_COORDINATE_4) != 0
+        ? 4
+        : ((format & GeometryArray.TEXTURE_COORDINATE_3) != 0
+            ? 3
+            : ((format & GeometryArray.TEXTURE_COORDINATE_2) != 0 ? 2 : 0));
+    int floatsPerVertex = 3;
+    int indexArrayCount = 1;
+    if ((format & GeometryArray.NORMALS) != 0) {
+      floatsPerVertex += 3;
+      indexArrayCount++;
+    }
+    if ((format & GeometryArray.COLOR_3) != 0) {
+      floatsPerVertex += (format & GeometryArray.COLOR_4) == GeometryArray.COLOR_4 ? 4 : 3;
+      indexArrayCount++;
+    }
+    if (textureCoordinateDimension != 0) {
+      floatsPerVertex += texCoordSetCount * textureCoordinateDimension;
+      indexArrayCount += texCoordSetCount;
+    }
+    long size = 4L * floatsPerVertex * geometryArray.getVertexCount();
+    if (geometryArray instanceof IndexedGeometryArray) {
+      if ((format & GeometryArray.USE_COORD_INDEX_ONLY) != 0) {
+        indexArrayCount = 1;
+      }
+      size += 4L * indexArrayCount * ((IndexedGeometryArray)geometryArray).getIndexCount();
+    }
+    return size;
+  }
+
+  /**
+   * Sets the folder where loaded models are stored in a binary form, to read them faster
+   * the next time a content with the same digest is loaded, even in an other session.
+   * Once the size of the files stored in this folder exceeds <code>maxSize</code>,
+   * the least recently used ones are deleted.
+   * @param modelsFolder     the folder of the cached models or <code>null</code> to stop using it
+   * @param maxSize          the maximum size in bytes of the cached models
+   * @param contentDigester  the digester used to compute the key of the cached models
+   */
+  public void setPersistentModelsFolder(File modelsFolder, long maxSize, ContentDigester contentDigester) {
+    synchronized (this.loadedModelNodes) {
+      if (modelsFolder != null) {
+        this.persistentModelCache = new PersistentModelCache(modelsFolder, maxSize);
+        this.contentDigester = contentDigester;
+      } else {
+        this.persistentModelCache = null;
+        this.contentDigester = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the count of models read from the persistent models folder.
+   */
+  public long getPersistentModelsHitCount() {
+    PersistentModelCache persistentModelCache = getPersistentModelCache();
+    return persistentModelCache != null
+        ? persistentModelCache.getHitCount()
+        : 0;
+  }
+
+  /**
+   * Returns the count of models that weren't found in the persistent models folder.
+   */
+  public long getPersistentModelsMissCount() {
+    PersistentModelCache persistentModelCache = getPersistentModelCache();
+    return persistentModelCache != null
+        ? persistentModelCache.getMissCount()
+        : 0;
+  }
+
+  private PersistentModelCache getPersistentModelCache() {
+    synchronized (this.loadedModelNodes) {
+      return this.persistentModelCache;
+    }
+  }
+
   /**
    * Returns the minimum size of a model.
    */
@@ -732,8 +898,29 @@ public class ModelManager {
    * @throws IllegalStateException if synchronous is <code>false</code> and the current thread isn't
    *    the Event Dispatch Thread.
    */
+  public void loadModel(Content content,
+                        boolean synchronous,
+                        ModelObserver modelObserver) {
+    loadModel(content, synchronous, LoadingScheduler.DEFAULT_PRIORITY, modelObserver);
+  }
+
+  /**
+   * Reads a 3D node from <code>content</code> with supported loaders
+   * and notifies the loaded model to the given <code>modelObserver</code> once available.
+   * @param content an object containing a model
+   * @param synchronous if <code>true</code>, this method will return only once model content is loaded
+   * @param priority the priority of the model if it's loaded asynchronously with {@link LoadingScheduler},
+   *    the smallest values being loaded first
+   * @param modelObserver the observer that will be notified once the model is available
+   *    or if an error happens. When the model is loaded synchronously, the observer will be notified
+   *    in the same thread as the caller, otherwise the observer will be notified in the Event
+   *    Dispatch Thread and this method must be called in Event Dispatch Thread too.
+   * @throws IllegalStateException if synchronous is <code>false</code> and the current thread isn't
+   *    the Event Dispatch Thread.
+   */
   public void loadModel(final Content content,
                         boolean synchronous,
+                        float priority,
                         ModelObserver modelObserver) {
     BranchGroup modelRoot;
     synchronized (this.loadedModelNodes) {
@@ -757,14 +944,12 @@ public class ModelManager {
     } else if (!EventQueue.isDispatchThread()) {
       throw new IllegalStateException("Asynchronous call out of Event Dispatch Thread");
     } else {
-      if (this.modelsLoader == null) {
-        this.modelsLoader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-      }
       List<ModelObserver> observers = this.loadingModelObservers.get(content);
       if (observers != null) {
         // If observers list exists, content model is already being loaded
         // register observer for future notification
         observers.add(modelObserver);
+        LoadingScheduler.getInstance().raisePriority(content, priority);
       } else {
         // Create a list of observers that will be notified once content model is loaded
         observers = new ArrayList<ModelObserver>();
@@ -772,7 +957,7 @@ public class ModelManager {
         this.loadingModelObservers.put(content, observers);
 
         // Load the model in an other thread
-        this.modelsLoader.execute(new Runnable() {
+        LoadingScheduler.getInstance().execute(content, priority, new Runnable() {
           public void run() {
             try {
               final BranchGroup loadedModel = loadModel(content);
@@ -898,6 +1083,10 @@ public class ModelManager {
 
   /**
    * Returns the node loaded synchronously from <code>content</code> with supported loaders.
+   * The loader matching the format detected from the first bytes of the content or from its name
+   * is tried first, then the other loaders are tried in turn until one of them succeeds.
+   * If a persistent models folder is set, the model is searched first in that folder
+   * and stored in it once it's loaded.
    * This method is threadsafe and may be called from any thread.
    * @param content an object containing a model
    */
@@ -909,10 +1098,45 @@ public class ModelManager {
     } else {
       urlContent = TemporaryURLContent.copyToTemporaryURLContent(content);
     }
+    PersistentModelCache persistentModelCache;
+    ContentDigester contentDigester;
+    synchronized (this.loadedModelNodes) {
+      persistentModelCache = this.persistentModelCache;
+      contentDigester = this.contentDigester;
+    }
+    byte [] contentDigest = null;
+    if (persistentModelCache != null) {
+      contentDigest = contentDigester.getContentDigest(urlContent);
+      if (contentDigest != null
+          && contentDigest.length > 0) {
+        BranchGroup modelNode = persistentModelCache.readModel(contentDigest, urlContent.getURL());
+        if (modelNode != null) {
+          modelNode.setUserData(content);
+          return modelNode;
+        }
+      } else {
+        persistentModelCache = null;
+      }
+    }
+    Class<? extends Loader> detectedLoaderClass = getDetectedLoaderClass(urlContent);
     Loader []  defaultLoaders = new Loader [] {new OBJLoader(),
                                                new DAELoader(),
                                                new Max3DSLoader(),
                                                new Lw3dLoader()};
+    if (detectedLoaderClass != null) {
+      // Move detected loader at first place, keeping the order of the other ones
+      for (int i = 0; i < defaultLoaders.length; i++) {
+        if (defaultLoaders [i].getClass() == detectedLoaderClass) {
+          Loader detectedLoader = defaultLoaders [i];
+          System.arraycopy(defaultLoaders, 0, defaultLoaders, 1, i);
+          defaultLoaders [0] = detectedLoader;
+          synchronized (this.loaderStatistics) {
+            getLoaderStatistics(detectedLoaderClass).detectedCount++;
+          }
+          break;
+        }
+      }
+    }
     Loader [] loaders = new Loader [defaultLoaders.length + this.additionalLoaderClasses.length];
     System.arraycopy(defaultLoaders, 0, loaders, 0, defaultLoaders.length);
     for (int i = 0; i < this.additionalLoaderClasses.length; i++) {
@@ -931,25 +1155,30 @@ public class ModelManager {
     Boolean useCaches = shouldUseCaches(urlContent);
     for (Loader loader : loaders) {
       boolean loadSynchronously = false;
-      try {
-        // Call setUseCaches(Boolean) by reflection
-        loader.getClass().getMethod("setUseCaches", Boolean.class).invoke(loader, useCaches);
-      } catch (NoSuchMethodException ex) {
+      Method useCachesMethod = getUseCachesMethod(loader.getClass());
+      if (useCachesMethod != null) {
+        try {
+          // Call setUseCaches(Boolean) by reflection
+          useCachesMethod.invoke(loader, useCaches);
+        } catch (InvocationTargetException ex) {
+          if (ex instanceof Exception) {
+            lastException = (Exception)ex.getTargetException();
+            continue;
+          } else {
+            ex.printStackTrace();
+          }
+        } catch (Exception ex) {
+          ex.printStackTrace();
+        }
+      } else {
         // If the method setUseCaches doesn't exist, set default cache use if different
         // from the required one and load models synchronously
         URLConnection connection = urlContent.getURL().openConnection();
         loadSynchronously = connection.getDefaultUseCaches() != useCaches;
-      } catch (InvocationTargetException ex) {
-        if (ex instanceof Exception) {
-          lastException = (Exception)ex.getTargetException();
-          continue;
-        } else {
-          ex.printStackTrace();
-        }
-      } catch (Exception ex) {
-        ex.printStackTrace();
       }
 
+      long loadStartTime = System.nanoTime();
+      boolean loaded = false;
       try {
         // Ask loader to ignore lights, fogs...
         loader.setFlags(loader.getFlags()
@@ -980,6 +1209,8 @@ public class ModelManager {
         if (modelNode.numChildren() == 0) {
           throw new IllegalArgumentException("Empty model");
         }
+        loaded = true;
+        updateLoaderStatistics(loader.getClass(), System.nanoTime() - loadStartTime, true);
 
         // Update transparency of scene window panes shapes
         updateShapeNamesAndWindowPanesTransparency(scene);
@@ -988,6 +1219,9 @@ public class ModelManager {
         updateDeformableModelHierarchy(modelNode);
         checkAppearancesName(modelNode);
         replaceMultipleSharedShapes(modelNode);
+        if (persistentModelCache != null) {
+          persistentModelCache.writeModel(contentDigest, modelNode, urlContent.getURL());
+        }
         modelNode.setUserData(content);
         return modelNode;
       } catch (IllegalArgumentException ex) {
@@ -1006,6 +1240,10 @@ public class ModelManager {
         } else {
           throw ex;
         }
+      } finally {
+        if (!loaded) {
+          updateLoaderStatistics(loader.getClass(), System.nanoTime() - loadStartTime, false);
+        }
       }
     }
 
@@ -1026,6 +1264,162 @@ public class ModelManager {
     }
   }
 
+  /**
+   * Returns the class of the default loader able to read the given content,
+   * detected from the extension of its file or zip entry name, or from its first bytes,
+   * or <code>null</code> if its format can't be detected.
+   */
+  private Class<? extends Loader> getDetectedLoaderClass(URLContent urlContent) {
+    // Search extension in file or entry name
+    String name = urlContent.isJAREntry()
+        ? urlContent.getJAREntryName()
+        : urlContent.getURL().getPath();
+    if (name != null) {
+      name = name.toLowerCase();
+      if (name.endsWith(".obj")) {
+        return OBJLoader.class;
+      } else if (name.endsWith(".dae")) {
+        return DAELoader.class;
+      } else if (name.endsWith(".3ds")) {
+        return Max3DSLoader.class;
+      } else if (name.endsWith(".lws")) {
+        return Lw3dLoader.class;
+      }
+    }
+
+    byte [] header = new byte [512];
+    int headerLength = 0;
+    InputStream in = null;
+    try {
+      in = urlContent.openStream();
+      for (int size; headerLength < header.length
+                     && (size = in.read(header, headerLength, header.length - headerLength)) != -1; ) {
+        headerLength += size;
+      }
+    } catch (IOException ex) {
+      // Let loaders report the error
+      return null;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ex) {
+        }
+      }
+    }
+
+    if (headerLength >= 6
+        && header [0] == 0x4D
+        && header [1] == 0x4D) {
+      // 3DS files start with the little endian id 0x4D4D of their main chunk
+      return Max3DSLoader.class;
+    }
+    int start = 0;
+    if (headerLength >= 3
+        && (header [0] & 0xFF) == 0xEF
+        && (header [1] & 0xFF) == 0xBB
+        && (header [2] & 0xFF) == 0xBF) {
+      // Skip UTF-8 BOM
+      start = 3;
+    }
+    for (int i = start; i < headerLength; i++) {
+      int b = header [i] & 0xFF;
+      if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f') {
+        // Unknown binary format
+        return null;
+      }
+    }
+    String textHeader;
+    try {
+      textHeader = new String(header, start, headerLength - start, "ISO-8859-1").trim();
+    } catch (IOException ex) {
+      // Can't happen with ISO-8859-1 encoding
+      throw new InternalError(ex.getMessage());
+    }
+    if (textHeader.startsWith("LWSC")) {
+      return Lw3dLoader.class;
+    } else if (textHeader.startsWith("<")) {
+      return textHeader.indexOf("<COLLADA") >= 0
+          ? DAELoader.class
+          : null;
+    } else {
+      // Search OBJ keywords at the beginning of the first complete line that isn't a comment
+      String [] lines = textHeader.split("\\r\\n|\\r|\\n");
+      int lineCount = headerLength < header.length ? lines.length : lines.length - 1;
+      for (int i = 0; i < lineCount; i++) {
+        String line = lines [i].trim();
+        if (line.length() > 0
+            && !line.startsWith("#")) {
+          return line.matches("(v|vt|vn|vp|f|g|o|s|l|p|mtllib|usemtl)(\\s.*)?")
+              ? OBJLoader.class
+              : null;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Returns the <code>setUseCaches(Boolean)</code> method of the given loader class
+   * or <code>null</code> if it doesn't exist.
+   */
+  private Method getUseCachesMethod(Class<?> loaderClass) {
+    synchronized (this.loaderUseCachesMethods) {
+      if (!this.loaderUseCachesMethods.containsKey(loaderClass)) {
+        Method useCachesMethod;
+        try {
+          useCachesMethod = loaderClass.getMethod("setUseCaches", Boolean.class);
+        } catch (NoSuchMethodException ex) {
+          useCachesMethod = null;
+        }
+        this.loaderUseCachesMethods.put(loaderClass, useCachesMethod);
+      }
+      return this.loaderUseCachesMethods.get(loaderClass);
+    }
+  }
+
+  /**
+   * Returns the modifiable statistics of the given loader class.
+   */
+  private LoaderStatistics getLoaderStatistics(Class<?> loaderClass) {
+    synchronized (this.loaderStatistics) {
+      LoaderStatistics statistics = this.loaderStatistics.get(loaderClass);
+      if (statistics == null) {
+        statistics = new LoaderStatistics(loaderClass.getName());
+        this.loaderStatistics.put(loaderClass, statistics);
+      }
+      return statistics;
+    }
+  }
+
+  /**
+   * Adds a successful or failed load to the statistics of the given loader class.
+   */
+  private void updateLoaderStatistics(Class<?> loaderClass, long loadDuration, boolean loaded) {
+    synchronized (this.loaderStatistics) {
+      LoaderStatistics statistics = getLoaderStatistics(loaderClass);
+      if (loaded) {
+        statistics.loadCount++;
+      } else {
+        statistics.failureCount++;
+      }
+      statistics.loadDuration += loadDuration;
+    }
+  }
+
+  /**
+   * Returns a copy of the statistics of the loaders used by this manager.
+   */
+  public List<LoaderStatistics> getLoaderStatistics() {
+    synchronized (this.loaderStatistics) {
+      List<LoaderStatistics> statistics = new ArrayList<LoaderStatistics>();
+      for (LoaderStatistics loaderStatistics : this.loaderStatistics.values()) {
+        statistics.add(loaderStatistics.clone());
+      }
+      return statistics;
+    }
+  }
+
   /**
    * Returns <code>true</code> if reading from the given content should be done using caches.
    */
@@ -2514,6 +2908,75 @@ public class ModelManager {
     return ShapeTools.getShape(svgPathShape);
   }
 
+  /**
+   * Load statistics of a loader class.
+   */
+  public static class LoaderStatistics implements Cloneable {
+    private final String loaderClassName;
+    private int          detectedCount;
+    private int          loadCount;
+    private int          failureCount;
+    private long         loadDuration;
+
+    private LoaderStatistics(String loaderClassName) {
+      this.loaderClassName = loaderClassName;
+    }
+
+    /**
+     * Returns the name of the loader class.
+     */
+    public String getLoaderClassName() {
+      return this.loaderClassName;
+    }
+
+    /**
+     * Returns how many times the loader was tried first because the format of a model was detected.
+     */
+    public int getDetectedCount() {
+      return this.detectedCount;
+    }
+
+    /**
+     * Returns the count of models successfully parsed by the loader.
+     */
+    public int getLoadCount() {
+      return this.loadCount;
+    }
+
+    /**
+     * Returns the count of models the loader failed to parse.
+     */
+    public int getFailureCount() {
+      return this.failureCount;
+    }
+
+    /**
+     * Returns the time spent in successful and failed parsing in milliseconds.
+     */
+    public long getLoadDuration() {
+      return this.loadDuration / 1000000;
+    }
+
+    @Override
+    protected LoaderStatistics clone() {
+      try {
+        return (LoaderStatistics)super.clone();
+      } catch (CloneNotSupportedException ex) {
+        throw new IllegalStateException("Super class isn't cloneable");
+      }
+    }
+  }
+
+  /**
+   * A digester computing the key of the models stored in the persistent models folder.
+   */
+  public static interface ContentDigester {
+    /**
+     * Returns the digest of the given content or <code>null</code> if it can't be computed.
+     */
+    public byte [] getContentDigest(Content content);
+  }
+
   /**
    * An observer that receives model loading notifications.
    */
@@ -30,7 +30,6 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -996,9 +995,15 @@ public class OBJLoader extends LoaderBase implements Loader {
   }
 
   private Boolean                 useCaches;
-  private List<Point3f>           vertices;
-  private List<TexCoord2f>        textureCoordinates;
-  private List<Vector3f>          normals;
+  private float []                vertices;
+  private int                     vertexCount;
+  private float []                textureCoordinates;
+  private int                     textureCoordinateCount;
+  private float []                normals;
+  private int                     normalCount;
+  private int []                  geometryVertexIndices;
+  private int []                  geometryTextureCoordinateIndices;
+  private int []                  geometryNormalIndices;
   private Map<String, Group>      groups;
   private Group                   currentGroup;
   private String                  currentMaterial;
@@ -1030,12 +1035,7 @@ public class OBJLoader extends LoaderBase implements Loader {
     } catch (MalformedURLException ex) {
       throw new FileNotFoundException(file);
     }
-    try {
-      return load(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"), baseUrl);
-    } catch (UnsupportedEncodingException ex) {
-      // Shouldn't happen
-      return load(new InputStreamReader(new FileInputStream(file)));
-    }
+    return load(new FileInputStream(file), baseUrl);
   }
 
   /**
@@ -1052,12 +1052,7 @@ public class OBJLoader extends LoaderBase implements Loader {
     } catch (IOException ex) {
       throw new FileNotFoundException("Can't read " + url);
     }
-    try {
-      return load(new InputStreamReader(in, "ISO-8859-1"), baseUrl);
-    } catch (UnsupportedEncodingException ex) {
-      // Shouldn't happen
-      return load(new InputStreamReader(in));
-    }
+    return load(in, baseUrl);
   }
 
   /**
@@ -1075,23 +1070,30 @@ public class OBJLoader extends LoaderBase implements Loader {
    * Returns the scene described in the given OBJ file stream.
    */
   public Scene load(Reader reader) throws FileNotFoundException, IncorrectFormatException, ParsingErrorException {
-    return load(reader, null);
+    try {
+      return parseObjectStream(new ObjectStreamScanner(reader), null);
+    } catch (IOException ex) {
+      throw new ParsingErrorException(ex.getMessage());
+    } finally {
+      try {
+        reader.close();
+      } catch (IOException ex) {
+        throw new ParsingErrorException(ex.getMessage());
+      }
+    }
   }
 
   /**
-   * Returns the scene described in the given OBJ file.
+   * Returns the scene described in the given OBJ input stream, read as ISO-8859-1 characters.
    */
-  private Scene load(Reader reader, URL baseUrl) throws FileNotFoundException {
-    if (!(reader instanceof BufferedReader)) {
-      reader = new BufferedReader(reader);
-    }
+  private Scene load(InputStream in, URL baseUrl) throws FileNotFoundException {
     try {
-      return parseObjectStream(reader, baseUrl);
+      return parseObjectStream(new ObjectStreamScanner(in), baseUrl);
     } catch (IOException ex) {
       throw new ParsingErrorException(ex.getMessage());
     } finally {
       try {
-        reader.close();
+        in.close();
       } catch (IOException ex) {
         throw new ParsingErrorException(ex.getMessage());
       }
@@ -1099,52 +1101,162 @@ public class OBJLoader extends LoaderBase implements Loader {
   }
 
   /**
-   * Returns the scene parsed from a stream.
+   * Returns the scene parsed from the characters read by the given scanner.
+   * This method doesn't create intermediate strings and objects for coordinates and indices.
    */
-  private Scene parseObjectStream(Reader reader,
+  private Scene parseObjectStream(ObjectStreamScanner scanner,
                                   URL baseUrl) throws IOException {
-    this.vertices = new ArrayList<Point3f>();
-    this.textureCoordinates = new ArrayList<TexCoord2f>();
-    this.normals = new ArrayList<Vector3f>();
+    initParsedObjects();
+    while (scanner.skipSpaces() != -1) {
+      if (!scanner.readEndOfLine()) {
+        scanner.readToken(false);
+        parseObjectLine(scanner, baseUrl);
+      }
+    }
+    return createParsedScene();
+  }
+
+  /**
+   * Initializes the objects filled during parsing.
+   */
+  private void initParsedObjects() {
+    this.vertices = new float [3 * 256];
+    this.vertexCount = 0;
+    this.textureCoordinates = new float [2 * 256];
+    this.textureCoordinateCount = 0;
+    this.normals = new float [3 * 256];
+    this.normalCount = 0;
+    this.geometryVertexIndices = new int [16];
+    this.geometryTextureCoordinateIndices = new int [16];
+    this.geometryNormalIndices = new int [16];
     this.groups = new LinkedHashMap<String, Group>();
     this.currentGroup = new Group("default");
     this.groups.put("default", this.currentGroup);
     this.currentMaterial = "default";
     this.appearances = new HashMap<String, Appearance>(DEFAULT_APPEARANCES);
+  }
 
-    StreamTokenizer tokenizer = createTokenizer(reader);
-    while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
-      switch (tokenizer.ttype) {
-        case StreamTokenizer.TT_WORD :
-          parseObjectLine(tokenizer, baseUrl);
-          break;
-        case StreamTokenizer.TT_EOL:
-          break;
-        default :
-          throw new IncorrectFormatException("Unexpected token " + tokenizer.sval
-              + " at row " + tokenizer.lineno());
-      }
-    }
-
+  /**
+   * Returns the scene matching parsed objects and frees them.
+   */
+  private Scene createParsedScene() {
     try {
       return createScene();
     } finally {
       this.vertices = null;
       this.textureCoordinates = null;
       this.normals = null;
+      this.geometryVertexIndices = null;
+      this.geometryTextureCoordinateIndices = null;
+      this.geometryNormalIndices = null;
       this.groups = null;
       this.appearances = null;
     }
   }
 
+  /**
+   * Adds the given vertex to parsed vertices.
+   */
+  private void addVertex(float x, float y, float z) {
+    if (this.vertices.length < 3 * this.vertexCount + 3) {
+      float [] vertices = new float [this.vertices.length * 2];
+      System.arraycopy(this.vertices, 0, vertices, 0, this.vertices.length);
+      this.vertices = vertices;
+    }
+    int index = 3 * this.vertexCount++;
+    this.vertices [index] = x;
+    this.vertices [index + 1] = y;
+    this.vertices [index + 2] = z;
+  }
+
+  /**
+   * Adds the given texture coordinate to parsed texture coordinates.
+   */
+  private void addTextureCoordinate(float x, float y) {
+    if (this.textureCoordinates.length < 2 * this.textureCoordinateCount + 2) {
+      float [] textureCoordinates = new float [this.textureCoordinates.length * 2];
+      System.arraycopy(this.textureCoordinates, 0, textureCoordinates, 0, this.textureCoordinates.length);
+      this.textureCoordinates = textureCoordinates;
+    }
+    int index = 2 * this.textureCoordinateCount++;
+    this.textureCoordinates [index] = x;
+    this.textureCoordinates [index + 1] = y;
+  }
+
+  /**
+   * Adds the given normal to parsed normals.
+   */
+  private void addNormal(float x, float y, float z) {
+    if (this.normals.length < 3 * this.normalCount + 3) {
+      float [] normals = new float [this.normals.length * 2];
+      System.arraycopy(this.normals, 0, normals, 0, this.normals.length);
+      this.normals = normals;
+    }
+    int index = 3 * this.normalCount++;
+    this.normals [index] = x;
+    this.normals [index + 1] = y;
+    this.normals [index + 2] = z;
+  }
+
+  /**
+   * Ensures the buffers used to store the indices of the geometry being parsed
+   * can contain the given count of indices.
+   */
+  private void ensureGeometryIndicesCapacity(int indexCount) {
+    if (this.geometryVertexIndices.length < indexCount) {
+      int length = Math.max(indexCount, this.geometryVertexIndices.length * 2);
+      this.geometryVertexIndices = copyOf(this.geometryVertexIndices, length);
+      this.geometryTextureCoordinateIndices = copyOf(this.geometryTextureCoordinateIndices, length);
+      this.geometryNormalIndices = copyOf(this.geometryNormalIndices, length);
+    }
+  }
+
+  /**
+   * Returns a copy of the <code>length</code> first items of the given array,
+   * or <code>null</code> if <code>length</code> is 0.
+   */
+  private static int [] copyOf(int [] array, int length) {
+    if (length == 0) {
+      return null;
+    } else {
+      int [] copy = new int [length];
+      System.arraycopy(array, 0, copy, 0, Math.min(length, array.length));
+      return copy;
+    }
+  }
+
+  /**
+   * Returns an array containing the given indices, or <code>null</code> if the list is empty.
+   */
+  private static int [] toArray(List<Integer> indices) {
+    if (indices.isEmpty()) {
+      return null;
+    } else {
+      int [] array = new int [indices.size()];
+      for (int i = 0; i < array.length; i++) {
+        array [i] = indices.get(i);
+      }
+      return array;
+    }
+  }
+
   /**
    * Returns a new scene created from the parsed objects.
    */
   private SceneBase createScene() {
-    Point3f [] vertices = this.vertices.toArray(new Point3f [this.vertices.size()]);
-    TexCoord2f [] textureCoordinates =
-        this.textureCoordinates.toArray(new TexCoord2f [this.textureCoordinates.size()]);
-    Vector3f [] normals = this.normals.toArray(new Vector3f [this.normals.size()]);
+    // Create vertices, texture coordinates and normals arrays shared by all the geometries
+    Point3f [] vertices = new Point3f [this.vertexCount];
+    for (int i = 0, index = 0; i < vertices.length; i++, index += 3) {
+      vertices [i] = new Point3f(this.vertices [index], this.vertices [index + 1], this.vertices [index + 2]);
+    }
+    TexCoord2f [] textureCoordinates = new TexCoord2f [this.textureCoordinateCount];
+    for (int i = 0, index = 0; i < textureCoordinates.length; i++, index += 2) {
+      textureCoordinates [i] = new TexCoord2f(this.textureCoordinates [index], this.textureCoordinates [index + 1]);
+    }
+    Vector3f [] normals = new Vector3f [this.normalCount];
+    for (int i = 0, index = 0; i < normals.length; i++, index += 3) {
+      normals [i] = new Vector3f(this.normals [index], this.normals [index + 1], this.normals [index + 2]);
+    }
 
     SceneBase scene = new SceneBase();
     BranchGroup sceneRoot = new BranchGroup();
@@ -1287,206 +1399,171 @@ public class OBJLoader extends LoaderBase implements Loader {
   }
 
   /**
-   * Parses the line starting with a word.
+   * Parses the line starting with the word read by the given scanner.
    */
-  private void parseObjectLine(StreamTokenizer tokenizer,
+  private void parseObjectLine(ObjectStreamScanner scanner,
                                URL baseUrl) throws IOException {
-    if ("v".equals(tokenizer.sval)) {
+    if (scanner.isToken("v")) {
       // Read vertex v x y z
-      float x = parseNumber(tokenizer);
-      skipBackSlash(tokenizer);
-      float y = parseNumber(tokenizer);
-      skipBackSlash(tokenizer);
-      float z = parseNumber(tokenizer);
-      this.vertices.add(new Point3f(x, y, z));
+      float x = scanner.parseNumber();
+      scanner.skipBackSlash();
+      float y = scanner.parseNumber();
+      scanner.skipBackSlash();
+      float z = scanner.parseNumber();
+      addVertex(x, y, z);
       // Skip next number if it exists
-      if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
-        tokenizer.pushBack();
-      }
-    } else if ("vn".equals(tokenizer.sval)) {
+      scanner.readToken(false);
+    } else if (scanner.isToken("vn")) {
       // Read normal vn x y z
-      float x = parseNumber(tokenizer);
-      skipBackSlash(tokenizer);
-      float y = parseNumber(tokenizer);
-      skipBackSlash(tokenizer);
-      float z = parseNumber(tokenizer);
-      this.normals.add(new Vector3f(x, y, z));
-    } else if ("vt".equals(tokenizer.sval)) {
+      float x = scanner.parseNumber();
+      scanner.skipBackSlash();
+      float y = scanner.parseNumber();
+      scanner.skipBackSlash();
+      float z = scanner.parseNumber();
+      addNormal(x, y, z);
+    } else if (scanner.isToken("vt")) {
       // Read texture coordinate vt x y
       //                       or vt x y z
-      float x = parseNumber(tokenizer);
-      skipBackSlash(tokenizer);
-      float y = parseNumber(tokenizer);
-      this.textureCoordinates.add(new TexCoord2f(x, y));
+      float x = scanner.parseNumber();
+      scanner.skipBackSlash();
+      float y = scanner.parseNumber();
+      addTextureCoordinate(x, y);
       // Skip next number if it exists
-      if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
-        tokenizer.pushBack();
-      }
-    } else if ("l".equals(tokenizer.sval)) {
-      tokenizer.ordinaryChar('/');
+      scanner.readToken(false);
+    } else if (scanner.isToken("l")) {
       // Read line l v       v       v       ...
       //        or l v/vt    v/vt    v/vt    ...
-      List<Integer> vertexIndices = new ArrayList<Integer>(2);
-      List<Integer> textureCoordinateIndices = new ArrayList<Integer>(2);
-      boolean first = true;
-      while (true) {
-        if (first) {
-          first = false;
-        } else {
-          skipBackSlash(tokenizer);
+      int vertexIndexCount = 0;
+      int textureCoordinateIndexCount = 0;
+      for (boolean first = true; ; first = false) {
+        if (!first) {
+          scanner.skipBackSlash();
         }
-        if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+        if (ObjectStreamScanner.isEndOfLine(scanner.skipSpaces())) {
           break;
-        } else {
-          tokenizer.pushBack();
         }
+        ensureGeometryIndicesCapacity(vertexIndexCount + 1);
         // Read vertex index
-        int vertexIndex = parseInteger(tokenizer) - 1;
+        int vertexIndex = scanner.parseInteger() - 1;
         if (vertexIndex < 0) {
-          vertexIndex += this.vertices.size() + 1;
+          vertexIndex += this.vertexCount + 1;
         }
-        vertexIndices.add(vertexIndex);
+        this.geometryVertexIndices [vertexIndexCount++] = vertexIndex;
 
-        if (tokenizer.nextToken() != '/') {
-          // l v
-          tokenizer.pushBack();
-        } else {
+        if (scanner.skipSpaces() == '/') {
           // l v/vt : read texture coordinate index
-          int textureCoordinateIndex = parseInteger(tokenizer) - 1;
+          scanner.skipCharacter();
+          int textureCoordinateIndex = scanner.parseInteger() - 1;
           if (textureCoordinateIndex < 0) {
-            textureCoordinateIndex += this.textureCoordinates.size() + 1;
+            textureCoordinateIndex += this.textureCoordinateCount + 1;
           }
-          textureCoordinateIndices.add(textureCoordinateIndex);
+          this.geometryTextureCoordinateIndices [textureCoordinateIndexCount++] = textureCoordinateIndex;
         }
       }
-      tokenizer.pushBack();
-      tokenizer.wordChars('/', '/');
-      if (textureCoordinateIndices.size() != 0
-          && textureCoordinateIndices.size() != vertexIndices.size()) {
+      if (textureCoordinateIndexCount != vertexIndexCount) {
         // Ignore unconsistent texture coordinate
-        textureCoordinateIndices.clear();
+        textureCoordinateIndexCount = 0;
       }
-      if (vertexIndices.size() > 1) {
-        this.currentGroup.addGeometry(new Line(vertexIndices, textureCoordinateIndices,
-            this.currentMaterial));
+      if (vertexIndexCount > 1) {
+        this.currentGroup.addGeometry(new Line(copyOf(this.geometryVertexIndices, vertexIndexCount),
+            copyOf(this.geometryTextureCoordinateIndices, textureCoordinateIndexCount), this.currentMaterial));
       }
-    } else if ("f".equals(tokenizer.sval)) {
-      tokenizer.ordinaryChar('/');
+    } else if (scanner.isToken("f")) {
       // Read face f v       v       v       ...
       //        or f v//vn   v//vn   v//vn   ...
       //        or f v/vt    v/vt    v/vt    ...
       //        or f v/vt/vn v/vt/vn v/vt/vn ...
-      List<Integer> vertexIndices = new ArrayList<Integer>(4);
-      List<Integer> textureCoordinateIndices = new ArrayList<Integer>(4);
-      List<Integer> normalIndices = new ArrayList<Integer>(4);
-      boolean first = true;
-      while (true) {
-        if (first) {
-          first = false;
-        } else {
-          skipBackSlash(tokenizer);
+      int vertexIndexCount = 0;
+      int textureCoordinateIndexCount = 0;
+      int normalIndexCount = 0;
+      for (boolean first = true; ; first = false) {
+        if (!first) {
+          scanner.skipBackSlash();
         }
-        if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+        if (ObjectStreamScanner.isEndOfLine(scanner.skipSpaces())) {
           break;
-        } else {
-          tokenizer.pushBack();
         }
+        ensureGeometryIndicesCapacity(vertexIndexCount + 1);
         // Read vertex index
-        int vertexIndex = parseInteger(tokenizer) - 1;
+        int vertexIndex = scanner.parseInteger() - 1;
         if (vertexIndex < 0) {
-          vertexIndex += this.vertices.size() + 1;
+          vertexIndex += this.vertexCount + 1;
         }
-        vertexIndices.add(vertexIndex);
+        this.geometryVertexIndices [vertexIndexCount++] = vertexIndex;
 
-        if (tokenizer.nextToken() != '/') {
-          // f v
-          tokenizer.pushBack();
-        } else {
-          if (tokenizer.nextToken() != '/') {
+        if (scanner.skipSpaces() == '/') {
+          scanner.skipCharacter();
+          if (scanner.skipSpaces() != '/') {
             // f v/vt : read texture coordinate index
-            tokenizer.pushBack();
-            int textureCoordinateIndex = parseInteger(tokenizer) - 1;
+            int textureCoordinateIndex = scanner.parseInteger() - 1;
             if (textureCoordinateIndex < 0) {
-              textureCoordinateIndex += this.textureCoordinates.size() + 1;
+              textureCoordinateIndex += this.textureCoordinateCount + 1;
             }
-            textureCoordinateIndices.add(textureCoordinateIndex);
-            tokenizer.nextToken();
+            this.geometryTextureCoordinateIndices [textureCoordinateIndexCount++] = textureCoordinateIndex;
           }
-          if (tokenizer.ttype == '/') {
+          if (scanner.skipSpaces() == '/') {
             //    f v//vn
             // or f v/vt/vn : read normal index
-            int normalIndex = parseInteger(tokenizer) - 1;
+            scanner.skipCharacter();
+            int normalIndex = scanner.parseInteger() - 1;
             if (normalIndex < 0) {
-              normalIndex += this.normals.size() + 1;
+              normalIndex += this.normalCount + 1;
             }
-            normalIndices.add(normalIndex);
-          } else {
-            tokenizer.pushBack();
+            this.geometryNormalIndices [normalIndexCount++] = normalIndex;
           }
         }
       }
-      tokenizer.pushBack();
-      tokenizer.wordChars('/', '/');
-      if (textureCoordinateIndices.size() != 0
-          && textureCoordinateIndices.size() != vertexIndices.size()) {
+      if (textureCoordinateIndexCount != vertexIndexCount) {
         // Ignore unconsistent texture coordinate
-        textureCoordinateIndices.clear();
+        textureCoordinateIndexCount = 0;
       }
-      if (normalIndices.size() != 0
-          && normalIndices.size() != vertexIndices.size()) {
+      if (normalIndexCount != vertexIndexCount) {
         // Ignore unconsistent normals
-        normalIndices.clear();
+        normalIndexCount = 0;
       }
-      if (vertexIndices.size() > 2) {
-        this.currentGroup.addGeometry(new Face(vertexIndices, textureCoordinateIndices, normalIndices,
+      if (vertexIndexCount > 2) {
+        this.currentGroup.addGeometry(new Face(copyOf(this.geometryVertexIndices, vertexIndexCount),
+            copyOf(this.geometryTextureCoordinateIndices, textureCoordinateIndexCount),
+            copyOf(this.geometryNormalIndices, normalIndexCount),
             this.currentSmooth, this.currentMaterial));
       }
-    } else if ("g".equals(tokenizer.sval)
-               || "o".equals(tokenizer.sval)) {
+    } else if (scanner.isToken("g")
+               || scanner.isToken("o")) {
       // Read group name g name
       //  or object name o name
-      if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
-        this.currentGroup = this.groups.get(tokenizer.sval);
+      if (scanner.readToken(false)) {
+        String name = scanner.getToken();
+        this.currentGroup = this.groups.get(name);
         if (this.currentGroup == null) {
-          this.currentGroup = new Group(tokenizer.sval);
-          this.groups.put(this.currentGroup.getName(), this.currentGroup);
+          this.currentGroup = new Group(name);
+          this.groups.put(name, this.currentGroup);
         }
-      } else if (tokenizer.ttype == StreamTokenizer.TT_EOL) {
+      } else {
         // Use default group
         this.currentGroup = this.groups.get("default");
-        tokenizer.pushBack();
-      } else {
-        throw new IncorrectFormatException("Expected group or object name at line " + tokenizer.lineno());
       }
       // Skip other names
-      while (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
+      while (scanner.readToken(false)) {
       }
-      tokenizer.pushBack();
-    } else if ("s".equals(tokenizer.sval)) {
+    } else if (scanner.isToken("s")) {
       // Read smoothing group s n
       //                   or s off
-      if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
-        this.currentSmooth = !"off".equals(tokenizer.sval);
+      if (scanner.readToken(false)) {
+        this.currentSmooth = !scanner.isToken("off");
       } else {
-        throw new IncorrectFormatException("Expected smoothing group or off at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected smoothing group or off at line " + scanner.getLineNumber());
       }
-    } else if ("usemtl".equals(tokenizer.sval)) {
+    } else if (scanner.isToken("usemtl")) {
       // Read the material name usemtl name (tolerating space in the name)
-      tokenizer.wordChars(' ', ' ');
-      int usemtlToken = tokenizer.nextToken();
-      tokenizer.whitespaceChars(' ', ' ');
-      if (usemtlToken == StreamTokenizer.TT_WORD) {
-        this.currentMaterial = tokenizer.sval;
+      if (scanner.readName()) {
+        this.currentMaterial = scanner.getToken();
       } else {
-        throw new IncorrectFormatException("Expected material name at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected material name at line " + scanner.getLineNumber());
       }
-    } else if ("mtllib".equals(tokenizer.sval)) {
+    } else if (scanner.isToken("mtllib")) {
       // Read characters following mtllib in case they contain a file name with spaces
-      tokenizer.wordChars(' ', ' ');
-      int mtllibToken = tokenizer.nextToken();
-      tokenizer.whitespaceChars(' ', ' ');
-      if (mtllibToken == StreamTokenizer.TT_WORD) {
-        String mtllibString = tokenizer.sval.trim();
+      if (scanner.readName()) {
+        String mtllibString = scanner.getToken().trim();
         // First try to parse space separated library files
         int validLibCount = 0;
         String [] libs = mtllibString.split(" ");
@@ -1500,20 +1577,15 @@ public class OBJLoader extends LoaderBase implements Loader {
           parseMaterial(mtllibString, baseUrl);
         }
       } else {
-        throw new IncorrectFormatException("Expected material library at line " + tokenizer.lineno());
+        throw new IncorrectFormatException("Expected material library at line " + scanner.getLineNumber());
       }
     } else {
       // Skip other lines (including comment lines starting by #)
-      int token;
-      do {
-        token = tokenizer.nextToken();
-      } while (token != StreamTokenizer.TT_EOL && token != StreamTokenizer.TT_EOF);
-      tokenizer.pushBack();
+      scanner.skipLine();
     }
 
-    int token = tokenizer.nextToken();
-    if (token != StreamTokenizer.TT_EOL && token != StreamTokenizer.TT_EOF) {
-      throw new IncorrectFormatException("Expected end of line at line " + tokenizer.lineno());
+    if (!scanner.readEndOfLine()) {
+      throw new IncorrectFormatException("Expected end of line at line " + scanner.getLineNumber());
     }
   }
 
@@ -1569,21 +1641,6 @@ public class OBJLoader extends LoaderBase implements Loader {
     }
   }
 
-  /**
-   * Skips the back slash in the next token if it's followed by a new line.
-   */
-  private static void skipBackSlash(StreamTokenizer tokenizer) throws IOException {
-    tokenizer.ordinaryChar('\\');
-    if (tokenizer.nextToken() == '\\') {
-      if (tokenizer.nextToken() != StreamTokenizer.TT_EOL) {
-        throw new IncorrectFormatException("Expected new line after \\ character");
-      }
-    } else {
-      tokenizer.pushBack();
-    }
-    tokenizer.wordChars('\\', '\\');
-  }
-
   /**
    * Parses appearances from the given material file and returns <code>true</code> if the file exists.
    */
@@ -1867,6 +1924,304 @@ public class OBJLoader extends LoaderBase implements Loader {
     return material;
   }
 
+  /**
+   * A scanner reading the words of an OBJ stream from its bytes, considered as ISO-8859-1 characters,
+   * or from the characters of a reader. Spaces and tabulations separate words, and numbers are parsed without creating strings
+   * when they can be converted to the closest float with only one float operation.
+   */
+  private static class ObjectStreamScanner {
+    private static final float [] POWERS_OF_TEN = {1E0f, 1E1f, 1E2f, 1E3f, 1E4f, 1E5f, 1E6f, 1E7f, 1E8f, 1E9f, 1E10f};
+    // Greatest integer below which all the integers can be represented by a float
+    private static final int      MAX_FLOAT_EXACT_INTEGER = 1 << 24;
+
+    private final InputStream in;
+    private final byte []     buffer;
+    private final Reader      reader;
+    private final char []     charBuffer;
+    private int               bufferLength;
+    private int               position;
+    private boolean           endOfStream;
+    private int               lineNumber;
+    private char []           token;
+    private int               tokenLength;
+
+    public ObjectStreamScanner(InputStream in) {
+      this(in, new byte [65536], null, null);
+    }
+
+    public ObjectStreamScanner(Reader reader) {
+      this(null, null, reader, new char [65536]);
+    }
+
+    private ObjectStreamScanner(InputStream in, byte [] buffer, Reader reader, char [] charBuffer) {
+      this.in = in;
+      this.buffer = buffer;
+      this.reader = reader;
+      this.charBuffer = charBuffer;
+      this.lineNumber = 1;
+      this.token = new char [64];
+    }
+
+    /**
+     * Returns <code>true</code> if the given character is an end of line or the end of stream.
+     */
+    public static boolean isEndOfLine(int c) {
+      return c == '\n' || c == '\r' || c == -1;
+    }
+
+    /**
+     * Returns the current line number.
+     */
+    public int getLineNumber() {
+      return this.lineNumber;
+    }
+
+    /**
+     * Returns the next character without reading it, or -1 at the end of the stream.
+     */
+    private int peek() throws IOException {
+      if (this.position == this.bufferLength) {
+        if (this.endOfStream) {
+          return -1;
+        }
+        this.position = 0;
+        this.bufferLength = this.in != null
+            ? this.in.read(this.buffer)
+            : this.reader.read(this.charBuffer);
+        if (this.bufferLength <= 0) {
+          this.bufferLength = 0;
+          this.endOfStream = true;
+          return -1;
+        }
+      }
+      return this.in != null
+          ? this.buffer [this.position] & 0xFF
+          : this.charBuffer [this.position];
+    }
+
+    /**
+     * Skips the next character.
+     */
+    public void skipCharacter() throws IOException {
+      if (peek() != -1) {
+        this.position++;
+      }
+    }
+
+    /**
+     * Skips spaces and tabulations and returns the next character without reading it.
+     */
+    public int skipSpaces() throws IOException {
+      int c = peek();
+      while (c == ' ' || c == '\t') {
+        this.position++;
+        c = peek();
+      }
+      return c;
+    }
+
+    /**
+     * Skips the characters of the current line until its end.
+     */
+    public void skipLine() throws IOException {
+      while (!isEndOfLine(peek())) {
+        this.position++;
+      }
+    }
+
+    /**
+     * Reads the end of the current line after optional spaces, and returns <code>true</code>
+     * if the end of line or the end of stream was reached.
+     */
+    public boolean readEndOfLine() throws IOException {
+      int c = skipSpaces();
+      if (c == '\r') {
+        this.position++;
+        this.lineNumber++;
+        if (peek() == '\n') {
+          this.position++;
+        }
+        return true;
+      } else if (c == '\n') {
+        this.position++;
+        this.lineNumber++;
+        return true;
+      } else {
+        return c == -1;
+      }
+    }
+
+    /**
+     * Skips the back slash in the next word if it's followed by a new line.
+     */
+    public void skipBackSlash() throws IOException {
+      if (skipSpaces() == '\\') {
+        this.position++;
+        if (skipSpaces() == -1
+            || !readEndOfLine()) {
+          throw new IncorrectFormatException("Expected new line after \\ character");
+        }
+      }
+    }
+
+    /**
+     * Reads the next word after optional spaces, and returns <code>false</code> if the end of line
+     * was reached before. If <code>slashSeparator</code> is <code>true</code>, the word stops at the first /.
+     */
+    public boolean readToken(boolean slashSeparator) throws IOException {
+      this.tokenLength = 0;
+      for (int c = skipSpaces();
+           c != ' ' && c != '\t' && !isEndOfLine(c) && (c != '/' || !slashSeparator);
+           c = peek()) {
+        appendToken(c);
+        this.position++;
+      }
+      return this.tokenLength > 0;
+    }
+
+    /**
+     * Reads the characters following optional spaces until a tabulation or the end of the line,
+     * and returns <code>false</code> if no character was read.
+     */
+    public boolean readName() throws IOException {
+      this.tokenLength = 0;
+      for (int c = skipSpaces(); c != '\t' && !isEndOfLine(c); c = peek()) {
+        appendToken(c);
+        this.position++;
+      }
+      return this.tokenLength > 0;
+    }
+
+    private void appendToken(int c) {
+      if (this.tokenLength == this.token.length) {
+        char [] token = new char [this.token.length * 2];
+        System.arraycopy(this.token, 0, token, 0, this.tokenLength);
+        this.token = token;
+      }
+      this.token [this.tokenLength++] = (char)c;
+    }
+
+    /**
+     * Returns the last read word.
+     */
+    public String getToken() {
+      return new String(this.token, 0, this.tokenLength);
+    }
+
+    /**
+     * Returns <code>true</code> if the last read word is equal to the given string.
+     */
+    public boolean isToken(String s) {
+      if (s.length() != this.tokenLength) {
+        return false;
+      }
+      for (int i = 0; i < this.tokenLength; i++) {
+        if (s.charAt(i) != this.token [i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the integer contained in the next word, stopping at the first /.
+     */
+    public int parseInteger() throws IOException {
+      if (!readToken(true)) {
+        throw new IncorrectFormatException("Expected an integer at line " + this.lineNumber);
+      }
+      char [] token = this.token;
+      int i = token [0] == '-' || token [0] == '+'  ? 1  : 0;
+      // Parse directly integers smaller than 10 digits
+      if (i < this.tokenLength
+          && this.tokenLength - i < 10) {
+        int value = 0;
+        for ( ; i < this.tokenLength; i++) {
+          char c = token [i];
+          if (c >= '0' && c <= '9') {
+            value = value * 10 + c - '0';
+          } else {
+            break;
+          }
+        }
+        if (i == this.tokenLength) {
+          return token [0] == '-'  ? -value  : value;
+        }
+      }
+      String integer = getToken();
+      try {
+        return Integer.parseInt(integer);
+      } catch (NumberFormatException ex) {
+        throw new IncorrectFormatException("Found " + integer +
+            " instead of an integer at line " + this.lineNumber);
+      }
+    }
+
+    /**
+     * Returns the number contained in the next word.
+     */
+    public float parseNumber() throws IOException {
+      if (!readToken(false)) {
+        throw new IncorrectFormatException("Expected a number at line " + this.lineNumber);
+      }
+      char [] token = this.token;
+      int i = token [0] == '-' || token [0] == '+'  ? 1  : 0;
+      int mantissa = 0;
+      int digitCount = 0;
+      int fractionDigitCount = 0;
+      boolean decimalPoint = false;
+      for ( ; i < this.tokenLength && mantissa < MAX_FLOAT_EXACT_INTEGER; i++) {
+        char c = token [i];
+        if (c >= '0' && c <= '9') {
+          mantissa = mantissa * 10 + c - '0';
+          digitCount++;
+          if (decimalPoint) {
+            fractionDigitCount++;
+          }
+        } else if (c == '.' && !decimalPoint) {
+          decimalPoint = true;
+        } else {
+          break;
+        }
+      }
+      int exponent = 0;
+      if (digitCount > 0
+          && i < this.tokenLength - 1
+          && (token [i] == 'e' || token [i] == 'E')) {
+        int j = token [++i] == '-' || token [i] == '+'  ? i + 1  : i;
+        if (j < this.tokenLength
+            && this.tokenLength - j < 3) {
+          for (i = j; i < this.tokenLength && token [i] >= '0' && token [i] <= '9'; i++) {
+            exponent = exponent * 10 + token [i] - '0';
+          }
+          if (token [j - 1] == '-') {
+            exponent = -exponent;
+          }
+        }
+      }
+      exponent -= fractionDigitCount;
+      if (digitCount > 0
+          && i == this.tokenLength
+          && mantissa <= MAX_FLOAT_EXACT_INTEGER
+          && exponent >= -10
+          && exponent <= 10) {
+        // As mantissa and power of ten are exactly represented by floats,
+        // a single operation gives the float closest to the parsed number
+        float value = exponent < 0
+            ? mantissa / POWERS_OF_TEN [-exponent]
+            : mantissa * POWERS_OF_TEN [exponent];
+        return token [0] == '-'  ? -value  : value;
+      }
+      String number = getToken();
+      try {
+        return Float.parseFloat(number);
+      } catch (NumberFormatException ex) {
+        throw new IncorrectFormatException("Found " + number +
+            " instead of a number at line " + this.lineNumber);
+      }
+    }
+  }
+
   /**
    * The coordinates indices of a geometry.
    */
@@ -1875,19 +2230,11 @@ public class OBJLoader extends LoaderBase implements Loader {
     private int [] textureCoordinateIndices;
     private String material;
 
-    public Geometry(List<Integer> vertexIndices,
-                    List<Integer> textureCoordinateIndices,
-                    String        material) {
-      this.vertexIndices = new int [vertexIndices.size()];
-      for (int i = 0; i < this.vertexIndices.length; i++) {
-        this.vertexIndices [i] = vertexIndices.get(i);
-      }
-      if (textureCoordinateIndices.size() != 0) {
-        this.textureCoordinateIndices = new int [textureCoordinateIndices.size()];
-        for (int i = 0; i < this.textureCoordinateIndices.length; i++) {
-          this.textureCoordinateIndices [i] = textureCoordinateIndices.get(i);
-        }
-      }
+    public Geometry(int [] vertexIndices,
+                    int [] textureCoordinateIndices,
+                    String material) {
+      this.vertexIndices = vertexIndices;
+      this.textureCoordinateIndices = textureCoordinateIndices;
       this.material = material;
     }
 
@@ -1913,9 +2260,9 @@ public class OBJLoader extends LoaderBase implements Loader {
    * The coordinates indices of a line.
    */
   private static class Line extends Geometry {
-    public Line(List<Integer> vertexIndices,
-                List<Integer> textureCoordinateIndices,
-                String        material) {
+    public Line(int [] vertexIndices,
+                int [] textureCoordinateIndices,
+                String material) {
       super(vertexIndices, textureCoordinateIndices, material);
     }
   }
@@ -1927,19 +2274,14 @@ public class OBJLoader extends LoaderBase implements Loader {
     private int []  normalIndices;
     private boolean smooth;
 
-    public Face(List<Integer> vertexIndices,
-                List<Integer> textureCoordinateIndices,
-                List<Integer> normalIndices,
-                boolean       smooth,
-                String        material) {
+    public Face(int []  vertexIndices,
+                int []  textureCoordinateIndices,
+                int []  normalIndices,
+                boolean smooth,
+                String  material) {
       super(vertexIndices, textureCoordinateIndices, material);
       this.smooth = smooth;
-      if (normalIndices.size() != 0) {
-        this.normalIndices = new int [normalIndices.size()];
-        for (int i = 0; i < this.normalIndices.length; i++) {
-          this.normalIndices [i] = normalIndices.get(i);
-        }
-      }
+      this.normalIndices = normalIndices;
     }
 
     public boolean isSmooth() {
@@ -0,0 +1,244 @@
+/*
+ * PersistentFileCache.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache storing in a folder files named from the digest of the content they were computed from.
+ * Once the total size of the files of the folder exceeds the maximum size of the cache,
+ * the least recently used files are deleted.
+ * @author Emmanuel Puybaret
+ */
+abstract class PersistentFileCache {
+  private static final String TEMPORARY_FILE_PREFIX = "cache";
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+  // Delay after which a temporary file can't be written anymore by an other running program
+  private static final long   ORPHAN_TEMPORARY_FILE_DELAY = 3600000;
+
+  private final File        folder;
+  private final long        maxSize;
+  private final String      fileExtension;
+  private Map<String, Long> fileSizes;
+  private long              totalSize;
+  private long              hitCount;
+  private long              missCount;
+
+  /**
+   * Creates a cache storing files in the given folder.
+   * @param folder         the folder where files are stored
+   * @param maxSize        the maximum size in bytes of the files stored in <code>folder</code>
+   * @param fileExtension  the extension of the files managed by this cache
+   */
+  protected PersistentFileCache(File folder, long maxSize, String fileExtension) {
+    this.folder = folder;
+    this.maxSize = maxSize;
+    this.fileExtension = fileExtension;
+  }
+
+  /**
+   * Returns the folder of this cache.
+   */
+  public File getFolder() {
+    return this.folder;
+  }
+
+  /**
+   * Returns the count of items read from this cache.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the count of items searched in vain in this cache.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Returns the size of the files stored in the folder of this cache.
+   */
+  public synchronized long getSize() {
+    checkFileSizes();
+    return this.totalSize;
+  }
+
+  /**
+   * Reads the size of the files of the cache folder the first time it's called,
+   * ordered from the least recently used file to the most recent one,
+   * and deletes the temporary files left by interrupted writings.
+   */
+  private void checkFileSizes() {
+    if (this.fileSizes == null) {
+      this.fileSizes = new LinkedHashMap<String, Long>(16, 0.75f, true);
+      this.totalSize = 0;
+      final long orphanDate = System.currentTimeMillis() - ORPHAN_TEMPORARY_FILE_DELAY;
+      File [] orphanFiles = this.folder.listFiles(new FileFilter() {
+          public boolean accept(File file) {
+            String name = file.getName();
+            return name.startsWith(TEMPORARY_FILE_PREFIX)
+                && name.endsWith(TEMPORARY_FILE_SUFFIX)
+                && file.lastModified() < orphanDate;
+          }
+        });
+      if (orphanFiles != null) {
+        for (File file : orphanFiles) {
+          file.delete();
+        }
+      }
+      File [] cachedFiles = this.folder.listFiles(new FileFilter() {
+          public boolean accept(File file) {
+            return file.getName().endsWith(fileExtension);
+          }
+        });
+      if (cachedFiles != null) {
+        final Map<File, Long> lastModifiedDates = new IdentityHashMap<File, Long>();
+        for (File file : cachedFiles) {
+          lastModifiedDates.put(file, file.lastModified());
+        }
+        Arrays.sort(cachedFiles, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+              return lastModifiedDates.get(file1).compareTo(lastModifiedDates.get(file2));
+            }
+          });
+        for (File file : cachedFiles) {
+          long length = file.length();
+          this.fileSizes.put(file.getName(), length);
+          this.totalSize += length;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the file matching the given digest.
+   */
+  protected File getFile(byte [] digest) {
+    StringBuilder name = new StringBuilder(digest.length * 2 + this.fileExtension.length());
+    for (byte b : digest) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16));
+      name.append(Character.forDigit(b & 0xF, 16));
+    }
+    return new File(this.folder, name.append(this.fileExtension).toString());
+  }
+
+  /**
+   * Returns the content of the given file.
+   */
+  protected byte [] readFile(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte [] data = new byte [(int)file.length()];
+      int offset = 0;
+      for (int size; offset < data.length && (size = in.read(data, offset, data.length - offset)) != -1; ) {
+        offset += size;
+      }
+      if (offset != data.length) {
+        throw new IOException("Can't read " + file);
+      }
+      return data;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Updates the statistics and the access order of this cache once the given file was searched,
+   * and deletes it if it's invalid.
+   * @param file   a file of this cache
+   * @param valid  <code>true</code> if the file was read successfully
+   */
+  protected synchronized void fileRead(File file, boolean valid) {
+    checkFileSizes();
+    if (valid) {
+      this.hitCount++;
+      // Update access order
+      this.fileSizes.get(file.getName());
+      file.setLastModified(System.currentTimeMillis());
+      removeLeastRecentlyUsedFiles(file.getName());
+    } else {
+      this.missCount++;
+      if (file.exists()) {
+        // Remove invalid file
+        removeFile(file.getName());
+      }
+    }
+  }
+
+  /**
+   * Returns a new temporary file in the folder of this cache.
+   */
+  protected File createTemporaryFile() throws IOException {
+    this.folder.mkdirs();
+    return File.createTempFile(TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX, this.folder);
+  }
+
+  /**
+   * Renames the given temporary file as <code>file</code> and deletes the least recently used files
+   * if the maximum size of this cache is exceeded.
+   */
+  protected synchronized void fileWritten(File temporaryFile, File file) {
+    checkFileSizes();
+    if (file.exists()) {
+      removeFile(file.getName());
+    }
+    if (temporaryFile.renameTo(file)) {
+      long length = file.length();
+      this.fileSizes.put(file.getName(), length);
+      this.totalSize += length;
+      removeLeastRecentlyUsedFiles(file.getName());
+    }
+  }
+
+  /**
+   * Deletes the least recently used files until the cache size is smaller than its maximum size.
+   */
+  private void removeLeastRecentlyUsedFiles(String keptFileName) {
+    for (Iterator<Map.Entry<String, Long>> it = this.fileSizes.entrySet().iterator();
+         it.hasNext() && this.totalSize > this.maxSize; ) {
+      Map.Entry<String, Long> entry = it.next();
+      if (!entry.getKey().equals(keptFileName)) {
+        this.totalSize -= entry.getValue();
+        it.remove();
+        new File(this.folder, entry.getKey()).delete();
+      }
+    }
+  }
+
+  private void removeFile(String fileName) {
+    Long length = this.fileSizes.remove(fileName);
+    if (length != null) {
+      this.totalSize -= length;
+    }
+    new File(this.folder, fileName).delete();
+  }
+}
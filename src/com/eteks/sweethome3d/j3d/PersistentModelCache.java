@@ -0,0 +1,1191 @@
+/*
+ * PersistentModelCache.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.media.j3d.Appearance;
+import javax.media.j3d.BranchGroup;
+import javax.media.j3d.ColoringAttributes;
+import javax.media.j3d.Geometry;
+import javax.media.j3d.GeometryArray;
+import javax.media.j3d.GeometryStripArray;
+import javax.media.j3d.Group;
+import javax.media.j3d.ImageComponent2D;
+import javax.media.j3d.IndexedGeometryArray;
+import javax.media.j3d.IndexedGeometryStripArray;
+import javax.media.j3d.IndexedLineArray;
+import javax.media.j3d.IndexedLineStripArray;
+import javax.media.j3d.IndexedPointArray;
+import javax.media.j3d.IndexedQuadArray;
+import javax.media.j3d.IndexedTriangleArray;
+import javax.media.j3d.IndexedTriangleFanArray;
+import javax.media.j3d.IndexedTriangleStripArray;
+import javax.media.j3d.LineArray;
+import javax.media.j3d.LineAttributes;
+import javax.media.j3d.LineStripArray;
+import javax.media.j3d.Link;
+import javax.media.j3d.Material;
+import javax.media.j3d.Node;
+import javax.media.j3d.PointArray;
+import javax.media.j3d.PointAttributes;
+import javax.media.j3d.PolygonAttributes;
+import javax.media.j3d.QuadArray;
+import javax.media.j3d.RenderingAttributes;
+import javax.media.j3d.SceneGraphObject;
+import javax.media.j3d.Shape3D;
+import javax.media.j3d.SharedGroup;
+import javax.media.j3d.TexCoordGeneration;
+import javax.media.j3d.Texture;
+import javax.media.j3d.Texture2D;
+import javax.media.j3d.TextureAttributes;
+import javax.media.j3d.Transform3D;
+import javax.media.j3d.TransformGroup;
+import javax.media.j3d.TransparencyAttributes;
+import javax.media.j3d.TriangleArray;
+import javax.media.j3d.TriangleFanArray;
+import javax.media.j3d.TriangleStripArray;
+import javax.vecmath.Color3f;
+import javax.vecmath.Color4f;
+import javax.vecmath.Vector4f;
+
+import com.sun.j3d.utils.image.TextureLoader;
+
+/**
+ * A cache storing in a folder the models loaded by {@link ModelManager}, once their
+ * scene was updated by the manager, in a binary form faster to read than their original format.
+ * Each model is stored in a file named from the digest of its content.<br>
+ * Only the scenes built with groups, transform groups, links, shapes, geometry arrays and
+ * appearances which attributes are readable are cached.
+ * Texture images are read again from the URL they were loaded from when it's known.
+ * @author Emmanuel Puybaret
+ */
+class PersistentModelCache extends PersistentFileCache {
+  private static final int    MODEL_FILE_SIGNATURE = 0x5348334D; // SH3M
+  private static final int    MODEL_FILE_VERSION   = 1;
+  private static final String MODEL_FILE_EXTENSION = ".model";
+
+  private static final byte   BRANCH_GROUP    = 0;
+  private static final byte   GROUP           = 1;
+  private static final byte   TRANSFORM_GROUP = 2;
+  private static final byte   LINK            = 3;
+  private static final byte   SHAPE           = 4;
+
+  private static final List<Class<? extends GeometryArray>> GEOMETRY_CLASSES = Arrays.asList(
+      PointArray.class, LineArray.class, TriangleArray.class, QuadArray.class,
+      LineStripArray.class, TriangleStripArray.class, TriangleFanArray.class,
+      IndexedPointArray.class, IndexedLineArray.class, IndexedTriangleArray.class, IndexedQuadArray.class,
+      IndexedLineStripArray.class, IndexedTriangleStripArray.class, IndexedTriangleFanArray.class);
+
+  /**
+   * Creates a cache storing models in the given folder.
+   * @param folder   the folder where model files are stored
+   * @param maxSize  the maximum size in bytes of the model files stored in <code>folder</code>
+   */
+  public PersistentModelCache(File folder, long maxSize) {
+    super(folder, maxSize, MODEL_FILE_EXTENSION);
+  }
+
+  /**
+   * Returns the model stored in this cache for the content with the given digest,
+   * or <code>null</code> if it doesn't exist or can't be read.
+   * @param digest      the digest of the model content
+   * @param contentUrl  the URL of the model content used to resolve the relative URLs of texture images
+   */
+  public BranchGroup readModel(byte [] digest, URL contentUrl) {
+    File modelFile = getFile(digest);
+    BranchGroup modelRoot = null;
+    if (modelFile.exists()) {
+      try {
+        modelRoot = new ModelReader(readFile(modelFile), contentUrl).readModel(digest);
+      } catch (IOException ex) {
+        // Ignore unreadable file
+      } catch (BufferUnderflowException ex) {
+        // Ignore truncated file
+      } catch (RuntimeException ex) {
+        // Ignore file containing unexpected data
+      }
+    }
+    fileRead(modelFile, modelRoot != null);
+    return modelRoot;
+  }
+
+  /**
+   * Stores the given model in this cache, if it contains only supported objects.
+   * @param digest      the digest of the model content
+   * @param modelRoot   the model root
+   * @param contentUrl  the URL of the model content used to relativize the URLs of texture images
+   */
+  public void writeModel(byte [] digest, BranchGroup modelRoot, URL contentUrl) {
+    File temporaryFile = null;
+    try {
+      temporaryFile = createTemporaryFile();
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+      boolean written = false;
+      try {
+        written = new ModelWriter(out, contentUrl).writeModel(digest, modelRoot);
+      } finally {
+        out.close();
+      }
+      if (written) {
+        fileWritten(temporaryFile, getFile(digest));
+      }
+    } catch (IOException ex) {
+      // Ignore models that can't be written
+    } catch (NoSuchMethodError ex) {
+      // Don't cache models with Java 3D < 1.4 where getName was added
+    } catch (RuntimeException ex) {
+      // Ignore models with data that can't be read
+    } finally {
+      if (temporaryFile != null) {
+        temporaryFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the capabilities set on the given object.
+   */
+  private static long getCapabilities(SceneGraphObject object) {
+    long capabilities = 0;
+    for (int bit = 0; bit < 64; bit++) {
+      if (object.getCapability(bit)) {
+        capabilities |= 1L << bit;
+      }
+    }
+    return capabilities;
+  }
+
+  /**
+   * Sets the given capabilities on an object.
+   */
+  private static void setCapabilities(SceneGraphObject object, long capabilities) {
+    for (int bit = 0; capabilities != 0; bit++, capabilities >>>= 1) {
+      if ((capabilities & 1) != 0) {
+        object.setCapability(bit);
+      }
+    }
+  }
+
+  /**
+   * A writer of model files. The objects shared in the scene are written once and then
+   * referenced by their index.
+   */
+  private static class ModelWriter {
+    private final DataOutputStream              out;
+    private final String                        contentUrlBase;
+    private final Map<SharedGroup, Integer>     sharedGroups;
+    private final Map<Geometry, Integer>        geometries;
+    private final Map<Appearance, Integer>      appearances;
+    private final Map<Texture, Integer>         textures;
+    private final ByteBuffer                    buffer;
+
+    public ModelWriter(DataOutputStream out, URL contentUrl) {
+      this.out = out;
+      String contentUrlString = contentUrl.toString();
+      this.contentUrlBase = contentUrlString.substring(0, contentUrlString.lastIndexOf('/') + 1);
+      this.sharedGroups = new IdentityHashMap<SharedGroup, Integer>();
+      this.geometries = new IdentityHashMap<Geometry, Integer>();
+      this.appearances = new IdentityHashMap<Appearance, Integer>();
+      this.textures = new IdentityHashMap<Texture, Integer>();
+      this.buffer = ByteBuffer.allocate(8192);
+    }
+
+    /**
+     * Writes the given model and returns <code>true</code> if all its objects are supported.
+     */
+    public boolean writeModel(byte [] digest, BranchGroup modelRoot) throws IOException {
+      this.out.writeInt(MODEL_FILE_SIGNATURE);
+      this.out.writeShort(MODEL_FILE_VERSION);
+      this.out.writeByte(digest.length);
+      this.out.write(digest);
+      return writeNode(modelRoot);
+    }
+
+    private boolean writeNode(Node node) throws IOException {
+      Class<?> nodeClass = node.getClass();
+      if (nodeClass == BranchGroup.class) {
+        this.out.writeByte(BRANCH_GROUP);
+      } else if (nodeClass == Group.class) {
+        this.out.writeByte(GROUP);
+      } else if (nodeClass == TransformGroup.class) {
+        this.out.writeByte(TRANSFORM_GROUP);
+      } else if (nodeClass == Link.class) {
+        this.out.writeByte(LINK);
+      } else if (nodeClass == Shape3D.class) {
+        this.out.writeByte(SHAPE);
+      } else {
+        return false;
+      }
+      Object userData = node.getUserData();
+      if (userData != null && !(userData instanceof String)
+          // Ignore content stored in model root
+          && !(node.getParent() == null && nodeClass == BranchGroup.class)) {
+        return false;
+      }
+      writeString(userData instanceof String ? (String)userData : null);
+      this.out.writeLong(getCapabilities(node));
+      this.out.writeBoolean(node.getPickable());
+      this.out.writeBoolean(node.getCollidable());
+
+      if (node instanceof TransformGroup) {
+        Transform3D transform = new Transform3D();
+        ((TransformGroup)node).getTransform(transform);
+        double [] matrix = new double [16];
+        transform.get(matrix);
+        for (double value : matrix) {
+          this.out.writeDouble(value);
+        }
+      }
+      if (node instanceof Group) {
+        return writeChildren((Group)node);
+      } else if (node instanceof Link) {
+        SharedGroup sharedGroup = ((Link)node).getSharedGroup();
+        if (sharedGroup == null
+            || sharedGroup.getClass() != SharedGroup.class) {
+          return false;
+        }
+        Integer index = this.sharedGroups.get(sharedGroup);
+        if (index != null) {
+          this.out.writeInt(index);
+          return true;
+        } else {
+          index = this.sharedGroups.size();
+          this.sharedGroups.put(sharedGroup, index);
+          this.out.writeInt(index);
+          Object sharedGroupUserData = sharedGroup.getUserData();
+          if (sharedGroupUserData != null && !(sharedGroupUserData instanceof String)) {
+            return false;
+          }
+          writeString((String)sharedGroupUserData);
+          this.out.writeLong(getCapabilities(sharedGroup));
+          this.out.writeBoolean(sharedGroup.getPickable());
+          this.out.writeBoolean(sharedGroup.getCollidable());
+          return writeChildren(sharedGroup);
+        }
+      } else {
+        Shape3D shape = (Shape3D)node;
+        int geometryCount = shape.numGeometries();
+        this.out.writeInt(geometryCount);
+        for (int i = 0; i < geometryCount; i++) {
+          if (!writeGeometry(shape.getGeometry(i))) {
+            return false;
+          }
+        }
+        return writeAppearance(shape.getAppearance());
+      }
+    }
+
+    private boolean writeChildren(Group group) throws IOException {
+      int childCount = group.numChildren();
+      this.out.writeInt(childCount);
+      for (int i = 0; i < childCount; i++) {
+        if (!writeNode(group.getChild(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean writeGeometry(Geometry geometry) throws IOException {
+      if (geometry == null) {
+        this.out.writeInt(-1);
+        return true;
+      }
+      Integer index = this.geometries.get(geometry);
+      if (index != null) {
+        this.out.writeInt(index);
+        return true;
+      }
+      int geometryClassIndex = GEOMETRY_CLASSES.indexOf(geometry.getClass());
+      if (geometryClassIndex == -1
+          || geometry.getUserData() != null) {
+        return false;
+      }
+      index = this.geometries.size();
+      this.geometries.put(geometry, index);
+      this.out.writeInt(index);
+      this.out.writeByte(geometryClassIndex);
+      this.out.writeLong(getCapabilities(geometry));
+
+      GeometryArray geometryArray = (GeometryArray)geometry;
+      int format = geometryArray.getVertexFormat();
+      int vertexCount = geometryArray.getVertexCount();
+      if ((format & (GeometryArray.USE_NIO_BUFFER | GeometryArray.VERTEX_ATTRIBUTES)) != 0
+          || geometryArray.getValidVertexCount() != vertexCount) {
+        return false;
+      }
+      this.out.writeInt(format);
+      this.out.writeInt(vertexCount);
+      int texCoordSetCount = geometryArray.getTexCoordSetCount();
+      int [] texCoordSetMap = new int [geometryArray.getTexCoordSetMapLength()];
+      geometryArray.getTexCoordSetMap(texCoordSetMap);
+      this.out.writeInt(texCoordSetCount);
+      writeInts(texCoordSetMap);
+      if (geometryArray instanceof GeometryStripArray) {
+        int [] stripVertexCounts = new int [((GeometryStripArray)geometryArray).getNumStrips()];
+        ((GeometryStripArray)geometryArray).getStripVertexCounts(stripVertexCounts);
+        writeInts(stripVertexCounts);
+      } else if (geometryArray instanceof IndexedGeometryArray) {
+        IndexedGeometryArray indexedGeometryArray = (IndexedGeometryArray)geometryArray;
+        if (indexedGeometryArray.getInitialIndexIndex() != 0
+            || indexedGeometryArray.getValidIndexCount() != indexedGeometryArray.getIndexCount()) {
+          return false;
+        }
+        this.out.writeInt(indexedGeometryArray.getIndexCount());
+        if (geometryArray instanceof IndexedGeometryStripArray) {
+          int [] stripIndexCounts = new int [((IndexedGeometryStripArray)geometryArray).getNumStrips()];
+          ((IndexedGeometryStripArray)geometryArray).getStripIndexCounts(stripIndexCounts);
+          writeInts(stripIndexCounts);
+        }
+      }
+
+      if ((format & GeometryArray.INTERLEAVED) != 0) {
+        if (geometryArray.getInitialVertexIndex() != 0) {
+          return false;
+        }
+        writeFloats(geometryArray.getInterleavedVertices());
+      } else if ((format & GeometryArray.BY_REFERENCE) != 0) {
+        if (geometryArray.getInitialCoordIndex() != 0) {
+          return false;
+        }
+        float [] coordinates = geometryArray.getCoordRefFloat();
+        if (coordinates == null) {
+          return false;
+        }
+        writeFloats(coordinates);
+        if ((format & GeometryArray.NORMALS) != 0) {
+          float [] normals = geometryArray.getNormalRefFloat();
+          if (normals == null) {
+            return false;
+          }
+          writeFloats(normals);
+        }
+        if ((format & GeometryArray.COLOR_3) != 0) {
+          float [] colors = geometryArray.getColorRefFloat();
+          if (colors == null) {
+            return false;
+          }
+          writeFloats(colors);
+        }
+        if (getTextureCoordinateDimension(format) != 0) {
+          for (int i = 0; i < texCoordSetCount; i++) {
+            float [] textureCoordinates = geometryArray.getTexCoordRefFloat(i);
+            if (textureCoordinates == null) {
+              return false;
+            }
+            writeFloats(textureCoordinates);
+          }
+        }
+      } else {
+        if (geometryArray.getInitialVertexIndex() != 0) {
+          return false;
+        }
+        float [] coordinates = new float [vertexCount * 3];
+        geometryArray.getCoordinates(0, coordinates);
+        writeFloats(coordinates);
+        if ((format & GeometryArray.NORMALS) != 0) {
+          float [] normals = new float [vertexCount * 3];
+          geometryArray.getNormals(0, normals);
+          writeFloats(normals);
+        }
+        if ((format & GeometryArray.COLOR_3) != 0) {
+          float [] colors = new float [vertexCount * ((format & GeometryArray.COLOR_4) == GeometryArray.COLOR_4 ? 4 : 3)];
+          geometryArray.getColors(0, colors);
+          writeFloats(colors);
+        }
+        int textureCoordinateDimension = getTextureCoordinateDimension(format);
+        if (textureCoordinateDimension != 0) {
+          for (int i = 0; i < texCoordSetCount; i++) {
+            float [] textureCoordinates = new float [vertexCount * textureCoordinateDimension];
+            geometryArray.getTextureCoordinates(i, 0, textureCoordinates);
+            writeFloats(textureCoordinates);
+          }
+        }
+      }
+
+      if (geometryArray instanceof IndexedGeometryArray) {
+        IndexedGeometryArray indexedGeometryArray = (IndexedGeometryArray)geometryArray;
+        int indexCount = indexedGeometryArray.getIndexCount();
+        int [] indices = new int [indexCount];
+        indexedGeometryArray.getCoordinateIndices(0, indices);
+        writeInts(indices);
+        if ((format & GeometryArray.USE_COORD_INDEX_ONLY) == 0) {
+          if ((format & GeometryArray.NORMALS) != 0) {
+            indexedGeometryArray.getNormalIndices(0, indices);
+            writeInts(indices);
+          }
+          if ((format & GeometryArray.COLOR_3) != 0) {
+            indexedGeometryArray.getColorIndices(0, indices);
+            writeInts(indices);
+          }
+          if (getTextureCoordinateDimension(format) != 0) {
+            for (int i = 0; i < texCoordSetCount; i++) {
+              indexedGeometryArray.getTextureCoordinateIndices(i, 0, indices);
+              writeInts(indices);
+            }
+          }
+        }
+      }
+      return true;
+    }
+
+    private boolean writeAppearance(Appearance appearance) throws IOException {
+      if (appearance == null) {
+        this.out.writeInt(-1);
+        return true;
+      }
+      Integer index = this.appearances.get(appearance);
+      if (index != null) {
+        this.out.writeInt(index);
+        return true;
+      }
+      if (appearance.getClass() != Appearance.class
+          || appearance.getUserData() != null
+          || appearance.getTextureUnitCount() != 0) {
+        return false;
+      }
+      index = this.appearances.size();
+      this.appearances.put(appearance, index);
+      this.out.writeInt(index);
+      writeString(appearance.getName());
+      this.out.writeLong(getCapabilities(appearance));
+
+      Material material = appearance.getMaterial();
+      if (!writeComponentHeader(material, Material.class, OBJMaterial.class)) {
+        return false;
+      } else if (material != null) {
+        Color3f color = new Color3f();
+        material.getAmbientColor(color);
+        writeColor(color);
+        material.getEmissiveColor(color);
+        writeColor(color);
+        material.getDiffuseColor(color);
+        writeColor(color);
+        material.getSpecularColor(color);
+        writeColor(color);
+        this.out.writeFloat(material.getShininess());
+        this.out.writeBoolean(material.getLightingEnable());
+        this.out.writeInt(material.getColorTarget());
+        if (material instanceof OBJMaterial) {
+          OBJMaterial objMaterial = (OBJMaterial)material;
+          this.out.writeBoolean(objMaterial.isOpticalDensitySet());
+          if (objMaterial.isOpticalDensitySet()) {
+            this.out.writeFloat(objMaterial.getOpticalDensity());
+          }
+          this.out.writeBoolean(objMaterial.isIlluminationModelSet());
+          if (objMaterial.isIlluminationModelSet()) {
+            this.out.writeInt(objMaterial.getIlluminationModel());
+          }
+          this.out.writeBoolean(objMaterial.isSharpnessSet());
+          if (objMaterial.isSharpnessSet()) {
+            this.out.writeFloat(objMaterial.getSharpness());
+          }
+        }
+      }
+
+      ColoringAttributes coloringAttributes = appearance.getColoringAttributes();
+      if (!writeComponentHeader(coloringAttributes, ColoringAttributes.class, null)) {
+        return false;
+      } else if (coloringAttributes != null) {
+        Color3f color = new Color3f();
+        coloringAttributes.getColor(color);
+        writeColor(color);
+        this.out.writeInt(coloringAttributes.getShadeModel());
+      }
+
+      TransparencyAttributes transparencyAttributes = appearance.getTransparencyAttributes();
+      if (!writeComponentHeader(transparencyAttributes, TransparencyAttributes.class, null)) {
+        return false;
+      } else if (transparencyAttributes != null) {
+        this.out.writeInt(transparencyAttributes.getTransparencyMode());
+        this.out.writeFloat(transparencyAttributes.getTransparency());
+        this.out.writeInt(transparencyAttributes.getSrcBlendFunction());
+        this.out.writeInt(transparencyAttributes.getDstBlendFunction());
+      }
+
+      RenderingAttributes renderingAttributes = appearance.getRenderingAttributes();
+      if (!writeComponentHeader(renderingAttributes, RenderingAttributes.class, null)) {
+        return false;
+      } else if (renderingAttributes != null) {
+        this.out.writeBoolean(renderingAttributes.getDepthBufferEnable());
+        this.out.writeBoolean(renderingAttributes.getDepthBufferWriteEnable());
+        this.out.writeFloat(renderingAttributes.getAlphaTestValue());
+        this.out.writeInt(renderingAttributes.getAlphaTestFunction());
+        this.out.writeBoolean(renderingAttributes.getVisible());
+        this.out.writeBoolean(renderingAttributes.getIgnoreVertexColors());
+        this.out.writeBoolean(renderingAttributes.getRasterOpEnable());
+        this.out.writeInt(renderingAttributes.getRasterOp());
+      }
+
+      PolygonAttributes polygonAttributes = appearance.getPolygonAttributes();
+      if (!writeComponentHeader(polygonAttributes, PolygonAttributes.class, null)) {
+        return false;
+      } else if (polygonAttributes != null) {
+        this.out.writeInt(polygonAttributes.getPolygonMode());
+        this.out.writeInt(polygonAttributes.getCullFace());
+        this.out.writeBoolean(polygonAttributes.getBackFaceNormalFlip());
+        this.out.writeFloat(polygonAttributes.getPolygonOffset());
+        this.out.writeFloat(polygonAttributes.getPolygonOffsetFactor());
+      }
+
+      LineAttributes lineAttributes = appearance.getLineAttributes();
+      if (!writeComponentHeader(lineAttributes, LineAttributes.class, null)) {
+        return false;
+      } else if (lineAttributes != null) {
+        this.out.writeFloat(lineAttributes.getLineWidth());
+        this.out.writeInt(lineAttributes.getLinePattern());
+        this.out.writeBoolean(lineAttributes.getLineAntialiasingEnable());
+        this.out.writeInt(lineAttributes.getPatternMask());
+        this.out.writeInt(lineAttributes.getPatternScaleFactor());
+      }
+
+      PointAttributes pointAttributes = appearance.getPointAttributes();
+      if (!writeComponentHeader(pointAttributes, PointAttributes.class, null)) {
+        return false;
+      } else if (pointAttributes != null) {
+        this.out.writeFloat(pointAttributes.getPointSize());
+        this.out.writeBoolean(pointAttributes.getPointAntialiasingEnable());
+      }
+
+      TextureAttributes textureAttributes = appearance.getTextureAttributes();
+      if (!writeComponentHeader(textureAttributes, TextureAttributes.class, null)) {
+        return false;
+      } else if (textureAttributes != null) {
+        if (textureAttributes.getTextureMode() == TextureAttributes.COMBINE
+            || textureAttributes.getNumTextureColorTableComponents() != 0) {
+          return false;
+        }
+        this.out.writeInt(textureAttributes.getTextureMode());
+        this.out.writeInt(textureAttributes.getPerspectiveCorrectionMode());
+        Color4f blendColor = new Color4f();
+        textureAttributes.getTextureBlendColor(blendColor);
+        this.out.writeFloat(blendColor.x);
+        this.out.writeFloat(blendColor.y);
+        this.out.writeFloat(blendColor.z);
+        this.out.writeFloat(blendColor.w);
+        Transform3D transform = new Transform3D();
+        textureAttributes.getTextureTransform(transform);
+        double [] matrix = new double [16];
+        transform.get(matrix);
+        for (double value : matrix) {
+          this.out.writeDouble(value);
+        }
+      }
+
+      TexCoordGeneration texCoordGeneration = appearance.getTexCoordGeneration();
+      if (!writeComponentHeader(texCoordGeneration, TexCoordGeneration.class, null)) {
+        return false;
+      } else if (texCoordGeneration != null) {
+        this.out.writeInt(texCoordGeneration.getGenMode());
+        this.out.writeInt(texCoordGeneration.getFormat());
+        this.out.writeBoolean(texCoordGeneration.getEnable());
+        Vector4f plane = new Vector4f();
+        texCoordGeneration.getPlaneS(plane);
+        writePlane(plane);
+        texCoordGeneration.getPlaneT(plane);
+        writePlane(plane);
+        texCoordGeneration.getPlaneR(plane);
+        writePlane(plane);
+      }
+
+      return writeTexture(appearance.getTexture());
+    }
+
+    /**
+     * Writes whether the given component exists and its capabilities, and returns <code>false</code>
+     * if it's not an instance of the given classes or if it has some user data.
+     */
+    private boolean writeComponentHeader(SceneGraphObject component,
+                                         Class<?> componentClass,
+                                         Class<?> componentSubclass) throws IOException {
+      if (component == null) {
+        this.out.writeByte(0);
+        return true;
+      } else if (component.getUserData() != null) {
+        return false;
+      } else if (component.getClass() == componentClass) {
+        this.out.writeByte(1);
+      } else if (component.getClass() == componentSubclass) {
+        this.out.writeByte(2);
+      } else {
+        return false;
+      }
+      this.out.writeLong(getCapabilities(component));
+      return true;
+    }
+
+    private boolean writeTexture(Texture texture) throws IOException {
+      if (texture == null) {
+        this.out.writeInt(-1);
+        return true;
+      }
+      Integer index = this.textures.get(texture);
+      if (index != null) {
+        this.out.writeInt(index);
+        return true;
+      }
+      if (texture.getClass() != Texture2D.class
+          || texture.getMipMapMode() != Texture.BASE_LEVEL
+          || !(texture.getImage(0) instanceof ImageComponent2D)) {
+        return false;
+      }
+      Object userData = texture.getUserData();
+      if (userData != null && !(userData instanceof URL)) {
+        return false;
+      }
+      index = this.textures.size();
+      this.textures.put(texture, index);
+      this.out.writeInt(index);
+      this.out.writeInt(texture.getBoundaryModeS());
+      this.out.writeInt(texture.getBoundaryModeT());
+      this.out.writeBoolean(texture.getEnable());
+      ImageComponent2D image = (ImageComponent2D)texture.getImage(0);
+      this.out.writeBoolean(image.isYUp());
+      if (userData != null) {
+        // Store image URL relatively to model URL if possible
+        String imageUrl = userData.toString();
+        if (imageUrl.startsWith(this.contentUrlBase)) {
+          imageUrl = imageUrl.substring(this.contentUrlBase.length());
+        }
+        writeString(imageUrl);
+      } else {
+        writeString(null);
+        // Store image at PNG format
+        ByteArrayOutputStream imageOut = new ByteArrayOutputStream();
+        if (!ImageIO.write(image.getImage(), "PNG", imageOut)) {
+          return false;
+        }
+        this.out.writeInt(imageOut.size());
+        imageOut.writeTo(this.out);
+      }
+      return true;
+    }
+
+    private void writeColor(Color3f color) throws IOException {
+      this.out.writeFloat(color.x);
+      this.out.writeFloat(color.y);
+      this.out.writeFloat(color.z);
+    }
+
+    private void writePlane(Vector4f plane) throws IOException {
+      this.out.writeFloat(plane.x);
+      this.out.writeFloat(plane.y);
+      this.out.writeFloat(plane.z);
+      this.out.writeFloat(plane.w);
+    }
+
+    private void writeString(String s) throws IOException {
+      if (s == null) {
+        this.out.writeInt(-1);
+      } else {
+        byte [] bytes = s.getBytes("UTF-8");
+        this.out.writeInt(bytes.length);
+        this.out.write(bytes);
+      }
+    }
+
+    private void writeFloats(float [] array) throws IOException {
+      this.out.writeInt(array.length);
+      for (int i = 0; i < array.length; ) {
+        int count = Math.min(array.length - i, this.buffer.capacity() / 4);
+        this.buffer.clear();
+        this.buffer.asFloatBuffer().put(array, i, count);
+        this.out.write(this.buffer.array(), 0, count * 4);
+        i += count;
+      }
+    }
+
+    private void writeInts(int [] array) throws IOException {
+      this.out.writeInt(array.length);
+      for (int i = 0; i < array.length; ) {
+        int count = Math.min(array.length - i, this.buffer.capacity() / 4);
+        this.buffer.clear();
+        this.buffer.asIntBuffer().put(array, i, count);
+        this.out.write(this.buffer.array(), 0, count * 4);
+        i += count;
+      }
+    }
+  }
+
+  /**
+   * Returns the count of texture coordinates per vertex of the given geometry format.
+   */
+  private static int getTextureCoordinateDimension(int format) {
+    if ((format & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
+      return 4;
+    } else if ((format & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
+      return 3;
+    } else if ((format & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+      return 2;
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * A reader of model files.
+   */
+  private static class ModelReader {
+    private final ByteBuffer          buffer;
+    private final URL                 contentUrl;
+    private final List<SharedGroup>   sharedGroups;
+    private final List<Geometry>      geometries;
+    private final List<Appearance>    appearances;
+    private final List<Texture>       textures;
+
+    public ModelReader(byte [] data, URL contentUrl) {
+      this.buffer = ByteBuffer.wrap(data);
+      this.contentUrl = contentUrl;
+      this.sharedGroups = new ArrayList<SharedGroup>();
+      this.geometries = new ArrayList<Geometry>();
+      this.appearances = new ArrayList<Appearance>();
+      this.textures = new ArrayList<Texture>();
+    }
+
+    /**
+     * Returns the model read from data, or <code>null</code> if it doesn't match the given digest.
+     */
+    public BranchGroup readModel(byte [] digest) throws IOException {
+      if (this.buffer.getInt() != MODEL_FILE_SIGNATURE
+          || this.buffer.getShort() != MODEL_FILE_VERSION) {
+        return null;
+      }
+      byte [] fileDigest = new byte [this.buffer.get() & 0xFF];
+      this.buffer.get(fileDigest);
+      if (!Arrays.equals(digest, fileDigest)) {
+        return null;
+      }
+      Node modelRoot = readNode();
+      if (this.buffer.hasRemaining()
+          || !(modelRoot instanceof BranchGroup)) {
+        return null;
+      }
+      return (BranchGroup)modelRoot;
+    }
+
+    private Node readNode() throws IOException {
+      byte nodeType = this.buffer.get();
+      Node node;
+      switch (nodeType) {
+        case BRANCH_GROUP :
+          node = new BranchGroup();
+          break;
+        case GROUP :
+          node = new Group();
+          break;
+        case TRANSFORM_GROUP :
+          node = new TransformGroup();
+          break;
+        case LINK :
+          node = new Link();
+          break;
+        case SHAPE :
+          node = new Shape3D();
+          break;
+        default :
+          throw new IOException("Unknown node type " + nodeType);
+      }
+      readNodeAttributes(node);
+
+      if (node instanceof TransformGroup) {
+        ((TransformGroup)node).setTransform(readTransform());
+      }
+      if (node instanceof Group) {
+        readChildren((Group)node);
+      } else if (node instanceof Link) {
+        int index = this.buffer.getInt();
+        if (index == this.sharedGroups.size()) {
+          SharedGroup sharedGroup = new SharedGroup();
+          this.sharedGroups.add(sharedGroup);
+          readNodeAttributes(sharedGroup);
+          readChildren(sharedGroup);
+        }
+        ((Link)node).setSharedGroup(this.sharedGroups.get(index));
+      } else {
+        Shape3D shape = (Shape3D)node;
+        int geometryCount = this.buffer.getInt();
+        for (int i = 0; i < geometryCount; i++) {
+          Geometry geometry = readGeometry();
+          if (i == 0) {
+            shape.setGeometry(geometry);
+          } else {
+            shape.addGeometry(geometry);
+          }
+        }
+        shape.setAppearance(readAppearance());
+      }
+      return node;
+    }
+
+    private void readNodeAttributes(Node node) throws IOException {
+      node.setUserData(readString());
+      setCapabilities(node, this.buffer.getLong());
+      node.setPickable(this.buffer.get() != 0);
+      node.setCollidable(this.buffer.get() != 0);
+    }
+
+    private void readChildren(Group group) throws IOException {
+      int childCount = this.buffer.getInt();
+      for (int i = 0; i < childCount; i++) {
+        group.addChild(readNode());
+      }
+    }
+
+    private Transform3D readTransform() {
+      double [] matrix = new double [16];
+      for (int i = 0; i < matrix.length; i++) {
+        matrix [i] = this.buffer.getDouble();
+      }
+      return new Transform3D(matrix);
+    }
+
+    private Geometry readGeometry() throws IOException {
+      int index = this.buffer.getInt();
+      if (index == -1) {
+        return null;
+      } else if (index < this.geometries.size()) {
+        return this.geometries.get(index);
+      } else if (index != this.geometries.size()) {
+        throw new IOException("Unexpected geometry index " + index);
+      }
+      Class<? extends GeometryArray> geometryClass = GEOMETRY_CLASSES.get(this.buffer.get());
+      long capabilities = this.buffer.getLong();
+      int format = this.buffer.getInt();
+      int vertexCount = this.buffer.getInt();
+      int texCoordSetCount = this.buffer.getInt();
+      int [] texCoordSetMap = readInts();
+      GeometryArray geometryArray;
+      if (geometryClass == PointArray.class) {
+        geometryArray = new PointArray(vertexCount, format, texCoordSetCount, texCoordSetMap);
+      } else if (geometryClass == LineArray.class) {
+        geometryArray = new LineArray(vertexCount, format, texCoordSetCount, texCoordSetMap);
+      } else if (geometryClass == TriangleArray.class) {
+        geometryArray = new TriangleArray(vertexCount, format, texCoordSetCount, texCoordSetMap);
+      } else if (geometryClass == QuadArray.class) {
+        geometryArray = new QuadArray(vertexCount, format, texCoordSetCount, texCoordSetMap);
+      } else if (geometryClass == LineStripArray.class) {
+        geometryArray = new LineStripArray(vertexCount, format, texCoordSetCount, texCoordSetMap, readInts());
+      } else if (geometryClass == TriangleStripArray.class) {
+        geometryArray = new TriangleStripArray(vertexCount, format, texCoordSetCount, texCoordSetMap, readInts());
+      } else if (geometryClass == TriangleFanArray.class) {
+        geometryArray = new TriangleFanArray(vertexCount, format, texCoordSetCount, texCoordSetMap, readInts());
+      } else {
+        int indexCount = this.buffer.getInt();
+        if (geometryClass == IndexedPointArray.class) {
+          geometryArray = new IndexedPointArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount);
+        } else if (geometryClass == IndexedLineArray.class) {
+          geometryArray = new IndexedLineArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount);
+        } else if (geometryClass == IndexedTriangleArray.class) {
+          geometryArray = new IndexedTriangleArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount);
+        } else if (geometryClass == IndexedQuadArray.class) {
+          geometryArray = new IndexedQuadArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount);
+        } else if (geometryClass == IndexedLineStripArray.class) {
+          geometryArray = new IndexedLineStripArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount, readInts());
+        } else if (geometryClass == IndexedTriangleStripArray.class) {
+          geometryArray = new IndexedTriangleStripArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount, readInts());
+        } else {
+          geometryArray = new IndexedTriangleFanArray(vertexCount, format, texCoordSetCount, texCoordSetMap, indexCount, readInts());
+        }
+      }
+      setCapabilities(geometryArray, capabilities);
+      this.geometries.add(geometryArray);
+
+      int textureCoordinateDimension = getTextureCoordinateDimension(format);
+      if ((format & GeometryArray.INTERLEAVED) != 0) {
+        geometryArray.setInterleavedVertices(readFloats());
+      } else if ((format & GeometryArray.BY_REFERENCE) != 0) {
+        geometryArray.setCoordRefFloat(readFloats());
+        if ((format & GeometryArray.NORMALS) != 0) {
+          geometryArray.setNormalRefFloat(readFloats());
+        }
+        if ((format & GeometryArray.COLOR_3) != 0) {
+          geometryArray.setColorRefFloat(readFloats());
+        }
+        if (textureCoordinateDimension != 0) {
+          for (int i = 0; i < texCoordSetCount; i++) {
+            geometryArray.setTexCoordRefFloat(i, readFloats());
+          }
+        }
+      } else {
+        geometryArray.setCoordinates(0, readFloats());
+        if ((format & GeometryArray.NORMALS) != 0) {
+          geometryArray.setNormals(0, readFloats());
+        }
+        if ((format & GeometryArray.COLOR_3) != 0) {
+          geometryArray.setColors(0, readFloats());
+        }
+        if (textureCoordinateDimension != 0) {
+          for (int i = 0; i < texCoordSetCount; i++) {
+            geometryArray.setTextureCoordinates(i, 0, readFloats());
+          }
+        }
+      }
+
+      if (geometryArray instanceof IndexedGeometryArray) {
+        IndexedGeometryArray indexedGeometryArray = (IndexedGeometryArray)geometryArray;
+        indexedGeometryArray.setCoordinateIndices(0, readInts());
+        if ((format & GeometryArray.USE_COORD_INDEX_ONLY) == 0) {
+          if ((format & GeometryArray.NORMALS) != 0) {
+            indexedGeometryArray.setNormalIndices(0, readInts());
+          }
+          if ((format & GeometryArray.COLOR_3) != 0) {
+            indexedGeometryArray.setColorIndices(0, readInts());
+          }
+          if (textureCoordinateDimension != 0) {
+            for (int i = 0; i < texCoordSetCount; i++) {
+              indexedGeometryArray.setTextureCoordinateIndices(i, 0, readInts());
+            }
+          }
+        }
+      }
+      return geometryArray;
+    }
+
+    private Appearance readAppearance() throws IOException {
+      int index = this.buffer.getInt();
+      if (index == -1) {
+        return null;
+      } else if (index < this.appearances.size()) {
+        return this.appearances.get(index);
+      } else if (index != this.appearances.size()) {
+        throw new IOException("Unexpected appearance index " + index);
+      }
+      Appearance appearance = new Appearance();
+      this.appearances.add(appearance);
+      appearance.setName(readString());
+      setCapabilities(appearance, this.buffer.getLong());
+
+      byte materialType = this.buffer.get();
+      if (materialType != 0) {
+        Material material = materialType == 2
+            ? new OBJMaterial()
+            : new Material();
+        setCapabilities(material, this.buffer.getLong());
+        material.setAmbientColor(readColor());
+        material.setEmissiveColor(readColor());
+        material.setDiffuseColor(readColor());
+        material.setSpecularColor(readColor());
+        material.setShininess(this.buffer.getFloat());
+        material.setLightingEnable(this.buffer.get() != 0);
+        material.setColorTarget(this.buffer.getInt());
+        if (material instanceof OBJMaterial) {
+          OBJMaterial objMaterial = (OBJMaterial)material;
+          if (this.buffer.get() != 0) {
+            objMaterial.setOpticalDensity(this.buffer.getFloat());
+          }
+          if (this.buffer.get() != 0) {
+            objMaterial.setIlluminationModel(this.buffer.getInt());
+          }
+          if (this.buffer.get() != 0) {
+            objMaterial.setSharpness(this.buffer.getFloat());
+          }
+        }
+        appearance.setMaterial(material);
+      }
+
+      if (this.buffer.get() != 0) {
+        ColoringAttributes coloringAttributes = new ColoringAttributes();
+        setCapabilities(coloringAttributes, this.buffer.getLong());
+        coloringAttributes.setColor(readColor());
+        coloringAttributes.setShadeModel(this.buffer.getInt());
+        appearance.setColoringAttributes(coloringAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        TransparencyAttributes transparencyAttributes = new TransparencyAttributes();
+        setCapabilities(transparencyAttributes, this.buffer.getLong());
+        transparencyAttributes.setTransparencyMode(this.buffer.getInt());
+        transparencyAttributes.setTransparency(this.buffer.getFloat());
+        transparencyAttributes.setSrcBlendFunction(this.buffer.getInt());
+        transparencyAttributes.setDstBlendFunction(this.buffer.getInt());
+        appearance.setTransparencyAttributes(transparencyAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        RenderingAttributes renderingAttributes = new RenderingAttributes();
+        setCapabilities(renderingAttributes, this.buffer.getLong());
+        renderingAttributes.setDepthBufferEnable(this.buffer.get() != 0);
+        renderingAttributes.setDepthBufferWriteEnable(this.buffer.get() != 0);
+        renderingAttributes.setAlphaTestValue(this.buffer.getFloat());
+        renderingAttributes.setAlphaTestFunction(this.buffer.getInt());
+        renderingAttributes.setVisible(this.buffer.get() != 0);
+        renderingAttributes.setIgnoreVertexColors(this.buffer.get() != 0);
+        renderingAttributes.setRasterOpEnable(this.buffer.get() != 0);
+        renderingAttributes.setRasterOp(this.buffer.getInt());
+        appearance.setRenderingAttributes(renderingAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        PolygonAttributes polygonAttributes = new PolygonAttributes();
+        setCapabilities(polygonAttributes, this.buffer.getLong());
+        polygonAttributes.setPolygonMode(this.buffer.getInt());
+        polygonAttributes.setCullFace(this.buffer.getInt());
+        polygonAttributes.setBackFaceNormalFlip(this.buffer.get() != 0);
+        polygonAttributes.setPolygonOffset(this.buffer.getFloat());
+        polygonAttributes.setPolygonOffsetFactor(this.buffer.getFloat());
+        appearance.setPolygonAttributes(polygonAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        LineAttributes lineAttributes = new LineAttributes();
+        setCapabilities(lineAttributes, this.buffer.getLong());
+        lineAttributes.setLineWidth(this.buffer.getFloat());
+        lineAttributes.setLinePattern(this.buffer.getInt());
+        lineAttributes.setLineAntialiasingEnable(this.buffer.get() != 0);
+        lineAttributes.setPatternMask(this.buffer.getInt());
+        lineAttributes.setPatternScaleFactor(this.buffer.getInt());
+        appearance.setLineAttributes(lineAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        PointAttributes pointAttributes = new PointAttributes();
+        setCapabilities(pointAttributes, this.buffer.getLong());
+        pointAttributes.setPointSize(this.buffer.getFloat());
+        pointAttributes.setPointAntialiasingEnable(this.buffer.get() != 0);
+        appearance.setPointAttributes(pointAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        TextureAttributes textureAttributes = new TextureAttributes();
+        setCapabilities(textureAttributes, this.buffer.getLong());
+        textureAttributes.setTextureMode(this.buffer.getInt());
+        textureAttributes.setPerspectiveCorrectionMode(this.buffer.getInt());
+        textureAttributes.setTextureBlendColor(this.buffer.getFloat(), this.buffer.getFloat(),
+            this.buffer.getFloat(), this.buffer.getFloat());
+        textureAttributes.setTextureTransform(readTransform());
+        appearance.setTextureAttributes(textureAttributes);
+      }
+
+      if (this.buffer.get() != 0) {
+        TexCoordGeneration texCoordGeneration = new TexCoordGeneration();
+        setCapabilities(texCoordGeneration, this.buffer.getLong());
+        texCoordGeneration.setGenMode(this.buffer.getInt());
+        texCoordGeneration.setFormat(this.buffer.getInt());
+        texCoordGeneration.setEnable(this.buffer.get() != 0);
+        texCoordGeneration.setPlaneS(readPlane());
+        texCoordGeneration.setPlaneT(readPlane());
+        texCoordGeneration.setPlaneR(readPlane());
+        appearance.setTexCoordGeneration(texCoordGeneration);
+      }
+
+      appearance.setTexture(readTexture());
+      return appearance;
+    }
+
+    private Texture readTexture() throws IOException {
+      int index = this.buffer.getInt();
+      if (index == -1) {
+        return null;
+      } else if (index < this.textures.size()) {
+        return this.textures.get(index);
+      } else if (index != this.textures.size()) {
+        throw new IOException("Unexpected texture index " + index);
+      }
+      int boundaryModeS = this.buffer.getInt();
+      int boundaryModeT = this.buffer.getInt();
+      boolean enable = this.buffer.get() != 0;
+      boolean yUp = this.buffer.get() != 0;
+      String imageUrlString = readString();
+      URL imageUrl = null;
+      BufferedImage image;
+      if (imageUrlString != null) {
+        // Read image like model loaders
+        try {
+          imageUrl = new URL(this.contentUrl, imageUrlString);
+        } catch (MalformedURLException ex) {
+          throw new IOException("Invalid texture URL " + imageUrlString);
+        }
+        InputStream in = imageUrl.openStream();
+        try {
+          image = ImageIO.read(in);
+        } finally {
+          in.close();
+        }
+      } else {
+        byte [] imageData = new byte [this.buffer.getInt()];
+        this.buffer.get(imageData);
+        image = ImageIO.read(new ByteArrayInputStream(imageData));
+      }
+      if (image == null) {
+        throw new IOException("Can't read texture image");
+      }
+      Texture texture = new TextureLoader(image, yUp ? TextureLoader.Y_UP : 0).getTexture();
+      texture.setBoundaryModeS(boundaryModeS);
+      texture.setBoundaryModeT(boundaryModeT);
+      texture.setEnable(enable);
+      texture.setUserData(imageUrl);
+      texture = TextureManager.getInstance().shareTexture(texture);
+      this.textures.add(texture);
+      return texture;
+    }
+
+    private Color3f readColor() {
+      return new Color3f(this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat());
+    }
+
+    private Vector4f readPlane() {
+      return new Vector4f(this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat(), this.buffer.getFloat());
+    }
+
+    private String readString() throws IOException {
+      int length = this.buffer.getInt();
+      if (length == -1) {
+        return null;
+      } else {
+        String s = new String(this.buffer.array(), this.buffer.position(), length, "UTF-8");
+        this.buffer.position(this.buffer.position() + length);
+        return s;
+      }
+    }
+
+    private float [] readFloats() {
+      float [] array = new float [this.buffer.getInt()];
+      this.buffer.asFloatBuffer().get(array);
+      this.buffer.position(this.buffer.position() + array.length * 4);
+      return array;
+    }
+
+    private int [] readInts() {
+      int [] array = new int [this.buffer.getInt()];
+      this.buffer.asIntBuffer().get(array);
+      this.buffer.position(this.buffer.position() + array.length * 4);
+      return array;
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * PersistentTextureCache.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.j3d;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A cache storing in a folder the downscaled levels of texture images, from the half size
+ * of the original image down to one pixel, to avoid reading and resizing big images
+ * again in each session. The levels of an image are stored in a file named from the digest
+ * of its content.
+ * @author Emmanuel Puybaret
+ */
+class PersistentTextureCache extends PersistentFileCache {
+  private static final int    PYRAMID_FILE_SIGNATURE = 0x53483354; // SH3T
+  private static final int    PYRAMID_FILE_VERSION   = 1;
+  private static final String PYRAMID_FILE_EXTENSION = ".mipmap";
+
+  /**
+   * Creates a cache storing texture images in the given folder.
+   * @param folder   the folder where image files are stored
+   * @param maxSize  the maximum size in bytes of the image files stored in <code>folder</code>
+   */
+  public PersistentTextureCache(File folder, long maxSize) {
+    super(folder, maxSize, PYRAMID_FILE_EXTENSION);
+  }
+
+  /**
+   * Returns the image stored in this cache for the content with the given digest,
+   * which fits in a square of <code>maxImageSize</code> pixels, or <code>null</code>
+   * if it doesn't exist, if it can't be read or if the original image should be used.
+   */
+  public BufferedImage readImage(byte [] digest, int maxImageSize) {
+    File pyramidFile = getFile(digest);
+    BufferedImage image = null;
+    boolean valid = false;
+    if (pyramidFile.exists()) {
+      try {
+        RandomAccessFile in = new RandomAccessFile(pyramidFile, "r");
+        try {
+          if (in.readInt() == PYRAMID_FILE_SIGNATURE
+              && in.readShort() == PYRAMID_FILE_VERSION) {
+            byte [] fileDigest = new byte [in.readUnsignedByte()];
+            in.readFully(fileDigest);
+            if (Arrays.equals(digest, fileDigest)) {
+              int levelCount = in.readInt();
+              long offset = 0;
+              for (int i = 0; i < levelCount; i++) {
+                int width = in.readInt();
+                int height = in.readInt();
+                int length = in.readInt();
+                if (width <= maxImageSize && height <= maxImageSize) {
+                  if (i > 0) {
+                    // Read image data after the remaining level headers
+                    long dataStart = in.getFilePointer() + 12L * (levelCount - i - 1);
+                    in.seek(dataStart + offset);
+                    byte [] imageData = new byte [length];
+                    in.readFully(imageData);
+                    image = ImageIO.read(new ByteArrayInputStream(imageData));
+                    valid = image != null;
+                  } else {
+                    // Original image is small enough
+                    valid = true;
+                  }
+                  break;
+                }
+                offset += length;
+              }
+            }
+          }
+        } finally {
+          in.close();
+        }
+      } catch (IOException ex) {
+        // Ignore unreadable file
+        image = null;
+        valid = false;
+      }
+    }
+    fileRead(pyramidFile, valid);
+    return image;
+  }
+
+  /**
+   * Stores the levels of the given image in this cache.
+   * @param digest  the digest of the image content
+   * @param levels  the original image followed by its downscaled levels
+   */
+  public void writeImages(byte [] digest, List<BufferedImage> levels) {
+    File temporaryFile = null;
+    try {
+      List<byte []> levelsData = new ArrayList<byte []>(levels.size());
+      // Don't store original image which is read from its content
+      levelsData.add(new byte [0]);
+      for (int i = 1; i < levels.size(); i++) {
+        ByteArrayOutputStream imageOut = new ByteArrayOutputStream();
+        if (!ImageIO.write(levels.get(i), "PNG", imageOut)) {
+          return;
+        }
+        levelsData.add(imageOut.toByteArray());
+      }
+      temporaryFile = createTemporaryFile();
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+      try {
+        out.writeInt(PYRAMID_FILE_SIGNATURE);
+        out.writeShort(PYRAMID_FILE_VERSION);
+        out.writeByte(digest.length);
+        out.write(digest);
+        out.writeInt(levels.size());
+        for (int i = 0; i < levels.size(); i++) {
+          out.writeInt(levels.get(i).getWidth());
+          out.writeInt(levels.get(i).getHeight());
+          out.writeInt(levelsData.get(i).length);
+        }
+        for (byte [] levelData : levelsData) {
+          out.write(levelData);
+        }
+      } finally {
+        out.close();
+      }
+      fileWritten(temporaryFile, getFile(digest));
+    } catch (IOException ex) {
+      // Ignore images that can't be written
+    } finally {
+      if (temporaryFile != null) {
+        temporaryFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the given image followed by its levels downscaled by a factor of two,
+   * until the level fits in a square of <code>minImageSize</code> pixels.
+   */
+  public static List<BufferedImage> getImagePyramid(BufferedImage image, int minImageSize) {
+    List<BufferedImage> levels = new ArrayList<BufferedImage>();
+    levels.add(image);
+    while (image.getWidth() > minImageSize || image.getHeight() > minImageSize) {
+      image = getHalfSizeImage(image);
+      levels.add(image);
+    }
+    return levels;
+  }
+
+  /**
+   * Returns the given image divided in size by two, each pixel being the average of four pixels.
+   */
+  public static BufferedImage getHalfSizeImage(BufferedImage image) {
+    BufferedImage halfSizeImage = new BufferedImage(
+        Math.max(1, image.getWidth() / 2), Math.max(1, image.getHeight() / 2),
+        image.getTransparency() == BufferedImage.OPAQUE
+            ? BufferedImage.TYPE_INT_RGB
+            : BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2D = (Graphics2D)halfSizeImage.getGraphics();
+    g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g2D.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    g2D.drawImage(image, 0, 0, halfSizeImage.getWidth(), halfSizeImage.getHeight(), null);
+    g2D.dispose();
+    return halfSizeImage;
+  }
+}
@@ -22,6 +22,7 @@ package com.eteks.sweethome3d.j3d;
 import java.awt.AlphaComposite;
 import java.awt.EventQueue;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
@@ -90,6 +91,7 @@ import javax.vecmath.Vector4f;
 
 import org.sunflow.PluginRegistry;
 import org.sunflow.SunflowAPI;
+import org.sunflow.core.BucketOrder;
 import org.sunflow.core.Display;
 import org.sunflow.core.Instance;
 import org.sunflow.core.ParameterList;
@@ -130,6 +132,18 @@ import com.eteks.sweethome3d.viewcontroller.Object3DFactory;
 public class PhotoRenderer {
   public enum Quality {LOW, HIGH}
 
+  /**
+   * The size in pixels of the square buckets in which images are rendered.
+   */
+  static final int BUCKET_SIZE = 64;
+
+  private static final int   PATH_SAMPLES              = 64;
+  private static final int   PREVIEW_SCALE             = 4;
+  private static final float ANTI_ALIASING_CONTRAST    = 0.1f;
+
+  private static final String SUBSET_BUCKET_ORDER = "sweethome3d-subset";
+  private static final ThreadLocal<int []> renderedBucketsCoordinates = new ThreadLocal<int []>();
+
   private final Home home;
   private final Object3DFactory object3dFactory;
   private final Quality quality;
@@ -144,6 +158,9 @@ public class PhotoRenderer {
   private final Map<Selectable, String []>         homeItemsNames     = new HashMap<Selectable, String []>();
   private final Map<TransparentTextureKey, String> textureImagesCache = new HashMap<TransparentTextureKey, String>();
   private Thread renderingThread;
+  private long   exportTime;
+  private long   renderingTime;
+  private int    renderingCount;
 
   static {
     // Ignore logs
@@ -151,6 +168,7 @@ public class PhotoRenderer {
     // Use small triangles for better rendering
     TriangleMesh.setSmallTriangles(true);
     PluginRegistry.lightSourcePlugins.registerPlugin("sphere", SphereLightWithNoRepresentation.class);
+    PluginRegistry.bucketOrderPlugins.registerPlugin(SUBSET_BUCKET_ORDER, SubsetBucketOrder.class);
   }
 
   /**
@@ -172,6 +190,7 @@ public class PhotoRenderer {
   public PhotoRenderer(Home home,
                        Object3DFactory object3dFactory,
                        Quality quality) throws IOException {
+    long exportStartTime = System.nanoTime();
     this.home = home;
     this.compass = home.getCompass();
     this.quality = quality;
@@ -408,9 +427,10 @@ public class PhotoRenderer {
     }
 
     // Use a spiral computing
-    this.sunflow.parameter("bucket.size", 64);
+    this.sunflow.parameter("bucket.size", BUCKET_SIZE);
     this.sunflow.parameter("bucket.order", "spiral");
     this.sunflow.options(SunflowAPI.DEFAULT_OPTIONS);
+    this.exportTime = System.nanoTime() - exportStartTime;
   }
 
   /**
@@ -522,9 +542,192 @@ public class PhotoRenderer {
                      Camera camera,
                      List<? extends Selectable> updatedItems,
                      final ImageObserver observer) throws IOException {
+    render(image.getWidth(), image.getHeight(), camera, updatedItems, null,
+        Integer.parseInt(getRenderingParameterValue("antiAliasing.min")),
+        Integer.parseInt(getRenderingParameterValue("antiAliasing.max")),
+        PATH_SAMPLES, new BufferedImageDisplay(image, observer, true));
+    this.renderingCount++;
+  }
+
+  /**
+   * Renders home in <code>image</code> at the given <code>camera</code> location and image size
+   * in successive passes notified to <code>observer</code>: a preview computed at a lower resolution,
+   * a draft computed at full resolution at minimum anti aliasing with less samples, then
+   * a refinement of the buckets of the draft which are too noisy or aliased compared
+   * to the rendering quality of this renderer.
+   * The rendered objects of the home are the same ones since last call to render or construction.
+   */
+  public void renderProgressively(BufferedImage image,
+                                  Camera camera,
+                                  ImageObserver observer) {
+    try {
+      int width = image.getWidth();
+      int height = image.getHeight();
+      int antiAliasingMin = Integer.parseInt(getRenderingParameterValue("antiAliasing.min"));
+      int antiAliasingMax = Integer.parseInt(getRenderingParameterValue("antiAliasing.max"));
+      int previewAntiAliasing = Math.min(antiAliasingMin, 0);
+      int draftPathSamples = Math.max(1, PATH_SAMPLES / 4);
+
+      // Render a preview in a smaller image scaled at the size of the image
+      BufferedImage previewImage = new BufferedImage(
+          Math.max(1, (width + PREVIEW_SCALE - 1) / PREVIEW_SCALE),
+          Math.max(1, (height + PREVIEW_SCALE - 1) / PREVIEW_SCALE), BufferedImage.TYPE_INT_RGB);
+      render(previewImage.getWidth(), previewImage.getHeight(), camera, null, null,
+          previewAntiAliasing, previewAntiAliasing, Math.max(1, PATH_SAMPLES / 16),
+          new BufferedImageDisplay(previewImage, null, false));
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      BufferedImageDisplay display = new BufferedImageDisplay(image, observer, false);
+      display.drawScaledImage(previewImage);
+
+      // Render a draft at full resolution over the preview, with the minimum anti aliasing
+      // of final rendering to be able to measure where SunFlow would refine anti aliasing
+      render(width, height, camera, null, null,
+          antiAliasingMin, antiAliasingMin, draftPathSamples, display);
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+
+      boolean pathGlobalIllumination = "path".equals(getRenderingParameterValue("globalIllumination"));
+      if (antiAliasingMax > antiAliasingMin
+          || (pathGlobalIllumination && PATH_SAMPLES > draftPathSamples)) {
+        // Refine only the buckets of the draft which didn't reach the expected quality
+        int [] bucketsCoordinates = getBucketsToRefine(image,
+            antiAliasingMax > antiAliasingMin,
+            Float.parseFloat(getRenderingParameterValue("noiseThreshold")));
+        if (bucketsCoordinates.length > 0) {
+          render(width, height, camera, null, bucketsCoordinates,
+              antiAliasingMin, antiAliasingMax, PATH_SAMPLES, display);
+        }
+      }
+      this.renderingCount++;
+    } catch (IOException ex) {
+      // Exception can't happen, since there's no updated item
+    }
+  }
+
+  /**
+   * Returns the column and row indices of the buckets of the given <code>image</code>
+   * where the estimated noise is greater than or equal to <code>noiseThreshold</code>,
+   * or where contrast between neighbor pixels requires a higher anti aliasing
+   * if <code>antiAliased</code> is <code>true</code>. As the image is expected to be rendered
+   * at the minimum anti aliasing of final rendering, this contrast matches the one SunFlow
+   * measures to decide where anti aliasing should be refined up to its maximum.
+   */
+  private static int [] getBucketsToRefine(BufferedImage image, boolean antiAliased, float noiseThreshold) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int bucketsCountX = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    int bucketsCountY = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    int [] bucketsCoordinates = new int [bucketsCountX * bucketsCountY * 2];
+    int length = 0;
+    int [] pixels = new int [BUCKET_SIZE * BUCKET_SIZE];
+    float [] luminances = new float [BUCKET_SIZE * BUCKET_SIZE];
+    for (int by = 0; by < bucketsCountY; by++) {
+      for (int bx = 0; bx < bucketsCountX; bx++) {
+        int x = bx * BUCKET_SIZE;
+        int y = by * BUCKET_SIZE;
+        int bucketWidth = Math.min(BUCKET_SIZE, width - x);
+        int bucketHeight = Math.min(BUCKET_SIZE, height - y);
+        image.getRGB(x, y, bucketWidth, bucketHeight, pixels, 0, bucketWidth);
+        if (antiAliased && isContrasted(pixels, bucketWidth, bucketHeight)
+            || getNoiseDeviation(pixels, luminances, bucketWidth, bucketHeight) >= noiseThreshold) {
+          bucketsCoordinates [length++] = bx;
+          bucketsCoordinates [length++] = by;
+        }
+      }
+    }
+    int [] refinedBucketsCoordinates = new int [length];
+    System.arraycopy(bucketsCoordinates, 0, refinedBucketsCoordinates, 0, length);
+    return refinedBucketsCoordinates;
+  }
+
+  /**
+   * Returns <code>true</code> if a color component of two neighbor pixels differs
+   * more than the contrast threshold used by SunFlow to refine anti aliasing.
+   */
+  private static boolean isContrasted(int [] pixels, int width, int height) {
+    int maxDifference = Math.round(ANTI_ALIASING_CONTRAST * 255);
+    for (int y = 0, index = 0; y < height; y++) {
+      for (int x = 0; x < width; x++, index++) {
+        int pixel = pixels [index];
+        if (x < width - 1
+              && getMaxComponentDifference(pixel, pixels [index + 1]) > maxDifference
+            || y < height - 1
+              && getMaxComponentDifference(pixel, pixels [index + width]) > maxDifference) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static int getMaxComponentDifference(int rgb1, int rgb2) {
+    return Math.max(Math.abs(((rgb1 >> 16) & 0xFF) - ((rgb2 >> 16) & 0xFF)),
+        Math.max(Math.abs(((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF)),
+                 Math.abs((rgb1 & 0xFF) - (rgb2 & 0xFF))));
+  }
+
+  /**
+   * Returns the standard deviation of the noise in the luminance of the given pixels,
+   * estimated with the mask proposed by J. Immerkaer in Fast Noise Variance Estimation,
+   * which ignores most of the edges and the gradients of the image.
+   */
+  private static float getNoiseDeviation(int [] pixels, float [] luminances, int width, int height) {
+    if (width < 3 || height < 3) {
+      return 0;
+    }
+    for (int i = 0; i < width * height; i++) {
+      int pixel = pixels [i];
+      luminances [i] = (0.299f * ((pixel >> 16) & 0xFF)
+          + 0.587f * ((pixel >> 8) & 0xFF)
+          + 0.114f * (pixel & 0xFF)) / 255;
+    }
+    double sum = 0;
+    for (int y = 1; y < height - 1; y++) {
+      for (int x = 1; x < width - 1; x++) {
+        int index = y * width + x;
+        float corners = luminances [index - width - 1] + luminances [index - width + 1]
+            + luminances [index + width - 1] + luminances [index + width + 1];
+        float sides = luminances [index - width] + luminances [index - 1]
+            + luminances [index + 1] + luminances [index + width];
+        sum += Math.abs(corners - 2 * sides + 4 * luminances [index]);
+      }
+    }
+    return (float)(Math.sqrt(Math.PI / 2) * sum / (6 * (width - 2) * (height - 2)));
+  }
+
+  /**
+   * Renders only the buckets of an image of the given size at the given <code>camera</code> location.
+   * <code>bucketsCoordinates</code> contains the column and row indices of each rendered bucket,
+   * and the pixels of each bucket are given to <code>tilesObserver</code> once it's rendered.
+   */
+  void render(int width, int height, Camera camera, int [] bucketsCoordinates,
+              DistributedPhotoRenderer.TilesObserver tilesObserver) {
+    try {
+      render(width, height, camera, null, bucketsCoordinates,
+          Integer.parseInt(getRenderingParameterValue("antiAliasing.min")),
+          Integer.parseInt(getRenderingParameterValue("antiAliasing.max")),
+          PATH_SAMPLES, new TilesDisplay(tilesObserver));
+      this.renderingCount++;
+    } catch (IOException ex) {
+      // Exception can't happen, since there's no updated item
+    }
+  }
+
+  private void render(int width, int height,
+                      Camera camera,
+                      List<? extends Selectable> updatedItems,
+                      int [] bucketsCoordinates,
+                      int antiAliasingMin,
+                      int antiAliasingMax,
+                      int pathSamples,
+                      Display display) throws IOException {
     this.renderingThread = Thread.currentThread();
 
     if (updatedItems != null) {
+      long exportStartTime = System.nanoTime();
       boolean silk = isSilkShaderUsed(this.quality);
       for (Selectable item : updatedItems) {
         // Remove from SunFlow updated objects
@@ -541,8 +744,10 @@ public class PhotoRenderer {
           this.homeItemsNames.put(item, itemNames);
         }
       }
+      this.exportTime += System.nanoTime() - exportStartTime;
     }
 
+    long renderingStartTime = System.nanoTime();
     if (this.sunSkyLightName != null) {
       this.sunflow.remove(this.sunSkyLightName);
       this.sunSkyLightName = null;
@@ -606,7 +811,7 @@ public class PhotoRenderer {
 
     if ("path".equals(globalIllumination)) {
       this.sunflow.parameter("gi.engine", "path");
-      this.sunflow.parameter("gi.path.samples", 64);
+      this.sunflow.parameter("gi.path.samples", pathSamples);
       this.sunflow.options(SunflowAPI.DEFAULT_OPTIONS);
     }
 
@@ -657,27 +862,61 @@ public class PhotoRenderer {
     }
     this.sunflow.parameter("transform", transform);
     this.sunflow.parameter("fov", (float)Math.toDegrees(camera.getFieldOfView()));
-    this.sunflow.parameter("aspect", (float)image.getWidth() / image.getHeight());
+    this.sunflow.parameter("aspect", (float)width / height);
     // Update camera
     this.sunflow.camera(CAMERA_NAME, null);
 
     // Set image size and quality
-    this.sunflow.parameter("resolutionX", image.getWidth());
-    this.sunflow.parameter("resolutionY", image.getHeight());
+    this.sunflow.parameter("resolutionX", width);
+    this.sunflow.parameter("resolutionY", height);
 
-    int antiAliasingMin = Integer.parseInt(getRenderingParameterValue("antiAliasing.min"));
-    int antiAliasingMax = Integer.parseInt(getRenderingParameterValue("antiAliasing.max"));
     String filter = getRenderingParameterValue("filter");
     this.sunflow.parameter("filter", filter);
     this.sunflow.parameter("aa.min", antiAliasingMin);
     this.sunflow.parameter("aa.max", antiAliasingMax);
-    String samplerAlgorithm = getRenderingParameterValue("samplerAlgorithm");
-    this.sunflow.parameter("sampler", samplerAlgorithm); // ipr, fast or bucket
+    if (bucketsCoordinates != null) {
+      // Render only the requested buckets
+      this.sunflow.parameter("sampler", "bucket");
+      this.sunflow.parameter("bucket.order", SUBSET_BUCKET_ORDER);
+    } else {
+      String samplerAlgorithm = getRenderingParameterValue("samplerAlgorithm");
+      this.sunflow.parameter("sampler", samplerAlgorithm); // ipr, fast or bucket
+      this.sunflow.parameter("bucket.order", "spiral");
+    }
 
     // Render image with default camera
     this.sunflow.parameter("camera", CAMERA_NAME);
     this.sunflow.options(SunflowAPI.DEFAULT_OPTIONS);
-    this.sunflow.render(SunflowAPI.DEFAULT_OPTIONS, new BufferedImageDisplay(image, observer));
+    // Buckets sequence is requested by SubsetBucketOrder in this thread
+    renderedBucketsCoordinates.set(bucketsCoordinates);
+    try {
+      this.sunflow.render(SunflowAPI.DEFAULT_OPTIONS, display);
+    } finally {
+      renderedBucketsCoordinates.remove();
+    }
+    this.renderingTime += System.nanoTime() - renderingStartTime;
+  }
+
+  /**
+   * Returns the time in milliseconds spent to export home items to the scene of this renderer,
+   * at its construction and for the items updated since.
+   */
+  public long getExportTime() {
+    return this.exportTime / 1000000;
+  }
+
+  /**
+   * Returns the total time in milliseconds spent to render images with this renderer.
+   */
+  public long getRenderingTime() {
+    return this.renderingTime / 1000000;
+  }
+
+  /**
+   * Returns the count of images rendered with this renderer.
+   */
+  public int getRenderingCount() {
+    return this.renderingCount;
   }
 
   /**
@@ -1651,20 +1890,35 @@ public class PhotoRenderer {
 
     private final ImageObserver observer;
     private final BufferedImage image;
+    private final boolean       darkenedAtBegin;
 
-    private BufferedImageDisplay(BufferedImage image, ImageObserver observer) {
+    private BufferedImageDisplay(BufferedImage image, ImageObserver observer, boolean darkenedAtBegin) {
       this.observer = observer;
       this.image = image;
+      this.darkenedAtBegin = darkenedAtBegin;
     }
 
     public synchronized void imageBegin(int width, int height, int bucketSize) {
-      for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-          int rgba = this.image.getRGB(x, y);
-          this.image.setRGB(x, y, ((rgba & 0xFEFEFEFE) >>> 1) + ((rgba & 0xFCFCFCFC) >>> 2));
+      if (this.darkenedAtBegin) {
+        for (int y = 0; y < height; y++) {
+          for (int x = 0; x < width; x++) {
+            int rgba = this.image.getRGB(x, y);
+            this.image.setRGB(x, y, ((rgba & 0xFEFEFEFE) >>> 1) + ((rgba & 0xFCFCFCFC) >>> 2));
+          }
         }
+        notifyObserver(ImageObserver.FRAMEBITS | BASE_INFO_FLAGS, 0, 0, width, height);
       }
-      notifyObserver(ImageObserver.FRAMEBITS | BASE_INFO_FLAGS, 0, 0, width, height);
+    }
+
+    /**
+     * Draws the given image scaled at the size of the image of this display.
+     */
+    public synchronized void drawScaledImage(BufferedImage scaledImage) {
+      Graphics2D g2D = this.image.createGraphics();
+      g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g2D.drawImage(scaledImage, 0, 0, this.image.getWidth(), this.image.getHeight(), null);
+      g2D.dispose();
+      notifyObserver(ImageObserver.FRAMEBITS | BASE_INFO_FLAGS, 0, 0, this.image.getWidth(), this.image.getHeight());
     }
 
     public synchronized void imagePrepare(int x, int y, int width, int height, int id) {
@@ -1721,6 +1975,75 @@ public class PhotoRenderer {
     }
   }
 
+  /**
+   * A SunFlow display that sends the pixels of each rendered bucket to a tiles observer.
+   */
+  private static final class TilesDisplay implements Display {
+    private final DistributedPhotoRenderer.TilesObserver tilesObserver;
+
+    private TilesDisplay(DistributedPhotoRenderer.TilesObserver tilesObserver) {
+      this.tilesObserver = tilesObserver;
+    }
+
+    public void imageBegin(int width, int height, int bucketSize) {
+    }
+
+    public void imagePrepare(int x, int y, int width, int height, int id) {
+    }
+
+    public void imageUpdate(int x, int y, int width, int height, Color [] data, float [] alpha) {
+      int [] pixels = new int [width * height];
+      for (int i = 0; i < pixels.length; i++) {
+        pixels [i] = data [i].copy().mul(1.0f / alpha [i]).toNonLinear().toRGBA(alpha [i]);
+      }
+      this.tilesObserver.tileRendered(x, y, width, height, pixels);
+    }
+
+    public void imageFill(int x, int y, int width, int height, Color c, float alpha) {
+      int [] pixels = new int [width * height];
+      Arrays.fill(pixels, c.copy().mul(1.0f / alpha).toNonLinear().toRGBA(alpha));
+      this.tilesObserver.tileRendered(x, y, width, height, pixels);
+    }
+
+    public void imageEnd() {
+    }
+  }
+
+  /**
+   * A SunFlow bucket order that returns the buckets requested to the renderer
+   * in the current thread.
+   */
+  public static class SubsetBucketOrder implements BucketOrder {
+    public int [] getBucketSequence(int bucketsCountX, int bucketsCountY) {
+      int [] bucketsCoordinates = renderedBucketsCoordinates.get();
+      if (bucketsCoordinates == null) {
+        // Return all the buckets row by row
+        int [] sequence = new int [bucketsCountX * bucketsCountY * 2];
+        for (int i = 0, index = 0; i < bucketsCountY; i++) {
+          for (int j = 0; j < bucketsCountX; j++) {
+            sequence [index++] = j;
+            sequence [index++] = i;
+          }
+        }
+        return sequence;
+      } else {
+        // Ignore buckets out of image
+        int [] sequence = new int [bucketsCoordinates.length];
+        int length = 0;
+        for (int i = 0; i < bucketsCoordinates.length; i += 2) {
+          if (bucketsCoordinates [i] < bucketsCountX
+              && bucketsCoordinates [i + 1] < bucketsCountY) {
+            sequence [length++] = bucketsCoordinates [i];
+            sequence [length++] = bucketsCoordinates [i + 1];
+          }
+        }
+        int [] bucketSequence = new int [length];
+        System.arraycopy(sequence, 0, bucketSequence, 0, length);
+        return bucketSequence;
+      }
+    }
+  }
+
   /**
    * A SunFlow sphere light with no representation.
    */
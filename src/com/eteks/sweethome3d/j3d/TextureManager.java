@@ -27,6 +27,7 @@ import java.awt.RenderingHints;
 import java.awt.TexturePaint;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
@@ -34,13 +35,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.imageio.ImageIO;
+import javax.media.j3d.CapabilityNotSetException;
 import javax.media.j3d.ImageComponent;
 import javax.media.j3d.ImageComponent2D;
 import javax.media.j3d.Texture;
@@ -55,24 +56,46 @@ import com.sun.j3d.utils.image.TextureLoader;
  * @author Emmanuel Puybaret
  */
 public class TextureManager {
+  // No maximum size by default
+  private static final int      DEFAULT_MAX_TEXTURE_SIZE = Integer.MAX_VALUE;
+
   private static TextureManager instance;
   // Image used if an image content couldn't be loaded
   private final Texture         errorTexture;
   // Image used while an image content is loaded
   private final Texture         waitTexture;
-  // Map storing loaded rotated texture contents
-  private final Map<Content, List<ComparableTextureAngleTuple>> contentTextures;
+  // Cache storing loaded rotated texture contents
+  private final MemoryBoundedCache<Content, List<ComparableTextureAngleTuple>> contentTextures;
   // Map storing loaded textures used to compare their images
   private final Map<Texture, ComparableTexture>                 textures;
   // Map storing model textures being loaded
   private Map<RotatedContentKey, List<TextureObserver>>         loadingTextureObservers;
-  // Executor used to load images
-  private ExecutorService       texturesLoader;
+  // Maximum width and height of loaded images
+  private int                                                   maxTextureSize;
+  private PersistentTextureCache                                persistentTextureCache;
+  private ModelManager.ContentDigester                          contentDigester;
 
   private TextureManager() {
     this.errorTexture = getColoredImageTexture(Color.RED);
     this.waitTexture = getColoredImageTexture(Color.WHITE);
-    this.contentTextures = new WeakHashMap<Content, List<ComparableTextureAngleTuple>>();
+    this.maxTextureSize = DEFAULT_MAX_TEXTURE_SIZE;
+    try {
+      this.maxTextureSize = Integer.valueOf(System.getProperty("com.eteks.sweethome3d.j3d.maxTextureSize",
+          String.valueOf(DEFAULT_MAX_TEXTURE_SIZE)));
+    } catch (NumberFormatException ex) {
+      // Keep default size
+    }
+    this.contentTextures = new MemoryBoundedCache<Content, List<ComparableTextureAngleTuple>>(
+        Runtime.getRuntime().maxMemory() / 8, MemoryBoundedCache.EvictionPolicy.LEAST_RECENTLY_USED,
+        new MemoryBoundedCache.SizeEstimator<List<ComparableTextureAngleTuple>>() {
+          public long getSize(List<ComparableTextureAngleTuple> contentTexturesList) {
+            long size = 0;
+            for (ComparableTextureAngleTuple textureAngleTuple : contentTexturesList) {
+              size += getTextureSize(textureAngleTuple.getTexture());
+            }
+            return size;
+          }
+        });
     this.textures = new WeakHashMap<Texture, ComparableTexture>();
     this.loadingTextureObservers = new HashMap<RotatedContentKey, List<TextureObserver>>();
   }
@@ -88,12 +111,11 @@ public class TextureManager {
   }
 
   /**
-   * Shutdowns the multithreaded service that load textures. 
+   * Cancels the textures waiting to be loaded and clears loaded textures cache.
    */
   public void clear() {
-    if (this.texturesLoader != null) {
-      this.texturesLoader.shutdownNow();
-      this.texturesLoader = null;
+    for (RotatedContentKey contentKey : this.loadingTextureObservers.keySet()) {
+      LoadingScheduler.getInstance().cancel(contentKey);
     }
     synchronized (this.textures) {
       this.contentTextures.clear();
@@ -102,6 +124,137 @@ public class TextureManager {
     this.loadingTextureObservers.clear();
   }
   
+  /**
+   * Sets the maximum count of bytes used by the texture images kept in memory by this manager,
+   * and the policy used to choose the textures evicted once this count is exceeded.
+   * By default, loaded textures may use up to an eighth of the maximum memory
+   * and the least recently used textures are evicted first.
+   */
+  public void setTextureCachePolicy(long maxSize, MemoryBoundedCache.EvictionPolicy evictionPolicy) {
+    this.contentTextures.setPolicy(maxSize, evictionPolicy);
+  }
+
+  /**
+   * Returns the statistics of the cache of the textures kept in memory by this manager.
+   */
+  public MemoryBoundedCache.Statistics getTextureCacheStatistics() {
+    return this.contentTextures.getStatistics();
+  }
+
+  /**
+   * Sets the maximum width and height in pixels of the images of the textures loaded
+   * by this manager. Bigger images are downscaled by successive halvings until they fit
+   * in this size. By default, images aren't downscaled unless the
+   * <code>com.eteks.sweethome3d.j3d.maxTextureSize</code> system property is set.
+   * Textures already loaded aren't modified.
+   */
+  public void setMaximumTextureSize(int maxTextureSize) {
+    synchronized (this.textures) {
+      this.maxTextureSize = maxTextureSize;
+    }
+  }
+
+  /**
+   * Returns the maximum width and height in pixels of the images of the textures loaded by this manager.
+   */
+  public int getMaximumTextureSize() {
+    synchronized (this.textures) {
+      return this.maxTextureSize;
+    }
+  }
+
+  /**
+   * Sets the folder where the downscaled levels of big texture images are stored, to read them
+   * faster the next time a content with the same digest is loaded, even in an other session.
+   * Once the size of the files stored in this folder exceeds <code>maxSize</code>,
+   * the least recently used ones are deleted. The digests of contents are also used
+   * to share textures loaded from contents with the same digest without comparing their pixels.
+   * This folder and the digests of contents are used only once a maximum texture size is set.
+   * @param texturesFolder   the folder of the cached images or <code>null</code> to stop using it
+   * @param maxSize          the maximum size in bytes of the cached images
+   * @param contentDigester  the digester used to compute the key of the cached images
+   */
+  public void setPersistentTexturesFolder(File texturesFolder, long maxSize,
+                                          ModelManager.ContentDigester contentDigester) {
+    synchronized (this.textures) {
+      if (texturesFolder != null) {
+        this.persistentTextureCache = new PersistentTextureCache(texturesFolder, maxSize);
+        this.contentDigester = contentDigester;
+      } else {
+        this.persistentTextureCache = null;
+        this.contentDigester = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the count of images read from the persistent textures folder.
+   */
+  public long getPersistentTexturesHitCount() {
+    PersistentTextureCache persistentTextureCache = getPersistentTextureCache();
+    return persistentTextureCache != null
+        ? persistentTextureCache.getHitCount()
+        : 0;
+  }
+
+  /**
+   * Returns the count of images that weren't found in the persistent textures folder.
+   */
+  public long getPersistentTexturesMissCount() {
+    PersistentTextureCache persistentTextureCache = getPersistentTextureCache();
+    return persistentTextureCache != null
+        ? persistentTextureCache.getMissCount()
+        : 0;
+  }
+
+  private PersistentTextureCache getPersistentTextureCache() {
+    synchronized (this.textures) {
+      return this.persistentTextureCache;
+    }
+  }
+
+  /**
+   * Returns the digest of the given <code>content</code> or <code>null</code>
+   * if no digester is available or if the size of textures isn't limited.
+   */
+  private byte [] getContentDigest(Content content) {
+    ModelManager.ContentDigester contentDigester;
+    int maxTextureSize;
+    synchronized (this.textures) {
+      contentDigester = this.contentDigester;
+      maxTextureSize = this.maxTextureSize;
+    }
+    // Without maximum size, images are never downscaled and stored in persistent textures folder,
+    // and the cost of digest computation isn't worth it
+    if (contentDigester != null
+        && maxTextureSize != Integer.MAX_VALUE) {
+      byte [] contentDigest = contentDigester.getContentDigest(content);
+      if (contentDigest != null
+          && contentDigest.length > 0) {
+        return contentDigest;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns an estimation of the count of bytes used by the images of the given <code>texture</code>.
+   */
+  static long getTextureSize(Texture texture) {
+    try {
+      long size = 0;
+      for (ImageComponent image : texture.getImages()) {
+        if (image != null) {
+          size += 4L * image.getWidth() * image.getHeight();
+        }
+      }
+      return size;
+    } catch (CapabilityNotSetException ex) {
+      // Ignore size of live textures that can't be read
+      return 0;
+    }
+  }
+
   /**
    * Returns a texture image of one pixel of the given <code>color</code>. 
    */
@@ -167,6 +320,29 @@ public class TextureManager {
                           final float   angle,
                           boolean synchronous,
                           final TextureObserver textureObserver) {
+    loadTexture(content, angle, synchronous, LoadingScheduler.DEFAULT_PRIORITY, textureObserver);
+  }
+
+  /**
+   * Reads a texture image from <code>content</code> notified to <code>textureObserver</code>. 
+   * If the texture isn't loaded in cache yet and <code>synchronous</code> is false, a one pixel 
+   * white image texture will be notified immediately to the given <code>textureObserver</code>, 
+   * then a second notification will be given in Event Dispatch Thread once the image texture is loaded
+   * with {@link LoadingScheduler}. 
+   * If the texture is in cache, it will be notified immediately to the given <code>textureObserver</code>.
+   * @param content an object containing an image
+   * @param angle   the rotation angle applied to the image
+   * @param synchronous if <code>true</code>, this method will return only once image content is loaded.
+   * @param priority the priority of the texture if it's loaded asynchronously, the smallest values being loaded first
+   * @param textureObserver the observer that will be notified once the texture is available
+   * @throws IllegalStateException if synchronous is <code>false</code> and the current thread isn't 
+   *    the Event Dispatch Thread.  
+   */
+  public void loadTexture(final Content content,
+                          final float   angle,
+                          boolean synchronous,
+                          float priority,
+                          final TextureObserver textureObserver) {
     Texture texture = null;
     synchronized (this.textures) { // Use one mutex for both maps
       List<ComparableTextureAngleTuple> contentTexturesList = this.contentTextures.get(content);
@@ -188,16 +364,13 @@ public class TextureManager {
       } else {
         // Notify wait texture to observer
         textureObserver.textureUpdated(this.waitTexture);
-        if (this.texturesLoader == null) {
-          this.texturesLoader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        }
-        
         final RotatedContentKey contentKey = new RotatedContentKey(content, angle);
         List<TextureObserver> observers = this.loadingTextureObservers.get(contentKey);
         if (observers != null) {
           // If observers list exists, content texture is already being loaded
           // register observer for future notification
           observers.add(textureObserver);
+          LoadingScheduler.getInstance().raisePriority(contentKey, priority);
         } else {
           // Create a list of observers that will be notified once content texture is loaded
           observers = new ArrayList<TextureObserver>();
@@ -205,7 +378,7 @@ public class TextureManager {
           this.loadingTextureObservers.put(contentKey, observers);
 
           // Load the image in a different thread
-          this.texturesLoader.execute(new Runnable () {
+          LoadingScheduler.getInstance().execute(contentKey, priority, new Runnable () {
               public void run() {
                 final Texture texture = shareTexture(loadTexture(content, angle), angle, content);
                 EventQueue.invokeLater(new Runnable() {
@@ -229,6 +402,38 @@ public class TextureManager {
     }
   }
   
+  /**
+   * Stops notifying the given observer of the texture loaded from <code>content</code>,
+   * and cancels its loading if no other observer waits for it.
+   * This method must be called in Event Dispatch Thread.
+   */
+  public void cancelTextureLoading(Content content, TextureObserver textureObserver) {
+    for (Iterator<Map.Entry<RotatedContentKey, List<TextureObserver>>> it = this.loadingTextureObservers.entrySet().iterator();
+         it.hasNext(); ) {
+      Map.Entry<RotatedContentKey, List<TextureObserver>> entry = it.next();
+      if (entry.getKey().content.equals(content)
+          && entry.getValue().remove(textureObserver)
+          && entry.getValue().isEmpty()
+          && LoadingScheduler.getInstance().cancel(entry.getKey())) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the given observer waits for the texture loaded from <code>content</code>.
+   * This method must be called in Event Dispatch Thread.
+   */
+  boolean isTextureLoading(Content content, TextureObserver textureObserver) {
+    for (Map.Entry<RotatedContentKey, List<TextureObserver>> entry : this.loadingTextureObservers.entrySet()) {
+      if (entry.getKey().content.equals(content)
+          && entry.getValue().contains(textureObserver)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Returns a texture created from the image from <code>content</code>. 
    */
@@ -242,19 +447,8 @@ public class TextureManager {
    */
   private Texture loadTexture(final Content content, float angle) {
     try {
-      // Read the image 
-      InputStream contentStream = content.openStream();
-      BufferedImage image;          
-      try {
-        image = ImageIO.read(contentStream);
-      } catch (ConcurrentModificationException ex) {
-        // Try to read the image once more, 
-        // see unfixed Java bug http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6986863
-        contentStream.close();
-        contentStream = content.openStream();
-       image = ImageIO.read(contentStream);
-      }
-      if (angle != 0) {
+      BufferedImage image = readImage(content);
+      if (image != null && angle != 0) {
         double cos = Math.cos(angle);
         double sin = Math.sin(angle);
         BufferedImage rotatedImage = new BufferedImage((int)Math.round(Math.abs(image.getWidth() * cos) + Math.abs(image.getHeight() * sin)), 
@@ -270,7 +464,6 @@ public class TextureManager {
         g2D.dispose();
         image = rotatedImage;
       }
-      contentStream.close();
       if (image != null) {
         Texture texture = new TextureLoader(image).getTexture();
         // Keep in user data the URL of the texture image
@@ -296,6 +489,65 @@ public class TextureManager {
     }            
   }
 
+  /**
+   * Returns the image read from <code>content</code>, downscaled if it's bigger
+   * than the maximum texture size. The downscaled levels of big images are read from
+   * and stored in the persistent textures folder if it's set.
+   */
+  private BufferedImage readImage(Content content) throws IOException {
+    PersistentTextureCache persistentTextureCache;
+    int maxTextureSize;
+    synchronized (this.textures) {
+      persistentTextureCache = this.persistentTextureCache;
+      maxTextureSize = this.maxTextureSize;
+    }
+    byte [] contentDigest = null;
+    if (persistentTextureCache != null) {
+      contentDigest = getContentDigest(content);
+      if (contentDigest != null) {
+        BufferedImage image = persistentTextureCache.readImage(contentDigest, maxTextureSize);
+        if (image != null) {
+          return image;
+        }
+      }
+    }
+
+    // Read the image
+    InputStream contentStream = content.openStream();
+    BufferedImage image;
+    try {
+      image = ImageIO.read(contentStream);
+    } catch (ConcurrentModificationException ex) {
+      // Try to read the image once more,
+      // see unfixed Java bug http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6986863
+      contentStream.close();
+      contentStream = content.openStream();
+      image = ImageIO.read(contentStream);
+    } finally {
+      contentStream.close();
+    }
+
+    if (image != null
+        && (image.getWidth() > maxTextureSize || image.getHeight() > maxTextureSize)) {
+      if (contentDigest != null) {
+        // Store all the levels of the image to be able to use an other maximum size later
+        List<BufferedImage> levels = PersistentTextureCache.getImagePyramid(image, 1);
+        persistentTextureCache.writeImages(contentDigest, levels);
+        for (BufferedImage level : levels) {
+          image = level;
+          if (image.getWidth() <= maxTextureSize && image.getHeight() <= maxTextureSize) {
+            break;
+          }
+        }
+      } else {
+        while (image.getWidth() > maxTextureSize || image.getHeight() > maxTextureSize) {
+          image = PersistentTextureCache.getHalfSizeImage(image);
+        }
+      }
+    }
+    return image;
+  }
+
   /**
    * Returns either the <code>texture</code> in parameter or a shared texture 
    * if the same texture as the one in parameter is already shared.
@@ -308,11 +560,16 @@ public class TextureManager {
    * Returns the texture matching <code>content</code>, either 
    * the <code>texture</code> in parameter or a shared texture if the 
    * same texture as the one in parameter is already shared.
+   * If the digest of <code>content</code> is available, textures are compared
+   * with this digest rather than with their pixels.
    */
   private Texture shareTexture(final Texture texture,
                                final float   angle,
                                final Content content) {
-    ComparableTexture textureData = new ComparableTexture(texture);
+    byte [] contentDigest = content != null && texture != this.errorTexture
+        ? getContentDigest(content)
+        : null;
+    ComparableTexture textureData = new ComparableTexture(texture, contentDigest, angle);
     Texture sharedTexture = null;
     synchronized (this.textures) { // Use one mutex for both maps
       // Search which existing key matches texture key to share unique texture
@@ -329,12 +586,13 @@ public class TextureManager {
         this.textures.put(sharedTexture, textureData);
       }
       if (content != null) {
-        List<ComparableTextureAngleTuple> contentTexturesList = this.contentTextures.get(content);
-        if (contentTexturesList == null) {
-          contentTexturesList = new ArrayList<ComparableTextureAngleTuple>(1);
-          this.contentTextures.put(content, contentTexturesList);
-        }
+        // Replace the list of content textures to update its size in cache, keeping its use count
+        List<ComparableTextureAngleTuple> contentTexturesList = this.contentTextures.peek(content);
+        contentTexturesList = contentTexturesList == null
+            ? new ArrayList<ComparableTextureAngleTuple>(1)
+            : new ArrayList<ComparableTextureAngleTuple>(contentTexturesList);
         contentTexturesList.add(new ComparableTextureAngleTuple(textureData, angle));
+        this.contentTextures.put(content, contentTexturesList);
       }
     }
     return sharedTexture;
@@ -353,6 +611,7 @@ public class TextureManager {
         if (!image.isLive()) {
           image.setCapability(ImageComponent.ALLOW_FORMAT_READ);
           image.setCapability(ImageComponent.ALLOW_IMAGE_READ);
+          image.setCapability(ImageComponent.ALLOW_SIZE_READ);
         }
       }
     }
@@ -439,15 +698,21 @@ public class TextureManager {
   /**
    * Texture used to compare textures images and ensure texture uniqueness in textures map.
    * Image bits of the texture are stored in a weak reference to avoid grabbing memory uselessly.
+   * Textures loaded from a content with a known digest are compared with this digest
+   * and their rotation angle only.
    */
   private static class ComparableTexture {
     private Texture               texture;
+    private byte []               contentDigest;
+    private float                 angle;
     private WeakReference<int []> imageBits;
     private Integer               imageBitsHashCode;
     private Boolean               transparent;
 
-    public ComparableTexture(Texture texture) {
-      this.texture = texture;      
+    public ComparableTexture(Texture texture, byte [] contentDigest, float angle) {
+      this.texture = texture;
+      this.contentDigest = contentDigest;
+      this.angle = angle;
     }
     
     public Texture getTexture() {
@@ -528,6 +793,13 @@ public class TextureManager {
         return true;
       } else if (this.texture == comparableTexture.texture) {
         return true;
+      } else if (this.contentDigest != null
+                 && comparableTexture.contentDigest != null) {
+        // Compare digests and the size of images which depends on maximum texture size
+        return this.angle == comparableTexture.angle
+            && this.texture.getWidth() == comparableTexture.texture.getWidth()
+            && this.texture.getHeight() == comparableTexture.texture.getHeight()
+            && Arrays.equals(this.contentDigest, comparableTexture.contentDigest);
       } else if (getImageBitsHashCode() == comparableTexture.getImageBitsHashCode()){
         return Arrays.equals(getImageBits(), comparableTexture.getImageBits());
       }
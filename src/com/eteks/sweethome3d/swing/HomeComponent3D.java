@@ -2955,7 +2955,12 @@ public class HomeComponent3D extends JComponent implements com.eteks.sweethome3d
    * Detaches from the scene the branch matching <code>homeObject</code>.
    */
   private void deleteObject(Selectable homeObject) {
-    this.homeObjects.get(homeObject).detach();
+    Object3DBranch homeObjectBranch = this.homeObjects.get(homeObject);
+    if (homeObjectBranch instanceof HomePieceOfFurniture3D) {
+      // Don't load the model and the textures of a deleted piece
+      ((HomePieceOfFurniture3D)homeObjectBranch).cancelLoading();
+    }
+    homeObjectBranch.detach();
     this.homeObjects.remove(homeObject);
     if (this.homeObjectsToUpdate != null
         && this.homeObjectsToUpdate.contains(homeObject)) {
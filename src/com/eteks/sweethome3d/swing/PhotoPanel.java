@@ -136,6 +136,7 @@ public class PhotoPanel extends JPanel implements DialogView {
   private JPanel                   photoPanel;
   private CardLayout               photoCardLayout;
   private ExecutorService          photoCreationExecutor;
+  private PhotoRendererCache       photoRendererCache;
   private long                     photoCreationStartTime;
   private JButton                  createButton;
   private JButton                  saveButton;
@@ -157,6 +158,7 @@ public class PhotoPanel extends JPanel implements DialogView {
     this.home = home;
     this.preferences = preferences;
     this.object3dFactory = object3dFactory;
+    this.photoRendererCache = new PhotoRendererCache(home);
     this.controller = controller;
     createActions(preferences);
     createComponents(home, preferences, controller);
@@ -691,6 +693,7 @@ public class PhotoPanel extends JPanel implements DialogView {
       dialog.addWindowListener(new WindowAdapter() {
           public void windowClosed(WindowEvent ev) {
             stopPhotoCreation(false);
+            photoRendererCache.dispose();
             currentPhotoPanel = null;
           }
         });
@@ -735,21 +738,24 @@ public class PhotoPanel extends JPanel implements DialogView {
     // Compute photo in an other executor thread
     // Use a clone of home because the user can modify home during photo computation
     final Home home = this.home.clone();
+    final int sceneModificationCount = this.photoRendererCache.getSceneModificationCount();
     List<Selectable> emptySelection = Collections.emptyList();
     home.setSelectedItems(emptySelection);
     this.photoCreationExecutor = Executors.newSingleThreadExecutor();
     this.photoCreationExecutor.execute(new Runnable() {
         public void run() {
-          computePhoto(home);
+          computePhoto(home, sceneModificationCount);
         }
       });
   }
 
   /**
    * Computes the photo of the given home.
+   * The photo renderer used for the previous photo is reused if the scene of the home
+   * didn't change since then.
    * Caution : this method must be thread safe because it's called from an executor.
    */
-  private void computePhoto(Home home) {
+  private void computePhoto(Home home, int sceneModificationCount) {
     this.photoCreationStartTime = System.currentTimeMillis();
     BufferedImage image = null;
     try {
@@ -758,7 +764,8 @@ public class PhotoPanel extends JPanel implements DialogView {
       int imageHeight = this.controller.getHeight();
       if (quality >= 2) {
         // Use photo renderer
-        PhotoRenderer photoRenderer = new PhotoRenderer(home, this.object3dFactory,
+        PhotoRenderer photoRenderer = this.photoRendererCache.getPhotoRenderer(home, sceneModificationCount,
+            this.object3dFactory,
             quality == 2
                 ? PhotoRenderer.Quality.LOW
                 : PhotoRenderer.Quality.HIGH);
@@ -780,7 +787,13 @@ public class PhotoPanel extends JPanel implements DialogView {
               photoCardLayout.show(photoPanel, PHOTO_CARD);
             }
           });
-          photoRenderer.render(image, camera, this.photoComponent);
+          photoRenderer.renderProgressively(image, camera, this.photoComponent);
+        }
+        if (photoCreationExecutor != null
+            && !Thread.currentThread().isInterrupted()) {
+          // Keep renderer for next photo
+          this.photoRendererCache.releasePhotoRenderer(photoRenderer);
+        } else {
           photoRenderer.dispose();
         }
       } else {
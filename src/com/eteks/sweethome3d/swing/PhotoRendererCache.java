@@ -0,0 +1,316 @@
+/*
+ * PhotoRendererCache.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.swing;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.eteks.sweethome3d.j3d.PhotoRenderer;
+import com.eteks.sweethome3d.model.CollectionEvent;
+import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.Compass;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeEnvironment;
+import com.eteks.sweethome3d.model.HomeFurnitureGroup;
+import com.eteks.sweethome3d.model.HomeObject;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.ObserverCamera;
+import com.eteks.sweethome3d.viewcontroller.Object3DFactory;
+
+/**
+ * A cache able to keep the last photo renderer created for a home, to avoid exporting
+ * again its scene when only the camera or the time of the photo change.
+ * The scene of a home is identified by a modification count, incremented each time
+ * an item, a level, the environment or the compass of the home is modified.
+ * @author Emmanuel Puybaret
+ */
+class PhotoRendererCache {
+  // Properties which don't change the scene exported to photo renderer
+  private static final Set<String> IGNORED_ENVIRONMENT_PROPERTIES = new HashSet<String>(Arrays.asList(new String [] {
+      HomeEnvironment.Property.OBSERVER_CAMERA_ELEVATION_ADJUSTED.name(),
+      HomeEnvironment.Property.PHOTO_WIDTH.name(),
+      HomeEnvironment.Property.PHOTO_HEIGHT.name(),
+      HomeEnvironment.Property.PHOTO_ASPECT_RATIO.name(),
+      HomeEnvironment.Property.PHOTO_QUALITY.name(),
+      HomeEnvironment.Property.VIDEO_WIDTH.name(),
+      HomeEnvironment.Property.VIDEO_ASPECT_RATIO.name(),
+      HomeEnvironment.Property.VIDEO_QUALITY.name(),
+      HomeEnvironment.Property.VIDEO_SPEED.name(),
+      HomeEnvironment.Property.VIDEO_FRAME_RATE.name(),
+      HomeEnvironment.Property.VIDEO_CAMERA_PATH.name()}));
+  private static final Set<String> IGNORED_COMPASS_PROPERTIES = new HashSet<String>(Arrays.asList(new String [] {
+      Compass.Property.X.name(),
+      Compass.Property.Y.name(),
+      Compass.Property.DIAMETER.name(),
+      Compass.Property.VISIBLE.name()}));
+
+  private final Home                   home;
+  private final PropertyChangeListener sceneChangeListener;
+  private final CollectionListener<HomePieceOfFurniture> furnitureListener;
+  private final CollectionListener<HomeObject>           itemsListener;
+  private volatile int                 sceneModificationCount;
+  private PhotoRenderer                cachedPhotoRenderer;
+  private CachedPhotoRendererKey       cachedPhotoRendererKey;
+  private final List<CachedPhotoRendererKey> lentPhotoRenderersKeys;
+  private boolean                      disposed;
+
+  /**
+   * Creates a cache of photo renderers for the given <code>home</code>,
+   * that will track the modifications of its scene.
+   */
+  public PhotoRendererCache(Home home) {
+    this.home = home;
+    this.lentPhotoRenderersKeys = new ArrayList<CachedPhotoRendererKey>();
+    this.sceneChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          Object source = ev.getSource();
+          String propertyName = ev.getPropertyName();
+          if (!(source instanceof HomeEnvironment
+                && IGNORED_ENVIRONMENT_PROPERTIES.contains(propertyName))
+              && !(source instanceof Compass
+                   && IGNORED_COMPASS_PROPERTIES.contains(propertyName))) {
+            sceneModificationCount++;
+          }
+        }
+      };
+    // Pieces added to or deleted from a group are notified to furniture listeners too
+    this.furnitureListener = new CollectionListener<HomePieceOfFurniture>() {
+        public void collectionChanged(CollectionEvent<HomePieceOfFurniture> ev) {
+          HomePieceOfFurniture piece = ev.getItem();
+          if (ev.getType() == CollectionEvent.Type.ADD) {
+            addPieceListener(piece);
+          } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+            removePieceListener(piece);
+          }
+          sceneModificationCount++;
+        }
+      };
+    this.itemsListener = new CollectionListener<HomeObject>() {
+        public void collectionChanged(CollectionEvent<HomeObject> ev) {
+          if (ev.getType() == CollectionEvent.Type.ADD) {
+            ev.getItem().addPropertyChangeListener(sceneChangeListener);
+          } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+            ev.getItem().removePropertyChangeListener(sceneChangeListener);
+          }
+          sceneModificationCount++;
+        }
+      };
+    addHomeListeners();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void addHomeListeners() {
+    for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+      addPieceListener(piece);
+    }
+    for (HomeObject item : getTrackedItems()) {
+      item.addPropertyChangeListener(this.sceneChangeListener);
+    }
+    this.home.getEnvironment().addPropertyChangeListener(this.sceneChangeListener);
+    this.home.getCompass().addPropertyChangeListener(this.sceneChangeListener);
+    this.home.addFurnitureListener(this.furnitureListener);
+    this.home.addWallsListener((CollectionListener)this.itemsListener);
+    this.home.addRoomsListener((CollectionListener)this.itemsListener);
+    this.home.addPolylinesListener((CollectionListener)this.itemsListener);
+    this.home.addDimensionLinesListener((CollectionListener)this.itemsListener);
+    this.home.addLabelsListener((CollectionListener)this.itemsListener);
+    this.home.addLevelsListener((CollectionListener)this.itemsListener);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void removeHomeListeners() {
+    for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+      removePieceListener(piece);
+    }
+    for (HomeObject item : getTrackedItems()) {
+      item.removePropertyChangeListener(this.sceneChangeListener);
+    }
+    this.home.getEnvironment().removePropertyChangeListener(this.sceneChangeListener);
+    this.home.getCompass().removePropertyChangeListener(this.sceneChangeListener);
+    this.home.removeFurnitureListener(this.furnitureListener);
+    this.home.removeWallsListener((CollectionListener)this.itemsListener);
+    this.home.removeRoomsListener((CollectionListener)this.itemsListener);
+    this.home.removePolylinesListener((CollectionListener)this.itemsListener);
+    this.home.removeDimensionLinesListener((CollectionListener)this.itemsListener);
+    this.home.removeLabelsListener((CollectionListener)this.itemsListener);
+    this.home.removeLevelsListener((CollectionListener)this.itemsListener);
+  }
+
+  /**
+   * Returns the items of home other than furniture which modifications change its scene.
+   */
+  private List<HomeObject> getTrackedItems() {
+    List<HomeObject> items = new ArrayList<HomeObject>();
+    items.addAll(this.home.getWalls());
+    items.addAll(this.home.getRooms());
+    items.addAll(this.home.getPolylines());
+    items.addAll(this.home.getDimensionLines());
+    items.addAll(this.home.getLabels());
+    items.addAll(this.home.getLevels());
+    return items;
+  }
+
+  private void addPieceListener(HomePieceOfFurniture piece) {
+    piece.addPropertyChangeListener(this.sceneChangeListener);
+    if (piece instanceof HomeFurnitureGroup) {
+      for (HomePieceOfFurniture child : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+        child.addPropertyChangeListener(this.sceneChangeListener);
+      }
+    }
+  }
+
+  private void removePieceListener(HomePieceOfFurniture piece) {
+    piece.removePropertyChangeListener(this.sceneChangeListener);
+    if (piece instanceof HomeFurnitureGroup) {
+      for (HomePieceOfFurniture child : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+        child.removePropertyChangeListener(this.sceneChangeListener);
+      }
+    }
+  }
+
+  /**
+   * Returns the current modification count of the home scene. This method should be called
+   * in the Event Dispatch Thread at the time the home is cloned for rendering.
+   */
+  public int getSceneModificationCount() {
+    return this.sceneModificationCount;
+  }
+
+  /**
+   * Returns a photo renderer for the given <code>home</code>, which should be a clone of
+   * the home of this cache, made when its scene modification count was equal to <code>sceneModificationCount</code>.
+   * The cached renderer is returned if it was created for the same scene, camera type and quality,
+   * otherwise a new renderer is created. The returned renderer is reserved to the caller
+   * until it's given back to this cache with {@link #releasePhotoRenderer(PhotoRenderer) releasePhotoRenderer}.
+   * Caution : this method may be called from an other thread than the Event Dispatch Thread.
+   */
+  public PhotoRenderer getPhotoRenderer(Home home, int sceneModificationCount,
+                                        Object3DFactory object3dFactory,
+                                        PhotoRenderer.Quality quality) throws IOException {
+    CachedPhotoRendererKey key = new CachedPhotoRendererKey(sceneModificationCount, quality,
+        home.getCamera() instanceof ObserverCamera, object3dFactory);
+    PhotoRenderer photoRenderer = null;
+    synchronized (this) {
+      if (this.cachedPhotoRenderer != null) {
+        if (key.equals(this.cachedPhotoRendererKey)) {
+          photoRenderer = this.cachedPhotoRenderer;
+        } else {
+          this.cachedPhotoRenderer.dispose();
+        }
+        this.cachedPhotoRenderer = null;
+        this.cachedPhotoRendererKey = null;
+      }
+    }
+    if (photoRenderer == null) {
+      photoRenderer = new PhotoRenderer(home, object3dFactory, quality);
+    }
+    synchronized (this) {
+      key.photoRenderer = photoRenderer;
+      this.lentPhotoRenderersKeys.add(key);
+    }
+    return photoRenderer;
+  }
+
+  /**
+   * Gives back to this cache a renderer returned by {@link #getPhotoRenderer(Home, int, Object3DFactory, PhotoRenderer.Quality) getPhotoRenderer},
+   * once the caller doesn't need it anymore. The renderer is kept for a future reuse if its scene
+   * is still up to date, otherwise it's disposed.
+   */
+  public synchronized void releasePhotoRenderer(PhotoRenderer photoRenderer) {
+    CachedPhotoRendererKey key = null;
+    for (int i = 0; i < this.lentPhotoRenderersKeys.size(); i++) {
+      if (this.lentPhotoRenderersKeys.get(i).photoRenderer == photoRenderer) {
+        key = this.lentPhotoRenderersKeys.remove(i);
+        break;
+      }
+    }
+    if (key == null
+        || this.disposed
+        || key.sceneModificationCount != this.sceneModificationCount) {
+      photoRenderer.dispose();
+    } else {
+      if (this.cachedPhotoRenderer != null) {
+        this.cachedPhotoRenderer.dispose();
+      }
+      key.photoRenderer = null;
+      this.cachedPhotoRenderer = photoRenderer;
+      this.cachedPhotoRendererKey = key;
+    }
+  }
+
+  /**
+   * Stops tracking home modifications and disposes the cached renderer.
+   * Renderers released after this call are disposed.
+   */
+  public void dispose() {
+    removeHomeListeners();
+    synchronized (this) {
+      this.disposed = true;
+      if (this.cachedPhotoRenderer != null) {
+        this.cachedPhotoRenderer.dispose();
+        this.cachedPhotoRenderer = null;
+        this.cachedPhotoRendererKey = null;
+      }
+    }
+  }
+
+  /**
+   * The conditions under which a cached renderer can be reused.
+   */
+  private static class CachedPhotoRendererKey {
+    private final int                   sceneModificationCount;
+    private final PhotoRenderer.Quality quality;
+    private final boolean               observerCamera;
+    private final Object3DFactory       object3dFactory;
+    private PhotoRenderer               photoRenderer;
+
+    public CachedPhotoRendererKey(int sceneModificationCount, PhotoRenderer.Quality quality,
+                                  boolean observerCamera, Object3DFactory object3dFactory) {
+      this.sceneModificationCount = sceneModificationCount;
+      this.quality = quality;
+      this.observerCamera = observerCamera;
+      this.object3dFactory = object3dFactory;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof CachedPhotoRendererKey) {
+        CachedPhotoRendererKey key = (CachedPhotoRendererKey)obj;
+        return key.sceneModificationCount == this.sceneModificationCount
+            && key.quality == this.quality
+            && key.observerCamera == this.observerCamera
+            && key.object3dFactory == this.object3dFactory;
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return this.sceneModificationCount + 31 * this.quality.hashCode();
+    }
+  }
+}
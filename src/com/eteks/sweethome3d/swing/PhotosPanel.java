@@ -129,6 +129,7 @@ public class PhotosPanel extends JPanel implements DialogView {
   private JComboBox                fileFormatComboBox;
   private String                   dialogTitle;
   private ExecutorService          photosCreationExecutor;
+  private PhotoRendererCache       photoRendererCache;
   private JButton                  startStopButton;
   private JButton                  closeButton;
 
@@ -148,6 +149,7 @@ public class PhotosPanel extends JPanel implements DialogView {
     this.home = home;
     this.preferences = preferences;
     this.object3dFactory = object3dFactory;
+    this.photoRendererCache = new PhotoRendererCache(home);
     this.controller = controller;
     createActions(preferences);
     createComponents(home, preferences, controller);
@@ -529,6 +531,7 @@ public class PhotosPanel extends JPanel implements DialogView {
       dialog.addWindowListener(new WindowAdapter() {
         public void windowClosed(WindowEvent ev) {
           stopPhotosCreation();
+          photoRendererCache.dispose();
           currentPhotosPanel = null;
         }
       });
@@ -615,12 +618,13 @@ public class PhotosPanel extends JPanel implements DialogView {
       // Compute photos in an other executor thread
       // Use a clone of home because the user can modify home during photos computation
       final Home home = this.home.clone();
+      final int sceneModificationCount = this.photoRendererCache.getSceneModificationCount();
       List<Selectable> emptySelection = Collections.emptyList();
       home.setSelectedItems(emptySelection);
       this.photosCreationExecutor = Executors.newSingleThreadExecutor();
       this.photosCreationExecutor.execute(new Runnable() {
           public void run() {
-            computePhotos(home, cameraFiles);
+            computePhotos(home, sceneModificationCount, cameraFiles);
           }
         });
     }
@@ -628,9 +632,10 @@ public class PhotosPanel extends JPanel implements DialogView {
 
   /**
    * Computes the photo of the given home.
+   * The scene exported by a photo renderer is reused for all the cameras of the same type.
    * Caution : this method must be thread safe because it's called from an executor.
    */
-  private void computePhotos(Home home, final Map<Camera, File> cameraFiles) {
+  private void computePhotos(Home home, int sceneModificationCount, final Map<Camera, File> cameraFiles) {
     BufferedImage image = null;
     boolean success = false;
     try {
@@ -643,10 +648,11 @@ public class PhotosPanel extends JPanel implements DialogView {
         home.setCamera(camera);
         if (quality >= 2) {
           // Use photo renderer
-          PhotoRenderer photoRenderer = new PhotoRenderer(home, this.object3dFactory,
-            quality == 2
-                ? PhotoRenderer.Quality.LOW
-                : PhotoRenderer.Quality.HIGH);
+          PhotoRenderer photoRenderer = this.photoRendererCache.getPhotoRenderer(home, sceneModificationCount,
+              this.object3dFactory,
+              quality == 2
+                  ? PhotoRenderer.Quality.LOW
+                  : PhotoRenderer.Quality.HIGH);
           int bestImageHeight;
           // Update ratio if lens is fisheye or spherical
           if (camera.getLens() == Camera.Lens.FISHEYE) {
@@ -662,6 +668,13 @@ public class PhotosPanel extends JPanel implements DialogView {
             updateProgressBar(photoIndex++, cameraFiles.size());
             photoRenderer.render(image, camera, this.photoComponent);
           }
+          if (this.photosCreationExecutor != null
+              && !Thread.currentThread().isInterrupted()) {
+            // Keep renderer for next camera
+            this.photoRendererCache.releasePhotoRenderer(photoRenderer);
+          } else {
+            photoRenderer.dispose();
+          }
         } else {
           // Compute 3D view offscreen image
           HomeComponent3D homeComponent3D = new HomeComponent3D(
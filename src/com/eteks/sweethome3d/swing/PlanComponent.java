@@ -319,10 +319,17 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   private Color                             wallsPatternBackgroundCache;
   private Color                             wallsPatternForegroundCache;
   private Map<Collection<Wall>, Area>       wallAreasCache;
+  private Map<TextureImage, ItemsAreaUnion<Wall>> wallAreaUnionsCache;
   private Map<HomeDoorOrWindow, Area>       doorOrWindowWallThicknessAreasCache;
   private Map<HomeTexture, BufferedImage>   floorTextureImagesCache;
   private Map<HomePieceOfFurniture, HomePieceOfFurnitureTopViewIconKey> furnitureTopViewIconKeys;
   private Map<HomePieceOfFurnitureTopViewIconKey, PieceOfFurnitureTopViewIcon> furnitureTopViewIconsCache;
+  private boolean                           contentCachedInTiles;
+  private int                               furnitureDetailsMinimumSize;
+  private PlanTiles                         planTilesCache;
+  private volatile boolean                  planTilesCacheObsolete;
+  private boolean                           planTilesPainting;
+  private boolean                           paintedContentIncomplete;
 
   private static ExecutorService            backgroundImageLoader;
 
@@ -661,6 +668,18 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
       // Can't access to properties
     }
     this.object3dFactory = object3dFactory;
+    try {
+      this.contentCachedInTiles = Boolean.getBoolean("com.eteks.sweethome3d.swing.planContentCachedInTiles");
+    } catch (AccessControlException ex) {
+      // Can't access to properties
+    }
+    this.furnitureDetailsMinimumSize = 4;
+    try {
+      this.furnitureDetailsMinimumSize = Integer.getInteger(
+          "com.eteks.sweethome3d.swing.planFurnitureDetailsMinimumSize", this.furnitureDetailsMinimumSize);
+    } catch (AccessControlException ex) {
+      // Can't access to properties
+    }
     // Set JComponent default properties
     setOpaque(true);
     // Add listeners
@@ -705,6 +724,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     // Add listener to update plan when furniture changes
     final PropertyChangeListener furnitureChangeListener = new PropertyChangeListener() {
         public void propertyChange(final PropertyChangeEvent ev) {
+          invalidatePlanTiles((HomePieceOfFurniture)ev.getSource());
           if (furnitureTopViewIconKeys != null
               && (HomePieceOfFurniture.Property.MODEL_TRANSFORMATIONS.name().equals(ev.getPropertyName())
                   || HomePieceOfFurniture.Property.ROLL.name().equals(ev.getPropertyName())
@@ -732,6 +752,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                           furnitureTopViewIconKeys.remove(piece);
                         }
                         invalidFurnitureTopViewIcons = null;
+                        invalidatePlanTiles();
                         repaint();
                         controller.removePropertyChangeListener(PlanController.Property.MODIFICATION_STATE, this);
                       }
@@ -797,6 +818,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
               }
             }
           }
+          invalidatePlanTiles(ev);
           sortedLevelFurniture = null;
           revalidate();
         }
@@ -819,12 +841,20 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
               otherLevelsWallAreaCache = null;
               otherLevelsWallsCache = null;
             }
+            invalidateWallArea((Wall)ev.getSource());
+            invalidateWallPlanTiles((Wall)ev.getSource());
+            if (ev.getOldValue() instanceof Wall) {
+              // Shape of a wall previously joined to the modified wall changed too
+              invalidateWallArea((Wall)ev.getOldValue());
+              invalidateWallPlanTiles((Wall)ev.getOldValue());
+            }
             wallAreasCache = null;
             doorOrWindowWallThicknessAreasCache = null;
             revalidate();
           } else if (Wall.Property.LEVEL.name().equals(propertyName)
               || Wall.Property.HEIGHT.name().equals(propertyName)
               || Wall.Property.HEIGHT_AT_END.name().equals(propertyName)) {
+            invalidatePlanTiles((Wall)ev.getSource());
             otherLevelsWallAreaCache = null;
             otherLevelsWallsCache = null;
             wallAreasCache = null;
@@ -842,6 +872,14 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
             ev.getItem().removePropertyChangeListener(wallChangeListener);
           }
+          invalidateWallArea(ev.getItem());
+          invalidatePlanTiles(ev);
+          if (ev.getItem().getWallAtStart() != null) {
+            invalidatePlanTiles(ev.getItem().getWallAtStart());
+          }
+          if (ev.getItem().getWallAtEnd() != null) {
+            invalidatePlanTiles(ev.getItem().getWallAtEnd());
+          }
           otherLevelsWallAreaCache = null;
           otherLevelsWallsCache = null;
           wallAreasCache = null;
@@ -865,6 +903,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
               || Room.Property.AREA_Y_OFFSET.name().equals(propertyName)
               || Room.Property.AREA_STYLE.name().equals(propertyName)
               || Room.Property.AREA_ANGLE.name().equals(propertyName)) {
+            invalidatePlanTiles((Room)ev.getSource());
             sortedLevelRooms = null;
             otherLevelsRoomAreaCache = null;
             otherLevelsRoomsCache = null;
@@ -873,7 +912,12 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                      && (Room.Property.FLOOR_COLOR.name().equals(propertyName)
                          || Room.Property.FLOOR_TEXTURE.name().equals(propertyName)
                          || Room.Property.FLOOR_VISIBLE.name().equals(propertyName))) {
+            invalidatePlanTiles((Room)ev.getSource());
             repaint();
+          } else if (Room.Property.LEVEL.name().equals(propertyName)
+                     || Room.Property.FLOOR_VISIBLE.name().equals(propertyName)
+                     || Room.Property.CEILING_VISIBLE.name().equals(propertyName)) {
+            invalidatePlanTiles((Room)ev.getSource());
           }
         }
       };
@@ -887,6 +931,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
             ev.getItem().removePropertyChangeListener(roomChangeListener);
           }
+          invalidatePlanTiles(ev);
           sortedLevelRooms = null;
           otherLevelsRoomAreaCache = null;
           otherLevelsRoomsCache = null;
@@ -897,6 +942,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
      // Add listener to update plan when polylines change
      final PropertyChangeListener changeListener = new PropertyChangeListener() {
          public void propertyChange(PropertyChangeEvent ev) {
+           invalidatePlanTiles((Polyline)ev.getSource());
            String propertyName = ev.getPropertyName();
            if (Polyline.Property.COLOR.name().equals(propertyName)
                || Polyline.Property.DASH_STYLE.name().equals(propertyName)) {
@@ -916,6 +962,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
             ev.getItem().removePropertyChangeListener(changeListener);
           }
+          invalidatePlanTiles(ev);
           revalidate();
         }
       });
@@ -923,6 +970,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     // Add listener to update plan when dimension lines change
     final PropertyChangeListener dimensionLineChangeListener = new PropertyChangeListener() {
         public void propertyChange(PropertyChangeEvent ev) {
+          invalidatePlanTiles((DimensionLine)ev.getSource());
           revalidate();
         }
       };
@@ -936,6 +984,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
             ev.getItem().removePropertyChangeListener(dimensionLineChangeListener);
           }
+          invalidatePlanTiles(ev);
           revalidate();
         }
       });
@@ -943,6 +992,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     // Add listener to update plan when labels change
     final PropertyChangeListener labelChangeListener = new PropertyChangeListener() {
         public void propertyChange(PropertyChangeEvent ev) {
+          invalidatePlanTiles((Label)ev.getSource());
           revalidate();
         }
       };
@@ -956,6 +1006,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
             ev.getItem().removePropertyChangeListener(labelChangeListener);
           }
+          invalidatePlanTiles(ev);
           revalidate();
         }
       });
@@ -966,11 +1017,13 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           String propertyName = ev.getPropertyName();
           if (Level.Property.BACKGROUND_IMAGE.name().equals(propertyName)) {
             backgroundImageCache = null;
+            invalidatePlanTiles();
             revalidate();
           } else if (Level.Property.ELEVATION.name().equals(propertyName)
                      || Level.Property.ELEVATION_INDEX.name().equals(propertyName)
                      || Level.Property.VIEWABLE.name().equals(propertyName)) {
             backgroundImageCache = null;
+            invalidatePlanTiles();
             otherLevelsWallAreaCache = null;
             otherLevelsWallsCache = null;
             otherLevelsRoomAreaCache = null;
@@ -994,6 +1047,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (ev.getType() == CollectionEvent.Type.DELETE) {
             level.removePropertyChangeListener(levelChangeListener);
           }
+          invalidatePlanTiles();
           revalidate();
         }
       });
@@ -1025,12 +1079,14 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
               || Compass.Property.NORTH_DIRECTION.name().equals(propertyName)
               || Compass.Property.DIAMETER.name().equals(propertyName)
               || Compass.Property.VISIBLE.name().equals(propertyName)) {
+            invalidatePlanTiles();
             revalidate();
           }
         }
       });
     home.addSelectionListener(new SelectionListener () {
         public void selectionChanged(SelectionEvent ev) {
+          invalidateSelectionPlanTiles();
           repaint();
         }
       });
@@ -1038,12 +1094,14 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
       new PropertyChangeListener() {
         public void propertyChange(PropertyChangeEvent ev) {
           backgroundImageCache = null;
+          invalidatePlanTiles();
           repaint();
         }
       });
     home.addPropertyChangeListener(Home.Property.SELECTED_LEVEL, new PropertyChangeListener() {
         public void propertyChange(PropertyChangeEvent ev) {
           backgroundImageCache = null;
+          invalidatePlanTiles();
           otherLevelsWallAreaCache = null;
           otherLevelsWallsCache = null;
           otherLevelsRoomAreaCache = null;
@@ -1123,6 +1181,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           default:
             break;
         }
+        planComponent.invalidatePlanTiles();
         planComponent.repaint();
       }
     }
@@ -1316,6 +1375,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           public void propertyChange(PropertyChangeEvent ev) {
             if (!home.getSelectedItems().isEmpty()) {
               // Repaint to update selection color
+              invalidateSelectionPlanTiles();
               repaint();
             }
           }
@@ -1344,6 +1404,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
             }
             if (PlanComponent.this.wallsDoorsOrWindowsModification != wallsDoorsOrWindowsModification) {
               PlanComponent.this.wallsDoorsOrWindowsModification = wallsDoorsOrWindowsModification;
+              invalidatePlanTiles();
               repaint();
             }
           }
@@ -2026,6 +2087,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   public void setBackgroundPainted(boolean backgroundPainted) {
     if (this.backgroundPainted != backgroundPainted) {
       this.backgroundPainted = backgroundPainted;
+      invalidatePlanTiles();
       repaint();
     }
   }
@@ -2043,6 +2105,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   public void setSelectedItemsOutlinePainted(boolean selectedItemsOutlinePainted) {
     if (this.selectedItemsOutlinePainted != selectedItemsOutlinePainted) {
       this.selectedItemsOutlinePainted = selectedItemsOutlinePainted;
+      invalidatePlanTiles();
       repaint();
     }
   }
@@ -2054,6 +2117,51 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     return this.selectedItemsOutlinePainted;
   }
 
+  /**
+   * Sets whether the background and the home items displayed by this component should be
+   * cached in images, in which case a repaint will redraw only the tiles of the plan
+   * invalidated by home changes, and the feedback drawn over them. This mode is disabled by default,
+   * unless the <code>com.eteks.sweethome3d.swing.planContentCachedInTiles</code> system property is <code>true</code>.
+   */
+  public void setContentCachedInTiles(boolean contentCachedInTiles) {
+    if (this.contentCachedInTiles != contentCachedInTiles) {
+      this.contentCachedInTiles = contentCachedInTiles;
+      this.planTilesCache = null;
+      repaint();
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the background and the home items displayed by
+   * this component are cached in tiles.
+   */
+  public boolean isContentCachedInTiles() {
+    return this.contentCachedInTiles;
+  }
+
+  /**
+   * Sets the size in pixels under which the pieces displayed by this component are drawn
+   * as simple shapes, without their icon, their door or window sashes and their name.
+   * The default size is 4 pixels, unless it's set by the
+   * <code>com.eteks.sweethome3d.swing.planFurnitureDetailsMinimumSize</code> system property.
+   * This size is ignored when plan is printed or exported.
+   */
+  public void setFurnitureDetailsMinimumSize(int furnitureDetailsMinimumSize) {
+    if (this.furnitureDetailsMinimumSize != furnitureDetailsMinimumSize) {
+      this.furnitureDetailsMinimumSize = furnitureDetailsMinimumSize;
+      invalidatePlanTiles();
+      repaint();
+    }
+  }
+
+  /**
+   * Returns the size in pixels under which the pieces displayed by this component are drawn
+   * as simple shapes.
+   */
+  public int getFurnitureDetailsMinimumSize() {
+    return this.furnitureDetailsMinimumSize;
+  }
+
   /**
    * Paints this component.
    */
@@ -2071,18 +2179,216 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     // Change component coordinates system to plan system
     Rectangle2D planBounds = getPlanBounds();
     float scale = getScale() * this.resolutionScale;
-    g2D.translate(insets.left + (MARGIN - planBounds.getMinX()) * scale,
-        insets.top + (MARGIN - planBounds.getMinY()) * scale);
-    g2D.scale(scale, scale);
-    setRenderingHints(g2D);
-    try {
-      paintContent(g2D, getScale(), PaintMode.PAINT);
-    } catch (InterruptedIOException ex) {
-      // Ignore exception because it may happen only in EXPORT paint mode
+    double xOrigin = insets.left + (MARGIN - planBounds.getMinX()) * scale;
+    double yOrigin = insets.top + (MARGIN - planBounds.getMinY()) * scale;
+    if (this.contentCachedInTiles
+        && (g2D.getTransform().getType()
+            & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) == 0) {
+      paintContentWithTiles(g2D, xOrigin, yOrigin, scale);
+    } else {
+      g2D.translate(xOrigin, yOrigin);
+      g2D.scale(scale, scale);
+      setRenderingHints(g2D);
+      try {
+        paintContent(g2D, getScale(), PaintMode.PAINT);
+      } catch (InterruptedIOException ex) {
+        // Ignore exception because it may happen only in EXPORT paint mode
+      }
     }
     g2D.dispose();
   }
 
+  /**
+   * Paints plan background and home items with the tiles cached at the current scale,
+   * then paints camera and feedback over them.
+   * @param g2D      the graphics where plan is painted in component coordinates system
+   * @param xOrigin  the abscissa of plan origin in component coordinates system
+   * @param yOrigin  the ordinate of plan origin in component coordinates system
+   * @param scale    the scale from plan to component coordinates system
+   */
+  private void paintContentWithTiles(Graphics2D g2D, double xOrigin, double yOrigin, float scale) {
+    Color backgroundColor = getBackgroundColor(PaintMode.PAINT);
+    Color foregroundColor = getForegroundColor(PaintMode.PAINT);
+    boolean opaqueTiles = this.backgroundPainted && isOpaque();
+    if (this.planTilesCacheObsolete
+        || this.planTilesCache != null
+            && !this.planTilesCache.isPaintedWith(getFont(), backgroundColor, foregroundColor, opaqueTiles)) {
+      this.planTilesCacheObsolete = false;
+      this.planTilesCache = null;
+    }
+    if (this.planTilesCache == null) {
+      this.planTilesCache = new PlanTiles(getFont(), backgroundColor, foregroundColor, opaqueTiles);
+      this.planTilesCache.setSelectedItems(this.home.getSelectedItems());
+      for (Selectable item : getPlanTilesItems()) {
+        this.planTilesCache.putItemBounds(item, getPlanTilesItemBounds(item));
+      }
+    }
+
+    // Draw tiles in device coordinates system with a plan origin at an integer location
+    // to be able to paint them without resampling
+    AffineTransform deviceTransform = g2D.getTransform();
+    double deviceScale = deviceTransform.getScaleX();
+    float pixelScale = (float)(scale * deviceScale);
+    this.planTilesCache.setPixelScale(pixelScale);
+    g2D.setTransform(AffineTransform.getTranslateInstance(
+        Math.round(deviceTransform.getTranslateX() + xOrigin * deviceScale),
+        Math.round(deviceTransform.getTranslateY() + yOrigin * deviceScale)));
+    Rectangle clipBounds = g2D.getClipBounds();
+    if (clipBounds == null) {
+      clipBounds = new Rectangle(0, 0,
+          (int)Math.ceil(getWidth() * deviceScale), (int)Math.ceil(getHeight() * deviceScale));
+    }
+    Rectangle paintedTiles = PlanTiles.getTilesIntersectingRectangle(clipBounds);
+    Rectangle missingTiles = this.planTilesCache.getMissingTiles(paintedTiles);
+    if (missingTiles != null) {
+      // Paint missing tiles at once in an image split in tiles
+      BufferedImage image = new BufferedImage(missingTiles.width * PlanTiles.TILE_SIZE,
+          missingTiles.height * PlanTiles.TILE_SIZE,
+          opaqueTiles ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+      Graphics2D imageGraphics = image.createGraphics();
+      if (opaqueTiles) {
+        imageGraphics.setColor(backgroundColor);
+        imageGraphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+      }
+      imageGraphics.clipRect(0, 0, image.getWidth(), image.getHeight());
+      imageGraphics.translate(-missingTiles.x * PlanTiles.TILE_SIZE, -missingTiles.y * PlanTiles.TILE_SIZE);
+      imageGraphics.scale(pixelScale, pixelScale);
+      setRenderingHints(imageGraphics);
+      this.paintedContentIncomplete = false;
+      this.planTilesPainting = true;
+      try {
+        paintBackgroundAndHomeItems(imageGraphics, getScale(), backgroundColor, foregroundColor, PaintMode.PAINT);
+      } catch (InterruptedIOException ex) {
+        // Ignore exception because it may happen only in EXPORT paint mode
+      } finally {
+        this.planTilesPainting = false;
+      }
+      imageGraphics.dispose();
+      this.planTilesCache.putTiles(image, missingTiles, this.paintedContentIncomplete);
+    }
+    this.planTilesCache.paintTiles(g2D, paintedTiles);
+    // Keep in cache the tiles of a few screens
+    this.planTilesCache.removeEldestTiles(Math.max(64, 4 * paintedTiles.width * paintedTiles.height));
+
+    g2D.scale(pixelScale, pixelScale);
+    setRenderingHints(g2D);
+    paintCameraAndFeedback(g2D, getScale(), backgroundColor, foregroundColor);
+  }
+
+  /**
+   * Returns the home items which bounds are tracked in tiles cache.
+   */
+  private List<Selectable> getPlanTilesItems() {
+    List<Selectable> items = new ArrayList<Selectable>();
+    for (HomePieceOfFurniture piece : this.home.getFurniture()) {
+      items.add(piece);
+      if (piece instanceof HomeFurnitureGroup) {
+        items.addAll(((HomeFurnitureGroup)piece).getAllFurniture());
+      }
+    }
+    items.addAll(this.home.getWalls());
+    items.addAll(this.home.getRooms());
+    items.addAll(this.home.getPolylines());
+    items.addAll(this.home.getDimensionLines());
+    items.addAll(this.home.getLabels());
+    return items;
+  }
+
+  /**
+   * Returns the bounds of the area where the given <code>item</code> is painted.
+   */
+  private Rectangle2D getPlanTilesItemBounds(Selectable item) {
+    Rectangle2D itemBounds = getItemBounds(null, item);
+    if (item instanceof Polyline) {
+      // Add thickness and arrows to polyline bounds
+      float thickness = ((Polyline)item).getThickness();
+      float margin = 5 * thickness + 12 * (float)Math.pow(thickness, 0.66f);
+      itemBounds.setRect(itemBounds.getX() - margin, itemBounds.getY() - margin,
+          itemBounds.getWidth() + 2 * margin, itemBounds.getHeight() + 2 * margin);
+    }
+    return itemBounds;
+  }
+
+  /**
+   * Invalidates all the cached tiles of the plan. This method may be called from any thread.
+   */
+  private void invalidatePlanTiles() {
+    this.planTilesCacheObsolete = true;
+  }
+
+  /**
+   * Invalidates the cached tiles where the modified <code>item</code> was and is painted.
+   */
+  private void invalidatePlanTiles(Selectable item) {
+    if (this.planTilesCache != null) {
+      Rectangle2D itemBounds = getPlanTilesItemBounds(item);
+      Rectangle2D previousItemBounds = this.planTilesCache.putItemBounds(item, itemBounds);
+      if (previousItemBounds != null) {
+        this.planTilesCache.invalidate(previousItemBounds);
+        this.planTilesCache.invalidate(itemBounds);
+      } else {
+        // Unknown item
+        this.planTilesCache = null;
+      }
+    }
+  }
+
+  /**
+   * Invalidates the cached tiles where the modified <code>wall</code> and the walls joined to it
+   * were and are painted.
+   */
+  private void invalidateWallPlanTiles(Wall wall) {
+    invalidatePlanTiles(wall);
+    if (wall.getWallAtStart() != null) {
+      invalidatePlanTiles(wall.getWallAtStart());
+    }
+    if (wall.getWallAtEnd() != null) {
+      invalidatePlanTiles(wall.getWallAtEnd());
+    }
+  }
+
+  /**
+   * Invalidates the cached tiles where the item added or deleted in home is painted.
+   */
+  private void invalidatePlanTiles(CollectionEvent<? extends Selectable> ev) {
+    if (this.planTilesCache != null) {
+      List<Selectable> items = new ArrayList<Selectable>();
+      items.add(ev.getItem());
+      if (ev.getItem() instanceof HomeFurnitureGroup) {
+        items.addAll(((HomeFurnitureGroup)ev.getItem()).getAllFurniture());
+      }
+      for (Selectable item : items) {
+        Rectangle2D itemBounds = getPlanTilesItemBounds(item);
+        Rectangle2D previousItemBounds;
+        if (ev.getType() == CollectionEvent.Type.ADD) {
+          previousItemBounds = this.planTilesCache.putItemBounds(item, itemBounds);
+        } else {
+          previousItemBounds = this.planTilesCache.removeItemBounds(item);
+        }
+        if (previousItemBounds != null) {
+          this.planTilesCache.invalidate(previousItemBounds);
+        }
+        this.planTilesCache.invalidate(itemBounds);
+      }
+    }
+  }
+
+  /**
+   * Invalidates the cached tiles where the items previously and currently selected are painted.
+   */
+  private void invalidateSelectionPlanTiles() {
+    if (this.planTilesCache != null) {
+      List<Selectable> selectedItems = this.home.getSelectedItems();
+      for (Selectable item : this.planTilesCache.getSelectedItems()) {
+        this.planTilesCache.invalidate(getPlanTilesItemBounds(item));
+      }
+      for (Selectable item : selectedItems) {
+        this.planTilesCache.invalidate(getPlanTilesItemBounds(item));
+      }
+      this.planTilesCache.setSelectedItems(selectedItems);
+    }
+  }
+
   /**
    * Returns the print preferred scale of the plan drawn in this component
    * to make it fill <code>pageFormat</code> imageable size.
@@ -2411,6 +2717,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
       // paint images correctly with alpha, and Java 7 blocks for some images
       final boolean prepareBackgroundImageWithAlphaInMemory = OperatingSystem.isMacOSX();
       if (this.backgroundImageCache == null && paintMode == PaintMode.PAINT) {
+        this.paintedContentIncomplete = true;
         // Load background image in an executor
         if (backgroundImageLoader == null) {
           backgroundImageLoader = Executors.newSingleThreadExecutor();
@@ -2419,6 +2726,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
             public void run() {
               if (backgroundImageCache == null) {
                 backgroundImageCache = readBackgroundImage(backgroundImage.getImage(), prepareBackgroundImageWithAlphaInMemory);
+                invalidatePlanTiles();
                 revalidate();
               }
             }
@@ -2640,7 +2948,14 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     float xMax;
     float yMax;
     Rectangle2D planBounds = getPlanBounds();
-    if (getParent() instanceof JViewport) {
+    if (this.planTilesPainting) {
+      // Paint grid in the whole tiles which may be partly out of view
+      Rectangle2D clipBounds = g2D.getClip().getBounds2D();
+      xMin = (float)clipBounds.getMinX();
+      yMin = (float)clipBounds.getMinY();
+      xMax = (float)clipBounds.getMaxX();
+      yMax = (float)clipBounds.getMaxY();
+    } else if (getParent() instanceof JViewport) {
       Rectangle viewRectangle = ((JViewport)getParent()).getViewRect();
       xMin = convertXPixelToModel(viewRectangle.x - 1);
       yMin = convertYPixelToModel(viewRectangle.y - 1);
@@ -2767,6 +3082,18 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
   private void paintContent(Graphics2D g2D, float planScale, PaintMode paintMode) throws InterruptedIOException {
     Color backgroundColor = getBackgroundColor(paintMode);
     Color foregroundColor = getForegroundColor(paintMode);
+    paintBackgroundAndHomeItems(g2D, planScale, backgroundColor, foregroundColor, paintMode);
+    if (paintMode == PaintMode.PAINT) {
+      paintCameraAndFeedback(g2D, planScale, backgroundColor, foregroundColor);
+    }
+  }
+
+  /**
+   * Paints background and home items.
+   */
+  private void paintBackgroundAndHomeItems(Graphics2D g2D, float planScale,
+                                           Color backgroundColor, Color foregroundColor,
+                                           PaintMode paintMode) throws InterruptedIOException {
     if (this.backgroundPainted) {
       paintBackgroundImage(g2D, paintMode);
       if (paintMode == PaintMode.PAINT) {
@@ -2778,75 +3105,80 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     }
 
     paintHomeItems(g2D, planScale, backgroundColor, foregroundColor, paintMode);
+  }
 
-    if (paintMode == PaintMode.PAINT) {
-      List<Selectable> selectedItems = this.home.getSelectedItems();
-
-      Color selectionColor = getSelectionColor();
-      Color furnitureOutlineColor = getFurnitureOutlineColor();
-      Paint selectionOutlinePaint = new Color(selectionColor.getRed(), selectionColor.getGreen(),
-          selectionColor.getBlue(), 128);
-      Stroke selectionOutlineStroke = new BasicStroke(6 / planScale,
-          BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-      Stroke dimensionLinesSelectionOutlineStroke = new BasicStroke(4 / planScale,
-          BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-      Stroke locationFeedbackStroke = new BasicStroke(
-          1 / planScale, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 0,
-          new float [] {20 / planScale, 5 / planScale, 5 / planScale, 5 / planScale}, 4 / planScale);
-
-      paintCamera(g2D, selectedItems, selectionOutlinePaint, selectionOutlineStroke, selectionColor,
-          planScale, backgroundColor, foregroundColor);
-
-      // Paint alignment feedback depending on aligned object class
-      if (this.alignedObjectClass != null) {
-        if (Wall.class.isAssignableFrom(this.alignedObjectClass)) {
-          paintWallAlignmentFeedback(g2D, (Wall)this.alignedObjectFeedback, this.locationFeeback, this.showPointFeedback,
-              selectionColor, locationFeedbackStroke, planScale,
-              selectionOutlinePaint, selectionOutlineStroke);
-        } else if (Room.class.isAssignableFrom(this.alignedObjectClass)) {
-          paintRoomAlignmentFeedback(g2D, (Room)this.alignedObjectFeedback, this.locationFeeback, this.showPointFeedback,
-              selectionColor, locationFeedbackStroke, planScale,
-              selectionOutlinePaint, selectionOutlineStroke);
-        } else if (Polyline.class.isAssignableFrom(this.alignedObjectClass)) {
-          if (this.showPointFeedback) {
-            paintPointFeedback(g2D, this.locationFeeback, selectionColor, planScale, selectionOutlinePaint, selectionOutlineStroke);
-          }
-        } else if (DimensionLine.class.isAssignableFrom(this.alignedObjectClass)) {
-          paintDimensionLineAlignmentFeedback(g2D, (DimensionLine)this.alignedObjectFeedback, this.locationFeeback, this.showPointFeedback,
-              selectionColor, locationFeedbackStroke, planScale,
-              selectionOutlinePaint, selectionOutlineStroke);
-        }
-      }
-      if (this.centerAngleFeedback != null) {
-       paintAngleFeedback(g2D, this.centerAngleFeedback, this.point1AngleFeedback, this.point2AngleFeedback,
-           planScale, selectionColor);
-      }
-      if (this.dimensionLinesFeedback != null) {
-        List<Selectable> emptySelection = Collections.emptyList();
-        paintDimensionLines(g2D, this.dimensionLinesFeedback, emptySelection,
-            null, null, null, locationFeedbackStroke, planScale,
-            backgroundColor, selectionColor, paintMode, true);
-      }
+  /**
+   * Paints camera and the feedback displayed during user interactions.
+   */
+  private void paintCameraAndFeedback(Graphics2D g2D, float planScale,
+                                      Color backgroundColor, Color foregroundColor) {
+    PaintMode paintMode = PaintMode.PAINT;
+    List<Selectable> selectedItems = this.home.getSelectedItems();
 
-      if (this.draggedItemsFeedback != null) {
-        paintDimensionLines(g2D, Home.getDimensionLinesSubList(this.draggedItemsFeedback), this.draggedItemsFeedback,
-            selectionOutlinePaint, dimensionLinesSelectionOutlineStroke, null,
-            locationFeedbackStroke, planScale, backgroundColor, foregroundColor, paintMode, false);
-        paintLabels(g2D, Home.getLabelsSubList(this.draggedItemsFeedback), this.draggedItemsFeedback,
-            selectionOutlinePaint, dimensionLinesSelectionOutlineStroke, null,
-            planScale, foregroundColor, paintMode);
-        paintRoomsOutline(g2D, this.draggedItemsFeedback, selectionOutlinePaint, selectionOutlineStroke, null,
-            planScale, foregroundColor);
-        paintWallsOutline(g2D, this.draggedItemsFeedback, selectionOutlinePaint, selectionOutlineStroke, null,
-            planScale, foregroundColor);
-        paintFurniture(g2D, Home.getFurnitureSubList(this.draggedItemsFeedback), selectedItems, planScale, null,
-            foregroundColor, furnitureOutlineColor, paintMode, false);
-        paintFurnitureOutline(g2D, this.draggedItemsFeedback, selectionOutlinePaint, selectionOutlineStroke, null,
-            planScale, foregroundColor);
-      }
+    Color selectionColor = getSelectionColor();
+    Color furnitureOutlineColor = getFurnitureOutlineColor();
+    Paint selectionOutlinePaint = new Color(selectionColor.getRed(), selectionColor.getGreen(),
+        selectionColor.getBlue(), 128);
+    Stroke selectionOutlineStroke = new BasicStroke(6 / planScale,
+        BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    Stroke dimensionLinesSelectionOutlineStroke = new BasicStroke(4 / planScale,
+        BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    Stroke locationFeedbackStroke = new BasicStroke(
+        1 / planScale, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 0,
+        new float [] {20 / planScale, 5 / planScale, 5 / planScale, 5 / planScale}, 4 / planScale);
 
-      paintRectangleFeedback(g2D, selectionColor, planScale);
+    paintCamera(g2D, selectedItems, selectionOutlinePaint, selectionOutlineStroke, selectionColor,
+        planScale, backgroundColor, foregroundColor);
+
+    // Paint alignment feedback depending on aligned object class
+    if (this.alignedObjectClass != null) {
+      if (Wall.class.isAssignableFrom(this.alignedObjectClass)) {
+        paintWallAlignmentFeedback(g2D, (Wall)this.alignedObjectFeedback, this.locationFeeback, this.showPointFeedback,
+            selectionColor, locationFeedbackStroke, planScale,
+            selectionOutlinePaint, selectionOutlineStroke);
+      } else if (Room.class.isAssignableFrom(this.alignedObjectClass)) {
+        paintRoomAlignmentFeedback(g2D, (Room)this.alignedObjectFeedback, this.locationFeeback, this.showPointFeedback,
+            selectionColor, locationFeedbackStroke, planScale,
+            selectionOutlinePaint, selectionOutlineStroke);
+      } else if (Polyline.class.isAssignableFrom(this.alignedObjectClass)) {
+        if (this.showPointFeedback) {
+          paintPointFeedback(g2D, this.locationFeeback, selectionColor, planScale, selectionOutlinePaint, selectionOutlineStroke);
+        }
+      } else if (DimensionLine.class.isAssignableFrom(this.alignedObjectClass)) {
+        paintDimensionLineAlignmentFeedback(g2D, (DimensionLine)this.alignedObjectFeedback, this.locationFeeback, this.showPointFeedback,
+            selectionColor, locationFeedbackStroke, planScale,
+            selectionOutlinePaint, selectionOutlineStroke);
+      }
+    }
+    if (this.centerAngleFeedback != null) {
+     paintAngleFeedback(g2D, this.centerAngleFeedback, this.point1AngleFeedback, this.point2AngleFeedback,
+         planScale, selectionColor);
+    }
+    if (this.dimensionLinesFeedback != null) {
+      List<Selectable> emptySelection = Collections.emptyList();
+      paintDimensionLines(g2D, this.dimensionLinesFeedback, emptySelection,
+          null, null, null, locationFeedbackStroke, planScale,
+          backgroundColor, selectionColor, paintMode, true);
+    }
+
+    if (this.draggedItemsFeedback != null) {
+      paintDimensionLines(g2D, Home.getDimensionLinesSubList(this.draggedItemsFeedback), this.draggedItemsFeedback,
+          selectionOutlinePaint, dimensionLinesSelectionOutlineStroke, null,
+          locationFeedbackStroke, planScale, backgroundColor, foregroundColor, paintMode, false);
+      paintLabels(g2D, Home.getLabelsSubList(this.draggedItemsFeedback), this.draggedItemsFeedback,
+          selectionOutlinePaint, dimensionLinesSelectionOutlineStroke, null,
+          planScale, foregroundColor, paintMode);
+      paintRoomsOutline(g2D, this.draggedItemsFeedback, selectionOutlinePaint, selectionOutlineStroke, null,
+          planScale, foregroundColor);
+      paintWallsOutline(g2D, this.draggedItemsFeedback, selectionOutlinePaint, selectionOutlineStroke, null,
+          planScale, foregroundColor);
+      paintFurniture(g2D, Home.getFurnitureSubList(this.draggedItemsFeedback), selectedItems, planScale, null,
+          foregroundColor, furnitureOutlineColor, paintMode, false);
+      paintFurnitureOutline(g2D, this.draggedItemsFeedback, selectionOutlinePaint, selectionOutlineStroke, null,
+          planScale, foregroundColor);
     }
+
+    paintRectangleFeedback(g2D, selectionColor, planScale);
   }
 
   /**
@@ -3039,6 +3371,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                           floorTextureImagesCache.put(floorTexture,
                               ((ImageComponent2D)texture.getImage(0)).getImage());
                           if (!waitForTexture) {
+                            invalidatePlanTiles();
                             repaint();
                           }
                         }
@@ -3061,6 +3394,10 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
                   }
                 }
                 textureImage = this.floorTextureImagesCache.get(floorTexture);
+                if (textureImage == null
+                    || textureImage == WAIT_TEXTURE_IMAGE) {
+                  this.paintedContentIncomplete = true;
+                }
               }
 
               float textureWidth = floorTexture.getWidth();
@@ -3740,14 +4077,51 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
 
   /**
    * Returns areas matching the union of home wall shapes sorted by pattern.
+   * The area of each pattern is updated incrementally from the areas of the walls
+   * invalidated since last call.
    */
   private Map<Collection<Wall>, Area> getWallAreas() {
     if (this.wallAreasCache == null) {
-      this.wallAreasCache = getWallAreas(getDrawableWallsInSelectedLevel(this.home.getWalls()));
+      Map<TextureImage, Collection<Wall>> sortedWalls =
+          getWallsSortedByPattern(getDrawableWallsInSelectedLevel(this.home.getWalls()));
+      if (this.wallAreaUnionsCache == null) {
+        this.wallAreaUnionsCache = new HashMap<TextureImage, ItemsAreaUnion<Wall>>();
+      }
+      // Forget unions of unused patterns
+      this.wallAreaUnionsCache.keySet().retainAll(sortedWalls.keySet());
+      Map<Collection<Wall>, Area> wallAreas = new LinkedHashMap<Collection<Wall>, Area>();
+      for (Map.Entry<TextureImage, Collection<Wall>> patternWalls : sortedWalls.entrySet()) {
+        ItemsAreaUnion<Wall> wallAreaUnion = this.wallAreaUnionsCache.get(patternWalls.getKey());
+        if (wallAreaUnion == null) {
+          wallAreaUnion = new ItemsAreaUnion<Wall>();
+          this.wallAreaUnionsCache.put(patternWalls.getKey(), wallAreaUnion);
+        }
+        wallAreaUnion.setItems(patternWalls.getValue());
+        wallAreas.put(patternWalls.getValue(), wallAreaUnion.getArea());
+      }
+      this.wallAreasCache = wallAreas;
     }
     return this.wallAreasCache;
   }
 
+  /**
+   * Marks the area of the given <code>wall</code> and of the walls joined to it as invalid
+   * in wall area unions.
+   */
+  private void invalidateWallArea(Wall wall) {
+    if (this.wallAreaUnionsCache != null) {
+      for (ItemsAreaUnion<Wall> wallAreaUnion : this.wallAreaUnionsCache.values()) {
+        wallAreaUnion.invalidate(wall);
+        if (wall.getWallAtStart() != null) {
+          wallAreaUnion.invalidate(wall.getWallAtStart());
+        }
+        if (wall.getWallAtEnd() != null) {
+          wallAreaUnion.invalidate(wall.getWallAtEnd());
+        }
+      }
+    }
+  }
+
   /**
    * Returns the walls that belong to the selected level in home.
    */
@@ -3768,49 +4142,57 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     if (walls.size() == 0) {
       return Collections.emptyMap();
     }
-    // Check if all walls use the same pattern
-    TextureImage pattern = walls.iterator().next().getPattern();
-    boolean samePattern = true;
-    for (Wall wall : walls) {
-      if (pattern != wall.getPattern()) {
-        samePattern = false;
-        break;
-      }
-    }
     Map<Collection<Wall>, Area> wallAreas = new LinkedHashMap<Collection<Wall>, Area>();
-    if (samePattern) {
-      wallAreas.put(walls, getItemsArea(walls));
-    } else {
-      // Create walls sublists by pattern
-      Map<TextureImage, Collection<Wall>> sortedWalls = new LinkedHashMap<TextureImage, Collection<Wall>>();
-      for (Wall wall : walls) {
-        TextureImage wallPattern = wall.getPattern();
-        if (wallPattern == null) {
-          wallPattern = this.preferences.getWallPattern();
-        }
-        Collection<Wall> patternWalls = sortedWalls.get(wallPattern);
-        if (patternWalls == null) {
-          patternWalls = new ArrayList<Wall>();
-          sortedWalls.put(wallPattern, patternWalls);
-        }
-        patternWalls.add(wall);
+    for (Collection<Wall> patternWalls : getWallsSortedByPattern(walls).values()) {
+      wallAreas.put(patternWalls, getItemsArea(patternWalls));
+    }
+    return wallAreas;
+  }
+
+  /**
+   * Returns <code>walls</code> sorted in sublists by pattern.
+   */
+  private Map<TextureImage, Collection<Wall>> getWallsSortedByPattern(Collection<Wall> walls) {
+    Map<TextureImage, Collection<Wall>> sortedWalls = new LinkedHashMap<TextureImage, Collection<Wall>>();
+    for (Wall wall : walls) {
+      TextureImage wallPattern = wall.getPattern();
+      if (wallPattern == null) {
+        wallPattern = this.preferences.getWallPattern();
       }
-      for (Collection<Wall> patternWalls : sortedWalls.values()) {
-        wallAreas.put(patternWalls, getItemsArea(patternWalls));
+      Collection<Wall> patternWalls = sortedWalls.get(wallPattern);
+      if (patternWalls == null) {
+        patternWalls = new ArrayList<Wall>();
+        sortedWalls.put(wallPattern, patternWalls);
       }
+      patternWalls.add(wall);
     }
-    return wallAreas;
+    return sortedWalls;
   }
 
   /**
    * Returns an area matching the union of all <code>items</code> shapes.
    */
   private Area getItemsArea(Collection<? extends Selectable> items) {
-    Area itemsArea = new Area();
+    List<Area> areas = new ArrayList<Area>(items.size());
     for (Selectable item : items) {
-      itemsArea.add(new Area(ShapeTools.getShape(item.getPoints(), true, null)));
+      areas.add(new Area(ShapeTools.getShape(item.getPoints(), true, null)));
+    }
+    // Merge areas two by two, which is much faster than adding them one after the other
+    // to an area becoming more and more complex
+    while (areas.size() > 1) {
+      List<Area> mergedAreas = new ArrayList<Area>((areas.size() + 1) / 2);
+      for (int i = 0; i < areas.size(); i += 2) {
+        Area area = areas.get(i);
+        if (i + 1 < areas.size()) {
+          area.add(areas.get(i + 1));
+        }
+        mergedAreas.add(area);
+      }
+      areas = mergedAreas;
     }
-    return itemsArea;
+    return areas.isEmpty()
+        ? new Area()
+        : areas.get(0);
   }
 
   /**
@@ -3841,6 +4223,10 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     if (!furniture.isEmpty()) {
       BasicStroke pieceBorderStroke = new BasicStroke(getStrokeWidth(HomePieceOfFurniture.class, paintMode) / planScale);
       Boolean allFurnitureViewedFromTop = null;
+      Shape clip = g2D.getClip();
+      Rectangle2D clipBounds = clip != null
+          ? clip.getBounds2D()
+          : null;
       // Draw furniture
       for (HomePieceOfFurniture piece : furniture) {
         if (piece.isVisible()) {
@@ -3857,76 +4243,99 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
           } else if (paintMode != PaintMode.CLIPBOARD
                     || selectedPiece) {
             // In clipboard paint mode, paint piece only if it is selected
-            Shape pieceShape = ShapeTools.getShape(piece.getPoints(), true, null);
-            Shape pieceShape2D;
-            if (piece instanceof HomeDoorOrWindow) {
-              HomeDoorOrWindow doorOrWindow = (HomeDoorOrWindow)piece;
-              pieceShape2D = getDoorOrWindowWallPartShape(doorOrWindow);
-              if (this.draggedItemsFeedback == null
-                  || !this.draggedItemsFeedback.contains(piece)) {
-                paintDoorOrWindowWallThicknessArea(g2D, doorOrWindow, planScale, backgroundColor, foregroundColor, paintMode);
-              }
-              paintDoorOrWindowSashes(g2D, doorOrWindow, planScale, foregroundColor, paintMode);
-            } else {
-              pieceShape2D = pieceShape;
+            float [][] piecePoints = piece.getPoints();
+            if (piece instanceof HomeDoorOrWindow
+                && (this.draggedItemsFeedback == null
+                    || !this.draggedItemsFeedback.contains(piece))) {
+              paintDoorOrWindowWallThicknessArea(g2D, (HomeDoorOrWindow)piece, planScale, backgroundColor, foregroundColor, paintMode);
             }
-
-            boolean viewedFromTop;
-            if (this.preferences.isFurnitureViewedFromTop()) {
-              if (piece.getPlanIcon() != null
-                  || piece instanceof HomeDoorOrWindow) {
-                viewedFromTop = true;
-              } else {
-                if (allFurnitureViewedFromTop == null) {
-                  try {
-                    // Evaluate allFurnitureViewedFromTop value as late as possible to avoid mandatory dependency towards Java 3D
-                    allFurnitureViewedFromTop = !Boolean.getBoolean("com.eteks.sweethome3d.no3D")
-                        && Component3DManager.getInstance().isOffScreenImageSupported();
-                  } catch (AccessControlException ex) {
-                    // If com.eteks.sweethome3d.no3D property can't be read,
-                    // security manager won't allow to access to Java 3D DLLs required by PieceOfFurnitureModelIcon class too
-                    allFurnitureViewedFromTop = false;
-                  }
+            if (clipBounds == null
+                || isPieceOfFurnitureInClip(piece, piecePoints, clipBounds, pieceBorderStroke.getLineWidth())) {
+              boolean pieceDetailsPainted = isPieceOfFurnitureDetailsPainted(piece, planScale, paintMode);
+              Shape pieceShape = ShapeTools.getShape(piecePoints, true, null);
+              Shape pieceShape2D;
+              if (piece instanceof HomeDoorOrWindow) {
+                HomeDoorOrWindow doorOrWindow = (HomeDoorOrWindow)piece;
+                pieceShape2D = getDoorOrWindowWallPartShape(doorOrWindow);
+                if (pieceDetailsPainted) {
+                  paintDoorOrWindowSashes(g2D, doorOrWindow, planScale, foregroundColor, paintMode);
                 }
-                viewedFromTop = allFurnitureViewedFromTop.booleanValue();
+              } else {
+                pieceShape2D = pieceShape;
               }
-            } else {
-              viewedFromTop = false;
-            }
-            if (paintIcon
-                && viewedFromTop) {
-              if (piece instanceof HomeDoorOrWindow) {
-                // Draw doors and windows border
+
+              if (paintIcon
+                  && !pieceDetailsPainted) {
+                // Draw only the shape of a piece too small to show its icon
                 g2D.setPaint(backgroundColor);
                 g2D.fill(pieceShape2D);
                 g2D.setPaint(foregroundColor);
                 g2D.setStroke(pieceBorderStroke);
                 g2D.draw(pieceShape2D);
+                if (paintMode == PaintMode.PAINT
+                    && pieceShape2D != pieceShape) {
+                  g2D.setPaint(furnitureOutlineColor);
+                  g2D.draw(pieceShape);
+                }
               } else {
-                paintPieceOfFurnitureTop(g2D, piece, pieceShape2D, pieceBorderStroke, planScale,
-                    backgroundColor, foregroundColor, paintMode);
-              }
-              if (paintMode == PaintMode.PAINT) {
-                // Draw selection outline rectangle
-                g2D.setStroke(pieceBorderStroke);
-                g2D.setPaint(furnitureOutlineColor);
-                g2D.draw(pieceShape);
-              }
-            } else {
-              if (paintIcon) {
-                // Draw its icon
-                paintPieceOfFurnitureIcon(g2D, piece, pieceShape2D, planScale,
-                    backgroundColor, paintMode);
-              }
-              // Draw its border
-              g2D.setPaint(foregroundColor);
-              g2D.setStroke(pieceBorderStroke);
-              g2D.draw(pieceShape2D);
-              if (piece instanceof HomeDoorOrWindow
-                  && paintMode == PaintMode.PAINT) {
-                // Draw outline rectangle
-                g2D.setPaint(furnitureOutlineColor);
-                g2D.draw(pieceShape);
+                boolean viewedFromTop;
+                if (this.preferences.isFurnitureViewedFromTop()) {
+                  if (piece.getPlanIcon() != null
+                      || piece instanceof HomeDoorOrWindow) {
+                    viewedFromTop = true;
+                  } else {
+                    if (allFurnitureViewedFromTop == null) {
+                      try {
+                        // Evaluate allFurnitureViewedFromTop value as late as possible to avoid mandatory dependency towards Java 3D
+                        allFurnitureViewedFromTop = !Boolean.getBoolean("com.eteks.sweethome3d.no3D")
+                            && Component3DManager.getInstance().isOffScreenImageSupported();
+                      } catch (AccessControlException ex) {
+                        // If com.eteks.sweethome3d.no3D property can't be read,
+                        // security manager won't allow to access to Java 3D DLLs required by PieceOfFurnitureModelIcon class too
+                        allFurnitureViewedFromTop = false;
+                      }
+                    }
+                    viewedFromTop = allFurnitureViewedFromTop.booleanValue();
+                  }
+                } else {
+                  viewedFromTop = false;
+                }
+                if (paintIcon
+                    && viewedFromTop) {
+                  if (piece instanceof HomeDoorOrWindow) {
+                    // Draw doors and windows border
+                    g2D.setPaint(backgroundColor);
+                    g2D.fill(pieceShape2D);
+                    g2D.setPaint(foregroundColor);
+                    g2D.setStroke(pieceBorderStroke);
+                    g2D.draw(pieceShape2D);
+                  } else {
+                    paintPieceOfFurnitureTop(g2D, piece, pieceShape2D, pieceBorderStroke, planScale,
+                        backgroundColor, foregroundColor, paintMode);
+                  }
+                  if (paintMode == PaintMode.PAINT) {
+                    // Draw selection outline rectangle
+                    g2D.setStroke(pieceBorderStroke);
+                    g2D.setPaint(furnitureOutlineColor);
+                    g2D.draw(pieceShape);
+                  }
+                } else {
+                  if (paintIcon) {
+                    // Draw its icon
+                    paintPieceOfFurnitureIcon(g2D, piece, pieceShape2D, planScale,
+                        backgroundColor, paintMode);
+                  }
+                  // Draw its border
+                  g2D.setPaint(foregroundColor);
+                  g2D.setStroke(pieceBorderStroke);
+                  g2D.draw(pieceShape2D);
+                  if (piece instanceof HomeDoorOrWindow
+                      && paintMode == PaintMode.PAINT) {
+                    // Draw outline rectangle
+                    g2D.setPaint(furnitureOutlineColor);
+                    g2D.draw(pieceShape);
+                  }
+                }
               }
             }
           }
@@ -3935,6 +4344,37 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     }
   }
 
+  /**
+   * Returns <code>true</code> if the given <code>piece</code> may be drawn in <code>clipBounds</code>.
+   */
+  private boolean isPieceOfFurnitureInClip(HomePieceOfFurniture piece, float [][] piecePoints,
+                                           Rectangle2D clipBounds, float margin) {
+    if (piece instanceof HomeDoorOrWindow) {
+      // Include door or window sashes which may be drawn out of the piece
+      margin += Math.max(piece.getWidth(), piece.getDepth());
+    }
+    float xMin = Float.POSITIVE_INFINITY;
+    float yMin = Float.POSITIVE_INFINITY;
+    float xMax = Float.NEGATIVE_INFINITY;
+    float yMax = Float.NEGATIVE_INFINITY;
+    for (float [] point : piecePoints) {
+      xMin = Math.min(xMin, point [0]);
+      yMin = Math.min(yMin, point [1]);
+      xMax = Math.max(xMax, point [0]);
+      yMax = Math.max(yMax, point [1]);
+    }
+    return clipBounds.intersects(xMin - margin, yMin - margin, xMax - xMin + 2 * margin, yMax - yMin + 2 * margin);
+  }
+
+  /**
+   * Returns <code>true</code> if the icon, the sashes and the name of the given <code>piece</code>
+   * should be painted, i.e. if the piece isn't smaller than furniture details minimum size on screen.
+   */
+  private boolean isPieceOfFurnitureDetailsPainted(HomePieceOfFurniture piece, float planScale, PaintMode paintMode) {
+    return paintMode != PaintMode.PAINT
+        || Math.max(piece.getWidthInPlan(), piece.getDepthInPlan()) * planScale >= this.furnitureDetailsMinimumSize;
+  }
+
   /**
    * Returns the shape of the wall part of a door or a window.
    */
@@ -4103,7 +4543,8 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
         }
         if (piece.isNameVisible()
             && (paintMode != PaintMode.CLIPBOARD
-                || selectedPiece)) {
+                || selectedPiece)
+            && isPieceOfFurnitureDetailsPainted(piece, planScale, paintMode)) {
           // In clipboard paint mode, paint piece only if it is selected
           String name = piece.getName().trim();
           if (name.length() > 0) {
@@ -4235,6 +4676,12 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
    */
   private void paintPieceOfFurnitureIcon(Graphics2D g2D, HomePieceOfFurniture piece, Icon icon,
                                          Shape pieceShape2D, float planScale, Color backgroundColor) {
+    if (icon instanceof PieceOfFurnitureTopViewIcon
+          ? ((PieceOfFurnitureTopViewIcon)icon).isWaitIcon()
+          : IconManager.getInstance().isWaitIcon(icon)) {
+      // Icon will be painted again once loaded
+      this.paintedContentIncomplete = true;
+    }
     // Fill piece area
     g2D.setPaint(backgroundColor);
     g2D.fill(pieceShape2D);
@@ -5893,6 +6340,7 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
    */
   public void setResizeIndicatorVisible(boolean resizeIndicatorVisible) {
     this.resizeIndicatorVisible = resizeIndicatorVisible;
+    invalidateSelectionPlanTiles();
     repaint();
   }
 
@@ -6723,6 +7171,321 @@ public class PlanComponent extends JComponent implements PlanView, Scrollable, P
     }
   }
 
+  /**
+   * The union of the shapes of a set of items, computed in a balanced binary tree where
+   * each leaf stores the area of an item and each node the union of its children areas.
+   * When items are added, removed or invalidated, only the nodes from their leaf
+   * to the root are computed again.
+   */
+  private static class ItemsAreaUnion<T extends Selectable> {
+    private Map<T, Integer> itemSlots;
+    private List<T>         slotItems;
+    private List<Integer>   freeSlots;
+    // Nodes of the tree stored in arrays where the children of node i are at 2i and 2i + 1,
+    // the root at index 1 and the leaf of slot s at index capacity + s
+    private Area []         nodeAreas;
+    private boolean []      validNodes;
+    private int             capacity;
+
+    public ItemsAreaUnion() {
+      this.itemSlots = new IdentityHashMap<T, Integer>();
+      this.slotItems = new ArrayList<T>();
+      this.freeSlots = new ArrayList<Integer>();
+      this.capacity = 1;
+      this.nodeAreas = new Area [2];
+      this.validNodes = new boolean [] {true, true};
+    }
+
+    /**
+     * Updates the items of this union, keeping the areas of the items already present.
+     */
+    public void setItems(Collection<? extends T> items) {
+      Map<T, Integer> removedItems = new IdentityHashMap<T, Integer>(this.itemSlots);
+      for (T item : items) {
+        if (removedItems.remove(item) == null) {
+          addItem(item);
+        }
+      }
+      for (T item : removedItems.keySet()) {
+        removeItem(item);
+      }
+    }
+
+    private void addItem(T item) {
+      int slot;
+      if (this.freeSlots.isEmpty()) {
+        slot = this.slotItems.size();
+        this.slotItems.add(item);
+        if (slot == this.capacity) {
+          doubleCapacity();
+        }
+      } else {
+        slot = this.freeSlots.remove(this.freeSlots.size() - 1);
+        this.slotItems.set(slot, item);
+      }
+      this.itemSlots.put(item, slot);
+      invalidateSlot(slot);
+    }
+
+    private void removeItem(T item) {
+      int slot = this.itemSlots.remove(item);
+      this.slotItems.set(slot, null);
+      this.freeSlots.add(slot);
+      invalidateSlot(slot);
+    }
+
+    /**
+     * Doubles the count of leaves of the tree, the existing tree becoming the left child of the new root.
+     */
+    private void doubleCapacity() {
+      Area [] nodeAreas = new Area [4 * this.capacity];
+      boolean [] validNodes = new boolean [nodeAreas.length];
+      // Empty nodes are valid
+      Arrays.fill(validNodes, true);
+      for (int depthStart = 1; depthStart < this.nodeAreas.length; depthStart *= 2) {
+        System.arraycopy(this.nodeAreas, depthStart, nodeAreas, 2 * depthStart, depthStart);
+        System.arraycopy(this.validNodes, depthStart, validNodes, 2 * depthStart, depthStart);
+      }
+      this.nodeAreas = nodeAreas;
+      this.validNodes = validNodes;
+      this.capacity *= 2;
+      this.validNodes [1] = false;
+    }
+
+    /**
+     * Marks the area of the given <code>item</code> as invalid if it belongs to this union.
+     */
+    public void invalidate(T item) {
+      Integer slot = this.itemSlots.get(item);
+      if (slot != null) {
+        invalidateSlot(slot);
+      }
+    }
+
+    private void invalidateSlot(int slot) {
+      for (int i = this.capacity + slot; i >= 1 && this.validNodes [i]; i /= 2) {
+        this.validNodes [i] = false;
+      }
+    }
+
+    /**
+     * Returns the union of the areas of the items of this union. The returned area shouldn't be modified.
+     */
+    public Area getArea() {
+      Area area = getNodeArea(1);
+      return area != null
+          ? area
+          : new Area();
+    }
+
+    private Area getNodeArea(int node) {
+      if (!this.validNodes [node]) {
+        Area area;
+        if (node >= this.capacity) {
+          T item = this.slotItems.get(node - this.capacity);
+          area = item != null
+              ? new Area(ShapeTools.getShape(item.getPoints(), true, null))
+              : null;
+        } else {
+          Area leftArea = getNodeArea(2 * node);
+          Area rightArea = getNodeArea(2 * node + 1);
+          if (leftArea == null) {
+            area = rightArea;
+          } else if (rightArea == null) {
+            area = leftArea;
+          } else {
+            area = new Area(leftArea);
+            area.add(rightArea);
+          }
+        }
+        this.nodeAreas [node] = area;
+        this.validNodes [node] = true;
+      }
+      return this.nodeAreas [node];
+    }
+  }
+
+  /**
+   * A cache of the images of plan content split in square tiles at a given pixel scale.
+   * The tile at (column, row) covers the pixels from (column * TILE_SIZE, row * TILE_SIZE)
+   * in a coordinates system where plan origin is at (0, 0).
+   */
+  private static class PlanTiles {
+    public static final int TILE_SIZE = 256;
+    // Margin in pixels added around invalidated areas to include selection outlines and indicators
+    private static final int INVALIDATION_MARGIN = 32;
+
+    private final Font                         font;
+    private final Color                        backgroundColor;
+    private final Color                        foregroundColor;
+    private final boolean                      opaque;
+    private float                              pixelScale;
+    private final Map<Point, BufferedImage>    tiles;
+    private final Set<Point>                   incompleteTiles;
+    private final Map<Selectable, Rectangle2D> itemBounds;
+    private List<Selectable>                   selectedItems;
+
+    public PlanTiles(Font font, Color backgroundColor, Color foregroundColor, boolean opaque) {
+      this.font = font;
+      this.backgroundColor = backgroundColor;
+      this.foregroundColor = foregroundColor;
+      this.opaque = opaque;
+      // Keep tiles in access order to be able to remove the least recently painted ones
+      this.tiles = new LinkedHashMap<Point, BufferedImage>(64, 0.75f, true);
+      this.incompleteTiles = new HashSet<Point>();
+      this.itemBounds = new IdentityHashMap<Selectable, Rectangle2D>();
+      this.selectedItems = Collections.emptyList();
+    }
+
+    /**
+     * Returns <code>true</code> if tiles were painted with the given font and colors.
+     */
+    public boolean isPaintedWith(Font font, Color backgroundColor, Color foregroundColor, boolean opaque) {
+      return (font == null ? this.font == null : font.equals(this.font))
+          && backgroundColor.equals(this.backgroundColor)
+          && foregroundColor.equals(this.foregroundColor)
+          && opaque == this.opaque;
+    }
+
+    /**
+     * Sets the scale from plan to pixels, removing all the tiles if it changed.
+     */
+    public void setPixelScale(float pixelScale) {
+      if (this.pixelScale != pixelScale) {
+        this.pixelScale = pixelScale;
+        this.tiles.clear();
+        this.incompleteTiles.clear();
+      }
+    }
+
+    /**
+     * Stores the bounds of the painted area of the given <code>item</code>
+     * and returns its previous bounds.
+     */
+    public Rectangle2D putItemBounds(Selectable item, Rectangle2D bounds) {
+      return this.itemBounds.put(item, bounds);
+    }
+
+    /**
+     * Removes the bounds of the given <code>item</code> and returns them.
+     */
+    public Rectangle2D removeItemBounds(Selectable item) {
+      return this.itemBounds.remove(item);
+    }
+
+    public List<Selectable> getSelectedItems() {
+      return this.selectedItems;
+    }
+
+    public void setSelectedItems(List<Selectable> selectedItems) {
+      this.selectedItems = new ArrayList<Selectable>(selectedItems);
+    }
+
+    /**
+     * Returns the columns and rows of the tiles intersecting the given rectangle in pixels.
+     */
+    public static Rectangle getTilesIntersectingRectangle(Rectangle rectangle) {
+      int minColumn = (int)Math.floor((double)rectangle.x / TILE_SIZE);
+      int minRow = (int)Math.floor((double)rectangle.y / TILE_SIZE);
+      int maxColumn = (int)Math.floor((double)(rectangle.x + rectangle.width - 1) / TILE_SIZE);
+      int maxRow = (int)Math.floor((double)(rectangle.y + rectangle.height - 1) / TILE_SIZE);
+      return new Rectangle(minColumn, minRow, maxColumn - minColumn + 1, maxRow - minRow + 1);
+    }
+
+    /**
+     * Removes the tiles intersecting the given area in plan.
+     */
+    public void invalidate(Rectangle2D planArea) {
+      if (!this.tiles.isEmpty()) {
+        double minX = planArea.getMinX() * this.pixelScale - INVALIDATION_MARGIN;
+        double minY = planArea.getMinY() * this.pixelScale - INVALIDATION_MARGIN;
+        double maxX = planArea.getMaxX() * this.pixelScale + INVALIDATION_MARGIN;
+        double maxY = planArea.getMaxY() * this.pixelScale + INVALIDATION_MARGIN;
+        int minColumn = (int)Math.floor(minX / TILE_SIZE);
+        int minRow = (int)Math.floor(minY / TILE_SIZE);
+        int maxColumn = (int)Math.floor(maxX / TILE_SIZE);
+        int maxRow = (int)Math.floor(maxY / TILE_SIZE);
+        for (Iterator<Point> it = this.tiles.keySet().iterator(); it.hasNext(); ) {
+          Point tile = it.next();
+          if (tile.x >= minColumn && tile.x <= maxColumn
+              && tile.y >= minRow && tile.y <= maxRow) {
+            it.remove();
+            this.incompleteTiles.remove(tile);
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the smallest rectangle of columns and rows containing the tiles among <code>tiles</code>
+     * which are missing or incomplete, or <code>null</code> if all these tiles are available.
+     */
+    public Rectangle getMissingTiles(Rectangle tiles) {
+      Rectangle missingTiles = null;
+      for (int row = tiles.y; row < tiles.y + tiles.height; row++) {
+        for (int column = tiles.x; column < tiles.x + tiles.width; column++) {
+          Point tile = new Point(column, row);
+          if (!this.tiles.containsKey(tile)
+              || this.incompleteTiles.contains(tile)) {
+            if (missingTiles == null) {
+              missingTiles = new Rectangle(column, row, 1, 1);
+            } else {
+              missingTiles.add(new Rectangle(column, row, 1, 1));
+            }
+          }
+        }
+      }
+      return missingTiles;
+    }
+
+    /**
+     * Splits the given <code>image</code> in the tiles matching <code>tiles</code> columns and rows.
+     */
+    public void putTiles(BufferedImage image, Rectangle tiles, boolean incomplete) {
+      for (int row = 0; row < tiles.height; row++) {
+        for (int column = 0; column < tiles.width; column++) {
+          BufferedImage tileImage = new BufferedImage(TILE_SIZE, TILE_SIZE, image.getType());
+          Graphics2D tileGraphics = tileImage.createGraphics();
+          tileGraphics.setComposite(AlphaComposite.Src);
+          tileGraphics.drawImage(image, -column * TILE_SIZE, -row * TILE_SIZE, null);
+          tileGraphics.dispose();
+          Point tile = new Point(tiles.x + column, tiles.y + row);
+          this.tiles.put(tile, tileImage);
+          if (incomplete) {
+            this.incompleteTiles.add(tile);
+          } else {
+            this.incompleteTiles.remove(tile);
+          }
+        }
+      }
+    }
+
+    /**
+     * Paints the available <code>tiles</code> with <code>g2D</code>.
+     */
+    public void paintTiles(Graphics2D g2D, Rectangle tiles) {
+      for (int row = tiles.y; row < tiles.y + tiles.height; row++) {
+        for (int column = tiles.x; column < tiles.x + tiles.width; column++) {
+          BufferedImage tileImage = this.tiles.get(new Point(column, row));
+          if (tileImage != null) {
+            g2D.drawImage(tileImage, column * TILE_SIZE, row * TILE_SIZE, null);
+          }
+        }
+      }
+    }
+
+    /**
+     * Removes the least recently painted tiles to keep at most <code>maxTileCount</code> tiles.
+     */
+    public void removeEldestTiles(int maxTileCount) {
+      for (Iterator<Point> it = this.tiles.keySet().iterator();
+           this.tiles.size() > maxTileCount && it.hasNext(); ) {
+        this.incompleteTiles.remove(it.next());
+        it.remove();
+      }
+    }
+  }
+
   /**
    * A map key used to compare furniture with the same top view icon.
    */
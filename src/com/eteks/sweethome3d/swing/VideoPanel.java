@@ -69,6 +69,7 @@ import java.io.OutputStream;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.net.URL;
+import java.security.AccessControlException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -79,13 +80,21 @@ import java.util.Date;
 import java.util.Dictionary;
 import java.util.GregorianCalendar;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 import javax.media.Buffer;
@@ -1400,6 +1409,10 @@ public class VideoPanel extends JPanel implements DialogView {
 
   /**
    * Computes the video of the given home.
+   * Photo frames are rendered in parallel by as many renderers as the value of
+   * <code>com.eteks.sweethome3d.swing.videoPhotoRenderersCount</code> System property, and
+   * the frames rendered or waiting to be encoded are limited to the value of
+   * <code>com.eteks.sweethome3d.swing.videoFramesInFlightMaximumCount</code> System property.
    * Caution : this method must be thread safe because it's called from an executor.
    */
   private void computeVideo(Home home) {
@@ -1420,7 +1433,8 @@ public class VideoPanel extends JPanel implements DialogView {
           progressModel.setValue(0);
         }
       });
-    FrameGenerator frameGenerator = null;
+    List<FrameGenerator> frameGenerators = new ArrayList<FrameGenerator>();
+    ImageDataSource sourceStream = null;
     // Delete previous file if it exists
     if (this.videoFile != null) {
       this.videoFile.delete();
@@ -1429,20 +1443,42 @@ public class VideoPanel extends JPanel implements DialogView {
     File file = null;
     try {
       file = OperatingSystem.createTemporaryFile("video", ".mov");
+      int framesInFlightMaximumCount;
       if (quality >= 2) {
-        frameGenerator = new PhotoImageGenerator(home, width, height, this.object3dFactory,
-            quality == 2
-              ? PhotoRenderer.Quality.LOW
-              : PhotoRenderer.Quality.HIGH);
+        // Render photo frames with independent renderers working in parallel
+        int photoRenderersCount = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+        try {
+          photoRenderersCount = Integer.getInteger(
+              "com.eteks.sweethome3d.swing.videoPhotoRenderersCount", photoRenderersCount);
+        } catch (AccessControlException ex) {
+          // Can't access to properties
+        }
+        photoRenderersCount = Math.max(1, Math.min(photoRenderersCount, videoFramesPath.length));
+        for (int i = 0; i < photoRenderersCount && !Thread.currentThread().isInterrupted(); i++) {
+          frameGenerators.add(new PhotoImageGenerator(home, width, height, this.object3dFactory,
+              quality == 2
+                ? PhotoRenderer.Quality.LOW
+                : PhotoRenderer.Quality.HIGH));
+        }
+        framesInFlightMaximumCount = 2 * photoRenderersCount;
       } else {
-        frameGenerator = new Image3DGenerator(home, this.preferences, width, height, this.object3dFactory,
+        // Offscreen 3D images are computed with a single 3D component
+        frameGenerators.add(new Image3DGenerator(home, this.preferences, width, height, this.object3dFactory,
             quality == 1
             && (!this.preferences.isDrawingModeEnabled()
-                || home.getEnvironment().getDrawingMode() != HomeEnvironment.DrawingMode.OUTLINE));
+                || home.getEnvironment().getDrawingMode() != HomeEnvironment.DrawingMode.OUTLINE)));
+        framesInFlightMaximumCount = 2;
+      }
+      try {
+        // Frames in flight are the ones in rendering or waiting to be encoded in the video
+        framesInFlightMaximumCount = Integer.getInteger(
+            "com.eteks.sweethome3d.swing.videoFramesInFlightMaximumCount", framesInFlightMaximumCount);
+      } catch (AccessControlException ex) {
+        // Can't access to properties
       }
       if (!Thread.currentThread().isInterrupted()) {
-        ImageDataSource sourceStream = new ImageDataSource((VideoFormat)this.videoFormatComboBox.getSelectedItem(),
-            frameGenerator, videoFramesPath, progressModel);
+        sourceStream = new ImageDataSource((VideoFormat)this.videoFormatComboBox.getSelectedItem(),
+            frameGenerators, framesInFlightMaximumCount, videoFramesPath, progressModel);
         new JPEGImagesToVideo().createVideoFile(width, height, frameRate, sourceStream, file);
       }
     } catch (InterruptedIOException ex) {
@@ -1458,6 +1494,13 @@ public class VideoPanel extends JPanel implements DialogView {
           this.preferences.getLocalizedString(VideoPanel.class, "outOfMemory.message"));
       file = null;
     } finally {
+      if (sourceStream != null) {
+        // Stop and wait for frames in rendering before disposing generators
+        sourceStream.dispose();
+      }
+      for (FrameGenerator frameGenerator : frameGenerators) {
+        frameGenerator.dispose();
+      }
       this.videoFile = file;
       EventQueue.invokeLater(new Runnable() {
           public void run() {
@@ -1629,10 +1672,18 @@ public class VideoPanel extends JPanel implements DialogView {
     private ImageSourceStream stream;
 
     public ImageDataSource(VideoFormat format,
-                           FrameGenerator frameGenerator,
+                           List<FrameGenerator> frameGenerators,
+                           int            framesInFlightMaximumCount,
                            Camera []      framesPath,
                            BoundedRangeModel progressModel) {
-      this.stream = new ImageSourceStream(format, frameGenerator, framesPath, progressModel);
+      this.stream = new ImageSourceStream(format, frameGenerators, framesInFlightMaximumCount, framesPath, progressModel);
+    }
+
+    /**
+     * Stops the rendering of the frames that are still in progress.
+     */
+    public void dispose() {
+      this.stream.dispose();
     }
 
     @Override
@@ -1692,25 +1743,37 @@ public class VideoPanel extends JPanel implements DialogView {
   }
 
   /**
-   * A source of video images.
+   * A source of video images. Frames are rendered in parallel by the available frame generators
+   * and kept in frame order until they're read, within the limit of the maximum count of frames in flight.
    */
   private static class ImageSourceStream implements PullBufferStream {
-    private final FrameGenerator                 frameGenerator;
+    private final BlockingQueue<FrameGenerator>  availableFrameGenerators;
+    private final int                            frameGeneratorsCount;
+    private final int                            framesInFlightMaximumCount;
     private final Camera []                      framesPath;
     private final BoundedRangeModel              progressModel;
     private final javax.media.format.VideoFormat format;
+    private final LinkedList<Future<byte []>>    framesInFlight;
+    private final AtomicInteger                  renderedFramesCount;
+    private ExecutorService                      framesRenderingExecutor;
+    private int                                  nextFrameIndex;
     private int                                  imageIndex;
     private boolean                              stopped;
     private Object                               mainThreadContext;
 
     public ImageSourceStream(VideoFormat format,
-                             FrameGenerator frameGenerator,
+                             List<FrameGenerator> frameGenerators,
+                             int framesInFlightMaximumCount,
                              Camera [] framesPath,
                              final BoundedRangeModel progressModel) {
-      this.frameGenerator = frameGenerator;
+      this.availableFrameGenerators = new LinkedBlockingQueue<FrameGenerator>(frameGenerators);
+      this.frameGeneratorsCount = frameGenerators.size();
+      this.framesInFlightMaximumCount = Math.max(1, framesInFlightMaximumCount);
       this.framesPath = framesPath;
       this.progressModel = progressModel;
       this.format = format;
+      this.framesInFlight = new LinkedList<Future<byte []>>();
+      this.renderedFramesCount = new AtomicInteger();
       try {
         // Retrieve main thread AppContext instance by reflection
         this.mainThreadContext = Class.forName("sun.awt.AppContext").getMethod("getAppContext").invoke(null);
@@ -1738,23 +1801,99 @@ public class VideoPanel extends JPanel implements DialogView {
         buffer.setLength(0);
       } else {
         checkAppContext();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        BufferedImage frame = this.frameGenerator.renderImageAt(this.framesPath [this.imageIndex],
-            this.imageIndex == this.framesPath.length - 1);
-        ImageIO.write(frame, "JPEG", outputStream);
-        byte [] data = outputStream.toByteArray();
+        if (this.framesRenderingExecutor == null) {
+          // Create rendering threads once app context is checked to ensure they belong to the same thread group
+          this.framesRenderingExecutor = Executors.newFixedThreadPool(this.frameGeneratorsCount);
+        }
+        fillFramesInFlight();
+        byte [] data = getFrameData(this.framesInFlight.removeFirst());
+        this.imageIndex++;
+        // Start the rendering of the following frame once the read frame leaves its place
+        fillFramesInFlight();
         buffer.setData(data);
         buffer.setLength(data.length);
         buffer.setFormat(this.format);
         buffer.setFlags(buffer.getFlags() | Buffer.FLAG_KEY_FRAME);
+      }
+    }
 
-        final int progressionValue = this.imageIndex++;
-        EventQueue.invokeLater(new Runnable() {
-            public void run() {
-              progressModel.setValue(progressionValue);
+    /**
+     * Submits the rendering of the next frames in the limit of the maximum count of frames in flight.
+     */
+    private void fillFramesInFlight() {
+      while (this.framesInFlight.size() < this.framesInFlightMaximumCount
+          && this.nextFrameIndex < this.framesPath.length) {
+        final Camera frameCamera = this.framesPath [this.nextFrameIndex++];
+        this.framesInFlight.add(this.framesRenderingExecutor.submit(new Callable<byte []>() {
+            public byte [] call() throws IOException, InterruptedException {
+              FrameGenerator frameGenerator = availableFrameGenerators.take();
+              try {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                BufferedImage frame = frameGenerator.renderImageAt(frameCamera);
+                ImageIO.write(frame, "JPEG", outputStream);
+                final int progressionValue = renderedFramesCount.incrementAndGet();
+                EventQueue.invokeLater(new Runnable() {
+                    public void run() {
+                      progressModel.setValue(progressionValue);
+                    }
+                  });
+                return outputStream.toByteArray();
+              } finally {
+                availableFrameGenerators.add(frameGenerator);
+              }
             }
-          });
+          }));
+      }
+    }
+
+    /**
+     * Waits for the given rendered frame and returns its JPEG data.
+     */
+    private byte [] getFrameData(Future<byte []> frame) throws IOException {
+      try {
+        return frame.get();
+      } catch (InterruptedException ex) {
+        this.stopped = true;
+        throw new InterruptedIOException("Frame rendering interrupted");
+      } catch (ExecutionException ex) {
+        this.stopped = true;
+        Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException)cause;
+        } else if (cause instanceof InterruptedException) {
+          throw new InterruptedIOException("Frame rendering interrupted");
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        } else {
+          throw (IOException)new IOException(cause.toString()).initCause(cause);
+        }
+      }
+    }
+
+    /**
+     * Stops the rendering of the frames in flight and waits for the end of the frames
+     * in rendering, to ensure frame generators aren't used anymore once this method returns.
+     */
+    public void dispose() {
+      this.stopped = true;
+      if (this.framesRenderingExecutor != null) {
+        this.framesRenderingExecutor.shutdownNow();
+        // Ignore the interruption of the current thread during the wait
+        boolean interrupted = Thread.interrupted();
+        while (!this.framesRenderingExecutor.isTerminated()) {
+          try {
+            this.framesRenderingExecutor.awaitTermination(1, TimeUnit.SECONDS);
+          } catch (InterruptedException ex) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
       }
+      this.framesInFlight.clear();
     }
 
     /**
@@ -1814,15 +1953,25 @@ public class VideoPanel extends JPanel implements DialogView {
   /**
    * An object able to generate a frame of a video at a camera location.
    */
-  private static abstract class FrameGenerator {
+  private static interface FrameGenerator {
+    public BufferedImage renderImageAt(Camera frameCamera) throws IOException;
+
+    /**
+     * Releases the resources used by this generator once all the frames are rendered.
+     */
+    public void dispose();
+  }
+
+  /**
+   * A frame generator that stops rendering when the thread that launched it is interrupted.
+   */
+  private static abstract class AbstractFrameGenerator implements FrameGenerator {
     private Thread launchingThread;
 
-    protected FrameGenerator() {
+    protected AbstractFrameGenerator() {
       this.launchingThread = Thread.currentThread();
     }
 
-    public abstract BufferedImage renderImageAt(Camera frameCamera, boolean last) throws IOException;
-
     protected void checkLaunchingThreadIsntInterrupted() throws InterruptedIOException {
       if (this.launchingThread.isInterrupted()) {
         throw new InterruptedIOException("Lauching thread interrupted");
@@ -1833,7 +1982,7 @@ public class VideoPanel extends JPanel implements DialogView {
   /**
    * A frame generator using photo renderer.
    */
-  private static class PhotoImageGenerator extends FrameGenerator {
+  private static class PhotoImageGenerator extends AbstractFrameGenerator {
     private PhotoRenderer renderer;
     private BufferedImage image;
 
@@ -1844,20 +1993,17 @@ public class VideoPanel extends JPanel implements DialogView {
       this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
     }
 
-    public BufferedImage renderImageAt(Camera frameCamera, boolean last) throws IOException {
-      try {
-        checkLaunchingThreadIsntInterrupted();
-        this.renderer.render(this.image, frameCamera, null);
-        checkLaunchingThreadIsntInterrupted();
-        return image;
-      } catch(InterruptedIOException ex) {
+    public BufferedImage renderImageAt(Camera frameCamera) throws IOException {
+      checkLaunchingThreadIsntInterrupted();
+      this.renderer.render(this.image, frameCamera, null);
+      checkLaunchingThreadIsntInterrupted();
+      return image;
+    }
+
+    public void dispose() {
+      if (this.renderer != null) {
+        this.renderer.dispose();
         this.renderer = null;
-        throw ex;
-      } finally {
-        if (last) {
-          this.renderer.dispose();
-          this.renderer = null;
-        }
       }
     }
   }
@@ -1865,7 +2011,7 @@ public class VideoPanel extends JPanel implements DialogView {
   /**
    * A frame generator using 3D offscreen images.
    */
-  private static class Image3DGenerator extends FrameGenerator {
+  private static class Image3DGenerator extends AbstractFrameGenerator {
     private final Home      home;
     private HomeComponent3D homeComponent3D;
     private BufferedImage   image;
@@ -1879,7 +2025,7 @@ public class VideoPanel extends JPanel implements DialogView {
       this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
     }
 
-    public BufferedImage renderImageAt(Camera frameCamera, boolean last) throws IOException {
+    public BufferedImage renderImageAt(Camera frameCamera) throws IOException {
       try {
         checkLaunchingThreadIsntInterrupted();
         // Replace home camera with frameCamera to avoid animation interpolator in 3D component
@@ -1897,12 +2043,15 @@ public class VideoPanel extends JPanel implements DialogView {
         checkLaunchingThreadIsntInterrupted();
         return this.image;
       } catch(InterruptedIOException ex) {
-        this.homeComponent3D.endOffscreenImagesCreation();
+        dispose();
         throw ex;
-      } finally {
-        if (last) {
-          this.homeComponent3D.endOffscreenImagesCreation();
-        }
+      }
+    }
+
+    public void dispose() {
+      if (this.homeComponent3D != null) {
+        this.homeComponent3D.endOffscreenImagesCreation();
+        this.homeComponent3D = null;
       }
     }
   }
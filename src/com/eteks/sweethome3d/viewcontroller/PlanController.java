@@ -30,12 +30,14 @@ import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -58,6 +60,7 @@ import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeDoorOrWindow;
 import com.eteks.sweethome3d.model.HomeFurnitureGroup;
 import com.eteks.sweethome3d.model.HomeLight;
+import com.eteks.sweethome3d.model.HomeObject;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
 import com.eteks.sweethome3d.model.HomeTexture;
 import com.eteks.sweethome3d.model.Label;
@@ -119,6 +122,7 @@ public class PlanController extends FurnitureController implements Controller {
   private static final int PIXEL_MARGIN           = 4;
   private static final int INDICATOR_PIXEL_MARGIN = 5;
   private static final int WALL_ENDS_PIXEL_MARGIN = 2;
+  private static final float ITEMS_INDEX_CELL_SIZE = 100;
 
   private final Home                  home;
   private final UserPreferences       preferences;
@@ -189,6 +193,9 @@ public class PlanController extends FurnitureController implements Controller {
   private Area                            insideWallsAreaCache;
   private List<GeneralPath>               roomPathsCache;
   private Map<HomePieceOfFurniture, Area> furnitureSidesCache;
+  private PlanItemsIndex                  itemsIndexCache;
+  private Map<Selectable, Boolean>        itemsIndexObsoleteItems;
+  private Map<Selectable, Integer>        itemsOrderCache;
   private List<Selectable>                draggedItems;
 
 
@@ -214,6 +221,7 @@ public class PlanController extends FurnitureController implements Controller {
     this.undoSupport = undoSupport;
     this.propertyChangeSupport = new PropertyChangeSupport(this);
     this.furnitureSidesCache = new Hashtable<HomePieceOfFurniture, Area>();
+    this.itemsIndexObsoleteItems = new IdentityHashMap<Selectable, Boolean>();
     // Initialize states
     this.selectionState = new SelectionState();
     this.selectionMoveState = new SelectionMoveState();
@@ -2470,6 +2478,235 @@ public class PlanController extends FurnitureController implements Controller {
           home.getObserverCamera().setFixedSize(home.getLevels().size() >= 2);
         }
       });
+    addItemsIndexListeners();
+  }
+
+  /**
+   * Adds the listeners that keep up to date the index of the items searched at a given location.
+   * These listeners are distinct from the other ones because some of them are temporarily removed.
+   */
+  private void addItemsIndexListeners() {
+    final PropertyChangeListener itemChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          invalidateItemsIndex((Selectable)ev.getSource());
+        }
+      };
+    final PropertyChangeListener wallChangeListener = new PropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent ev) {
+          Wall wall = (Wall)ev.getSource();
+          invalidateItemsIndex(wall);
+          // Update walls joined to the wall because their shape depends on it
+          invalidateItemsIndex(wall.getWallAtStart());
+          invalidateItemsIndex(wall.getWallAtEnd());
+          if (Wall.Property.WALL_AT_START.name().equals(ev.getPropertyName())
+              || Wall.Property.WALL_AT_END.name().equals(ev.getPropertyName())) {
+            invalidateItemsIndex((Wall)ev.getOldValue());
+          }
+        }
+      };
+    this.home.addLabelsListener(new ItemsIndexCollectionListener<Label>(this.home.getLabels(), itemChangeListener));
+    this.home.addDimensionLinesListener(new ItemsIndexCollectionListener<DimensionLine>(this.home.getDimensionLines(), itemChangeListener));
+    this.home.addPolylinesListener(new ItemsIndexCollectionListener<Polyline>(this.home.getPolylines(), itemChangeListener));
+    this.home.addFurnitureListener(new ItemsIndexCollectionListener<HomePieceOfFurniture>(this.home.getFurniture(), itemChangeListener));
+    this.home.addWallsListener(new ItemsIndexCollectionListener<Wall>(this.home.getWalls(), wallChangeListener));
+    this.home.addRoomsListener(new ItemsIndexCollectionListener<Room>(this.home.getRooms(), itemChangeListener));
+    // Text bounds depend on unit and font preferences
+    ItemsIndexPreferencesChangeListener preferencesListener = new ItemsIndexPreferencesChangeListener(this);
+    this.preferences.addPropertyChangeListener(UserPreferences.Property.UNIT, preferencesListener);
+    this.preferences.addPropertyChangeListener(UserPreferences.Property.LANGUAGE, preferencesListener);
+    this.preferences.addPropertyChangeListener(UserPreferences.Property.DEFAULT_FONT_NAME, preferencesListener);
+  }
+
+  /**
+   * A collection listener which adds or removes the listener of the index to home items.
+   */
+  private class ItemsIndexCollectionListener<T extends Selectable> implements CollectionListener<T> {
+    private final PropertyChangeListener itemChangeListener;
+
+    public ItemsIndexCollectionListener(Collection<T> items, PropertyChangeListener itemChangeListener) {
+      this.itemChangeListener = itemChangeListener;
+      for (T item : items) {
+        ((HomeObject)item).addPropertyChangeListener(itemChangeListener);
+      }
+    }
+
+    public void collectionChanged(CollectionEvent<T> ev) {
+      T item = ev.getItem();
+      if (ev.getType() == CollectionEvent.Type.ADD) {
+        ((HomeObject)item).addPropertyChangeListener(this.itemChangeListener);
+        invalidateItemsIndex(item);
+      } else if (ev.getType() == CollectionEvent.Type.DELETE) {
+        ((HomeObject)item).removePropertyChangeListener(this.itemChangeListener);
+        itemsIndexObsoleteItems.remove(item);
+        if (itemsIndexCache != null) {
+          itemsIndexCache.remove(item);
+        }
+      }
+      itemsOrderCache = null;
+    }
+  }
+
+  /**
+   * Preferences property listener bound to this controller with a weak reference to avoid
+   * strong link between preferences and this controller.
+   */
+  private static class ItemsIndexPreferencesChangeListener implements PropertyChangeListener {
+    private WeakReference<PlanController> planController;
+
+    public ItemsIndexPreferencesChangeListener(PlanController planController) {
+      this.planController = new WeakReference<PlanController>(planController);
+    }
+
+    public void propertyChange(PropertyChangeEvent ev) {
+      // If plan controller was garbage collected, remove this listener from preferences
+      PlanController planController = this.planController.get();
+      if (planController == null) {
+        ((UserPreferences)ev.getSource()).removePropertyChangeListener(
+            UserPreferences.Property.valueOf(ev.getPropertyName()), this);
+      } else {
+        planController.itemsIndexCache = null;
+      }
+    }
+  }
+
+  /**
+   * Marks the given <code>item</code> as requiring an update in the index of items.
+   */
+  private void invalidateItemsIndex(Selectable item) {
+    if (item != null
+        && this.itemsIndexCache != null) {
+      this.itemsIndexObsoleteItems.put(item, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Returns the labels, dimension lines, polylines, furniture, walls and rooms
+   * which may intersect the rectangle of (<code>xMin</code>, <code>yMin</code>), (<code>xMax</code>, <code>yMax</code>)
+   * opposite corners, including the text they display. The returned items are sorted
+   * in the same order as the one of the list returned by {@link Home#getSelectableViewableItems()}.
+   */
+  private List<Selectable> getIndexedItemsIntersectingRectangle(float xMin, float yMin, float xMax, float yMax) {
+    final Map<Selectable, Integer> itemsOrder = getItemsOrder();
+    if (this.itemsIndexCache == null) {
+      this.itemsIndexCache = new PlanItemsIndex(ITEMS_INDEX_CELL_SIZE);
+      this.itemsIndexObsoleteItems.clear();
+      for (Selectable item : itemsOrder.keySet()) {
+        updateItemsIndex(item);
+      }
+    } else if (!this.itemsIndexObsoleteItems.isEmpty()) {
+      for (Selectable item : this.itemsIndexObsoleteItems.keySet()) {
+        // Ignore walls invalidated by a joined wall which don't belong to home
+        if (itemsOrder.containsKey(item)) {
+          updateItemsIndex(item);
+        }
+      }
+      this.itemsIndexObsoleteItems.clear();
+    }
+
+    List<Selectable> items = new ArrayList<Selectable>(
+        this.itemsIndexCache.getItemsIntersectingRectangle(xMin, yMin, xMax, yMax).keySet());
+    Collections.sort(items, new Comparator<Selectable>() {
+        public int compare(Selectable item1, Selectable item2) {
+          return itemsOrder.get(item1) - itemsOrder.get(item2);
+        }
+      });
+    return items;
+  }
+
+  /**
+   * Returns the indexed items of home mapped to their order.
+   */
+  private Map<Selectable, Integer> getItemsOrder() {
+    if (this.itemsOrderCache == null) {
+      this.itemsOrderCache = new IdentityHashMap<Selectable, Integer>();
+      // Use the same order as in Home#getSelectableViewableItems
+      List<Collection<? extends Selectable>> itemLists = Arrays.asList(
+          this.home.getWalls(), this.home.getRooms(), this.home.getDimensionLines(),
+          this.home.getPolylines(), this.home.getLabels(), this.home.getFurniture());
+      for (Collection<? extends Selectable> items : itemLists) {
+        for (Selectable item : items) {
+          this.itemsOrderCache.put(item, this.itemsOrderCache.size());
+        }
+      }
+    }
+    return this.itemsOrderCache;
+  }
+
+  /**
+   * Stores in the index of items the bounds of the given <code>item</code>
+   * enlarged to the texts it may display.
+   */
+  private void updateItemsIndex(Selectable item) {
+    Rectangle2D bounds = getPointsBounds(item.getPoints());
+    if (item instanceof Label) {
+      Label label = (Label)item;
+      addTextBounds(bounds, label, label.getText(), label.getStyle(),
+          label.getX(), label.getY(), label.getAngle());
+    } else if (item instanceof Polyline) {
+      Polyline polyline = (Polyline)item;
+      // Enlarge bounds to polyline stroke with its miter joins and to curve control points
+      float margin = 5 * polyline.getThickness();
+      if (polyline.getJoinStyle() == Polyline.JoinStyle.CURVED) {
+        margin += (float)Math.max(bounds.getWidth(), bounds.getHeight()) / 3.625f;
+      }
+      bounds.setRect(bounds.getX() - margin, bounds.getY() - margin,
+          bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+    } else if (item instanceof HomePieceOfFurniture) {
+      HomePieceOfFurniture piece = (HomePieceOfFurniture)item;
+      if (piece instanceof HomeFurnitureGroup) {
+        for (HomePieceOfFurniture childPiece : ((HomeFurnitureGroup)piece).getAllFurniture()) {
+          bounds.add(getPointsBounds(childPiece.getPoints()));
+        }
+      }
+      if (piece.getName() != null
+          && piece.isNameVisible()) {
+        addTextBounds(bounds, piece, piece.getName(), piece.getNameStyle(),
+            piece.getX() + piece.getNameXOffset(),
+            piece.getY() + piece.getNameYOffset(), piece.getNameAngle());
+      }
+    } else if (item instanceof Room) {
+      Room room = (Room)item;
+      if (room.getName() != null) {
+        addTextBounds(bounds, room, room.getName(), room.getNameStyle(),
+            room.getXCenter() + room.getNameXOffset(),
+            room.getYCenter() + room.getNameYOffset(), room.getNameAngle());
+      }
+      if (room.isAreaVisible()) {
+        String areaText = this.preferences.getLengthUnit().getAreaFormatWithUnit().format(room.getArea());
+        addTextBounds(bounds, room, areaText, room.getAreaStyle(),
+            room.getXCenter() + room.getAreaXOffset(),
+            room.getYCenter() + room.getAreaYOffset(), room.getAreaAngle());
+      }
+    }
+    this.itemsIndexCache.put(item, (float)bounds.getMinX(), (float)bounds.getMinY(),
+        (float)bounds.getMaxX(), (float)bounds.getMaxY());
+  }
+
+  /**
+   * Returns the rectangle bounding the given <code>points</code>.
+   */
+  private Rectangle2D getPointsBounds(float [][] points) {
+    Rectangle2D bounds = new Rectangle2D.Float(points [0][0], points [0][1], 0, 0);
+    for (int i = 1; i < points.length; i++) {
+      bounds.add(points [i][0], points [i][1]);
+    }
+    return bounds;
+  }
+
+  /**
+   * Adds to <code>bounds</code> the bounds of the <code>text</code> of an <code>item</code>
+   * displayed at the point (<code>xText</code>, <code>yText</code>).
+   */
+  private void addTextBounds(Rectangle2D bounds, Selectable item, String text, TextStyle textStyle,
+                             float xText, float yText, float textAngle) {
+    PlanView planView = getView();
+    if (planView != null
+        && text != null) {
+      if (textStyle == null) {
+        textStyle = this.preferences.getDefaultTextStyle(item.getClass());
+      }
+      bounds.add(getPointsBounds(planView.getTextBounds(text, textStyle, xText, yText, textAngle)));
+    }
   }
 
   /**
@@ -4415,7 +4652,9 @@ public class PlanController extends FurnitureController implements Controller {
 
     boolean basePlanLocked = this.home.isBasePlanLocked();
     Level selectedLevel = this.home.getSelectedLevel();
-    for (Label label : this.home.getLabels()) {
+    // Search only among the items which bounds contain the point
+    List<Selectable> indexedItems = getIndexedItemsIntersectingRectangle(x - margin, y - margin, x + margin, y + margin);
+    for (Label label : Home.getLabelsSubList(indexedItems)) {
       if ((!basePlanLocked
             || !isItemPartOfBasePlan(label))
           && isLevelNullOrViewable(label.getLevel())
@@ -4430,7 +4669,7 @@ public class PlanController extends FurnitureController implements Controller {
       }
     }
 
-    for (DimensionLine dimensionLine : this.home.getDimensionLines()) {
+    for (DimensionLine dimensionLine : Home.getDimensionLinesSubList(indexedItems)) {
       if ((!basePlanLocked
             || !isItemPartOfBasePlan(dimensionLine))
           && isLevelNullOrViewable(dimensionLine.getLevel())
@@ -4443,7 +4682,7 @@ public class PlanController extends FurnitureController implements Controller {
       }
     }
 
-    List<Polyline> polylines = this.home.getPolylines();
+    List<Polyline> polylines = Home.getPolylinesSubList(indexedItems);
     // Search in home polylines in reverse order to give priority to last drawn polyline
     for (int i = polylines.size() - 1; i >= 0; i--) {
       Polyline polyline = polylines.get(i);
@@ -4459,7 +4698,7 @@ public class PlanController extends FurnitureController implements Controller {
       }
     }
 
-    List<HomePieceOfFurniture> furniture = this.home.getFurniture();
+    List<HomePieceOfFurniture> furniture = Home.getFurnitureSubList(indexedItems);
     // Search in home furniture in reverse order to give priority to last drawn piece
     // at highest elevation in case it covers an other piece
     List<HomePieceOfFurniture> foundFurniture = new ArrayList<HomePieceOfFurniture>();
@@ -4561,7 +4800,7 @@ public class PlanController extends FurnitureController implements Controller {
           }
         });
       items.addAll(foundFurniture);
-      for (Wall wall : this.home.getWalls()) {
+      for (Wall wall : Home.getWallsSubList(indexedItems)) {
         if ((!basePlanLocked
               || !isItemPartOfBasePlan(wall))
             && isLevelNullOrViewable(wall.getLevel())
@@ -4574,7 +4813,7 @@ public class PlanController extends FurnitureController implements Controller {
         }
       }
 
-      List<Room> rooms = this.home.getRooms();
+      List<Room> rooms = Home.getRoomsSubList(indexedItems);
       // Search in home rooms in reverse order to give priority to last drawn room
       // at highest elevation in case it covers an other piece
       Room foundRoom = null;
@@ -4648,13 +4887,28 @@ public class PlanController extends FurnitureController implements Controller {
   protected List<Selectable> getSelectableItemsIntersectingRectangle(float x0, float y0, float x1, float y1) {
     List<Selectable> items = new ArrayList<Selectable>();
     boolean basePlanLocked = this.home.isBasePlanLocked();
-    for (Selectable item : getVisibleItemsAtSelectedLevel()) {
-      if ((!basePlanLocked
-            || !isItemPartOfBasePlan(item))
+    Level selectedLevel = this.home.getSelectedLevel();
+    // Search only among the items which bounds intersect the rectangle,
+    // filtered as in getVisibleItemsAtSelectedLevel
+    for (Selectable item : getIndexedItemsIntersectingRectangle(
+          Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1))) {
+      if ((item instanceof HomePieceOfFurniture
+            ? isPieceOfFurnitureVisibleAtSelectedLevel((HomePieceOfFurniture)item)
+            : isLevelNullOrViewable(((Elevatable)item).getLevel())
+                && ((Elevatable)item).isAtLevel(selectedLevel))
+          && (!basePlanLocked
+              || !isItemPartOfBasePlan(item))
           && item.intersectsRectangle(x0, y0, x1, y1)) {
         items.add(item);
       }
     }
+    Compass compass = this.home.getCompass();
+    if (compass.isVisible()
+        && (!basePlanLocked
+            || !isItemPartOfBasePlan(compass))
+        && compass.intersectsRectangle(x0, y0, x1, y1)) {
+      items.add(compass);
+    }
     ObserverCamera camera = this.home.getObserverCamera();
     if (camera != null && camera.intersectsRectangle(x0, y0, x1, y1)) {
       items.add(camera);
@@ -0,0 +1,155 @@
+/*
+ * PlanItemsIndex.java 18 oct 2026
+ *
+ * Sweet Home 3D, Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.viewcontroller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eteks.sweethome3d.model.Selectable;
+
+/**
+ * A uniform grid storing the bounding box of plan items, used to retrieve quickly
+ * the items which may be found in a given rectangle.
+ * Items covering too many cells are kept apart and returned by all the queries.
+ * @author Emmanuel Puybaret
+ */
+class PlanItemsIndex {
+  private static final int MAX_CELLS_PER_ITEM = 64;
+
+  private final float                        cellSize;
+  private final Map<Long, List<Selectable>>  cells;
+  private final Map<Selectable, int []>      itemCells;
+  private final Map<Selectable, Boolean>     largeItems;
+
+  /**
+   * Creates an index with cells of the given size in cm.
+   */
+  public PlanItemsIndex(float cellSize) {
+    this.cellSize = cellSize;
+    this.cells = new HashMap<Long, List<Selectable>>();
+    this.itemCells = new IdentityHashMap<Selectable, int []>();
+    this.largeItems = new IdentityHashMap<Selectable, Boolean>();
+  }
+
+  /**
+   * Returns <code>true</code> if the given <code>item</code> is stored in this index.
+   */
+  public boolean contains(Selectable item) {
+    return this.itemCells.containsKey(item);
+  }
+
+  /**
+   * Stores the given <code>item</code> in this index with the bounding box
+   * of (<code>xMin</code>, <code>yMin</code>), (<code>xMax</code>, <code>yMax</code>) opposite corners,
+   * replacing its previous bounds if it was already stored.
+   */
+  public void put(Selectable item, float xMin, float yMin, float xMax, float yMax) {
+    remove(item);
+    int [] cellBounds = {getCellIndex(xMin), getCellIndex(yMin), getCellIndex(xMax), getCellIndex(yMax)};
+    this.itemCells.put(item, cellBounds);
+    if ((long)(cellBounds [2] - cellBounds [0] + 1) * (cellBounds [3] - cellBounds [1] + 1) > MAX_CELLS_PER_ITEM) {
+      this.largeItems.put(item, Boolean.TRUE);
+    } else {
+      for (int i = cellBounds [0]; i <= cellBounds [2]; i++) {
+        for (int j = cellBounds [1]; j <= cellBounds [3]; j++) {
+          Long cellKey = getCellKey(i, j);
+          List<Selectable> cellItems = this.cells.get(cellKey);
+          if (cellItems == null) {
+            cellItems = new ArrayList<Selectable>(4);
+            this.cells.put(cellKey, cellItems);
+          }
+          cellItems.add(item);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes the given <code>item</code> from this index.
+   */
+  public void remove(Selectable item) {
+    int [] cellBounds = this.itemCells.remove(item);
+    if (cellBounds != null
+        && this.largeItems.remove(item) == null) {
+      for (int i = cellBounds [0]; i <= cellBounds [2]; i++) {
+        for (int j = cellBounds [1]; j <= cellBounds [3]; j++) {
+          Long cellKey = getCellKey(i, j);
+          List<Selectable> cellItems = this.cells.get(cellKey);
+          for (int k = cellItems.size() - 1; k >= 0; k--) {
+            if (cellItems.get(k) == item) {
+              cellItems.remove(k);
+              break;
+            }
+          }
+          if (cellItems.isEmpty()) {
+            this.cells.remove(cellKey);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the items which bounding box may intersect the rectangle
+   * of (<code>xMin</code>, <code>yMin</code>), (<code>xMax</code>, <code>yMax</code>) opposite corners.
+   * The returned map is an identity map and its keys are the found items.
+   */
+  public Map<Selectable, Boolean> getItemsIntersectingRectangle(float xMin, float yMin, float xMax, float yMax) {
+    Map<Selectable, Boolean> items = new IdentityHashMap<Selectable, Boolean>();
+    int xMinCell = getCellIndex(xMin);
+    int yMinCell = getCellIndex(yMin);
+    int xMaxCell = getCellIndex(xMax);
+    int yMaxCell = getCellIndex(yMax);
+    if ((long)(xMaxCell - xMinCell + 1) * (yMaxCell - yMinCell + 1) > this.itemCells.size()) {
+      // Compare directly item bounds when there are more cells to read than items
+      for (Map.Entry<Selectable, int []> entry : this.itemCells.entrySet()) {
+        int [] cellBounds = entry.getValue();
+        if (cellBounds [0] <= xMaxCell && cellBounds [2] >= xMinCell
+            && cellBounds [1] <= yMaxCell && cellBounds [3] >= yMinCell) {
+          items.put(entry.getKey(), Boolean.TRUE);
+        }
+      }
+    } else {
+      items.putAll(this.largeItems);
+      for (int i = xMinCell; i <= xMaxCell; i++) {
+        for (int j = yMinCell; j <= yMaxCell; j++) {
+          List<Selectable> cellItems = this.cells.get(getCellKey(i, j));
+          if (cellItems != null) {
+            for (Selectable item : cellItems) {
+              items.put(item, Boolean.TRUE);
+            }
+          }
+        }
+      }
+    }
+    return items;
+  }
+
+  private int getCellIndex(float coordinate) {
+    return (int)Math.floor(Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, coordinate / this.cellSize)));
+  }
+
+  private Long getCellKey(int i, int j) {
+    return ((long)i << 32) | (j & 0xFFFFFFFFL);
+  }
+}
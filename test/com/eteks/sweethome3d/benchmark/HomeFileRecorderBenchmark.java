@@ -0,0 +1,241 @@
+/*
+ * HomeFileRecorderBenchmark.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.eteks.sweethome3d.io.ContentRecording;
+import com.eteks.sweethome3d.io.DefaultFurnitureCatalog;
+import com.eteks.sweethome3d.io.DefaultHomeInputStream;
+import com.eteks.sweethome3d.io.DefaultHomeOutputStream;
+import com.eteks.sweethome3d.io.HomeContentStatistics;
+import com.eteks.sweethome3d.io.HomeFileRecorder;
+import com.eteks.sweethome3d.io.HomeXMLExporter;
+import com.eteks.sweethome3d.io.HomeXMLHandler;
+import com.eteks.sweethome3d.io.XMLWriter;
+import com.eteks.sweethome3d.junit.HomeFileRecorderTest;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.FurnitureCategory;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.HomeRecorder;
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * Prints the time spent by {@link HomeFileRecorder} to write and read homes
+ * with its different options. This class isn't run with JUnit tests,
+ * the assertions about the same options are checked in {@link HomeFileRecorderTest}.
+ * @author Emmanuel Puybaret
+ */
+public class HomeFileRecorderBenchmark {
+  public static void main(String [] args) throws Exception {
+    HomeFileRecorderBenchmark benchmark = new HomeFileRecorderBenchmark();
+    benchmark.measureParallelCompression();
+    benchmark.measureReusedCompressedContent();
+    benchmark.measureCopiedContentBetweenHomes();
+    benchmark.measureLazyContent();
+    benchmark.measureXMLWriter();
+    benchmark.measureBinaryEntry();
+  }
+
+  /**
+   * Prints the time spent to save a home with sequential and parallel compression
+   * at each compression level.
+   */
+  private void measureParallelCompression() throws Exception {
+    Home home = createCatalogHome();
+    File sequentialFile = File.createTempFile("sequential", ".sh3d");
+    File parallelFile = File.createTempFile("parallel", ".sh3d");
+    for (int compressionLevel = 0; compressionLevel <= 9; compressionLevel++) {
+      HomeRecorder sequentialRecorder = new HomeFileRecorder(compressionLevel, false, null, false, true);
+      HomeFileRecorder parallelRecorder = new HomeFileRecorder(compressionLevel, false, null, false, true);
+      parallelRecorder.setParallelCompression(true);
+      long start = System.currentTimeMillis();
+      sequentialRecorder.writeHome(home, sequentialFile.getAbsolutePath());
+      long sequentialTime = System.currentTimeMillis() - start;
+      start = System.currentTimeMillis();
+      parallelRecorder.writeHome(home, parallelFile.getAbsolutePath());
+      long parallelTime = System.currentTimeMillis() - start;
+      System.out.println("Compression level " + compressionLevel
+          + ": sequential " + sequentialTime + " ms / " + sequentialFile.length() + " bytes"
+          + ", parallel " + parallelTime + " ms / " + parallelFile.length() + " bytes");
+    }
+    sequentialFile.delete();
+    parallelFile.delete();
+  }
+
+  /**
+   * Prints the time spent to save again a read home which content is copied from its file.
+   */
+  private void measureReusedCompressedContent() throws Exception {
+    Home home = createCatalogHome();
+    home.addWall(new Wall(0, 0, 100, 0, 10, 250));
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(9).writeHome(home, savedFile.getAbsolutePath());
+
+    File resavedFile = File.createTempFile("resaved", ".sh3d");
+    HomeRecorder recorder = new HomeFileRecorder(9);
+    Home readHome = recorder.readHome(savedFile.getAbsolutePath());
+    readHome.getWalls().iterator().next().setXEnd(200);
+    long start = System.currentTimeMillis();
+    recorder.writeHome(readHome, resavedFile.getAbsolutePath());
+    System.out.println("Home saved with reused content in " + (System.currentTimeMillis() - start) + " ms");
+    savedFile.delete();
+    resavedFile.delete();
+  }
+
+  /**
+   * Prints the time spent to save a home which content is copied from the file of an other home.
+   */
+  private void measureCopiedContentBetweenHomes() throws Exception {
+    Home home = createCatalogHome();
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(1).writeHome(home, savedFile.getAbsolutePath());
+
+    HomeRecorder recorder = new HomeFileRecorder(9);
+    Home readHome = recorder.readHome(savedFile.getAbsolutePath());
+    Home otherHome = new Home();
+    for (HomePieceOfFurniture piece : readHome.getFurniture()) {
+      otherHome.addPieceOfFurniture(piece.clone());
+    }
+    File otherFile = File.createTempFile("other", ".sh3d");
+    long start = System.currentTimeMillis();
+    recorder.writeHome(otherHome, otherFile.getAbsolutePath());
+    System.out.println("Home saved with copied content in " + (System.currentTimeMillis() - start) + " ms");
+    savedFile.delete();
+    otherFile.delete();
+  }
+
+  /**
+   * Prints the time spent to read homes with lazy content and the statistics of a read home.
+   */
+  private void measureLazyContent() throws Exception {
+    Home home = new Home();
+    FurnitureCategory category = new DefaultFurnitureCatalog().getCategories().get(0);
+    for (CatalogPieceOfFurniture piece : category.getFurniture()) {
+      home.addPieceOfFurniture(new HomePieceOfFurniture(piece));
+    }
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(0).writeHome(home, savedFile.getAbsolutePath());
+
+    HomeFileRecorder recorder = new HomeFileRecorder(0);
+    recorder.setLazyContent(true);
+    int homeCount = 200;
+    Home [] readHomes = new Home [homeCount];
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < homeCount; i++) {
+      readHomes [i] = recorder.readHome(savedFile.getAbsolutePath());
+    }
+    System.out.println(homeCount + " homes read with lazy content in " + (System.currentTimeMillis() - start) + " ms");
+
+    InputStream in = readHomes [0].getFurniture().get(0).getModel().openStream();
+    in.close();
+    HomeContentStatistics statistics = recorder.getContentStatistics(readHomes [0]);
+    System.out.println("Home read in " + statistics.getOpenDuration() + " ms with "
+        + statistics.getOpenedContentCount() + "/" + statistics.getContentCount() + " opened content and "
+        + statistics.getResidentBytes() + " resident bytes");
+    savedFile.delete();
+  }
+
+  /**
+   * Prints the time spent by <code>HomeXMLExporter</code> to write generated homes.
+   */
+  private void measureXMLWriter() throws IOException {
+    for (int itemCount = 1000; itemCount <= 100000; itemCount *= 10) {
+      Home home = HomeFileRecorderTest.createHome(itemCount);
+      getHomeXml(home);
+      long start = System.nanoTime();
+      byte [] homeXml = getHomeXml(home);
+      System.out.println(itemCount + " items (" + homeXml.length + " bytes): written in "
+          + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+  }
+
+  /**
+   * Prints the size and the read time of <code>Home.xml</code> and <code>Home.bin</code> entries
+   * of generated homes.
+   */
+  private void measureBinaryEntry() throws Exception {
+    for (int itemCount : new int [] {1000, 10000, 100000}) {
+      Home home = HomeFileRecorderTest.createHome(itemCount);
+      byte [] xmlFile = getHomeFile(home, false);
+      byte [] binaryFile = getHomeFile(home, true);
+      // Read home twice with each entry to measure time once classes are loaded and compiled
+      long xmlTime = 0;
+      long binaryTime = 0;
+      for (int i = 0; i < 2; i++) {
+        long start = System.currentTimeMillis();
+        readHomeFile(xmlFile);
+        xmlTime = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        readHomeFile(binaryFile);
+        binaryTime = System.currentTimeMillis() - start;
+      }
+      System.out.println(itemCount + " items: Home.xml " + xmlFile.length + " bytes read in " + xmlTime
+          + " ms, Home.bin " + binaryFile.length + " bytes read in " + binaryTime + " ms");
+    }
+  }
+
+  /**
+   * Returns a home containing all the furniture of the default catalog.
+   */
+  private Home createCatalogHome() {
+    Home home = new Home();
+    for (FurnitureCategory category : new DefaultFurnitureCatalog().getCategories()) {
+      for (CatalogPieceOfFurniture piece : category.getFurniture()) {
+        home.addPieceOfFurniture(new HomePieceOfFurniture(piece));
+      }
+    }
+    return home;
+  }
+
+  private byte [] getHomeXml(Home home) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XMLWriter writer = new XMLWriter(out);
+    new HomeXMLExporter().writeElement(writer, home);
+    writer.flush();
+    return out.toByteArray();
+  }
+
+  private byte [] getHomeFile(Home home, boolean binaryEntry) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DefaultHomeOutputStream homeOut = new DefaultHomeOutputStream(out, 0, ContentRecording.INCLUDE_ALL_CONTENT,
+        false, binaryEntry ? null : new HomeXMLExporter());
+    homeOut.setReuseCompressedContent(false);
+    homeOut.setBinaryHome(binaryEntry);
+    homeOut.writeHome(home);
+    homeOut.close();
+    return out.toByteArray();
+  }
+
+  private Home readHomeFile(byte [] homeFile) throws IOException, ClassNotFoundException {
+    DefaultHomeInputStream in = new DefaultHomeInputStream(new ByteArrayInputStream(homeFile),
+        ContentRecording.INCLUDE_NO_CONTENT, new HomeXMLHandler(), null, false);
+    try {
+      return in.readHome();
+    } finally {
+      in.close();
+    }
+  }
+}
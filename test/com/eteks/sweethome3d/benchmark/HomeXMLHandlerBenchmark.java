@@ -0,0 +1,103 @@
+/*
+ * HomeXMLHandlerBenchmark.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.eteks.sweethome3d.io.HomeXMLExporter;
+import com.eteks.sweethome3d.io.HomeXMLHandler;
+import com.eteks.sweethome3d.io.XMLWriter;
+import com.eteks.sweethome3d.junit.HomeFileRecorderTest;
+import com.eteks.sweethome3d.model.Home;
+
+/**
+ * Prints the time spent by {@link HomeXMLHandler} to parse the <code>Home.xml</code> entry
+ * of generated homes, compared to the time spent by the SAX parser alone and with the copy
+ * of the attributes of each element in the hash map the handler builds.
+ * This class isn't run with JUnit tests, the assertions about the read homes
+ * are checked in {@link HomeFileRecorderTest}.
+ * @author Emmanuel Puybaret
+ */
+public class HomeXMLHandlerBenchmark {
+  public static void main(String [] args) throws Exception {
+    SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+    for (int itemCount : new int [] {1000, 10000, 100000}) {
+      byte [] homeXml = getHomeXml(HomeFileRecorderTest.createHome(itemCount));
+      long parserTime = 0;
+      long hashMapTime = 0;
+      long handlerTime = 0;
+      // Keep the best time of a few runs once classes are loaded and compiled
+      for (int i = 0; i < 5; i++) {
+        long start = System.nanoTime();
+        saxParser.parse(new ByteArrayInputStream(homeXml), new DefaultHandler());
+        parserTime = minimumTime(parserTime, System.nanoTime() - start);
+        start = System.nanoTime();
+        saxParser.parse(new ByteArrayInputStream(homeXml), new HashMapHandler());
+        hashMapTime = minimumTime(hashMapTime, System.nanoTime() - start);
+        start = System.nanoTime();
+        HomeXMLHandler handler = new HomeXMLHandler();
+        saxParser.parse(new ByteArrayInputStream(homeXml), handler);
+        handler.getHome();
+        handlerTime = minimumTime(handlerTime, System.nanoTime() - start);
+      }
+      System.out.println(itemCount + " items (" + homeXml.length + " bytes): SAX parser "
+          + parserTime / 1000000 + " ms, attributes copied in hash maps " + hashMapTime / 1000000
+          + " ms, home read by handler " + handlerTime / 1000000 + " ms");
+    }
+  }
+
+  private static long minimumTime(long time, long newTime) {
+    return time == 0 ? newTime : Math.min(time, newTime);
+  }
+
+  private static byte [] getHomeXml(Home home) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XMLWriter writer = new XMLWriter(out);
+    new HomeXMLExporter().writeElement(writer, home);
+    writer.flush();
+    return out.toByteArray();
+  }
+
+  /**
+   * A SAX handler copying the attributes of each element in a hash map.
+   */
+  private static class HashMapHandler extends DefaultHandler {
+    private Map<String, String> attributesMap;
+
+    @Override
+    public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
+      this.attributesMap = new HashMap<String, String>();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        this.attributesMap.put(attributes.getQName(i), attributes.getValue(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * PlanComponentBenchmark.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.eteks.sweethome3d.io.DefaultUserPreferences;
+import com.eteks.sweethome3d.junit.PlanComponentTest;
+import com.eteks.sweethome3d.model.CatalogDoorOrWindow;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.FurnitureCategory;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeDoorOrWindow;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.LengthUnit;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.UserPreferences;
+import com.eteks.sweethome3d.model.Wall;
+import com.eteks.sweethome3d.swing.PlanComponent;
+
+/**
+ * Prints the time spent by {@link PlanComponent} to paint big plans.
+ * This class isn't run with JUnit tests, the assertions about the same plans
+ * are checked in {@link PlanComponentTest}.
+ * @author Emmanuel Puybaret
+ */
+public class PlanComponentBenchmark {
+  public static void main(String [] args) throws Exception {
+    PlanComponentBenchmark benchmark = new PlanComponentBenchmark();
+    benchmark.measureIncrementalWallAreas();
+    benchmark.measureContentCachedInTiles();
+    benchmark.measureFurnitureCullingAndDetails();
+  }
+
+  /**
+   * Prints the time spent to paint walls once and after a wall is moved.
+   */
+  private void measureIncrementalWallAreas() {
+    UserPreferences preferences = createPreferences();
+    for (int wallCount : new int [] {100, 1000, 10000}) {
+      // Create a grid of square rooms made of 4 joined walls
+      Home home = new Home();
+      int roomsPerRow = (int)Math.ceil(Math.sqrt(wallCount / 4));
+      for (int i = 0; i < wallCount / 4; i++) {
+        float x = (i % roomsPerRow) * 400;
+        float y = (i / roomsPerRow) * 400;
+        Wall [] roomWalls = {new Wall(x, y, x + 300, y, 10, 250),
+                             new Wall(x + 300, y, x + 300, y + 300, 10, 250),
+                             new Wall(x + 300, y + 300, x, y + 300, 10, 250),
+                             new Wall(x, y + 300, x, y, 10, 250)};
+        for (int j = 0; j < roomWalls.length; j++) {
+          roomWalls [j].setWallAtEnd(roomWalls [(j + 1) % roomWalls.length]);
+          roomWalls [(j + 1) % roomWalls.length].setWallAtStart(roomWalls [j]);
+          home.addWall(roomWalls [j]);
+        }
+      }
+      PlanComponent planComponent = new PlanComponent(home, preferences, null);
+      planComponent.setScale(0.01f);
+      planComponent.setSize(planComponent.getPreferredSize());
+      long start = System.nanoTime();
+      paintPlan(planComponent);
+      long fullUnionTime = System.nanoTime() - start;
+
+      // Move a wall and its joined walls like a wall drag in plan
+      Wall movedWall = home.getWalls().iterator().next();
+      long incrementalUnionTime = 0;
+      for (int i = 0; i < 10; i++) {
+        movedWall.setYStart(movedWall.getYStart() + 5);
+        movedWall.setYEnd(movedWall.getYEnd() + 5);
+        movedWall.getWallAtStart().setYEnd(movedWall.getYStart());
+        movedWall.getWallAtEnd().setYStart(movedWall.getYEnd());
+        start = System.nanoTime();
+        paintPlan(planComponent);
+        incrementalUnionTime += System.nanoTime() - start;
+      }
+      System.out.println(wallCount + " walls: first paint " + fullUnionTime / 1000000
+          + " ms, paint after wall move " + incrementalUnionTime / 10 / 1000000 + " ms");
+    }
+  }
+
+  /**
+   * Prints the time spent to paint a plan cached in tiles, then to paint it again
+   * without and with modified items.
+   */
+  private void measureContentCachedInTiles() {
+    UserPreferences preferences = createPreferences();
+    Home home = new Home();
+    for (int i = 0; i < 400; i++) {
+      float x = (i % 20) * 150;
+      float y = (i / 20) * 150;
+      home.addWall(new Wall(x, y, x + 120, y + 30, 10, 250));
+    }
+    Room room = new Room(new float [][] {{0, 0}, {500, 0}, {500, 500}, {0, 500}});
+    room.setName("Living");
+    home.addRoom(room);
+    Label label = new Label("Label", 200, 200);
+    home.addLabel(label);
+    PlanComponent planComponent = new PlanComponent(home, preferences, null);
+    planComponent.setContentCachedInTiles(true);
+    planComponent.setScale(0.3f);
+    planComponent.setSize(planComponent.getPreferredSize());
+    long start = System.nanoTime();
+    paintPlan(planComponent);
+    long tilesPaintTime = System.nanoTime() - start;
+    start = System.nanoTime();
+    paintPlan(planComponent);
+    long cachedTilesPaintTime = System.nanoTime() - start;
+
+    List<Wall> walls = new ArrayList<Wall>(home.getWalls());
+    Wall movedWall = walls.get(45);
+    movedWall.setXStart(movedWall.getXStart() + 60);
+    movedWall.setYEnd(movedWall.getYEnd() + 40);
+    home.setSelectedItems(Arrays.asList(new Selectable [] {movedWall}));
+    room.setName("Kitchen");
+    label.setX(900);
+    home.deleteWall(walls.get(3));
+    start = System.nanoTime();
+    paintPlan(planComponent);
+    long updatedTilesPaintTime = System.nanoTime() - start;
+    System.out.println("Tiles paint " + tilesPaintTime / 1000000
+        + " ms, cached tiles paint " + cachedTilesPaintTime / 1000000
+        + " ms, paint after changes " + updatedTilesPaintTime / 1000000 + " ms");
+  }
+
+  /**
+   * Prints the time spent to paint a zoomed out plan with and without furniture details,
+   * and to paint a clipped area of the plan.
+   */
+  private void measureFurnitureCullingAndDetails() throws InterruptedException {
+    UserPreferences preferences = createPreferences();
+    preferences.setFurnitureViewedFromTop(false);
+    CatalogPieceOfFurniture catalogPiece = null;
+    CatalogPieceOfFurniture catalogDoor = null;
+    for (FurnitureCategory category : preferences.getFurnitureCatalog().getCategories()) {
+      for (CatalogPieceOfFurniture piece : category.getFurniture()) {
+        if (piece.isDoorOrWindow()) {
+          if (catalogDoor == null) {
+            catalogDoor = piece;
+          }
+        } else if (catalogPiece == null) {
+          catalogPiece = piece;
+        }
+      }
+    }
+    Home home = new Home();
+    for (int i = 0; i < 2500; i++) {
+      HomePieceOfFurniture piece = i % 5 == 0
+          ? new HomeDoorOrWindow((CatalogDoorOrWindow)catalogDoor)
+          : new HomePieceOfFurniture(catalogPiece);
+      piece.setX((i % 50) * 150);
+      piece.setY((i / 50) * 150);
+      piece.setAngle(i);
+      piece.setNameVisible(i % 7 == 0);
+      home.addPieceOfFurniture(piece);
+    }
+
+    PlanComponent planComponent = new PlanComponent(home, preferences, null);
+    planComponent.setScale(0.02f);
+    planComponent.setSize(planComponent.getPreferredSize());
+    planComponent.setFurnitureDetailsMinimumSize(0);
+    paintPlan(planComponent);
+    long start = System.nanoTime();
+    paintPlan(planComponent);
+    long detailedPaintTime = System.nanoTime() - start;
+    planComponent.setFurnitureDetailsMinimumSize(4);
+    paintPlan(planComponent);
+    start = System.nanoTime();
+    paintPlan(planComponent);
+    long simplifiedPaintTime = System.nanoTime() - start;
+
+    planComponent.setScale(0.3f);
+    planComponent.setSize(planComponent.getPreferredSize());
+    paintPlan(planComponent);
+    // Wait icons are loaded
+    Thread.sleep(1000);
+    paintPlan(planComponent);
+    BufferedImage image = new BufferedImage(planComponent.getWidth(), planComponent.getHeight(),
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2D = (Graphics2D)image.getGraphics();
+    g2D.setClip(planComponent.getWidth() / 3, planComponent.getHeight() / 3, 200, 150);
+    start = System.nanoTime();
+    planComponent.paint(g2D);
+    long clippedPaintTime = System.nanoTime() - start;
+    g2D.dispose();
+    System.out.println("Zoomed out paint " + detailedPaintTime / 1000000
+        + " ms, without small furniture details " + simplifiedPaintTime / 1000000
+        + " ms, clipped paint " + clippedPaintTime / 1000000 + " ms");
+  }
+
+  private UserPreferences createPreferences() {
+    UserPreferences preferences = new DefaultUserPreferences();
+    preferences.setUnit(LengthUnit.CENTIMETER);
+    return preferences;
+  }
+
+  private BufferedImage paintPlan(PlanComponent planComponent) {
+    BufferedImage image = new BufferedImage(planComponent.getWidth(), planComponent.getHeight(),
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2D = (Graphics2D)image.getGraphics();
+    planComponent.paint(g2D);
+    g2D.dispose();
+    return image;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * PlanControllerBenchmark.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.benchmark;
+
+import java.util.Random;
+
+import javax.swing.undo.UndoableEditSupport;
+
+import com.eteks.sweethome3d.io.DefaultUserPreferences;
+import com.eteks.sweethome3d.junit.PlanControllerTest;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.UserPreferences;
+import com.eteks.sweethome3d.model.Wall;
+import com.eteks.sweethome3d.swing.SwingViewFactory;
+import com.eteks.sweethome3d.viewcontroller.PlanController;
+
+/**
+ * Prints the time spent by {@link PlanController} to search items under mouse
+ * compared to a linear search, for an increasing count of items.
+ * This class isn't run with JUnit tests, the assertions about found items
+ * are checked in {@link PlanControllerTest}.
+ * @author Emmanuel Puybaret
+ */
+public class PlanControllerBenchmark {
+  public static void main(String [] args) {
+    Home home = new Home();
+    UserPreferences preferences = new DefaultUserPreferences();
+    PlanController planController =
+        new PlanController(home, preferences, new SwingViewFactory(), null, new UndoableEditSupport());
+    CatalogPieceOfFurniture catalogPiece = preferences.getFurnitureCatalog().getCategories().get(0).getPieceOfFurniture(0);
+    Random random = new Random(0);
+    int itemCount = 0;
+    for (int count : new int [] {100, 1000, 10000, 100000}) {
+      // Add walls, furniture and rooms in an area which size grows with item count
+      float size = (float)Math.sqrt(count) * 150;
+      for ( ; itemCount < count; itemCount += 3) {
+        float x = random.nextFloat() * size;
+        float y = random.nextFloat() * size;
+        home.addWall(new Wall(x, y, x + random.nextFloat() * 300, y + random.nextFloat() * 300, 10, 250));
+        HomePieceOfFurniture piece = new HomePieceOfFurniture(catalogPiece);
+        piece.setX(random.nextFloat() * size);
+        piece.setY(random.nextFloat() * size);
+        piece.setAngle(random.nextFloat() * 6);
+        home.addPieceOfFurniture(piece);
+        x = random.nextFloat() * size;
+        y = random.nextFloat() * size;
+        Room room = new Room(new float [][] {{x, y}, {x + 150, y}, {x + 150, y + 150}, {x, y + 150}});
+        room.setAreaVisible(false);
+        home.addRoom(room);
+      }
+
+      float margin = 4 / planController.getScale();
+      float [][] points = new float [1000][];
+      for (int i = 0; i < points.length; i++) {
+        points [i] = new float [] {random.nextFloat() * size, random.nextFloat() * size};
+      }
+      // Search once to build index
+      planController.getSelectableItemsAt(0, 0);
+      long start = System.nanoTime();
+      for (float [] point : points) {
+        planController.getSelectableItemsAt(point [0], point [1]);
+      }
+      long indexedSearchTime = (System.nanoTime() - start) / points.length;
+      start = System.nanoTime();
+      for (float [] point : points) {
+        for (Selectable item : home.getSelectableViewableItems()) {
+          item.containsPoint(point [0], point [1], margin);
+        }
+      }
+      long linearSearchTime = (System.nanoTime() - start) / points.length;
+      System.out.println(home.getSelectableViewableItems().size() + " items: search at mouse location "
+          + indexedSearchTime / 1000 + " us, linear search " + linearSearchTime / 1000 + " us");
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * DistributedPhotoRendererTest.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.junit;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.eteks.sweethome3d.j3d.DistributedPhotoRenderer;
+import com.eteks.sweethome3d.j3d.PhotoRenderer;
+import com.eteks.sweethome3d.model.Camera;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * Tests the dispatching of buckets among the workers of a {@link DistributedPhotoRenderer}.
+ * @author Emmanuel Puybaret
+ */
+public class DistributedPhotoRendererTest extends TestCase {
+  private static final int BUCKET_SIZE = 64;
+
+  /**
+   * Tests that all the buckets of an image are rendered by workers and copied at the right place.
+   */
+  public void testDistributedRendering() throws IOException {
+    Home home = new Home();
+    home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+    TestWorkerFactory workerFactory = new TestWorkerFactory(-1);
+    DistributedPhotoRenderer renderer = new DistributedPhotoRenderer(home,
+        PhotoRenderer.Quality.LOW, workerFactory, 3);
+    BufferedImage image = new BufferedImage(500, 300, BufferedImage.TYPE_INT_RGB);
+    renderer.render(image, home.getCamera(), null);
+    assertImageRendered(image);
+    assertEquals("Incorrect workers count", 3, workerFactory.createdWorkersCount.get());
+    assertEquals("Incorrect rendered buckets count", 8 * 5, workerFactory.renderedTilesCount.get());
+
+    // Check workers are reused for a second image
+    image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+    renderer.render(image, home.getCamera(), null);
+    assertImageRendered(image);
+    assertEquals("Workers not reused", 3, workerFactory.createdWorkersCount.get());
+    renderer.dispose();
+  }
+
+  /**
+   * Tests that the buckets of a failing worker are rendered by other workers.
+   */
+  public void testFailingWorker() throws IOException {
+    Home home = new Home();
+    // The first created worker will fail after rendering one bucket
+    TestWorkerFactory workerFactory = new TestWorkerFactory(1);
+    DistributedPhotoRenderer renderer = new DistributedPhotoRenderer(home,
+        PhotoRenderer.Quality.LOW, workerFactory, 2);
+    BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    renderer.render(image, home.getCamera(), null);
+    assertImageRendered(image);
+    // Failing worker is replaced at next rendering
+    renderer.render(image, home.getCamera(), null);
+    assertEquals("Failing worker not replaced", 3, workerFactory.createdWorkersCount.get());
+    renderer.dispose();
+
+    // Check an exception is thrown if all workers fail
+    workerFactory = new TestWorkerFactory(0);
+    renderer = new DistributedPhotoRenderer(home, PhotoRenderer.Quality.LOW, workerFactory, 1);
+    try {
+      renderer.render(image, home.getCamera(), null);
+      fail("No exception thrown when all workers fail");
+    } catch (IOException ex) {
+      // Expected exception
+    }
+  }
+
+  /**
+   * Asserts each pixel of the image contains the coordinates of its bucket set by test workers.
+   */
+  private void assertImageRendered(BufferedImage image) {
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        assertEquals("Incorrect pixel at " + x + ", " + y,
+            getBucketColor(x / BUCKET_SIZE, y / BUCKET_SIZE), image.getRGB(x, y));
+      }
+    }
+  }
+
+  private static int getBucketColor(int bucketX, int bucketY) {
+    return 0xFF000000 | (bucketX << 16) | (bucketY << 8) | 0x80;
+  }
+
+  /**
+   * A factory of workers filling each bucket with a color computed from its coordinates.
+   */
+  private static class TestWorkerFactory implements DistributedPhotoRenderer.WorkerFactory {
+    private final int           failingWorkerTilesCount;
+    private final AtomicInteger createdWorkersCount = new AtomicInteger();
+    private final AtomicInteger renderedTilesCount  = new AtomicInteger();
+
+    /**
+     * Creates a factory which first worker will fail after <code>failingWorkerTilesCount</code>
+     * rendered tiles, or never fail if it's negative.
+     */
+    public TestWorkerFactory(int failingWorkerTilesCount) {
+      this.failingWorkerTilesCount = failingWorkerTilesCount;
+    }
+
+    public DistributedPhotoRenderer.Worker createWorker() throws IOException {
+      final int maxTilesCount = this.createdWorkersCount.getAndIncrement() == 0
+          ? this.failingWorkerTilesCount
+          : -1;
+      return new DistributedPhotoRenderer.Worker() {
+          private int tilesCount;
+
+          public void setScene(byte [] serializedHome, PhotoRenderer.Quality quality) throws IOException {
+            try {
+              assertTrue("Incorrect scene", new ObjectInputStream(
+                  new ByteArrayInputStream(serializedHome)).readObject() instanceof Home);
+            } catch (ClassNotFoundException ex) {
+              fail(ex.toString());
+            }
+          }
+
+          public void render(int width, int height, Camera camera, int [] bucketsCoordinates,
+                             DistributedPhotoRenderer.TilesObserver tilesObserver) throws IOException {
+            for (int i = 0; i < bucketsCoordinates.length; i += 2) {
+              if (this.tilesCount++ == maxTilesCount) {
+                throw new IOException("Worker failure");
+              }
+              int x = bucketsCoordinates [i] * BUCKET_SIZE;
+              int y = bucketsCoordinates [i + 1] * BUCKET_SIZE;
+              int tileWidth = Math.min(BUCKET_SIZE, width - x);
+              int tileHeight = Math.min(BUCKET_SIZE, height - y);
+              int [] pixels = new int [tileWidth * tileHeight];
+              Arrays.fill(pixels, getBucketColor(bucketsCoordinates [i], bucketsCoordinates [i + 1]));
+              tilesObserver.tileRendered(x, y, tileWidth, tileHeight, pixels);
+              renderedTilesCount.incrementAndGet();
+            }
+          }
+
+          public void close() {
+          }
+        };
+    }
+  }
+}
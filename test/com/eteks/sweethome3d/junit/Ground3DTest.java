@@ -0,0 +1,291 @@
+/*
+ * Ground3DTest.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.junit;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.media.j3d.Geometry;
+import javax.media.j3d.IndexedGeometryArray;
+import javax.media.j3d.IndexedQuadArray;
+import javax.media.j3d.Shape3D;
+import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
+
+import junit.framework.TestCase;
+
+import com.eteks.sweethome3d.j3d.Ground3D;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * Tests the geometry of {@link Ground3D} updated incrementally.
+ * @author Emmanuel Puybaret
+ */
+public class Ground3DTest extends TestCase {
+  private static final float GROUND_ORIGIN = -2E4f;
+  private static final float GROUND_SIZE   = 5E4f;
+
+  /**
+   * Tests the ground updated after each change of rooms, walls, furniture and levels
+   * covers the same area as a ground built from scratch.
+   */
+  public void testIncrementalUpdate() {
+    Home home = new Home();
+    Level level0 = new Level("0", 0, 12, 250);
+    home.addLevel(level0);
+    Level level1 = new Level("-1", -250, 12, 250);
+    home.addLevel(level1);
+    Level level2 = new Level("-2", -500, 12, 250);
+    home.addLevel(level2);
+    for (int i = 0; i < 6; i++) {
+      addRoom(home, level0, new float [][] {{i * 700, 0}, {i * 700 + 500, 0}, {i * 700 + 500, 400}, {i * 700, 400}});
+    }
+    addRoom(home, level1, new float [][] {{0, 0}, {900, 0}, {900, 600}, {0, 600}});
+    addRoom(home, level2, new float [][] {{100, 100}, {500, 100}, {500, 400}, {100, 400}});
+    Wall [] walls = {new Wall(2000, 2000, 2600, 2000, 10, 250),
+                     new Wall(2600, 2000, 2600, 2600, 10, 250),
+                     new Wall(2600, 2600, 2000, 2600, 10, 250),
+                     new Wall(2000, 2600, 2000, 2000, 10, 250)};
+    for (int i = 0; i < walls.length; i++) {
+      home.addWall(walls [i]);
+      walls [i].setLevel(level1);
+    }
+    for (int i = 0; i < walls.length; i++) {
+      walls [i].setWallAtEnd(walls [(i + 1) % walls.length]);
+      walls [(i + 1) % walls.length].setWallAtStart(walls [i]);
+    }
+    // Add a piece at a negative elevation that digs the ground
+    HomePieceOfFurniture piece = new HomePieceOfFurniture(
+        new CatalogPieceOfFurniture("piece", null, null, 100, 100, 100, true, false));
+    home.addPieceOfFurniture(piece);
+    piece.setLevel(level1);
+    piece.setElevation(-300);
+    piece.setX(5000);
+    piece.setY(5000);
+
+    Ground3D ground = createGround(home);
+    assertSameGroundAreas("Initial ground", home, ground);
+
+    home.getRooms().get(2).setPoints(new float [][] {{1400, 100}, {1900, 100}, {1900, 500}, {1400, 500}});
+    ground.update();
+    assertSameGroundAreas("Moved room", home, ground);
+
+    List<Geometry> geometries = getGeometries(ground);
+    ground.update();
+    assertEquals("Geometries computed again without change", geometries, getGeometries(ground));
+
+    piece.setX(5200);
+    ground.update();
+    assertSameGroundAreas("Moved piece", home, ground);
+
+    home.deleteWall(walls [0]);
+    ground.update();
+    assertSameGroundAreas("Deleted wall", home, ground);
+
+    level1.setElevation(-300);
+    ground.update();
+    assertSameGroundAreas("Changed level elevation", home, ground);
+
+    level2.setVisible(false);
+    ground.update();
+    assertSameGroundAreas("Hidden level", home, ground);
+
+    // Add then remove a room out of the cells computed at first update
+    Room farRoom = addRoom(home, level0, new float [][] {{25000, 25000}, {25500, 25000}, {25500, 25400}, {25000, 25400}});
+    ground.update();
+    assertSameGroundAreas("Added far room", home, ground);
+    home.deleteRoom(farRoom);
+    ground.update();
+    assertSameGroundAreas("Deleted far room", home, ground);
+  }
+
+  /**
+   * Tests the ground triangulated in separate cells has no hole
+   * and no edge at cell borders which isn't shared by the triangles of neighbor cells.
+   */
+  public void testNoCrackBetweenCells() {
+    Home home = new Home();
+    Level level0 = new Level("0", 0, 12, 250);
+    home.addLevel(level0);
+    // Rooms overlapping the borders of cells aligned on multiples of 5000 cm
+    addRoom(home, level0, new float [][] {{4000, 4000}, {6000, 4000}, {6000, 6000}, {4000, 6000}});
+    addRoom(home, level0, new float [][] {{-6000, 200}, {-3000, 1000}, {-4500, 8000}});
+    Ground3D ground = createGround(home);
+    assertNoCrack("Initial ground", home, ground);
+
+    home.getRooms().get(0).setPoints(new float [][] {{4500, 4500}, {10500, 4500}, {10500, 5500}, {4500, 5500}});
+    ground.update();
+    assertNoCrack("Moved room", home, ground);
+  }
+
+  private static Room addRoom(Home home, Level level, float [][] points) {
+    Room room = new Room(points);
+    home.addRoom(room);
+    room.setLevel(level);
+    return room;
+  }
+
+  private static Ground3D createGround(Home home) {
+    return new Ground3D(home, GROUND_ORIGIN, GROUND_ORIGIN, GROUND_SIZE, GROUND_SIZE, true);
+  }
+
+  private static List<Geometry> getGeometries(Ground3D ground) {
+    Shape3D groundShape = (Shape3D)ground.getChild(0);
+    List<Geometry> geometries = new ArrayList<Geometry>();
+    for (int i = 0; i < groundShape.numGeometries(); i++) {
+      geometries.add(groundShape.getGeometry(i));
+    }
+    return geometries;
+  }
+
+  /**
+   * Asserts the given ground has the same area at each elevation as a new ground built for <code>home</code>.
+   */
+  private void assertSameGroundAreas(String message, Home home, Ground3D ground) {
+    Map<Float, Double> expectedAreas = getAreas(createGround(home));
+    Map<Float, Double> areas = getAreas(ground);
+    assertEquals(message + ": different elevations", expectedAreas.keySet(), areas.keySet());
+    for (Map.Entry<Float, Double> entry : expectedAreas.entrySet()) {
+      double expectedArea = entry.getValue();
+      assertEquals(message + ": different area at elevation " + entry.getKey(),
+          expectedArea, areas.get(entry.getKey()), 1E-6 * expectedArea + 1);
+    }
+  }
+
+  /**
+   * Returns the area of the triangles and quads of the ground, summed by elevation,
+   * with the area of vertical faces stored with the <code>NaN</code> key.
+   */
+  private Map<Float, Double> getAreas(Ground3D ground) {
+    Map<Float, Double> areas = new TreeMap<Float, Double>();
+    for (Geometry geometry : getGeometries(ground)) {
+      IndexedGeometryArray geometryArray = (IndexedGeometryArray)geometry;
+      int vertexCount = geometryArray instanceof IndexedQuadArray ? 4 : 3;
+      Point3f [] points = new Point3f [vertexCount];
+      for (int i = 0; i + vertexCount <= geometryArray.getIndexCount(); i += vertexCount) {
+        for (int j = 0; j < vertexCount; j++) {
+          points [j] = new Point3f();
+          geometryArray.getCoordinate(geometryArray.getCoordinateIndex(i + j), points [j]);
+        }
+        double area = getTriangleArea(points [0], points [1], points [2]);
+        if (vertexCount == 4) {
+          area += getTriangleArea(points [0], points [2], points [3]);
+        }
+        Float elevation = Math.abs(points [0].y - points [1].y) < 1E-3
+            && Math.abs(points [0].y - points [2].y) < 1E-3
+                ? points [0].y
+                : Float.NaN;
+        Double elevationArea = areas.get(elevation);
+        areas.put(elevation, elevationArea == null ? area : elevationArea + area);
+      }
+    }
+    return areas;
+  }
+
+  private static double getTriangleArea(Point3f point1, Point3f point2, Point3f point3) {
+    Vector3f vector1 = new Vector3f();
+    vector1.sub(point2, point1);
+    Vector3f vector2 = new Vector3f();
+    vector2.sub(point3, point1);
+    Vector3f normal = new Vector3f();
+    normal.cross(vector1, vector2);
+    return normal.length() / 2;
+  }
+
+  /**
+   * Asserts the ground at level 0 covers the ground surface minus rooms, and that the edges
+   * which belong to only one triangle are at the border of the ground or of a room.
+   */
+  private void assertNoCrack(String message, Home home, Ground3D ground) {
+    double expectedArea = (double)GROUND_SIZE * GROUND_SIZE;
+    List<Line2D> borders = new ArrayList<Line2D>();
+    borders.add(new Line2D.Float(GROUND_ORIGIN, GROUND_ORIGIN, GROUND_ORIGIN + GROUND_SIZE, GROUND_ORIGIN));
+    borders.add(new Line2D.Float(GROUND_ORIGIN + GROUND_SIZE, GROUND_ORIGIN, GROUND_ORIGIN + GROUND_SIZE, GROUND_ORIGIN + GROUND_SIZE));
+    borders.add(new Line2D.Float(GROUND_ORIGIN + GROUND_SIZE, GROUND_ORIGIN + GROUND_SIZE, GROUND_ORIGIN, GROUND_ORIGIN + GROUND_SIZE));
+    borders.add(new Line2D.Float(GROUND_ORIGIN, GROUND_ORIGIN + GROUND_SIZE, GROUND_ORIGIN, GROUND_ORIGIN));
+    for (Room room : home.getRooms()) {
+      expectedArea -= room.getArea();
+      float [][] points = room.getPoints();
+      for (int i = 0; i < points.length; i++) {
+        float [] nextPoint = points [(i + 1) % points.length];
+        borders.add(new Line2D.Float(points [i][0], points [i][1], nextPoint [0], nextPoint [1]));
+      }
+    }
+    Map<Float, Double> areas = getAreas(ground);
+    assertEquals(message + ": unexpected elevations", 1, areas.size());
+    assertEquals(message + ": hole in ground", expectedArea, areas.get(0f), 1E-6 * expectedArea);
+
+    // Count how many triangles use each edge
+    Map<String, Integer> edgesUseCount = new HashMap<String, Integer>();
+    Map<String, Line2D> edges = new HashMap<String, Line2D>();
+    for (Geometry geometry : getGeometries(ground)) {
+      IndexedGeometryArray geometryArray = (IndexedGeometryArray)geometry;
+      Point3f [] points = {new Point3f(), new Point3f(), new Point3f()};
+      for (int i = 0; i + 3 <= geometryArray.getIndexCount(); i += 3) {
+        for (int j = 0; j < 3; j++) {
+          geometryArray.getCoordinate(geometryArray.getCoordinateIndex(i + j), points [j]);
+        }
+        for (int j = 0; j < 3; j++) {
+          Line2D edge = new Line2D.Float(points [j].x, points [j].z, points [(j + 1) % 3].x, points [(j + 1) % 3].z);
+          String key = getEdgeKey(edge);
+          Integer useCount = edgesUseCount.get(key);
+          edgesUseCount.put(key, useCount == null ? 1 : useCount + 1);
+          edges.put(key, edge);
+        }
+      }
+    }
+    for (Map.Entry<String, Integer> entry : edgesUseCount.entrySet()) {
+      if (entry.getValue() == 1) {
+        Line2D edge = edges.get(entry.getKey());
+        assertTrue(message + ": crack along edge " + entry.getKey(), isOnBorder(edge, borders));
+      } else {
+        assertEquals(message + ": edge " + entry.getKey() + " shared by too many triangles",
+            2, (int)entry.getValue());
+      }
+    }
+  }
+
+  private static String getEdgeKey(Line2D edge) {
+    String point1 = Math.round(edge.getX1() * 100) + "," + Math.round(edge.getY1() * 100);
+    String point2 = Math.round(edge.getX2() * 100) + "," + Math.round(edge.getY2() * 100);
+    return point1.compareTo(point2) < 0
+        ? point1 + " " + point2
+        : point2 + " " + point1;
+  }
+
+  private static boolean isOnBorder(Line2D edge, List<Line2D> borders) {
+    for (Line2D border : borders) {
+      if (border.ptSegDist(edge.getP1()) < 0.05
+          && border.ptSegDist(edge.getP2()) < 0.05) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -21,31 +21,61 @@
 package com.eteks.sweethome3d.junit;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
+import com.eteks.sweethome3d.io.ContentDigestManager;
+import com.eteks.sweethome3d.io.ContentRecording;
 import com.eteks.sweethome3d.io.DefaultFurnitureCatalog;
+import com.eteks.sweethome3d.io.DefaultHomeInputStream;
+import com.eteks.sweethome3d.io.DefaultHomeOutputStream;
 import com.eteks.sweethome3d.io.DefaultUserPreferences;
 import com.eteks.sweethome3d.io.FileUserPreferences;
+import com.eteks.sweethome3d.io.HomeContentStatistics;
 import com.eteks.sweethome3d.io.HomeFileRecorder;
+import com.eteks.sweethome3d.io.HomeXMLExporter;
+import com.eteks.sweethome3d.io.HomeXMLHandler;
+import com.eteks.sweethome3d.io.XMLWriter;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
 import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.model.DamagedHomeRecorderException;
 import com.eteks.sweethome3d.model.FurnitureCatalog;
+import com.eteks.sweethome3d.model.FurnitureCategory;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeFurnitureGroup;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
 import com.eteks.sweethome3d.model.HomeRecorder;
 import com.eteks.sweethome3d.model.Level;
 import com.eteks.sweethome3d.model.RecorderException;
+import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.TextStyle;
 import com.eteks.sweethome3d.model.Wall;
 import com.eteks.sweethome3d.tools.URLContent;
 
+import org.xml.sax.SAXException;
+
 import junit.framework.TestCase;
 
 /**
@@ -160,6 +190,855 @@ public class HomeFileRecorderTest extends TestCase {
     savedFileWithXmlEntry2.delete();
   }
 
+  /**
+   * Tests homes saved with parallel compression contain the same data as the ones saved
+   * with sequential compression.
+   */
+  public void testParallelCompression() throws RecorderException, IOException {
+    Home home = createCatalogHome();
+    File sequentialFile = File.createTempFile("sequential", ".sh3d");
+    File parallelFile = File.createTempFile("parallel", ".sh3d");
+    for (int compressionLevel : new int [] {0, 1, 9}) {
+      HomeRecorder sequentialRecorder = new HomeFileRecorder(compressionLevel, false, null, false, true);
+      HomeFileRecorder parallelRecorder = new HomeFileRecorder(compressionLevel, false, null, false, true);
+      parallelRecorder.setParallelCompression(true);
+      sequentialRecorder.writeHome(home, sequentialFile.getAbsolutePath());
+      parallelRecorder.writeHome(home, parallelFile.getAbsolutePath());
+
+      // Compare the XML entries of the two files and their content
+      assertContentEquals("Home.xml entries different",
+          new URLContent(new URL("jar:" + sequentialFile.toURI().toURL() + "!/Home.xml")),
+          new URLContent(new URL("jar:" + parallelFile.toURI().toURL() + "!/Home.xml")));
+      Home sequentialHome = sequentialRecorder.readHome(sequentialFile.getAbsolutePath());
+      Home parallelHome = parallelRecorder.readHome(parallelFile.getAbsolutePath());
+      assertEquals("Home furniture wrong count",
+          sequentialHome.getFurniture().size(), parallelHome.getFurniture().size());
+      for (int i = 0; i < sequentialHome.getFurniture().size(); i++) {
+        HomePieceOfFurniture sequentialPiece = sequentialHome.getFurniture().get(i);
+        HomePieceOfFurniture parallelPiece = parallelHome.getFurniture().get(i);
+        assertContentEquals("Different icon content", sequentialPiece.getIcon(), parallelPiece.getIcon());
+        assertContentEquals("Different model content", sequentialPiece.getModel(), parallelPiece.getModel());
+      }
+    }
+    sequentialFile.delete();
+    parallelFile.delete();
+  }
+
+  /**
+   * Tests content too big to be compressed in memory is written in parallel mode, and that
+   * content already compressed is stored then copied when the home is saved again.
+   */
+  public void testParallelCompressionOfBigContent() throws RecorderException, IOException {
+    // Create a compressible text file and a file starting like a JPEG image, bigger than 8 MB
+    File textFile = File.createTempFile("text", ".obj");
+    File imageFile = File.createTempFile("image", ".jpg");
+    OutputStream textOut = new BufferedOutputStream(new FileOutputStream(textFile));
+    OutputStream imageOut = new BufferedOutputStream(new FileOutputStream(imageFile));
+    imageOut.write(new byte [] {(byte)0xFF, (byte)0xD8, (byte)0xFF, (byte)0xE0});
+    Random random = new Random(0);
+    byte [] randomBytes = new byte [1024];
+    for (int i = 0; i < 10 * 1024; i++) {
+      textOut.write(("v " + i + " " + (i % 100) + " 0\n").getBytes("ISO-8859-1"));
+      random.nextBytes(randomBytes);
+      imageOut.write(randomBytes);
+    }
+    textOut.close();
+    imageOut.close();
+
+    Home home = new Home();
+    home.addPieceOfFurniture(new HomePieceOfFurniture(new CatalogPieceOfFurniture("Piece",
+        new URLContent(imageFile.toURI().toURL()), new URLContent(textFile.toURI().toURL()), 50, 50, 50, true, false)));
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    HomeFileRecorder recorder = new HomeFileRecorder(9);
+    recorder.setParallelCompression(true);
+    recorder.writeHome(home, savedFile.getAbsolutePath());
+
+    ZipFile savedZipFile = new ZipFile(savedFile);
+    ZipEntry iconEntry = savedZipFile.getEntry("0");
+    ZipEntry modelEntry = savedZipFile.getEntry("1");
+    assertEquals("Icon not stored", ZipEntry.STORED, iconEntry.getMethod());
+    assertEquals("Wrong icon size", imageFile.length(), iconEntry.getSize());
+    assertEquals("Model not deflated", ZipEntry.DEFLATED, modelEntry.getMethod());
+    assertEquals("Wrong model size", textFile.length(), modelEntry.getSize());
+    savedZipFile.close();
+    Home readHome = recorder.readHome(savedFile.getAbsolutePath());
+    assertContentEquals("Different icon content",
+        new URLContent(imageFile.toURI().toURL()), readHome.getFurniture().get(0).getIcon());
+    assertContentEquals("Different model content",
+        new URLContent(textFile.toURI().toURL()), readHome.getFurniture().get(0).getModel());
+
+    // Save read home again in parallel and sequential modes and check stored icon is copied
+    File resavedFile = File.createTempFile("resaved", ".sh3d");
+    for (boolean parallelCompression : new boolean [] {true, false}) {
+      HomeFileRecorder resavingRecorder = new HomeFileRecorder(9);
+      resavingRecorder.setParallelCompression(parallelCompression);
+      resavingRecorder.writeHome(readHome, resavedFile.getAbsolutePath());
+      ZipFile resavedZipFile = new ZipFile(resavedFile);
+      ZipEntry resavedIconEntry = resavedZipFile.getEntry("0");
+      assertEquals("Icon not stored", ZipEntry.STORED, resavedIconEntry.getMethod());
+      assertEquals("Different CRC", iconEntry.getCrc(), resavedIconEntry.getCrc());
+      assertEquals("Different model compressed size",
+          modelEntry.getCompressedSize(), resavedZipFile.getEntry("1").getCompressedSize());
+      resavedZipFile.close();
+    }
+    textFile.delete();
+    imageFile.delete();
+    savedFile.delete();
+    resavedFile.delete();
+  }
+
+  /**
+   * Tests content entries are copied without being compressed again
+   * when a read home is saved with <code>reuseCompressedContent</code> set to <code>true</code>.
+   */
+  public void testReuseCompressedContent() throws RecorderException, IOException {
+    Home home = createCatalogHome();
+    home.addWall(new Wall(0, 0, 100, 0, 10, 250));
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(9).writeHome(home, savedFile.getAbsolutePath());
+
+    // Read saved home, update it and save it again
+    File resavedFile = File.createTempFile("resaved", ".sh3d");
+    HomeRecorder recorder = new HomeFileRecorder(9);
+    Home readHome = recorder.readHome(savedFile.getAbsolutePath());
+    readHome.getWalls().iterator().next().setXEnd(200);
+    recorder.writeHome(readHome, resavedFile.getAbsolutePath());
+
+    // Check content entries kept the same compressed data
+    ZipFile savedZipFile = new ZipFile(savedFile);
+    ZipFile resavedZipFile = new ZipFile(resavedFile);
+    for (Enumeration<? extends ZipEntry> enumEntries = savedZipFile.entries(); enumEntries.hasMoreElements(); ) {
+      ZipEntry savedEntry = enumEntries.nextElement();
+      if (!savedEntry.getName().startsWith("Home")) {
+        ZipEntry resavedEntry = resavedZipFile.getEntry(savedEntry.getName());
+        assertNotNull("Missing entry " + savedEntry.getName(), resavedEntry);
+        assertEquals("Different CRC", savedEntry.getCrc(), resavedEntry.getCrc());
+        assertEquals("Different compressed size", savedEntry.getCompressedSize(), resavedEntry.getCompressedSize());
+      }
+    }
+    savedZipFile.close();
+    resavedZipFile.close();
+
+    Home resavedHome = recorder.readHome(resavedFile.getAbsolutePath());
+    assertEquals("Wall not updated", 200f, resavedHome.getWalls().iterator().next().getXEnd());
+    assertEquals("Home furniture wrong count", home.getFurniture().size(), resavedHome.getFurniture().size());
+    for (int i = 0; i < home.getFurniture().size(); i++) {
+      assertContentEquals("Different model content",
+          home.getFurniture().get(i).getModel(), resavedHome.getFurniture().get(i).getModel());
+    }
+    savedFile.delete();
+    resavedFile.delete();
+  }
+
+  /**
+   * Tests the content copied from a home to an other one keeps its compressed data
+   * when the other home is saved with default options.
+   */
+  public void testCopyContentBetweenHomes() throws RecorderException, IOException {
+    Home home = createCatalogHome();
+    // Save a first home at compression level 1
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(1).writeHome(home, savedFile.getAbsolutePath());
+
+    // Copy the furniture of the read home in an other home saved at compression level 9
+    HomeRecorder recorder = new HomeFileRecorder(9);
+    Home readHome = recorder.readHome(savedFile.getAbsolutePath());
+    Home otherHome = new Home();
+    for (HomePieceOfFurniture piece : readHome.getFurniture()) {
+      otherHome.addPieceOfFurniture(piece.clone());
+    }
+    File otherFile = File.createTempFile("other", ".sh3d");
+    recorder.writeHome(otherHome, otherFile.getAbsolutePath());
+
+    // Check content entries of the other home were copied with the compressed data of the first one
+    ZipFile savedZipFile = new ZipFile(savedFile);
+    ZipFile otherZipFile = new ZipFile(otherFile);
+    for (Enumeration<? extends ZipEntry> enumEntries = savedZipFile.entries(); enumEntries.hasMoreElements(); ) {
+      ZipEntry savedEntry = enumEntries.nextElement();
+      if (!savedEntry.getName().startsWith("Home")
+          && !savedEntry.getName().equals("ContentDigests")) {
+        ZipEntry otherEntry = otherZipFile.getEntry(savedEntry.getName());
+        assertNotNull("Missing entry " + savedEntry.getName(), otherEntry);
+        assertEquals("Different CRC", savedEntry.getCrc(), otherEntry.getCrc());
+        assertEquals("Different compressed size", savedEntry.getCompressedSize(), otherEntry.getCompressedSize());
+      }
+    }
+    savedZipFile.close();
+    otherZipFile.close();
+
+    Home otherReadHome = recorder.readHome(otherFile.getAbsolutePath());
+    assertEquals("Home furniture wrong count", home.getFurniture().size(), otherReadHome.getFurniture().size());
+    for (int i = 0; i < home.getFurniture().size(); i++) {
+      assertContentEquals("Different model content",
+          home.getFurniture().get(i).getModel(), otherReadHome.getFurniture().get(i).getModel());
+    }
+    savedFile.delete();
+    otherFile.delete();
+  }
+
+  /**
+   * Tests a home saved with the content entries of its previous save, as done during
+   * automatic saves, is read back identical to the edited home.
+   */
+  public void testDeltaSave() throws Exception {
+    Home home = new Home();
+    FurnitureCatalog catalog = new DefaultFurnitureCatalog();
+    List<CatalogPieceOfFurniture> catalogFurniture = catalog.getCategories().get(0).getFurniture();
+    for (int i = 0; i < 3; i++) {
+      home.addPieceOfFurniture(new HomePieceOfFurniture(catalogFurniture.get(i)));
+    }
+    home.addWall(new Wall(0, 0, 100, 0, 10, 250));
+    HomeFileRecorder recorder = new HomeFileRecorder(9);
+    Method writeHomeMethod = HomeFileRecorder.class.getDeclaredMethod("writeHome",
+        Home.class, String.class, File.class, Map.class);
+    writeHomeMethod.setAccessible(true);
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    @SuppressWarnings("unchecked")
+    Map<Content, String> savedContentNames = (Map<Content, String>)writeHomeMethod.invoke(
+        recorder, home, savedFile.getAbsolutePath(), null, null);
+    assertFalse("No saved content", savedContentNames.isEmpty());
+
+    // Edit home and save it with the content of the previous file
+    home.getWalls().iterator().next().setXEnd(200);
+    home.deletePieceOfFurniture(home.getFurniture().get(0));
+    home.addPieceOfFurniture(new HomePieceOfFurniture(catalogFurniture.get(3)));
+    File deltaFile = File.createTempFile("delta", ".sh3d");
+    @SuppressWarnings("unchecked")
+    Map<Content, String> deltaContentNames = (Map<Content, String>)writeHomeMethod.invoke(
+        recorder, home, deltaFile.getAbsolutePath(), savedFile, savedContentNames);
+    assertNotNull("No saved content", deltaContentNames);
+
+    // Check content kept from the previous file was copied with the same compressed data
+    ZipFile savedZipFile = new ZipFile(savedFile);
+    ZipFile deltaZipFile = new ZipFile(deltaFile);
+    HomePieceOfFurniture keptPiece = home.getFurniture().get(0);
+    for (Content content : new Content [] {keptPiece.getIcon(), keptPiece.getModel()}) {
+      String entryName = savedContentNames.get(content);
+      assertNotNull("Content not saved", entryName);
+      ZipEntry savedEntry = savedZipFile.getEntry(entryName);
+      ZipEntry deltaEntry = deltaZipFile.getEntry(deltaContentNames.get(content));
+      assertNotNull("Missing entry " + entryName, deltaEntry);
+      assertEquals("Different CRC", savedEntry.getCrc(), deltaEntry.getCrc());
+      assertEquals("Different compressed size", savedEntry.getCompressedSize(), deltaEntry.getCompressedSize());
+    }
+    savedZipFile.close();
+    deltaZipFile.close();
+
+    // Check read home is identical to the edited home
+    Home readHome = recorder.readHome(deltaFile.getAbsolutePath());
+    assertEquals("Home walls wrong count", home.getWalls().size(), readHome.getWalls().size());
+    assertEquals(home.getWalls().iterator().next(), readHome.getWalls().iterator().next());
+    assertEquals("Home furniture wrong count", home.getFurniture().size(), readHome.getFurniture().size());
+    for (int i = 0; i < home.getFurniture().size(); i++) {
+      assertEquals(home.getFurniture().get(i), readHome.getFurniture().get(i));
+    }
+    savedFile.delete();
+    deltaFile.delete();
+  }
+
+  /**
+   * Tests the entries of a home saved with reused content are deflated while they're written
+   * and can be read with <code>ZipInputStream</code> as well as with <code>ZipFile</code>.
+   */
+  public void testStreamedEntries() throws RecorderException, IOException {
+    Home home = new Home();
+    FurnitureCatalog catalog = new DefaultFurnitureCatalog();
+    home.addPieceOfFurniture(new HomePieceOfFurniture(catalog.getCategories().get(0).getFurniture().get(0)));
+    home.addWall(new Wall(0, 0, 100, 0, 10, 250));
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(9).writeHome(home, savedFile.getAbsolutePath());
+    File resavedFile = File.createTempFile("resaved", ".sh3d");
+    for (int compressionLevel : new int [] {0, 9}) {
+      HomeRecorder recorder = new HomeFileRecorder(compressionLevel);
+      Home readHome = recorder.readHome(savedFile.getAbsolutePath());
+      recorder.writeHome(readHome, resavedFile.getAbsolutePath());
+
+      ZipFile resavedZipFile = new ZipFile(resavedFile);
+      ZipInputStream zipIn = new ZipInputStream(new FileInputStream(resavedFile));
+      int entryCount = 0;
+      for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null; entryCount++) {
+        ZipEntry resavedEntry = resavedZipFile.getEntry(entry.getName());
+        assertNotNull("Missing entry " + entry.getName(), resavedEntry);
+        if (entry.getName().startsWith("Home")) {
+          assertEquals("Home entry not deflated", ZipEntry.DEFLATED, resavedEntry.getMethod());
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte [] buffer = new byte [8192];
+        for (int length; (length = zipIn.read(buffer)) != -1; ) {
+          data.write(buffer, 0, length);
+        }
+        assertEquals("Different size", resavedEntry.getSize(), data.size());
+        assertEquals("Different CRC", resavedEntry.getCrc(), entry.getCrc());
+      }
+      zipIn.close();
+      assertEquals("Wrong entry count", resavedZipFile.size(), entryCount);
+      resavedZipFile.close();
+
+      Home resavedHome = recorder.readHome(resavedFile.getAbsolutePath());
+      assertContentEquals("Different model content",
+          home.getFurniture().get(0).getModel(), resavedHome.getFurniture().get(0).getModel());
+    }
+    savedFile.delete();
+    resavedFile.delete();
+  }
+
+  /**
+   * Tests the entries of a zip file with non ASCII names are copied without being
+   * compressed again, even if their names are encoded in UTF-8 without the matching flag
+   * as done by older Java versions.
+   */
+  public void testReuseZipContentWithUTF8Names() throws RecorderException, IOException {
+    for (boolean utf8NameFlag : new boolean [] {true, false}) {
+      File zipFile = File.createTempFile("content", ".zip");
+      ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(zipFile));
+      // Use a compression level different from the saved home to detect recompressed entries
+      zipOut.setLevel(1);
+      String [] entryNames = {"mod\u00e8le.obj", "mod\u00e8le.mtl"};
+      for (String entryName : entryNames) {
+        zipOut.putNextEntry(new ZipEntry(entryName));
+        for (int i = 0; i < 1000; i++) {
+          zipOut.write(("# " + entryName + " line " + i + "\n").getBytes("UTF-8"));
+        }
+        zipOut.closeEntry();
+      }
+      zipOut.close();
+      if (!utf8NameFlag) {
+        clearUTF8NameFlag(zipFile);
+      }
+
+      Home home = new Home();
+      URLContent model = new URLContent(new URL("jar:" + zipFile.toURI().toURL() + "!/"
+          + URLEncoder.encode(entryNames [0], "UTF-8")));
+      home.addPieceOfFurniture(new HomePieceOfFurniture(
+          new CatalogPieceOfFurniture("Piece", null, model, 50, 50, 50, true, false)));
+      File savedFile = File.createTempFile("saved", ".sh3d");
+      new HomeFileRecorder(9).writeHome(home, savedFile.getAbsolutePath());
+
+      // Check zip entries were copied with their compressed data
+      ZipFile contentZipFile = new ZipFile(zipFile);
+      ZipFile savedZipFile = new ZipFile(savedFile);
+      for (String entryName : entryNames) {
+        ZipEntry contentEntry = contentZipFile.getEntry(entryName);
+        ZipEntry savedEntry = savedZipFile.getEntry("0/" + entryName);
+        assertNotNull("Missing entry " + entryName, savedEntry);
+        assertEquals("Different CRC", contentEntry.getCrc(), savedEntry.getCrc());
+        assertEquals("Different compressed size", contentEntry.getCompressedSize(), savedEntry.getCompressedSize());
+      }
+      contentZipFile.close();
+      savedZipFile.close();
+      zipFile.delete();
+      savedFile.delete();
+    }
+  }
+
+  /**
+   * Clears the flag indicating that entry names are encoded in UTF-8
+   * in the local and central headers of the given zip file.
+   */
+  private void clearUTF8NameFlag(File zipFile) throws IOException {
+    byte [] zipData = readContent(new URLContent(zipFile.toURI().toURL()));
+    for (int i = 0; i < zipData.length - 4; i++) {
+      if (zipData [i] == 'P' && zipData [i + 1] == 'K') {
+        int flagIndex = -1;
+        if (zipData [i + 2] == 3 && zipData [i + 3] == 4) {
+          flagIndex = i + 7; // Local file header
+        } else if (zipData [i + 2] == 1 && zipData [i + 3] == 2) {
+          flagIndex = i + 9; // Central file header
+        }
+        if (flagIndex != -1) {
+          zipData [flagIndex] &= ~0x08;
+        }
+      }
+    }
+    OutputStream out = new FileOutputStream(zipFile);
+    out.write(zipData);
+    out.close();
+  }
+
+  /**
+   * Tests damaged content of a home file is reported when home is read,
+   * or only once it's read with lazy content.
+   */
+  public void testDamagedContentCheck() throws RecorderException, IOException {
+    Home home = new Home();
+    FurnitureCatalog catalog = new DefaultFurnitureCatalog();
+    HomePieceOfFurniture piece = new HomePieceOfFurniture(catalog.getCategories().get(0).getFurniture().get(0));
+    home.addPieceOfFurniture(piece);
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(0).writeHome(home, savedFile.getAbsolutePath());
+
+    // Alter one byte of the uncompressed icon data in saved file
+    byte [] iconData = readContent(piece.getIcon());
+    byte [] fileData = readContent(new URLContent(savedFile.toURI().toURL()));
+    int iconIndex = -1;
+    for (int i = 0; i < fileData.length - iconData.length && iconIndex == -1; i++) {
+      iconIndex = i;
+      for (int j = 0; j < iconData.length; j++) {
+        if (fileData [i + j] != iconData [j]) {
+          iconIndex = -1;
+          break;
+        }
+      }
+    }
+    assertTrue("Icon not found", iconIndex != -1);
+    fileData [iconIndex + iconData.length / 2] ^= 0xFF;
+    OutputStream out = new FileOutputStream(savedFile);
+    out.write(fileData);
+    out.close();
+
+    // Check damaged icon is reported
+    try {
+      new HomeFileRecorder(0).readHome(savedFile.getAbsolutePath());
+      fail("Damaged icon not reported");
+    } catch (DamagedHomeRecorderException ex) {
+      assertEquals("Wrong invalid content count", 1, ex.getInvalidContent().size());
+    }
+    // Check damaged icon is replaced by the same icon in preferences
+    Home readHome = new HomeFileRecorder(0, false, new DefaultUserPreferences(), false)
+        .readHome(savedFile.getAbsolutePath());
+    assertTrue("Home not repaired", readHome.isRepaired());
+    assertTrue("Icon not repaired", Arrays.equals(iconData, readContent(readHome.getFurniture().get(0).getIcon())));
+
+    // Check home read with lazy content can be read but its icon is invalid
+    HomeFileRecorder lazyContentRecorder = new HomeFileRecorder(0);
+    lazyContentRecorder.setLazyContent(true);
+    readHome = lazyContentRecorder.readHome(savedFile.getAbsolutePath());
+    assertEquals("Home furniture wrong count", 1, readHome.getFurniture().size());
+    try {
+      readContent(readHome.getFurniture().get(0).getIcon());
+      fail("Icon shouldn't be readable");
+    } catch (IOException ex) {
+      // Expected exception
+    }
+    readContent(readHome.getFurniture().get(0).getModel());
+    savedFile.delete();
+  }
+
+  /**
+   * Tests content of homes read with lazy content is opened only once it's read.
+   */
+  public void testLazyContent() throws RecorderException, IOException {
+    Home home = new Home();
+    FurnitureCatalog catalog = new DefaultFurnitureCatalog();
+    for (CatalogPieceOfFurniture piece : catalog.getCategories().get(0).getFurniture()) {
+      home.addPieceOfFurniture(new HomePieceOfFurniture(piece));
+    }
+    File savedFile = File.createTempFile("saved", ".sh3d");
+    new HomeFileRecorder(0).writeHome(home, savedFile.getAbsolutePath());
+
+    HomeFileRecorder recorder = new HomeFileRecorder(0);
+    recorder.setLazyContent(true);
+    Home [] readHomes = new Home [2];
+    for (int i = 0; i < readHomes.length; i++) {
+      readHomes [i] = recorder.readHome(savedFile.getAbsolutePath());
+    }
+
+    HomeContentStatistics statistics = recorder.getContentStatistics(readHomes [0]);
+    assertNotNull("No statistics", statistics);
+    assertTrue("No content", statistics.getContentCount() > 0);
+    assertEquals("Content opened during reading", 0, statistics.getOpenedContentCount());
+    long homeResidentBytes = statistics.getResidentBytes();
+    assertTrue("No resident bytes", homeResidentBytes > 0);
+
+    // Check content is opened on first access and is equal to saved content
+    HomePieceOfFurniture piece = readHomes [0].getFurniture().get(0);
+    assertContentEquals("Different model content", home.getFurniture().get(0).getModel(), piece.getModel());
+    assertContentEquals("Different model content", home.getFurniture().get(0).getModel(), piece.getModel());
+    assertEquals("Content not opened once", 1, statistics.getOpenedContentCount());
+    assertTrue("Resident bytes not updated", statistics.getResidentBytes() > homeResidentBytes);
+    assertEquals("Content opened in other home", 0, recorder.getContentStatistics(readHomes [1]).getOpenedContentCount());
+
+    // Check default recorder doesn't return statistics
+    HomeFileRecorder defaultRecorder = new HomeFileRecorder();
+    assertNull("Unexpected statistics", defaultRecorder.getContentStatistics(
+        defaultRecorder.readHome(savedFile.getAbsolutePath())));
+    savedFile.delete();
+  }
+
+  /**
+   * Tests values written by <code>XMLWriter</code> are formatted like with <code>String.valueOf</code>.
+   */
+  public void testXMLWriter() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XMLWriter writer = new XMLWriter(out);
+    writer.writeStartElement("root");
+    writer.writeAttribute("text", "a<b>&'c'\"d\"\n\u00e9");
+    writer.writeIntegerAttribute("min", Integer.MIN_VALUE);
+    writer.writeIntegerAttribute("max", Integer.MAX_VALUE);
+    writer.writeLongAttribute("long", Long.MIN_VALUE);
+    writer.writeLongAttribute("long2", -1234567890123L);
+    writer.writeColorAttribute("color", 0x0A00FF00);
+    writer.writeColorAttribute("color2", 0xFF102030);
+    float [] values = {0f, -0f, 1f, -12f, 9999999f, 1E7f, -1E7f, 0.1f, 1.5E-5f, 123.456f, Float.NaN, Float.NEGATIVE_INFINITY};
+    for (int i = 0; i < values.length; i++) {
+      writer.writeFloatAttribute("float" + i, values [i]);
+    }
+    writer.writeStartElement("child");
+    writer.writeText("x < y & z");
+    writer.writeEndElement();
+    writer.writeEndElement();
+    writer.flush();
+
+    StringBuilder expected = new StringBuilder("<?xml version='1.0'?>\n<root"
+        + " text='a&lt;b>&amp;&apos;c&apos;&quot;d&quot;&#10;\u00e9'"
+        + " min='" + Integer.MIN_VALUE + "' max='" + Integer.MAX_VALUE + "'"
+        + " long='" + Long.MIN_VALUE + "' long2='-1234567890123'"
+        + " color='0A00FF00' color2='FF102030'");
+    for (int i = 0; i < values.length; i++) {
+      expected.append(" float" + i + "='" + String.valueOf(values [i]) + "'");
+    }
+    expected.append(">\n  <child>x &lt; y &amp; z</child>\n</root>");
+    assertEquals("Wrong XML", expected.toString(), new String(out.toByteArray(), "UTF-8"));
+  }
+
+  /**
+   * Tests generated homes read from their XML data are written back to the same XML data.
+   */
+  public void testReadWrittenXML() throws IOException {
+    for (int itemCount : new int [] {10, 1000}) {
+      Home home = createHome(itemCount);
+      byte [] homeXml = getHomeXml(home);
+      Home readHome = readHomeXml(homeXml);
+      assertEquals("Home furniture wrong count", home.getFurniture().size(), readHome.getFurniture().size());
+      assertEquals("Home walls wrong count", home.getWalls().size(), readHome.getWalls().size());
+      assertEquals("Home rooms wrong count", home.getRooms().size(), readHome.getRooms().size());
+      assertTrue("Different homes", Arrays.equals(homeXml, getHomeXml(readHome)));
+    }
+  }
+
+  /**
+   * Tests homes read from a <code>Home.bin</code> entry are identical to the ones read from
+   * <code>Home.xml</code> entry.
+   */
+  public void testBinaryEntry() throws URISyntaxException, RecorderException, IOException {
+    HomeRecorder homeEntryRecorder = new HomeFileRecorder(0, false, null, false, false);
+    Home home = homeEntryRecorder.readHome(
+        new File(HomeControllerTest.class.getResource("resources/home1.sh3d").toURI()).getAbsolutePath());
+    // Save home with Home, Home.xml and Home.bin entries
+    HomeFileRecorder binaryEntryRecorder = new HomeFileRecorder(0, false, null, false, true);
+    binaryEntryRecorder.setBinaryEntry(true);
+    binaryEntryRecorder.setReuseCompressedContent(false);
+    File savedFile = File.createTempFile("homeBin", ".sh3d");
+    binaryEntryRecorder.writeHome(home, savedFile.getAbsolutePath());
+    ZipFile zipFile = new ZipFile(savedFile);
+    assertNotNull("No Home.bin entry", zipFile.getEntry("Home.bin"));
+    zipFile.close();
+    Home binaryHome = binaryEntryRecorder.readHome(savedFile.getAbsolutePath());
+    Home xmlHome = new HomeFileRecorder(0, false, null, false, true).readHome(savedFile.getAbsolutePath());
+    assertTrue("Different homes", Arrays.equals(getHomeXml(xmlHome), getHomeXml(binaryHome)));
+    assertEquals("Different content count", xmlHome.getFurniture().size(), binaryHome.getFurniture().size());
+    for (int i = 0; i < xmlHome.getFurniture().size(); i++) {
+      assertContentEquals("Different model", xmlHome.getFurniture().get(i).getModel(),
+          binaryHome.getFurniture().get(i).getModel());
+    }
+    savedFile.delete();
+
+    // Check Home.bin entry is read in priority from a file and from a stream
+    savedFile = File.createTempFile("homeBin", ".sh3d");
+    HomeFileRecorder binaryEntryOnlyRecorder = new HomeFileRecorder(0);
+    binaryEntryOnlyRecorder.setBinaryEntry(true);
+    binaryEntryOnlyRecorder.setReuseCompressedContent(false);
+    binaryEntryOnlyRecorder.writeHome(createHome(100), savedFile.getAbsolutePath());
+    final boolean [] handlerUsed = {false};
+    HomeXMLHandler handler = new HomeXMLHandler() {
+        @Override
+        public void startDocument() throws SAXException {
+          super.startDocument();
+          handlerUsed [0] = true;
+        }
+      };
+    DefaultHomeInputStream in = new DefaultHomeInputStream(savedFile,
+        ContentRecording.INCLUDE_ALL_CONTENT, handler, null, false);
+    try {
+      assertEquals("Wrong furniture count", 70, in.readHome().getFurniture().size());
+      assertTrue("Home.bin entry not read", handlerUsed [0]);
+    } catch (ClassNotFoundException ex) {
+      fail(ex.getMessage());
+    } finally {
+      in.close();
+    }
+    handlerUsed [0] = false;
+    in = new DefaultHomeInputStream(new FileInputStream(savedFile),
+        ContentRecording.INCLUDE_ALL_CONTENT, handler, null, false);
+    try {
+      assertEquals("Wrong furniture count", 70, in.readHome().getFurniture().size());
+      assertTrue("Home.bin entry not read", handlerUsed [0]);
+    } catch (ClassNotFoundException ex) {
+      fail(ex.getMessage());
+    } finally {
+      in.close();
+    }
+    savedFile.delete();
+
+    // Check generated homes are read identically from each entry
+    home = createHome(1000);
+    xmlHome = readHomeFile(getHomeFile(home, false));
+    binaryHome = readHomeFile(getHomeFile(home, true));
+    assertTrue("Different homes", Arrays.equals(getHomeXml(xmlHome), getHomeXml(binaryHome)));
+  }
+
+  /**
+   * Returns the uncompressed zip data of the given home, containing a
+   * <code>Home.bin</code> entry or a <code>Home.xml</code> entry.
+   */
+  private byte [] getHomeFile(Home home, boolean binaryEntry) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DefaultHomeOutputStream homeOut = new DefaultHomeOutputStream(out, 0, ContentRecording.INCLUDE_ALL_CONTENT,
+        false, binaryEntry ? null : new HomeXMLExporter());
+    homeOut.setReuseCompressedContent(false);
+    homeOut.setBinaryHome(binaryEntry);
+    homeOut.writeHome(home);
+    homeOut.close();
+    return out.toByteArray();
+  }
+
+  private Home readHomeFile(byte [] homeFile) throws IOException {
+    DefaultHomeInputStream in = new DefaultHomeInputStream(new ByteArrayInputStream(homeFile),
+        ContentRecording.INCLUDE_NO_CONTENT, new HomeXMLHandler(), null, false);
+    try {
+      return in.readHome();
+    } catch (ClassNotFoundException ex) {
+      fail(ex.getMessage());
+      return null;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Tests content digests are stored in a persistent cache and reused
+   * as long as content files don't change.
+   */
+  public void testPersistentContentDigests() throws IOException {
+    ContentDigestManager digestManager = ContentDigestManager.getInstance();
+    File digestsFile = File.createTempFile("digests", ".cache");
+    digestsFile.delete();
+    File [] contentFiles = new File [3];
+    Random random = new Random(0);
+    for (int i = 0; i < contentFiles.length; i++) {
+      contentFiles [i] = File.createTempFile("content", ".bin");
+      writeRandomBytes(contentFiles [i], random, 100000 + i);
+    }
+    try {
+      digestManager.setPersistentDigestsFile(digestsFile, 2);
+      byte [] digest = digestManager.getContentDigest(createNewSessionContent(contentFiles [0]));
+      assertEquals("Wrong hit count", 0, digestManager.getPersistentDigestsHitCount());
+      assertEquals("Wrong miss count", 1, digestManager.getPersistentDigestsMissCount());
+      assertTrue("Digests file not written", digestsFile.exists());
+
+      // Read digests file again as in a new session
+      digestManager.setPersistentDigestsFile(null, 0);
+      digestManager.setPersistentDigestsFile(digestsFile, 2);
+      assertTrue("Different digests", Arrays.equals(digest,
+          digestManager.getContentDigest(createNewSessionContent(contentFiles [0]))));
+      assertEquals("Wrong hit count", 1, digestManager.getPersistentDigestsHitCount());
+      assertEquals("Wrong miss count", 0, digestManager.getPersistentDigestsMissCount());
+
+      // Check a modified file isn't found in cache
+      writeRandomBytes(contentFiles [0], random, 100010);
+      byte [] modifiedDigest = digestManager.getContentDigest(createNewSessionContent(contentFiles [0]));
+      assertFalse("Same digests", Arrays.equals(digest, modifiedDigest));
+      assertEquals("Wrong miss count", 1, digestManager.getPersistentDigestsMissCount());
+
+      // Check least recently used digests are evicted
+      digestManager.getContentDigest(createNewSessionContent(contentFiles [1]));
+      digestManager.getContentDigest(createNewSessionContent(contentFiles [2]));
+      digestManager.setPersistentDigestsFile(null, 0);
+      digestManager.setPersistentDigestsFile(digestsFile, 2);
+      for (int i = contentFiles.length - 1; i >= 0; i--) {
+        digestManager.getContentDigest(createNewSessionContent(contentFiles [i]));
+      }
+      assertEquals("Wrong hit count", 2, digestManager.getPersistentDigestsHitCount());
+      assertEquals("Wrong miss count", 1, digestManager.getPersistentDigestsMissCount());
+    } finally {
+      digestManager.setPersistentDigestsFile(null, 0);
+      digestsFile.delete();
+      for (File contentFile : contentFiles) {
+        contentFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Tests the digest of a content is computed without blocking threads computing other digests.
+   */
+  public void testConcurrentContentDigests() throws Exception {
+    final ContentDigestManager digestManager = ContentDigestManager.getInstance();
+    final CountDownLatch readStarted = new CountDownLatch(1);
+    final CountDownLatch readAllowed = new CountDownLatch(1);
+    final byte [] data = {1, 2, 3};
+    final Content slowContent = new Content() {
+        public InputStream openStream() throws IOException {
+          readStarted.countDown();
+          try {
+            readAllowed.await();
+          } catch (InterruptedException ex) {
+            throw new IOException("Interrupted");
+          }
+          return new ByteArrayInputStream(data);
+        }
+      };
+    final byte [][] slowContentDigests = new byte [2][];
+    Thread [] threads = new Thread [slowContentDigests.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads [i] = new Thread() {
+          public void run() {
+            slowContentDigests [index] = digestManager.getContentDigest(slowContent);
+          }
+        };
+      threads [i].start();
+    }
+    try {
+      assertTrue("Content not read", readStarted.await(10, TimeUnit.SECONDS));
+      // Check other digests are available while slow content is read
+      final Content otherContent = new Content() {
+          public InputStream openStream() throws IOException {
+            return new ByteArrayInputStream(data);
+          }
+        };
+      final byte [][] otherContentDigest = new byte [1][];
+      Thread otherThread = new Thread() {
+          public void run() {
+            otherContentDigest [0] = digestManager.getContentDigest(otherContent);
+          }
+        };
+      otherThread.start();
+      otherThread.join(10000);
+      assertFalse("Digest computing blocked", otherThread.isAlive());
+      assertEquals("Wrong digest length", 20, otherContentDigest [0].length);
+    } finally {
+      readAllowed.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+    assertEquals("Wrong digest length", 20, slowContentDigests [0].length);
+    assertSame("Digest computed twice", slowContentDigests [0], slowContentDigests [1]);
+  }
+
+  /**
+   * Returns a content which digest isn't found in the memory cache of <code>ContentDigestManager</code>
+   * like a content created in a new session.
+   */
+  private Content createNewSessionContent(File file) throws IOException {
+    return new URLContent(file.toURI().toURL()) {
+        @Override
+        public boolean equals(Object obj) {
+          return obj == this;
+        }
+
+        @Override
+        public int hashCode() {
+          return System.identityHashCode(this);
+        }
+      };
+  }
+
+  private void writeRandomBytes(File file, Random random, int size) throws IOException {
+    byte [] bytes = new byte [size];
+    random.nextBytes(bytes);
+    OutputStream out = new FileOutputStream(file);
+    out.write(bytes);
+    out.close();
+  }
+
+  /**
+   * Returns a home containing all the furniture of the default catalog.
+   */
+  private Home createCatalogHome() {
+    Home home = new Home();
+    FurnitureCatalog catalog = new DefaultFurnitureCatalog();
+    for (FurnitureCategory category : catalog.getCategories()) {
+      for (CatalogPieceOfFurniture piece : category.getFurniture()) {
+        home.addPieceOfFurniture(new HomePieceOfFurniture(piece));
+      }
+    }
+    return home;
+  }
+
+  /**
+   * Returns a home containing <code>itemCount</code> walls, rooms and pieces.
+   */
+  public static Home createHome(int itemCount) {
+    Home home = new Home();
+    Level level = new Level("Level", 0, 12, 250);
+    home.addLevel(level);
+    Random random = new Random(itemCount);
+    Wall previousWall = null;
+    for (int i = 0; i < itemCount; i++) {
+      // Mix rounded coordinates and coordinates with many digits
+      float x = i % 2 == 0 ? Math.round(random.nextFloat() * 10000) / 10f : random.nextFloat() * 1000;
+      float y = i % 3 == 0 ? Math.round(random.nextFloat() * 10000) / 100f : -random.nextFloat() * 1E-3f;
+      switch (i % 10) {
+        case 0 :
+        case 1 :
+          Wall wall = new Wall(x, y, x + 100, y, 7.5f, 250);
+          if (previousWall != null && i % 20 != 0) {
+            wall.setXStart(previousWall.getXEnd());
+            wall.setYStart(previousWall.getYEnd());
+            wall.setWallAtStart(previousWall);
+            previousWall.setWallAtEnd(wall);
+          }
+          home.addWall(wall);
+          previousWall = wall;
+          break;
+        case 2 :
+          Room room = new Room(new float [][] {{x, y}, {x + 100, y}, {x + 100, y + 50.5f}, {x, y + 50.5f}});
+          room.setName("Room " + i);
+          room.setProperty("index", String.valueOf(i));
+          home.addRoom(room);
+          break;
+        default :
+          HomePieceOfFurniture piece = new HomePieceOfFurniture(
+              new CatalogPieceOfFurniture("Piece & co " + i, null, null, 50, 40 + i % 7, 80, true, false));
+          piece.setModelSize(1000L);
+          piece.setX(x);
+          piece.setY(y);
+          piece.setAngle(random.nextFloat() * 6);
+          piece.setColor(random.nextInt());
+          if (i % 4 == 0) {
+            piece.setNameStyle(new TextStyle(18));
+          }
+          home.addPieceOfFurniture(piece);
+          break;
+      }
+    }
+    return home;
+  }
+
+  private byte [] getHomeXml(Home home) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XMLWriter writer = new XMLWriter(out);
+    new HomeXMLExporter().writeElement(writer, home);
+    writer.flush();
+    return out.toByteArray();
+  }
+
+  private Home readHomeXml(byte [] homeXml) throws IOException {
+    DefaultHomeInputStream in = new DefaultHomeInputStream(new ByteArrayInputStream(homeXml),
+        ContentRecording.INCLUDE_ALL_CONTENT, new HomeXMLHandler(), null, false);
+    try {
+      return in.readHome();
+    } catch (ClassNotFoundException ex) {
+      fail(ex.getMessage());
+      return null;
+    } finally {
+      in.close();
+    }
+  }
+
+  private byte [] readContent(Content content) throws IOException {
+    InputStream in = content.openStream();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte [] buffer = new byte [8192];
+    for (int size; (size = in.read(buffer)) != -1; ) {
+      out.write(buffer, 0, size);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+
   /**
    * Test repaired home file management.
    */
@@ -19,19 +19,54 @@
  */
 package com.eteks.sweethome3d.junit;
 
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StreamTokenizer;
+import java.io.Writer;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
+import javax.imageio.ImageIO;
+import javax.media.j3d.Appearance;
 import javax.media.j3d.BranchGroup;
+import javax.media.j3d.GeometryArray;
 import javax.media.j3d.Group;
 import javax.media.j3d.Link;
+import javax.media.j3d.LineStripArray;
 import javax.media.j3d.Node;
 import javax.media.j3d.Shape3D;
+import javax.media.j3d.Texture;
 
 import junit.framework.TestCase;
 
+import com.eteks.sweethome3d.j3d.LoadingScheduler;
+import com.eteks.sweethome3d.j3d.MemoryBoundedCache;
 import com.eteks.sweethome3d.j3d.ModelManager;
+import com.eteks.sweethome3d.j3d.OBJLoader;
+import com.eteks.sweethome3d.j3d.TextureManager;
+import com.eteks.sweethome3d.model.Content;
 import com.eteks.sweethome3d.tools.URLContent;
+import com.sun.j3d.loaders.Scene;
+import com.sun.j3d.utils.image.TextureLoader;
 
 /**
  * Test ModelManager class.
@@ -50,6 +85,671 @@ public class ModelManagerTest extends TestCase {
     assertTrue("Model shouldn't be empty", getShapesCount(model) > 0);
   }
   
+  /**
+   * Tests models are sent to the right loader when their name doesn't give their format.
+   */
+  public void testLoaderDetection() throws IOException {
+    ModelManager modelManager = ModelManager.getInstance();
+    File daeFile = copyToTemporaryFile(ModelManagerTest.class.getResource("resources/test.dae"));
+    File objFile = copyToTemporaryFile(ModelManagerTest.class.getResource("resources/test.obj"));
+    ModelManager.LoaderStatistics objStatistics = getLoaderStatistics("OBJLoader");
+    ModelManager.LoaderStatistics daeStatistics = getLoaderStatistics("DAELoader");
+
+    BranchGroup model = modelManager.loadModel(new URLContent(daeFile.toURI().toURL()));
+    assertTrue("Model shouldn't be empty", getShapesCount(model) > 0);
+    // Check DAE model was parsed without trying OBJ loader
+    assertEquals("DAE loader not detected", daeStatistics.getDetectedCount() + 1,
+        getLoaderStatistics("DAELoader").getDetectedCount());
+    assertEquals("DAE model not loaded", daeStatistics.getLoadCount() + 1,
+        getLoaderStatistics("DAELoader").getLoadCount());
+    assertEquals("OBJ loader tried", objStatistics.getFailureCount(),
+        getLoaderStatistics("OBJLoader").getFailureCount());
+
+    model = modelManager.loadModel(new URLContent(objFile.toURI().toURL()));
+    assertTrue("Model shouldn't be empty", getShapesCount(model) > 0);
+    assertEquals("OBJ loader not detected", objStatistics.getDetectedCount() + 1,
+        getLoaderStatistics("OBJLoader").getDetectedCount());
+    assertEquals("OBJ model not loaded", objStatistics.getLoadCount() + 1,
+        getLoaderStatistics("OBJLoader").getLoadCount());
+    daeFile.delete();
+    objFile.delete();
+  }
+
+  /**
+   * Tests OBJ files read from a URL or a reader are parsed the same way as
+   * the files rewritten by a reference parser based on <code>StreamTokenizer</code>.
+   */
+  public void testOBJParser() throws Exception {
+    String [] modelPaths = {
+        "resources/test.obj",
+        "/com/eteks/sweethome3d/io/resources/bed140x190.obj",
+        "/com/eteks/sweethome3d/io/resources/curtains/curtains.obj",
+        "/com/eteks/sweethome3d/io/resources/frame/frame.obj",
+        "/com/eteks/sweethome3d/io/resources/piano.obj",
+        "/com/eteks/sweethome3d/io/resources/railing.obj",
+        "/com/eteks/sweethome3d/io/resources/texturableTriangle/texturableTriangle.obj",
+        "/com/eteks/sweethome3d/viewcontroller/resources/repairedModel.obj"};
+    for (String modelPath : modelPaths) {
+      URL url = ModelManagerTest.class.getResource(modelPath);
+      assertNotNull("Missing model " + modelPath, url);
+      assertOBJParsing(modelPath, url);
+    }
+
+    File objFile = createRandomOBJFile(new Random(0), 5000);
+    assertOBJParsing("random model", objFile.toURI().toURL());
+    objFile.delete();
+  }
+
+  /**
+   * Tests models kept in memory are evicted once the maximum size of the cache is exceeded.
+   */
+  public void testModelCache() throws IOException {
+    MemoryBoundedCache.SizeEstimator<String> sizeEstimator = new MemoryBoundedCache.SizeEstimator<String>() {
+        public long getSize(String value) {
+          return value.length();
+        }
+      };
+    MemoryBoundedCache<String, String> cache = new MemoryBoundedCache<String, String>(10,
+        MemoryBoundedCache.EvictionPolicy.LEAST_RECENTLY_USED, sizeEstimator);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    assertEquals("aaaa", cache.get("a"));
+    cache.put("c", "cccc");
+    // Check least recently used value was evicted
+    assertNull("Value not evicted", cache.get("b"));
+    assertEquals("aaaa", cache.get("a"));
+    assertEquals("cccc", cache.get("c"));
+    cache.put("d", "ddddddddddd");
+    assertNull("Too big value cached", cache.get("d"));
+    MemoryBoundedCache.Statistics statistics = cache.getStatistics();
+    assertEquals("Wrong hit count", 3, statistics.getHitCount());
+    assertEquals("Wrong miss count", 2, statistics.getMissCount());
+    assertEquals("Wrong eviction count", 1, statistics.getEvictionCount());
+    assertEquals("Wrong resident size", 8, statistics.getResidentBytes());
+    // Check peeked and replaced values keep their place in the least recently used values
+    assertEquals("aaaa", cache.peek("a"));
+    cache.put("a", "aaa");
+    cache.put("b", "bbbb");
+    assertNull("Value not evicted", cache.get("a"));
+    assertEquals("cccc", cache.get("c"));
+    assertEquals("bbbb", cache.get("b"));
+
+    cache = new MemoryBoundedCache<String, String>(10,
+        MemoryBoundedCache.EvictionPolicy.LEAST_FREQUENTLY_USED, sizeEstimator);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    cache.get("a");
+    cache.get("a");
+    cache.get("b");
+    cache.put("c", "cccc");
+    // Check least frequently used value was evicted
+    assertEquals("aaaa", cache.get("a"));
+    assertNull("Value not evicted", cache.get("b"));
+    // Check a replaced value keeps its use count and peeked values aren't considered as used
+    cache.put("a", "AAA");
+    for (int i = 0; i < 5; i++) {
+      assertEquals("cccc", cache.peek("c"));
+    }
+    cache.put("e", "eeee");
+    assertEquals("AAA", cache.get("a"));
+    assertNull("Value not evicted", cache.get("c"));
+    assertEquals("eeee", cache.get("e"));
+    // Check values are evicted by recency once policy changed
+    cache.setPolicy(10, MemoryBoundedCache.EvictionPolicy.LEAST_RECENTLY_USED);
+    cache.get("a");
+    cache.put("f", "ffff");
+    assertNull("Value not evicted", cache.get("e"));
+    assertEquals("AAA", cache.get("a"));
+
+    ModelManager modelManager = ModelManager.getInstance();
+    modelManager.clear();
+    URLContent content = new URLContent(ModelManagerTest.class.getResource("resources/test.obj"));
+    MemoryBoundedCache.Statistics modelStatistics = modelManager.getModelCacheStatistics();
+    ModelManager.ModelObserver modelObserver = new ModelManager.ModelObserver() {
+        public void modelUpdated(BranchGroup modelRoot) {
+        }
+
+        public void modelError(Exception ex) {
+          fail(ex.getMessage());
+        }
+      };
+    modelManager.loadModel(content, true, modelObserver);
+    modelManager.loadModel(content, true, modelObserver);
+    assertEquals("Model not cached", modelStatistics.getHitCount() + 1,
+        modelManager.getModelCacheStatistics().getHitCount());
+    assertTrue("Model size not estimated", modelManager.getModelCacheStatistics().getResidentBytes() > 0);
+    try {
+      modelManager.setModelCachePolicy(0, MemoryBoundedCache.EvictionPolicy.LEAST_RECENTLY_USED);
+      assertEquals("Model not evicted", 0, modelManager.getModelCacheStatistics().getEntryCount());
+    } finally {
+      modelManager.setModelCachePolicy(Runtime.getRuntime().maxMemory() / 4,
+          MemoryBoundedCache.EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+  }
+
+  /**
+   * Tests loading tasks are run by priority, merged and cancelled.
+   */
+  public void testLoadingScheduler() throws InterruptedException {
+    LoadingScheduler scheduler = LoadingScheduler.getInstance();
+    // Keep busy all the threads of the scheduler
+    final CountDownLatch busyThreadsLatch = new CountDownLatch(1);
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    final CountDownLatch startedThreadsLatch = new CountDownLatch(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      scheduler.execute("busy" + i, 0, new Runnable() {
+          public void run() {
+            startedThreadsLatch.countDown();
+            try {
+              busyThreadsLatch.await();
+            } catch (InterruptedException ex) {
+            }
+          }
+        });
+    }
+    startedThreadsLatch.await();
+
+    final List<String> runTasks = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch tasksLatch = new CountDownLatch(3);
+    long cancelledTaskCount = scheduler.getCancelledTaskCount();
+    for (final String key : new String [] {"far", "near", "deleted", "hidden"}) {
+      float priority = key.equals("near") ? 1 : (key.equals("hidden") ? 100 : 10);
+      assertTrue("Task not scheduled", scheduler.execute(key, priority, new Runnable() {
+          public void run() {
+            runTasks.add(key);
+            tasksLatch.countDown();
+          }
+        }));
+    }
+    assertEquals("Wrong queue depth", 4, scheduler.getQueueDepth());
+    // Merge a request for a hidden item that became visible
+    assertFalse("Task not merged", scheduler.execute("hidden", 0, new Runnable() {
+        public void run() {
+          fail("Merged task run");
+        }
+      }));
+    assertTrue("Task not cancelled", scheduler.cancel("deleted"));
+    assertEquals("Wrong cancelled task count", cancelledTaskCount + 1, scheduler.getCancelledTaskCount());
+    assertEquals("Wrong queue depth after cancel", 3, scheduler.getQueueDepth());
+    long completedTaskCount = scheduler.getCompletedTaskCount();
+    // Let queued tasks wait a little
+    Thread.sleep(50);
+    busyThreadsLatch.countDown();
+    tasksLatch.await();
+    assertEquals("Wrong queue depth once tasks run", 0, scheduler.getQueueDepth());
+    assertTrue("Queued tasks wait time not measured", scheduler.getMaxWaitTime() >= 50);
+    assertTrue("Wrong average wait time", scheduler.getAverageWaitTime() <= scheduler.getMaxWaitTime());
+    if (threadCount == 1) {
+      assertEquals("Wrong task order", Arrays.asList("hidden", "near", "far"), runTasks);
+    } else {
+      assertTrue("Tasks not run", runTasks.containsAll(Arrays.asList("hidden", "near", "far")));
+    }
+    assertFalse("Cancelled task run", runTasks.contains("deleted"));
+    // Busy tasks and queued tasks may not be all completed yet
+    long runTaskCount = completedTaskCount + threadCount + runTasks.size();
+    for (int i = 0; i < 100 && scheduler.getCompletedTaskCount() < runTaskCount; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals("Wrong completed task count", runTaskCount, scheduler.getCompletedTaskCount());
+  }
+
+  /**
+   * Tests models are read from the persistent models folder once they were loaded.
+   */
+  public void testPersistentModelCache() throws IOException {
+    ModelManager modelManager = ModelManager.getInstance();
+    File modelsFolder = File.createTempFile("models", "");
+    modelsFolder.delete();
+    ModelManager.ContentDigester contentDigester = createContentDigester();
+    try {
+      String [] modelPaths = {
+          "resources/test.obj",
+          "resources/test.dae",
+          "/com/eteks/sweethome3d/io/resources/frame/frame.obj",
+          "/com/eteks/sweethome3d/io/resources/texturableTriangle/texturableTriangle.obj"};
+      modelManager.setPersistentModelsFolder(modelsFolder, 1024 * 1024 * 1024, contentDigester);
+      for (String modelPath : modelPaths) {
+        URLContent content = new URLContent(ModelManagerTest.class.getResource(modelPath));
+        long hitCount = modelManager.getPersistentModelsHitCount();
+        long missCount = modelManager.getPersistentModelsMissCount();
+        BranchGroup loadedModel = modelManager.loadModel(content);
+        assertEquals("Model " + modelPath + " found in empty folder", hitCount, modelManager.getPersistentModelsHitCount());
+        assertEquals("Model " + modelPath + " searched", missCount + 1, modelManager.getPersistentModelsMissCount());
+        BranchGroup cachedModel = modelManager.loadModel(content);
+        assertEquals("Model " + modelPath + " not cached", hitCount + 1, modelManager.getPersistentModelsHitCount());
+        assertSame("Wrong user data", content, cachedModel.getUserData());
+        assertNodesEqual(modelPath, loadedModel, cachedModel);
+      }
+      assertEquals("Wrong count of cached models", modelPaths.length, modelsFolder.list().length);
+
+      // Check least recently used models and old temporary files are deleted once the folder is opened again
+      File orphanFile = File.createTempFile("cache", ".tmp", modelsFolder);
+      orphanFile.setLastModified(System.currentTimeMillis() - 24 * 3600000);
+      File recentFile = File.createTempFile("cache", ".tmp", modelsFolder);
+      modelManager.setPersistentModelsFolder(modelsFolder, 1, contentDigester);
+      modelManager.loadModel(new URLContent(ModelManagerTest.class.getResource(modelPaths [0])));
+      assertFalse("Orphan temporary file not deleted", orphanFile.exists());
+      assertTrue("Recent temporary file deleted", recentFile.delete());
+      assertEquals("Cached models not deleted", 1, modelsFolder.list().length);
+    } finally {
+      modelManager.setPersistentModelsFolder(null, 0, null);
+      for (File file : modelsFolder.listFiles()) {
+        file.delete();
+      }
+      modelsFolder.delete();
+    }
+  }
+
+  /**
+   * Returns a digester computing the SHA-1 digest of contents.
+   */
+  private ModelManager.ContentDigester createContentDigester() {
+    return new ModelManager.ContentDigester() {
+        public byte [] getContentDigest(Content content) {
+          try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            InputStream in = content.openStream();
+            byte [] buffer = new byte [8192];
+            for (int size; (size = in.read(buffer)) != -1; ) {
+              messageDigest.update(buffer, 0, size);
+            }
+            in.close();
+            return messageDigest.digest();
+          } catch (IOException ex) {
+            return null;
+          } catch (NoSuchAlgorithmException ex) {
+            return null;
+          }
+        }
+      };
+  }
+
+  public void testTextureDownscaling() throws IOException {
+    TextureManager textureManager = TextureManager.getInstance();
+    int defaultMaxTextureSize = textureManager.getMaximumTextureSize();
+    File texturesFolder = File.createTempFile("textures", "");
+    texturesFolder.delete();
+    // Write the same image in two files
+    BufferedImage image = new BufferedImage(256, 128, BufferedImage.TYPE_INT_RGB);
+    Graphics g = image.getGraphics();
+    g.setColor(Color.BLUE);
+    g.fillRect(0, 0, 256, 128);
+    g.dispose();
+    File imageFile1 = File.createTempFile("texture", ".png");
+    File imageFile2 = File.createTempFile("texture", ".png");
+    ImageIO.write(image, "PNG", imageFile1);
+    ImageIO.write(image, "PNG", imageFile2);
+    try {
+      textureManager.clear();
+      textureManager.setMaximumTextureSize(64);
+      textureManager.setPersistentTexturesFolder(texturesFolder, 1024 * 1024, createContentDigester());
+      URLContent content1 = new URLContent(imageFile1.toURI().toURL());
+      Texture texture1 = loadTexture(content1);
+      assertEquals("Image not downscaled", 64, texture1.getWidth());
+      assertEquals("Image not downscaled", 32, texture1.getHeight());
+      assertEquals("Image found in empty folder", 0, textureManager.getPersistentTexturesHitCount());
+      assertEquals("Wrong count of cached images", 1, texturesFolder.list().length);
+      assertEquals("Wrong URL", content1.getURL(), texture1.getUserData());
+
+      // Check an image with the same digest is read from cache and shared
+      Texture texture2 = loadTexture(new URLContent(imageFile2.toURI().toURL()));
+      assertEquals("Image not read from cache", 1, textureManager.getPersistentTexturesHitCount());
+      assertSame("Texture not shared", texture1, texture2);
+      // Check a texture with the same image but without content is shared too
+      BufferedImage downscaledImage = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+      g = downscaledImage.getGraphics();
+      g.setColor(Color.BLUE);
+      g.fillRect(0, 0, 64, 32);
+      g.dispose();
+      Texture textureWithoutContent = new TextureLoader(downscaledImage).getTexture();
+      assertSame("Texture without content not shared", texture1, textureManager.shareTexture(textureWithoutContent));
+
+      // Check an other level is read once maximum size is changed
+      textureManager.clear();
+      textureManager.setMaximumTextureSize(128);
+      Texture texture3 = loadTexture(content1);
+      assertEquals("Image not read from cache", 2, textureManager.getPersistentTexturesHitCount());
+      assertEquals("Wrong level", 128, texture3.getWidth());
+      assertEquals("Wrong level", 64, texture3.getHeight());
+
+      // Check persistent textures folder isn't used without maximum size
+      textureManager.clear();
+      textureManager.setMaximumTextureSize(Integer.MAX_VALUE);
+      Texture texture4 = loadTexture(content1);
+      assertEquals("Image downscaled", 256, texture4.getWidth());
+      assertEquals("Cache searched", 2, textureManager.getPersistentTexturesHitCount());
+      assertEquals("Cache searched", 1, textureManager.getPersistentTexturesMissCount());
+    } finally {
+      textureManager.clear();
+      textureManager.setMaximumTextureSize(defaultMaxTextureSize);
+      textureManager.setPersistentTexturesFolder(null, 0, null);
+      for (File file : texturesFolder.listFiles()) {
+        file.delete();
+      }
+      texturesFolder.delete();
+      imageFile1.delete();
+      imageFile2.delete();
+    }
+  }
+
+  /**
+   * Returns the texture synchronously loaded from the given content.
+   */
+  private Texture loadTexture(Content content) {
+    final Texture [] loadedTexture = new Texture [1];
+    TextureManager.getInstance().loadTexture(content, true, new TextureManager.TextureObserver() {
+        public void textureUpdated(Texture texture) {
+          loadedTexture [0] = texture;
+        }
+      });
+    return loadedTexture [0];
+  }
+
+  private void assertNodesEqual(String modelName, Node expectedNode, Node node) {
+    String message = "Different node in " + modelName;
+    assertEquals(message, expectedNode.getClass(), node.getClass());
+    if (expectedNode.getUserData() instanceof String) {
+      assertEquals(message, expectedNode.getUserData(), node.getUserData());
+    }
+    if (expectedNode instanceof Group) {
+      Group expectedGroup = (Group)expectedNode;
+      Group group = (Group)node;
+      assertEquals(message, expectedGroup.numChildren(), group.numChildren());
+      for (int i = 0; i < expectedGroup.numChildren(); i++) {
+        assertNodesEqual(modelName, expectedGroup.getChild(i), group.getChild(i));
+      }
+    } else if (expectedNode instanceof Link) {
+      assertNodesEqual(modelName, ((Link)expectedNode).getSharedGroup(), ((Link)node).getSharedGroup());
+    } else if (expectedNode instanceof Shape3D) {
+      assertShapesEqual(message, (Shape3D)expectedNode, (Shape3D)node);
+      assertEquals(message, ((Shape3D)expectedNode).getAppearance().getName(),
+          ((Shape3D)node).getAppearance().getName());
+    }
+  }
+
+  /**
+   * Checks the OBJ file at the given URL is parsed like the file written by the reference parser.
+   */
+  private void assertOBJParsing(String modelName, URL url) throws IOException {
+    File referenceFile = createReferenceOBJFile(url);
+    OBJLoader referenceLoader = new OBJLoader();
+    // Search material libraries relatively to the original model
+    referenceLoader.setBaseUrl(url);
+    Scene referenceScene = referenceLoader.load(referenceFile.toURI().toURL());
+    referenceFile.delete();
+    assertScenesEqual(modelName, referenceScene, new OBJLoader().load(url));
+    assertScenesEqual(modelName, referenceScene,
+        new OBJLoader().load(new InputStreamReader(url.openStream(), "ISO-8859-1")));
+  }
+
+  /**
+   * Returns a temporary OBJ file containing the vertices, faces, lines, groups and materials of the
+   * given OBJ file, parsed with a <code>StreamTokenizer</code> and <code>Float.parseFloat</code>,
+   * and written with only one space between words, positive indices and no line continuation.
+   */
+  private File createReferenceOBJFile(URL url) throws IOException {
+    StreamTokenizer tokenizer = new StreamTokenizer(new BufferedReader(
+        new InputStreamReader(url.openStream(), "ISO-8859-1")));
+    tokenizer.resetSyntax();
+    tokenizer.eolIsSignificant(true);
+    tokenizer.wordChars('!', '~');
+    tokenizer.wordChars(0x80, 0xFF);
+    tokenizer.whitespaceChars(' ', ' ');
+    tokenizer.whitespaceChars('\n', '\n');
+    tokenizer.whitespaceChars('\r', '\r');
+    tokenizer.whitespaceChars('\t', '\t');
+    File file = File.createTempFile("reference", ".obj");
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+    int [] counts = new int [3]; // Count of vertices, texture coordinates and normals
+    while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
+      if (tokenizer.ttype == StreamTokenizer.TT_EOL) {
+        continue;
+      }
+      assertEquals("Unexpected token at line " + tokenizer.lineno(), StreamTokenizer.TT_WORD, tokenizer.ttype);
+      String keyword = tokenizer.sval;
+      if ("v".equals(keyword)
+          || "vn".equals(keyword)
+          || "vt".equals(keyword)) {
+        int coordinateCount = "vt".equals(keyword) ? 2 : 3;
+        writer.write(keyword);
+        for (int i = 0; i < coordinateCount; i++) {
+          if (i > 0) {
+            skipBackSlash(tokenizer);
+          }
+          writer.write(" " + parseNumber(tokenizer));
+        }
+        counts ["v".equals(keyword) ? 0 : ("vt".equals(keyword) ? 1 : 2)]++;
+        if (!"vn".equals(keyword)
+            && tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+          tokenizer.pushBack();
+        }
+      } else if ("f".equals(keyword)
+                 || "l".equals(keyword)) {
+        tokenizer.ordinaryChar('/');
+        writer.write(keyword);
+        for (boolean first = true; ; first = false) {
+          if (!first) {
+            skipBackSlash(tokenizer);
+          }
+          if (tokenizer.nextToken() == StreamTokenizer.TT_EOL) {
+            break;
+          }
+          tokenizer.pushBack();
+          writer.write(" " + parseIndex(tokenizer, counts [0]));
+          if (tokenizer.nextToken() != '/') {
+            tokenizer.pushBack();
+          } else {
+            if (tokenizer.nextToken() != '/') {
+              tokenizer.pushBack();
+              writer.write("/" + parseIndex(tokenizer, counts [1]));
+              tokenizer.nextToken();
+            } else {
+              writer.write("/");
+            }
+            if (tokenizer.ttype == '/' && "f".equals(keyword)) {
+              writer.write("/" + parseIndex(tokenizer, counts [2]));
+            } else {
+              tokenizer.pushBack();
+            }
+          }
+        }
+        tokenizer.pushBack();
+        tokenizer.wordChars('/', '/');
+      } else if ("g".equals(keyword)
+                 || "o".equals(keyword)) {
+        writer.write("g");
+        if (tokenizer.nextToken() == StreamTokenizer.TT_WORD) {
+          writer.write(" " + tokenizer.sval);
+        }
+        while (tokenizer.ttype == StreamTokenizer.TT_WORD) {
+          tokenizer.nextToken();
+        }
+        tokenizer.pushBack();
+      } else if ("s".equals(keyword)) {
+        assertEquals("Expected smoothing group", StreamTokenizer.TT_WORD, tokenizer.nextToken());
+        writer.write("off".equals(tokenizer.sval) ? "s off" : "s 1");
+      } else if ("usemtl".equals(keyword)
+                 || "mtllib".equals(keyword)) {
+        tokenizer.wordChars(' ', ' ');
+        assertEquals("Expected name", StreamTokenizer.TT_WORD, tokenizer.nextToken());
+        tokenizer.whitespaceChars(' ', ' ');
+        writer.write(keyword + " " + ("usemtl".equals(keyword) ? tokenizer.sval : tokenizer.sval.trim()));
+      } else {
+        // Skip other lines
+        while (tokenizer.nextToken() != StreamTokenizer.TT_EOL
+            && tokenizer.ttype != StreamTokenizer.TT_EOF) {
+        }
+        tokenizer.pushBack();
+      }
+      int token = tokenizer.nextToken();
+      assertTrue("Expected end of line at line " + tokenizer.lineno(),
+          token == StreamTokenizer.TT_EOL || token == StreamTokenizer.TT_EOF);
+      writer.write("\n");
+    }
+    writer.close();
+    return file;
+  }
+
+  private float parseNumber(StreamTokenizer tokenizer) throws IOException {
+    assertEquals("Expected a number at line " + tokenizer.lineno(), StreamTokenizer.TT_WORD, tokenizer.nextToken());
+    return Float.parseFloat(tokenizer.sval);
+  }
+
+  /**
+   * Returns the positive index matching the next index of an OBJ element list.
+   */
+  private int parseIndex(StreamTokenizer tokenizer, int count) throws IOException {
+    assertEquals("Expected an index at line " + tokenizer.lineno(), StreamTokenizer.TT_WORD, tokenizer.nextToken());
+    int index = Integer.parseInt(tokenizer.sval);
+    return index < 0
+        ? index + count + 1
+        : index;
+  }
+
+  private void skipBackSlash(StreamTokenizer tokenizer) throws IOException {
+    tokenizer.ordinaryChar('\\');
+    if (tokenizer.nextToken() == '\\') {
+      assertEquals("Expected new line after \\ character", StreamTokenizer.TT_EOL, tokenizer.nextToken());
+    } else {
+      tokenizer.pushBack();
+    }
+    tokenizer.wordChars('\\', '\\');
+  }
+
+  /**
+   * Returns a temporary OBJ file using the different syntaxes of OBJ format.
+   */
+  private File createRandomOBJFile(Random random, int vertexCount) throws IOException {
+    File file = File.createTempFile("model", ".obj");
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+    writer.write("# Random model\r\n");
+    for (int i = 0; i < vertexCount; i++) {
+      writer.write("v " + getRandomNumber(random) + " " + getRandomNumber(random)
+          + (i % 100 == 0 ? " \\\n" : " ") + getRandomNumber(random) + (i % 10 == 0 ? " 1.0" : "") + "\r\n");
+      writer.write("vt " + getRandomNumber(random) + "\t" + getRandomNumber(random) + "\n");
+      writer.write("vn " + getRandomNumber(random) + " " + getRandomNumber(random) + " " + getRandomNumber(random) + "\n");
+    }
+    String [] materials = {"white", "gold", "default", "name with spaces  "};
+    for (int i = 0; i < vertexCount / 2; i++) {
+      if (i % 50 == 0) {
+        writer.write("g group" + random.nextInt(10) + " other\n");
+        writer.write("usemtl " + materials [random.nextInt(materials.length)] + "\n");
+        writer.write(random.nextBoolean() ? "s off\n" : "s 1\n");
+      }
+      int indexCount = 2 + random.nextInt(4);
+      int format = random.nextInt(5);
+      writer.write(format == 4 ? "l" : "f");
+      for (int j = 0; j < indexCount; j++) {
+        int index = 1 + random.nextInt(vertexCount);
+        if (random.nextInt(10) == 0) {
+          index -= vertexCount + 1;
+        }
+        switch (format) {
+          case 0 :
+          case 4 :
+            writer.write(" " + index + (format == 4 && j % 2 == 0 ? "/" + index : ""));
+            break;
+          case 1 :
+            writer.write(" " + index + "/" + index);
+            break;
+          case 2 :
+            writer.write(" " + index + "//" + index);
+            break;
+          case 3 :
+            writer.write(" " + index + "/" + index + "/" + index);
+            break;
+        }
+      }
+      writer.write(" \n");
+    }
+    writer.close();
+    return file;
+  }
+
+  private String getRandomNumber(Random random) {
+    float number = (random.nextFloat() - 0.5f) * (float)Math.pow(10, random.nextInt(8) - 3);
+    switch (random.nextInt(5)) {
+      case 0 :
+        return String.valueOf(number);
+      case 1 :
+        return String.format(Locale.US, "%.6f", number);
+      case 2 :
+        return String.format(Locale.US, "%.4e", number);
+      case 3 :
+        return String.format(Locale.US, "%.12f", number);
+      default :
+        return String.valueOf(Math.round(number));
+    }
+  }
+
+  private void assertScenesEqual(String modelName, Scene expectedScene, Scene scene) {
+    Map<?, ?> expectedObjects = expectedScene.getNamedObjects();
+    Map<?, ?> objects = scene.getNamedObjects();
+    assertTrue("No shape in " + modelName, expectedObjects.size() > 0);
+    assertEquals("Different shapes in " + modelName, expectedObjects.keySet(), objects.keySet());
+    for (Map.Entry<?, ?> entry : expectedObjects.entrySet()) {
+      String message = "Different shape " + entry.getKey() + " in " + modelName;
+      assertShapesEqual(message, (Shape3D)entry.getValue(), (Shape3D)objects.get(entry.getKey()));
+    }
+  }
+
+  private void assertShapesEqual(String message, Shape3D expectedShape, Shape3D shape) {
+    Appearance expectedAppearance = expectedShape.getAppearance();
+    Appearance appearance = shape.getAppearance();
+    assertEquals(message, expectedAppearance.getMaterial() == null, appearance.getMaterial() == null);
+    assertEquals(message, expectedAppearance.getTexture() == null, appearance.getTexture() == null);
+    GeometryArray expectedGeometry = (GeometryArray)expectedShape.getGeometry();
+    GeometryArray geometry = (GeometryArray)shape.getGeometry();
+    assertEquals(message, expectedGeometry.getClass(), geometry.getClass());
+    assertEquals(message, expectedGeometry.getVertexFormat(), geometry.getVertexFormat());
+    assertEquals(message, expectedGeometry.getVertexCount(), geometry.getVertexCount());
+    if ((expectedGeometry.getVertexFormat() & GeometryArray.INTERLEAVED) != 0) {
+      assertTrue(message, Arrays.equals(expectedGeometry.getInterleavedVertices(), geometry.getInterleavedVertices()));
+    } else {
+      float [] expectedCoordinates = new float [expectedGeometry.getVertexCount() * 3];
+      expectedGeometry.getCoordinates(0, expectedCoordinates);
+      float [] coordinates = new float [geometry.getVertexCount() * 3];
+      geometry.getCoordinates(0, coordinates);
+      assertTrue(message, Arrays.equals(expectedCoordinates, coordinates));
+      if ((expectedGeometry.getVertexFormat() & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+        float [] expectedTextureCoordinates = new float [expectedGeometry.getVertexCount() * 2];
+        expectedGeometry.getTextureCoordinates(0, 0, expectedTextureCoordinates);
+        float [] textureCoordinates = new float [geometry.getVertexCount() * 2];
+        geometry.getTextureCoordinates(0, 0, textureCoordinates);
+        assertTrue(message, Arrays.equals(expectedTextureCoordinates, textureCoordinates));
+      }
+      if (expectedGeometry instanceof LineStripArray) {
+        int [] expectedStripCounts = new int [((LineStripArray)expectedGeometry).getNumStrips()];
+        ((LineStripArray)expectedGeometry).getStripVertexCounts(expectedStripCounts);
+        int [] stripCounts = new int [((LineStripArray)geometry).getNumStrips()];
+        ((LineStripArray)geometry).getStripVertexCounts(stripCounts);
+        assertTrue(message, Arrays.equals(expectedStripCounts, stripCounts));
+      }
+    }
+  }
+
+  private File copyToTemporaryFile(URL url) throws IOException {
+    File file = File.createTempFile("model", ".bin");
+    InputStream in = url.openStream();
+    OutputStream out = new FileOutputStream(file);
+    byte [] buffer = new byte [8192];
+    for (int size; (size = in.read(buffer)) != -1; ) {
+      out.write(buffer, 0, size);
+    }
+    in.close();
+    out.close();
+    return file;
+  }
+
+  private ModelManager.LoaderStatistics getLoaderStatistics(String loaderClassSimpleName) {
+    for (ModelManager.LoaderStatistics statistics : ModelManager.getInstance().getLoaderStatistics()) {
+      if (statistics.getLoaderClassName().endsWith("." + loaderClassSimpleName)) {
+        return statistics;
+      }
+    }
+    return null;
+  }
+
   private int getShapesCount(Node node) {
     if (node instanceof Group) {
       int shapesCount = 0;
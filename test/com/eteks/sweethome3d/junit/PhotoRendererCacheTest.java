@@ -0,0 +1,252 @@
+/*
+ * PhotoRendererCacheTest.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.junit;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.eteks.sweethome3d.j3d.Object3DBranchFactory;
+import com.eteks.sweethome3d.j3d.PhotoRenderer;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeFurnitureGroup;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+import com.eteks.sweethome3d.swing.PhotoPanel;
+import com.eteks.sweethome3d.viewcontroller.Object3DFactory;
+
+/**
+ * Tests the reuse of photo renderers kept by <code>PhotoRendererCache</code>.
+ * @author Emmanuel Puybaret
+ */
+public class PhotoRendererCacheTest extends TestCase {
+  private Home            home;
+  private Wall            wall;
+  private Level           level;
+  private Object3DFactory object3dFactory;
+  private Object          cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    this.home = new Home();
+    this.level = new Level("Level 0", 0, 12, 250);
+    this.home.addLevel(this.level);
+    this.wall = new Wall(0, 0, 500, 0, 10, 250);
+    this.home.addWall(this.wall);
+    this.home.addPieceOfFurniture(createPiece());
+    // Export pieces without their model to be able to run this test without display
+    this.object3dFactory = new Object3DBranchFactory() {
+        @Override
+        public Object createObject3D(Home home, Selectable item, boolean waitForLoading) {
+          if (item instanceof HomePieceOfFurniture) {
+            return null;
+          } else {
+            return super.createObject3D(home, item, waitForLoading);
+          }
+        }
+      };
+    Class<?> cacheClass = Class.forName(PhotoPanel.class.getPackage().getName() + ".PhotoRendererCache");
+    Constructor<?> constructor = cacheClass.getDeclaredConstructor(Home.class);
+    constructor.setAccessible(true);
+    this.cache = constructor.newInstance(this.home);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    invoke("dispose", new Class [0]);
+  }
+
+  /**
+   * Tests a released renderer is reused when the scene didn't change.
+   */
+  public void testReuseOnUnchangedScene() throws Exception {
+    PhotoRenderer photoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    File disposalFile = trackDisposal(photoRenderer);
+    // Renderers aren't shared while they're used
+    PhotoRenderer otherPhotoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    assertNotSame("Lent renderer returned twice", photoRenderer, otherPhotoRenderer);
+    releasePhotoRenderer(otherPhotoRenderer);
+    releasePhotoRenderer(photoRenderer);
+
+    // Camera, photo settings and compass location don't belong to the scene
+    this.home.getCamera().setX(100);
+    this.home.getEnvironment().setPhotoWidth(1024);
+    this.home.getEnvironment().setVideoFrameRate(12);
+    this.home.getCompass().setX(250);
+    assertSame("Renderer not reused", photoRenderer, getPhotoRenderer(PhotoRenderer.Quality.HIGH));
+    assertTrue("Reused renderer disposed", disposalFile.exists());
+    releasePhotoRenderer(photoRenderer);
+
+    // A renderer of an other quality can't be reused
+    PhotoRenderer lowQualityPhotoRenderer = getPhotoRenderer(PhotoRenderer.Quality.LOW);
+    assertNotSame("Renderer reused for other quality", photoRenderer, lowQualityPhotoRenderer);
+    assertFalse("Replaced renderer not disposed", disposalFile.exists());
+    releasePhotoRenderer(lowQualityPhotoRenderer);
+  }
+
+  /**
+   * Tests a change of walls, furniture, levels or environment invalidates the cached renderer.
+   */
+  public void testInvalidation() throws Exception {
+    assertInvalidated("Wall change", new Runnable() {
+        public void run() {
+          wall.setHeight(300f);
+        }
+      });
+    assertInvalidated("Added wall", new Runnable() {
+        public void run() {
+          home.addWall(new Wall(500, 0, 500, 500, 10, 250));
+        }
+      });
+    assertInvalidated("Piece change", new Runnable() {
+        public void run() {
+          home.getFurniture().get(0).setX(250);
+        }
+      });
+    final HomeFurnitureGroup group = new HomeFurnitureGroup(
+        Arrays.asList(new HomePieceOfFurniture [] {createPiece(), createPiece()}), "Group");
+    assertInvalidated("Added group", new Runnable() {
+        public void run() {
+          home.addPieceOfFurniture(group);
+        }
+      });
+    assertInvalidated("Group child change", new Runnable() {
+        public void run() {
+          group.getFurniture().get(0).setColor(0xFF0000);
+        }
+      });
+    final HomePieceOfFurniture addedChild = createPiece();
+    assertInvalidated("Piece added to group", new Runnable() {
+        public void run() {
+          home.addPieceOfFurnitureToGroup(addedChild, group, 0);
+        }
+      });
+    assertInvalidated("Added group child change", new Runnable() {
+        public void run() {
+          addedChild.setAngle(1);
+        }
+      });
+    assertInvalidated("Level change", new Runnable() {
+        public void run() {
+          level.setElevation(50);
+        }
+      });
+    assertInvalidated("Environment change", new Runnable() {
+        public void run() {
+          home.getEnvironment().setSkyColor(0x0000FF);
+        }
+      });
+    assertInvalidated("Compass change", new Runnable() {
+        public void run() {
+          home.getCompass().setNorthDirection(1);
+        }
+      });
+
+    // A renderer released after a change is disposed
+    PhotoRenderer photoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    File disposalFile = trackDisposal(photoRenderer);
+    this.home.deleteWall(this.wall);
+    releasePhotoRenderer(photoRenderer);
+    assertFalse("Renderer of modified scene not disposed", disposalFile.exists());
+  }
+
+  /**
+   * Tests renderers are disposed once the cache is disposed.
+   */
+  public void testDispose() throws Exception {
+    PhotoRenderer lentPhotoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    File lentRendererDisposalFile = trackDisposal(lentPhotoRenderer);
+    PhotoRenderer cachedPhotoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    File cachedRendererDisposalFile = trackDisposal(cachedPhotoRenderer);
+    releasePhotoRenderer(cachedPhotoRenderer);
+    assertTrue("Released renderer disposed", cachedRendererDisposalFile.exists());
+
+    invoke("dispose", new Class [0]);
+    assertFalse("Cached renderer not disposed", cachedRendererDisposalFile.exists());
+    assertTrue("Lent renderer disposed", lentRendererDisposalFile.exists());
+    releasePhotoRenderer(lentPhotoRenderer);
+    assertFalse("Renderer released after dispose not disposed", lentRendererDisposalFile.exists());
+
+    // Home isn't tracked anymore
+    int sceneModificationCount = getSceneModificationCount();
+    this.wall.setHeight(300f);
+    this.home.addWall(new Wall(500, 0, 500, 500, 10, 250));
+    this.home.getFurniture().get(0).setX(250);
+    assertEquals("Home still tracked", sceneModificationCount, getSceneModificationCount());
+  }
+
+  private static HomePieceOfFurniture createPiece() {
+    return new HomePieceOfFurniture(new CatalogPieceOfFurniture("Box", null, null, 50, 50, 50, true, false));
+  }
+
+  /**
+   * Asserts the given change of home makes the cached renderer obsolete.
+   */
+  private void assertInvalidated(String message, Runnable homeChange) throws Exception {
+    PhotoRenderer photoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    File disposalFile = trackDisposal(photoRenderer);
+    releasePhotoRenderer(photoRenderer);
+    int sceneModificationCount = getSceneModificationCount();
+    homeChange.run();
+    assertTrue(message + ": scene modification ignored", getSceneModificationCount() != sceneModificationCount);
+    PhotoRenderer newPhotoRenderer = getPhotoRenderer(PhotoRenderer.Quality.HIGH);
+    assertNotSame(message + ": obsolete renderer reused", photoRenderer, newPhotoRenderer);
+    assertFalse(message + ": obsolete renderer not disposed", disposalFile.exists());
+    releasePhotoRenderer(newPhotoRenderer);
+  }
+
+  /**
+   * Returns a temporary file deleted once the given renderer is disposed.
+   */
+  @SuppressWarnings("unchecked")
+  private File trackDisposal(PhotoRenderer photoRenderer) throws Exception {
+    File file = File.createTempFile("disposal", ".tmp");
+    file.deleteOnExit();
+    ((Map<Object, String>)TestUtilities.getField(photoRenderer, "textureImagesCache")).put(new Object(), file.getAbsolutePath());
+    return file;
+  }
+
+  private int getSceneModificationCount() throws Exception {
+    return (Integer)invoke("getSceneModificationCount", new Class [0]);
+  }
+
+  private PhotoRenderer getPhotoRenderer(PhotoRenderer.Quality quality) throws Exception {
+    return (PhotoRenderer)invoke("getPhotoRenderer",
+        new Class [] {Home.class, int.class, Object3DFactory.class, PhotoRenderer.Quality.class},
+        this.home, getSceneModificationCount(), this.object3dFactory, quality);
+  }
+
+  private void releasePhotoRenderer(PhotoRenderer photoRenderer) throws Exception {
+    invoke("releasePhotoRenderer", new Class [] {PhotoRenderer.class}, photoRenderer);
+  }
+
+  private Object invoke(String methodName, Class<?> [] parameterTypes, Object ... args) throws Exception {
+    Method method = this.cache.getClass().getDeclaredMethod(methodName, parameterTypes);
+    method.setAccessible(true);
+    return method.invoke(this.cache, args);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * PhotoRendererTest.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.junit;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.eteks.sweethome3d.j3d.PhotoRenderer;
+
+/**
+ * Tests the selection of the buckets refined during a progressive rendering in {@link PhotoRenderer}.
+ * @author Emmanuel Puybaret
+ */
+public class PhotoRendererTest extends TestCase {
+  private static final int BUCKET_SIZE = 64;
+
+  /**
+   * Tests the noise estimated in a flat, a gradient and a noisy image.
+   */
+  public void testNoiseDeviation() throws Exception {
+    int [] pixels = new int [BUCKET_SIZE * BUCKET_SIZE];
+    Arrays.fill(pixels, getGray(128));
+    assertEquals("Noise in flat image", 0f, getNoiseDeviation(pixels), 1E-6f);
+
+    // A gradient isn't considered as noise
+    for (int i = 0; i < pixels.length; i++) {
+      pixels [i] = getGray(i % BUCKET_SIZE * 3);
+    }
+    assertEquals("Noise in gradient image", 0f, getNoiseDeviation(pixels), 1E-6f);
+
+    fillWithNoise(pixels, 20);
+    float noiseDeviation = getNoiseDeviation(pixels);
+    assertTrue("No noise in noisy image " + noiseDeviation, noiseDeviation > 0.02f);
+  }
+
+  /**
+   * Tests only the buckets with noise or contrasted pixels are refined.
+   */
+  public void testBucketsToRefine() throws Exception {
+    BufferedImage image = new BufferedImage(3 * BUCKET_SIZE, 2 * BUCKET_SIZE, BufferedImage.TYPE_INT_RGB);
+    int [] pixels = new int [image.getWidth() * image.getHeight()];
+    Arrays.fill(pixels, getGray(128));
+    image.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+    assertEquals("Buckets refined in flat image", 0, getBucketsToRefine(image, true, 0.01f).length);
+
+    // Add noise to bucket (1, 0) and a contrasted edge in bucket (2, 1)
+    int [] bucketPixels = new int [BUCKET_SIZE * BUCKET_SIZE];
+    fillWithNoise(bucketPixels, 20);
+    image.setRGB(BUCKET_SIZE, 0, BUCKET_SIZE, BUCKET_SIZE, bucketPixels, 0, BUCKET_SIZE);
+    for (int i = 0; i < bucketPixels.length; i++) {
+      bucketPixels [i] = getGray(i % BUCKET_SIZE < BUCKET_SIZE / 2 ? 20 : 230);
+    }
+    image.setRGB(2 * BUCKET_SIZE, BUCKET_SIZE, BUCKET_SIZE, BUCKET_SIZE, bucketPixels, 0, BUCKET_SIZE);
+
+    assertTrue("Wrong refined buckets", Arrays.equals(new int [] {1, 0, 2, 1},
+        getBucketsToRefine(image, true, 0.01f)));
+    // Without anti aliasing, only the noisy bucket should be refined
+    assertTrue("Wrong refined buckets without anti aliasing", Arrays.equals(new int [] {1, 0},
+        getBucketsToRefine(image, false, 0.01f)));
+    // A threshold equal to 0 refines all buckets
+    assertEquals("Not all buckets refined", 3 * 2 * 2, getBucketsToRefine(image, false, 0).length);
+  }
+
+  private static int getGray(int value) {
+    return 0xFF000000 | value << 16 | value << 8 | value;
+  }
+
+  /**
+   * Fills the given pixels with a medium gray disturbed by a random noise.
+   */
+  private static void fillWithNoise(int [] pixels, int amplitude) {
+    Random random = new Random(0);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels [i] = getGray(128 + random.nextInt(2 * amplitude + 1) - amplitude);
+    }
+  }
+
+  private float getNoiseDeviation(int [] pixels) throws Exception {
+    Method method = PhotoRenderer.class.getDeclaredMethod("getNoiseDeviation",
+        int [].class, float [].class, int.class, int.class);
+    method.setAccessible(true);
+    return (Float)method.invoke(null, pixels, new float [pixels.length], BUCKET_SIZE, BUCKET_SIZE);
+  }
+
+  private int [] getBucketsToRefine(BufferedImage image, boolean antiAliased, float noiseThreshold) throws Exception {
+    Method method = PhotoRenderer.class.getDeclaredMethod("getBucketsToRefine",
+        BufferedImage.class, boolean.class, float.class);
+    method.setAccessible(true);
+    return (int [])method.invoke(null, image, antiAliased, noiseThreshold);
+  }
+}
@@ -21,12 +21,15 @@
 package com.eteks.sweethome3d.junit;
 
 import java.awt.BorderLayout;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
@@ -46,10 +49,18 @@ import abbot.tester.ComponentLocation;
 import abbot.tester.JComponentTester;
 
 import com.eteks.sweethome3d.io.DefaultUserPreferences;
+import com.eteks.sweethome3d.model.CatalogDoorOrWindow;
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
 import com.eteks.sweethome3d.model.CollectionEvent;
 import com.eteks.sweethome3d.model.CollectionListener;
 import com.eteks.sweethome3d.model.DimensionLine;
+import com.eteks.sweethome3d.model.FurnitureCategory;
 import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeDoorOrWindow;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.LengthUnit;
+import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.Selectable;
 import com.eteks.sweethome3d.model.UserPreferences;
 import com.eteks.sweethome3d.model.Wall;
@@ -411,6 +422,175 @@ public class PlanComponentTest extends ComponentTestFixture {
         Math.abs(50 - dimensionLine.getOffset()) < 1E-10);
   }
 
+  public void testIncrementalWallAreas() {
+    UserPreferences preferences = new DefaultUserPreferences();
+    preferences.setUnit(LengthUnit.CENTIMETER);
+    for (int wallCount : new int [] {100, 1000}) {
+      // Create a grid of square rooms made of 4 joined walls
+      Home home = new Home();
+      int roomsPerRow = (int)Math.ceil(Math.sqrt(wallCount / 4));
+      for (int i = 0; i < wallCount / 4; i++) {
+        float x = (i % roomsPerRow) * 400;
+        float y = (i / roomsPerRow) * 400;
+        Wall [] roomWalls = {new Wall(x, y, x + 300, y, 10, 250),
+                             new Wall(x + 300, y, x + 300, y + 300, 10, 250),
+                             new Wall(x + 300, y + 300, x, y + 300, 10, 250),
+                             new Wall(x, y + 300, x, y, 10, 250)};
+        for (int j = 0; j < roomWalls.length; j++) {
+          roomWalls [j].setWallAtEnd(roomWalls [(j + 1) % roomWalls.length]);
+          roomWalls [(j + 1) % roomWalls.length].setWallAtStart(roomWalls [j]);
+          home.addWall(roomWalls [j]);
+        }
+      }
+      PlanComponent planComponent = new PlanComponent(home, preferences, null);
+      planComponent.setScale(0.01f);
+      planComponent.setSize(planComponent.getPreferredSize());
+      paintPlan(planComponent);
+
+      // Move a wall and its joined walls inside plan bounds like a wall drag in plan
+      Wall movedWall = home.getWalls().iterator().next();
+      BufferedImage image = null;
+      for (int i = 0; i < 10; i++) {
+        movedWall.setYStart(movedWall.getYStart() + 5);
+        movedWall.setYEnd(movedWall.getYEnd() + 5);
+        movedWall.getWallAtStart().setYEnd(movedWall.getYStart());
+        movedWall.getWallAtEnd().setYStart(movedWall.getYEnd());
+        image = paintPlan(planComponent);
+      }
+
+      // Check incremental union gives the same plan as a new component
+      PlanComponent referencePlanComponent = new PlanComponent(home, preferences, null);
+      referencePlanComponent.setScale(0.01f);
+      referencePlanComponent.setSize(referencePlanComponent.getPreferredSize());
+      BufferedImage referenceImage = paintPlan(referencePlanComponent);
+      assertEquals("Different plan width", referenceImage.getWidth(), image.getWidth());
+      assertTrue("Different wall areas", Arrays.equals(
+          referenceImage.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()),
+          image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth())));
+    }
+  }
+
+  public void testContentCachedInTiles() {
+    UserPreferences preferences = new DefaultUserPreferences();
+    preferences.setUnit(LengthUnit.CENTIMETER);
+    Home home = new Home();
+    for (int i = 0; i < 400; i++) {
+      float x = (i % 20) * 150;
+      float y = (i / 20) * 150;
+      home.addWall(new Wall(x, y, x + 120, y + 30, 10, 250));
+    }
+    Room room = new Room(new float [][] {{0, 0}, {500, 0}, {500, 500}, {0, 500}});
+    room.setName("Living");
+    home.addRoom(room);
+    Label label = new Label("Label", 200, 200);
+    home.addLabel(label);
+    PlanComponent planComponent = new PlanComponent(home, preferences, null);
+    planComponent.setContentCachedInTiles(true);
+    planComponent.setScale(0.3f);
+    planComponent.setSize(planComponent.getPreferredSize());
+    paintPlan(planComponent);
+    paintPlan(planComponent);
+
+    // Modify a few items and check only invalidated tiles are painted again correctly
+    List<Wall> walls = new ArrayList<Wall>(home.getWalls());
+    Wall movedWall = walls.get(45);
+    movedWall.setXStart(movedWall.getXStart() + 60);
+    movedWall.setYEnd(movedWall.getYEnd() + 40);
+    home.setSelectedItems(Arrays.asList(new Selectable [] {movedWall}));
+    room.setName("Kitchen");
+    label.setX(900);
+    home.deleteWall(walls.get(3));
+    BufferedImage image = paintPlan(planComponent);
+
+    PlanComponent referencePlanComponent = new PlanComponent(home, preferences, null);
+    referencePlanComponent.setContentCachedInTiles(true);
+    referencePlanComponent.setScale(0.3f);
+    referencePlanComponent.setSize(referencePlanComponent.getPreferredSize());
+    BufferedImage referenceImage = paintPlan(referencePlanComponent);
+    assertEquals("Different plan width", referenceImage.getWidth(), image.getWidth());
+    assertTrue("Different tiles", Arrays.equals(
+        referenceImage.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()),
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth())));
+  }
+
+  public void testFurnitureCullingAndDetails() throws InterruptedException {
+    UserPreferences preferences = new DefaultUserPreferences();
+    preferences.setUnit(LengthUnit.CENTIMETER);
+    preferences.setFurnitureViewedFromTop(false);
+    // Add a grid of pieces alternating with doors
+    CatalogPieceOfFurniture catalogPiece = null;
+    CatalogPieceOfFurniture catalogDoor = null;
+    for (FurnitureCategory category : preferences.getFurnitureCatalog().getCategories()) {
+      for (CatalogPieceOfFurniture piece : category.getFurniture()) {
+        if (piece.isDoorOrWindow()) {
+          if (catalogDoor == null) {
+            catalogDoor = piece;
+          }
+        } else if (catalogPiece == null) {
+          catalogPiece = piece;
+        }
+      }
+    }
+    Home home = new Home();
+    for (int i = 0; i < 2500; i++) {
+      HomePieceOfFurniture piece = i % 5 == 0
+          ? new HomeDoorOrWindow((CatalogDoorOrWindow)catalogDoor)
+          : new HomePieceOfFurniture(catalogPiece);
+      piece.setX((i % 50) * 150);
+      piece.setY((i / 50) * 150);
+      piece.setAngle(i);
+      piece.setNameVisible(i % 7 == 0);
+      home.addPieceOfFurniture(piece);
+    }
+
+    // Paint a zoomed out plan with and without furniture details
+    PlanComponent planComponent = new PlanComponent(home, preferences, null);
+    planComponent.setScale(0.02f);
+    planComponent.setSize(planComponent.getPreferredSize());
+    planComponent.setFurnitureDetailsMinimumSize(0);
+    paintPlan(planComponent);
+    planComponent.setFurnitureDetailsMinimumSize(4);
+    paintPlan(planComponent);
+
+    // Check a clipped area of the plan is painted as the same area in the full plan
+    planComponent.setScale(0.3f);
+    planComponent.setSize(planComponent.getPreferredSize());
+    BufferedImage referenceImage = paintPlan(planComponent);
+    // Wait icons are loaded
+    Thread.sleep(1000);
+    referenceImage = paintPlan(planComponent);
+    int clipX = planComponent.getWidth() / 3;
+    int clipY = planComponent.getHeight() / 3;
+    int clipWidth = 200;
+    int clipHeight = 150;
+    BufferedImage image = new BufferedImage(planComponent.getWidth(), planComponent.getHeight(),
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2D = (Graphics2D)image.getGraphics();
+    g2D.setClip(clipX, clipY, clipWidth, clipHeight);
+    planComponent.paint(g2D);
+    g2D.dispose();
+    // Compare pixels with a tolerance for antialiasing differences at clip borders
+    int [] referencePixels = referenceImage.getRGB(clipX, clipY, clipWidth, clipHeight, null, 0, clipWidth);
+    int [] pixels = image.getRGB(clipX, clipY, clipWidth, clipHeight, null, 0, clipWidth);
+    for (int i = 0; i < pixels.length; i++) {
+      for (int shift = 0; shift < 24; shift += 8) {
+        assertTrue("Different clipped area", Math.abs(((referencePixels [i] >> shift) & 0xFF) - ((pixels [i] >> shift) & 0xFF)) < 16);
+      }
+    }
+  }
+
+  /**
+   * Returns an image of the given plan component.
+   */
+  private BufferedImage paintPlan(PlanComponent planComponent) {
+    BufferedImage image = new BufferedImage(planComponent.getWidth(), planComponent.getHeight(),
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2D = (Graphics2D)image.getGraphics();
+    planComponent.paint(g2D);
+    g2D.dispose();
+    return image;
+  }
+
   /**
    * Asserts the start point and the end point of
    * <code>wall</code> are at (<code>xStart</code>, <code>yStart</code>), (<code>xEnd</code>, <code>yEnd</code>).
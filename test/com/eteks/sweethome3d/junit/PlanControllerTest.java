@@ -25,8 +25,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
 
 import javax.swing.undo.UndoManager;
 import javax.swing.undo.UndoableEditSupport;
@@ -41,6 +44,7 @@ import com.eteks.sweethome3d.model.FurnitureCategory;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeFurnitureGroup;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.Selectable;
 import com.eteks.sweethome3d.model.UserPreferences;
 import com.eteks.sweethome3d.model.Wall;
@@ -304,6 +308,84 @@ public class PlanControllerTest extends TestCase {
     assertEquals("Wrong width in plan", 100f, box2.getWidthInPlan());
   }
 
+  /**
+   * Tests items found at a given point or in a rectangle with the index of plan items
+   * for an increasing count of items.
+   */
+  public void testSelectableItemsIndex() {
+    Home home = new Home();
+    UserPreferences preferences = new DefaultUserPreferences();
+    PlanController planController =
+        new PlanController(home, preferences, new SwingViewFactory(), null, new UndoableEditSupport());
+    CatalogPieceOfFurniture catalogPiece = preferences.getFurnitureCatalog().getCategories().get(0).getPieceOfFurniture(0);
+    Random random = new Random(0);
+    int itemCount = 0;
+    for (int count : new int [] {100, 1000, 10000}) {
+      // Add walls, furniture and rooms in an area which size grows with item count
+      float size = (float)Math.sqrt(count) * 150;
+      for ( ; itemCount < count; itemCount += 3) {
+        float x = random.nextFloat() * size;
+        float y = random.nextFloat() * size;
+        home.addWall(new Wall(x, y, x + random.nextFloat() * 300, y + random.nextFloat() * 300, 10, 250));
+        HomePieceOfFurniture piece = new HomePieceOfFurniture(catalogPiece);
+        piece.setX(random.nextFloat() * size);
+        piece.setY(random.nextFloat() * size);
+        piece.setAngle(random.nextFloat() * 6);
+        home.addPieceOfFurniture(piece);
+        x = random.nextFloat() * size;
+        y = random.nextFloat() * size;
+        Room room = new Room(new float [][] {{x, y}, {x + 150, y}, {x + 150, y + 150}, {x, y + 150}});
+        room.setAreaVisible(false);
+        home.addRoom(room);
+      }
+
+      // Check items found at random points are the same as the ones found with a linear search
+      float margin = 4 / planController.getScale();
+      for (int i = 0; i < 100; i++) {
+        float x = random.nextFloat() * size;
+        float y = random.nextFloat() * size;
+        Set<Selectable> expectedItems = new HashSet<Selectable>();
+        for (Selectable item : home.getSelectableViewableItems()) {
+          if (item != home.getCompass()
+              && item.containsPoint(x, y, margin)) {
+            expectedItems.add(item);
+          }
+        }
+        List<Selectable> items = new ArrayList<Selectable>(planController.getSelectableItemsAt(x, y));
+        items.remove(home.getCompass());
+        assertEquals("Wrong items at point", expectedItems, new HashSet<Selectable>(items));
+      }
+
+      // Check moved and deleted pieces are found at their new location
+      HomePieceOfFurniture piece = home.getFurniture().get(random.nextInt(home.getFurniture().size()));
+      float xPiece = piece.getX();
+      float yPiece = piece.getY();
+      piece.setX(xPiece + size);
+      assertFalse("Moved piece found", planController.getSelectableItemsAt(xPiece, yPiece).contains(piece));
+      assertTrue("Moved piece not found", planController.getSelectableItemsAt(xPiece + size, yPiece).contains(piece));
+      piece.setX(xPiece);
+      assertTrue("Moved piece not found", planController.getSelectableItemsAt(xPiece, yPiece).contains(piece));
+      home.deletePieceOfFurniture(piece);
+      assertFalse("Deleted piece found", planController.getSelectableItemsAt(xPiece, yPiece).contains(piece));
+      home.addPieceOfFurniture(piece);
+
+      // Check rectangle selection with mouse is the same as the one computed with a linear search
+      planController.setMode(PlanController.Mode.SELECTION);
+      planController.moveMouse(-1000, -1000);
+      planController.pressMouse(-1000, -1000, 1, false, false);
+      planController.moveMouse(size / 3, size / 3);
+      planController.releaseMouse(size / 3, size / 3);
+      Set<Selectable> expectedItems = new HashSet<Selectable>();
+      for (Selectable item : home.getSelectableViewableItems()) {
+        if (item.intersectsRectangle(-1000, -1000, size / 3, size / 3)) {
+          expectedItems.add(item);
+        }
+      }
+      assertEquals("Wrong selected items", expectedItems, new HashSet<Selectable>(home.getSelectedItems()));
+      home.setSelectedItems(new ArrayList<Selectable>());
+    }
+  }
+
   /**
    * Asserts the start point and the end point of 
    * <code>wall</code> are at (<code>xStart</code>, <code>yStart</code>), (<code>xEnd</code>, <code>yEnd</code>). 
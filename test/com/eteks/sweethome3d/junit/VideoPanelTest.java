@@ -0,0 +1,197 @@
+/*
+ * VideoPanelTest.java 18 oct 2026
+ *
+ * Copyright (c) 2026 Emmanuel PUYBARET / eTeks <info@eteks.com>. All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package com.eteks.sweethome3d.junit;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.media.Buffer;
+import javax.media.format.VideoFormat;
+import javax.media.protocol.PullBufferStream;
+import javax.swing.BoundedRangeModel;
+import javax.swing.DefaultBoundedRangeModel;
+
+import junit.framework.TestCase;
+
+import com.eteks.sweethome3d.model.Camera;
+import com.eteks.sweethome3d.swing.VideoPanel;
+
+/**
+ * Tests the parallel rendering of the frames of a video in {@link VideoPanel}.
+ * @author Emmanuel Puybaret
+ */
+public class VideoPanelTest extends TestCase {
+  private static final int FRAMES_COUNT = 30;
+  private static final int FRAME_GENERATORS_COUNT = 3;
+  private static final int FRAMES_IN_FLIGHT_MAXIMUM_COUNT = 5;
+
+  /**
+   * Tests frames rendered with varying delays are read in the order of the camera path,
+   * without exceeding the maximum count of frames in flight.
+   */
+  public void testFramesOrder() throws Exception {
+    StubFrameGeneratorsState state = new StubFrameGeneratorsState();
+    List<Object> frameGenerators = createStubFrameGenerators(state, false);
+    PullBufferStream stream = createImageSourceStream(frameGenerators);
+    state.stream = stream;
+
+    for (int i = 0; i < FRAMES_COUNT; i++) {
+      Buffer buffer = new Buffer();
+      stream.read(buffer);
+      assertFalse("End of media too early", buffer.isEOM());
+      BufferedImage frame = ImageIO.read(new ByteArrayInputStream((byte [])buffer.getData(), 0, buffer.getLength()));
+      int gray = frame.getRGB(frame.getWidth() / 2, frame.getHeight() / 2) & 0xFF;
+      assertTrue("Frame " + i + " out of order", Math.abs(getFrameGray(i) - gray) < 4);
+    }
+    Buffer buffer = new Buffer();
+    stream.read(buffer);
+    assertTrue("No end of media", buffer.isEOM());
+    disposeImageSourceStream(stream);
+
+    assertEquals("Wrong count of rendered frames", FRAMES_COUNT, state.renderedFramesCount.get());
+    assertTrue("Frames not rendered in parallel", state.maxRenderingFramesCount.get() > 1);
+    assertTrue("Too many frames in flight " + state.maxFramesInFlightCount.get(),
+        state.maxFramesInFlightCount.get() <= FRAMES_IN_FLIGHT_MAXIMUM_COUNT);
+  }
+
+  /**
+   * Tests that frame generators aren't used anymore once the stream is disposed,
+   * even if they don't stop at once when they're interrupted.
+   */
+  public void testDisposeWhileRendering() throws Exception {
+    StubFrameGeneratorsState state = new StubFrameGeneratorsState();
+    List<Object> frameGenerators = createStubFrameGenerators(state, true);
+    PullBufferStream stream = createImageSourceStream(frameGenerators);
+    state.stream = stream;
+
+    // Read a first frame to start rendering, then stop while other frames are rendered
+    stream.read(new Buffer());
+    disposeImageSourceStream(stream);
+    assertEquals("Frame generators still in use after dispose", 0, state.renderingFramesCount.get());
+    assertTrue("Stream not ended", stream.endOfStream());
+  }
+
+  private static int getFrameGray(int frameIndex) {
+    return (frameIndex * 8) % 256;
+  }
+
+  /**
+   * Returns stub frame generators which render frames with varying delays.
+   */
+  private List<Object> createStubFrameGenerators(final StubFrameGeneratorsState state,
+                                                 final boolean slowToStop) throws ClassNotFoundException {
+    Class<?> frameGeneratorInterface = Class.forName(VideoPanel.class.getName() + "$FrameGenerator");
+    List<Object> frameGenerators = new ArrayList<Object>();
+    for (int i = 0; i < FRAME_GENERATORS_COUNT; i++) {
+      frameGenerators.add(Proxy.newProxyInstance(frameGeneratorInterface.getClassLoader(),
+          new Class [] {frameGeneratorInterface},
+          new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object [] args) throws Throwable {
+              if ("renderImageAt".equals(method.getName())) {
+                return renderImageAt((Camera)args [0], state, slowToStop);
+              } else if ("dispose".equals(method.getName())) {
+                return null;
+              } else {
+                return method.invoke(this, args);
+              }
+            }
+          }));
+    }
+    return frameGenerators;
+  }
+
+  private BufferedImage renderImageAt(Camera camera, StubFrameGeneratorsState state,
+                                      boolean slowToStop) throws Exception {
+    int frameIndex = Math.round(camera.getX());
+    int renderingFramesCount = state.renderingFramesCount.incrementAndGet();
+    try {
+      updateMaximum(state.maxRenderingFramesCount, renderingFramesCount);
+      // Frames from the first unread one to this one are in flight
+      int imageIndex = (Integer)TestUtilities.getField(state.stream, "imageIndex");
+      updateMaximum(state.maxFramesInFlightCount, frameIndex - imageIndex + 1);
+      try {
+        Thread.sleep(5 + (frameIndex * 7) % 4 * 15 + (slowToStop ? 1000 : 0));
+      } catch (InterruptedException ex) {
+        if (slowToStop) {
+          // Simulate a renderer that takes some time to stop
+          long end = System.currentTimeMillis() + 200;
+          while (System.currentTimeMillis() < end) {
+            Thread.yield();
+          }
+        }
+        throw new IOException("Interrupted");
+      }
+      BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB);
+      int gray = getFrameGray(frameIndex);
+      int [] pixels = new int [image.getWidth() * image.getHeight()];
+      Arrays.fill(pixels, gray << 16 | gray << 8 | gray);
+      image.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+      state.renderedFramesCount.incrementAndGet();
+      return image;
+    } finally {
+      state.renderingFramesCount.decrementAndGet();
+    }
+  }
+
+  private static void updateMaximum(AtomicInteger maximum, int value) {
+    for (int current; (current = maximum.get()) < value && !maximum.compareAndSet(current, value); ) {
+    }
+  }
+
+  private PullBufferStream createImageSourceStream(List<Object> frameGenerators) throws Exception {
+    Camera [] framesPath = new Camera [FRAMES_COUNT];
+    for (int i = 0; i < framesPath.length; i++) {
+      framesPath [i] = new Camera(i, 0, 170, 0, 0, 1);
+    }
+    Class<?> streamClass = Class.forName(VideoPanel.class.getName() + "$ImageSourceStream");
+    Constructor<?> constructor = streamClass.getDeclaredConstructor(
+        VideoFormat.class, List.class, int.class, Camera [].class, BoundedRangeModel.class);
+    constructor.setAccessible(true);
+    return (PullBufferStream)constructor.newInstance(new VideoFormat(VideoFormat.JPEG),
+        frameGenerators, FRAMES_IN_FLIGHT_MAXIMUM_COUNT, framesPath, new DefaultBoundedRangeModel());
+  }
+
+  private void disposeImageSourceStream(PullBufferStream stream) throws Exception {
+    Method disposeMethod = stream.getClass().getDeclaredMethod("dispose");
+    disposeMethod.setAccessible(true);
+    disposeMethod.invoke(stream);
+  }
+
+  /**
+   * The counters updated by stub frame generators.
+   */
+  private static class StubFrameGeneratorsState {
+    private final AtomicInteger renderingFramesCount = new AtomicInteger();
+    private final AtomicInteger maxRenderingFramesCount = new AtomicInteger();
+    private final AtomicInteger maxFramesInFlightCount = new AtomicInteger();
+    private final AtomicInteger renderedFramesCount = new AtomicInteger();
+    private volatile Object     stream;
+  }
+}